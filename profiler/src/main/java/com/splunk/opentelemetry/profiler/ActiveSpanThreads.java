@@ -0,0 +1,80 @@
+/*
+ * Copyright Splunk Inc.
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+
+package com.splunk.opentelemetry.profiler;
+
+import io.opentelemetry.api.trace.SpanContext;
+import java.util.Arrays;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.ConcurrentMap;
+
+/**
+ * The sampled span that is active on each thread, maintained by {@link JfrContextStorage} when call
+ * stacks are sampled by {@link ThreadInfoSampler}. This lets the sampler link stacks to spans at
+ * the time they are taken and, in tracing stacks only mode, take the stacks of just the threads
+ * that have an active span. This class is thread safe.
+ */
+class ActiveSpanThreads {
+  static final ActiveSpanThreads instance = new ActiveSpanThreads();
+
+  private final ConcurrentMap<Long, SpanContext> spans = new ConcurrentHashMap<>();
+
+  /**
+   * Sets the active span of the thread, an invalid span context means that no span is active. The
+   * thread id is boxed by the caller so that it can be reused for every change.
+   */
+  void set(Long threadId, SpanContext spanContext) {
+    if (spanContext.isValid()) {
+      spans.put(threadId, spanContext);
+    } else {
+      spans.remove(threadId);
+    }
+  }
+
+  /** Returns the active span of the thread or an invalid span context. */
+  SpanContext get(long threadId) {
+    SpanContext spanContext = spans.get(threadId);
+    return spanContext == null ? SpanContext.getInvalid() : spanContext;
+  }
+
+  /**
+   * Returns the ids of the threads that have an active span. The given array is filled and returned
+   * when it has the right length, so that a caller that samples repeatedly can reuse it while the
+   * number of threads does not change.
+   */
+  long[] getThreadIds(long[] reuse) {
+    int size = spans.size();
+    long[] threadIds = reuse.length == size ? reuse : new long[size];
+    int count = 0;
+    for (Long threadId : spans.keySet()) {
+      // threads that got a span after the size was taken are sampled next time
+      if (count == threadIds.length) {
+        break;
+      }
+      threadIds[count++] = threadId;
+    }
+    return count == threadIds.length ? threadIds : Arrays.copyOf(threadIds, count);
+  }
+
+  /** Forgets a thread that ended while a span was active on it. */
+  void remove(long threadId) {
+    spans.remove(threadId);
+  }
+
+  boolean isEmpty() {
+    return spans.isEmpty();
+  }
+}
@@ -0,0 +1,509 @@
+/*
+ * Copyright Splunk Inc.
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+
+package com.splunk.opentelemetry.profiler;
+
+import static java.util.Objects.requireNonNull;
+import static java.util.logging.Level.FINE;
+import static java.util.logging.Level.WARNING;
+
+import com.splunk.opentelemetry.profiler.util.HelpfulExecutors;
+import io.opentelemetry.api.common.Value;
+import io.opentelemetry.context.Context;
+import io.opentelemetry.sdk.common.CompletableResultCode;
+import io.opentelemetry.sdk.logs.LogRecordProcessor;
+import io.opentelemetry.sdk.logs.ReadWriteLogRecord;
+import io.opentelemetry.sdk.logs.data.LogRecordData;
+import io.opentelemetry.sdk.logs.export.LogRecordExporter;
+import java.io.IOException;
+import java.nio.ByteBuffer;
+import java.time.Duration;
+import java.util.ArrayDeque;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.Set;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.ConcurrentLinkedQueue;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Semaphore;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicBoolean;
+import java.util.concurrent.atomic.AtomicLong;
+import java.util.logging.Logger;
+
+/**
+ * Log record processor for profiling data. Unlike {@link
+ * io.opentelemetry.sdk.logs.export.SimpleLogRecordProcessor} records are not exported on the
+ * thread that emits them, so a slow collector does not stall JFR processing. Records are queued
+ * and exported in batches limited by the size of their bodies, with several exports allowed to be
+ * in flight at once. When the queue is full new records are dropped instead of blocking the
+ * emitting thread, which reduces the amount of profiling data rather than the throughput of the
+ * profiler. With a {@link SpillLog} records of failed exports are written to disk, and replayed at
+ * a limited rate once exports succeed again. The spill log is only used by the worker thread,
+ * exports that complete on other threads hand their failed batches and replayed segments to it.
+ */
+class BatchingLogRecordProcessor implements LogRecordProcessor {
+  private static final Logger logger = Logger.getLogger(BatchingLogRecordProcessor.class.getName());
+
+  static final long DEFAULT_MAX_QUEUED_BYTES = 32 * 1024 * 1024;
+  static final long DEFAULT_MAX_BATCH_BYTES = 4 * 1024 * 1024;
+  static final int DEFAULT_MAX_CONCURRENT_EXPORTS = 2;
+  static final Duration DEFAULT_SCHEDULE_DELAY = Duration.ofSeconds(1);
+  static final Duration DEFAULT_EXPORT_TIMEOUT = Duration.ofSeconds(30);
+  static final long DEFAULT_REPLAY_BYTES_PER_SECOND = 1024 * 1024;
+  // rough size of everything in a record other than its body
+  static final int RECORD_OVERHEAD_BYTES = 256;
+  private static final long DROP_WARNING_INTERVAL_NANOS = TimeUnit.MINUTES.toNanos(1);
+
+  private final LogRecordExporter exporter;
+  private final long maxQueuedBytes;
+  private final long maxBatchBytes;
+  private final int maxConcurrentExports;
+  private final long scheduleDelayNanos;
+  private final long exportTimeoutNanos;
+  private final SpillLog spillLog;
+  private final long replayBytesPerSecond;
+
+  private final Object lock = new Object();
+  private final ArrayDeque<QueuedRecord> queue = new ArrayDeque<>();
+  private final List<CompletableResultCode> pendingFlushes = new ArrayList<>();
+  // flushes whose exports completed, they succeed once failed batches are spilled
+  private final List<CompletableResultCode> exportedFlushes = new ArrayList<>();
+  private long queuedBytes;
+  private boolean stopping;
+
+  private final Semaphore exportPermits;
+  private final Set<CompletableResultCode> inFlightExports = ConcurrentHashMap.newKeySet();
+  private final AtomicBoolean isShutdown = new AtomicBoolean();
+  private final AtomicLong droppedRecords = new AtomicLong();
+  private final ExecutorService worker;
+  private long lastDropWarning = System.nanoTime() - DROP_WARNING_INTERVAL_NANOS;
+  private long reportedDroppedRecords;
+  private volatile boolean exportFailing;
+  private final AtomicBoolean replaying = new AtomicBoolean();
+  private final ConcurrentLinkedQueue<List<LogRecordData>> failedBatches =
+      new ConcurrentLinkedQueue<>();
+  private final ConcurrentLinkedQueue<SpillLog.Segment> replayedSegments =
+      new ConcurrentLinkedQueue<>();
+  private long nextReplay = System.nanoTime();
+
+  private BatchingLogRecordProcessor(Builder builder) {
+    this.exporter = requireNonNull(builder.exporter);
+    this.maxQueuedBytes = builder.maxQueuedBytes;
+    this.maxBatchBytes = builder.maxBatchBytes;
+    this.maxConcurrentExports = builder.maxConcurrentExports;
+    this.scheduleDelayNanos = builder.scheduleDelay.toNanos();
+    this.exportTimeoutNanos = builder.exportTimeout.toNanos();
+    this.spillLog = builder.spillLog;
+    this.replayBytesPerSecond = builder.replayBytesPerSecond;
+    this.exportPermits = new Semaphore(maxConcurrentExports);
+    this.worker = HelpfulExecutors.newSingleThreadExecutor("JFR Profiler Log Exporter");
+    worker.execute(this::run);
+  }
+
+  @Override
+  public void onEmit(Context context, ReadWriteLogRecord logRecord) {
+    LogRecordData data = logRecord.toLogRecordData();
+    long size = estimateSize(data);
+    synchronized (lock) {
+      if (stopping) {
+        return;
+      }
+      // always accept a record into an empty queue, even when it is larger than the limit
+      if (!queue.isEmpty() && queuedBytes + size > maxQueuedBytes) {
+        droppedRecords.incrementAndGet();
+        return;
+      }
+      queue.add(new QueuedRecord(data, size));
+      queuedBytes += size;
+      if (queuedBytes >= maxBatchBytes) {
+        lock.notifyAll();
+      }
+    }
+  }
+
+  static long estimateSize(LogRecordData data) {
+    long size = RECORD_OVERHEAD_BYTES;
+    Value<?> body = data.getBodyValue();
+    if (body != null) {
+      Object value = body.getValue();
+      if (value instanceof String) {
+        size += ((String) value).length();
+      } else if (value instanceof ByteBuffer) {
+        size += ((ByteBuffer) value).remaining();
+      }
+    }
+    return size;
+  }
+
+  /** Returns the number of records that were dropped because the queue was full. */
+  long getDroppedRecords() {
+    return droppedRecords.get();
+  }
+
+  @Override
+  public CompletableResultCode forceFlush() {
+    CompletableResultCode result = new CompletableResultCode();
+    synchronized (lock) {
+      if (stopping) {
+        return CompletableResultCode.ofSuccess();
+      }
+      pendingFlushes.add(result);
+      lock.notifyAll();
+    }
+    return result;
+  }
+
+  @Override
+  public CompletableResultCode shutdown() {
+    if (!isShutdown.compareAndSet(false, true)) {
+      return CompletableResultCode.ofSuccess();
+    }
+    CompletableResultCode flushed = new CompletableResultCode();
+    synchronized (lock) {
+      pendingFlushes.add(flushed);
+      stopping = true;
+      lock.notifyAll();
+    }
+    CompletableResultCode result = new CompletableResultCode();
+    flushed.whenComplete(
+        () -> {
+          worker.shutdown();
+          closeSpillLog();
+          exporter.shutdown().whenComplete(result::succeed);
+        });
+    return result;
+  }
+
+  private void run() {
+    try {
+      while (true) {
+        List<CompletableResultCode> flushes;
+        List<CompletableResultCode> exported;
+        boolean stop;
+        synchronized (lock) {
+          long deadline = System.nanoTime() + scheduleDelayNanos;
+          while (!stopping
+              && pendingFlushes.isEmpty()
+              && exportedFlushes.isEmpty()
+              && queuedBytes < maxBatchBytes) {
+            long remaining = deadline - System.nanoTime();
+            if (remaining <= 0) {
+              break;
+            }
+            TimeUnit.NANOSECONDS.timedWait(lock, remaining);
+          }
+          stop = stopping;
+          flushes = new ArrayList<>(pendingFlushes);
+          pendingFlushes.clear();
+          exported = new ArrayList<>(exportedFlushes);
+          exportedFlushes.clear();
+        }
+
+        try {
+          exportQueued();
+          spillFailed();
+          if (!stop) {
+            replaySpilled();
+          }
+          warnAboutDroppedRecords();
+        } catch (RuntimeException e) {
+          // keep exporting, otherwise the queue would fill up and drop all further records
+          logger.log(WARNING, "Unexpected error while exporting profiling log records.", e);
+        }
+        exported.forEach(CompletableResultCode::succeed);
+        if (stop) {
+          finish(flushes);
+          return;
+        }
+        if (!flushes.isEmpty()) {
+          CompletableResultCode.ofAll(new ArrayList<>(inFlightExports))
+              .whenComplete(
+                  () -> {
+                    synchronized (lock) {
+                      exportedFlushes.addAll(flushes);
+                      lock.notifyAll();
+                    }
+                  });
+        }
+      }
+    } catch (InterruptedException e) {
+      Thread.currentThread().interrupt();
+    }
+  }
+
+  /**
+   * Waits for the remaining exports and spills their failed batches, no worker iteration follows
+   * that could do it once they complete.
+   */
+  private void finish(List<CompletableResultCode> flushes) {
+    CompletableResultCode.ofAll(new ArrayList<>(inFlightExports))
+        .join(exportTimeoutNanos, TimeUnit.NANOSECONDS);
+    try {
+      spillFailed();
+      removeReplayed();
+    } catch (RuntimeException e) {
+      logger.log(WARNING, "Unexpected error while spilling profiling log records.", e);
+    }
+    synchronized (lock) {
+      flushes.addAll(exportedFlushes);
+      exportedFlushes.clear();
+    }
+    flushes.forEach(CompletableResultCode::succeed);
+  }
+
+  private void exportQueued() throws InterruptedException {
+    while (true) {
+      List<LogRecordData> batch = takeBatch();
+      if (batch.isEmpty()) {
+        return;
+      }
+      export(batch);
+    }
+  }
+
+  private List<LogRecordData> takeBatch() {
+    List<LogRecordData> batch = new ArrayList<>();
+    synchronized (lock) {
+      long batchBytes = 0;
+      while (!queue.isEmpty()) {
+        QueuedRecord record = queue.peek();
+        if (!batch.isEmpty() && batchBytes + record.size > maxBatchBytes) {
+          break;
+        }
+        queue.poll();
+        queuedBytes -= record.size;
+        batchBytes += record.size;
+        batch.add(record.data);
+      }
+    }
+    return batch;
+  }
+
+  private void export(List<LogRecordData> batch) throws InterruptedException {
+    // while all exports are in flight the queue keeps filling up and starts dropping records
+    if (!exportPermits.tryAcquire(exportTimeoutNanos, TimeUnit.NANOSECONDS)) {
+      logger.log(
+          WARNING,
+          "Dropping {0} profiling log records, {1} exports did not complete in time.",
+          new Object[] {batch.size(), maxConcurrentExports});
+      droppedRecords.addAndGet(batch.size());
+      return;
+    }
+    CompletableResultCode result;
+    try {
+      result = exporter.export(batch);
+    } catch (RuntimeException e) {
+      exportPermits.release();
+      logger.log(WARNING, "Exporting profiling log records failed.", e);
+      exportFailed(batch);
+      return;
+    }
+    inFlightExports.add(result);
+    result.whenComplete(
+        () -> {
+          inFlightExports.remove(result);
+          exportPermits.release();
+          if (result.isSuccess()) {
+            exportFailing = false;
+          } else {
+            logger.log(FINE, "Exporting {0} profiling log records failed.", batch.size());
+            exportFailed(batch);
+          }
+        });
+  }
+
+  private void exportFailed(List<LogRecordData> batch) {
+    exportFailing = true;
+    if (spillLog != null) {
+      failedBatches.add(batch);
+    }
+  }
+
+  private void spillFailed() {
+    List<LogRecordData> batch;
+    while ((batch = failedBatches.poll()) != null) {
+      spillLog.append(batch);
+    }
+  }
+
+  private void removeReplayed() {
+    SpillLog.Segment segment;
+    while ((segment = replayedSegments.poll()) != null) {
+      spillLog.remove(segment);
+    }
+  }
+
+  /**
+   * Exports the oldest spilled segment when the last export succeeded. Only one segment is replayed
+   * at a time, and the next one not before the bytes of the previous one are within the replay
+   * rate, so that a recovering collector does not receive the whole backlog at once.
+   */
+  private void replaySpilled() {
+    if (spillLog == null
+        || exportFailing
+        || replaying.get()
+        || System.nanoTime() - nextReplay < 0
+        || !exportPermits.tryAcquire()) {
+      return;
+    }
+    // the previous replay is complete, so its segment is removed before picking the oldest one
+    removeReplayed();
+    SpillLog.Segment segment = spillLog.oldest();
+    if (segment == null) {
+      exportPermits.release();
+      return;
+    }
+    List<LogRecordData> records = spillLog.read(segment);
+    if (records.isEmpty()) {
+      exportPermits.release();
+      spillLog.remove(segment);
+      return;
+    }
+    nextReplay =
+        System.nanoTime() + TimeUnit.SECONDS.toNanos(segment.size) / replayBytesPerSecond;
+
+    CompletableResultCode result;
+    try {
+      result = exporter.export(records);
+    } catch (RuntimeException e) {
+      exportPermits.release();
+      exportFailing = true;
+      logger.log(WARNING, "Replaying spilled profiling log records failed.", e);
+      return;
+    }
+    replaying.set(true);
+    inFlightExports.add(result);
+    result.whenComplete(
+        () -> {
+          inFlightExports.remove(result);
+          exportPermits.release();
+          if (result.isSuccess()) {
+            replayedSegments.add(segment);
+          } else {
+            // the segment stays on disk and is replayed again after the next successful export
+            exportFailing = true;
+          }
+          replaying.set(false);
+        });
+  }
+
+  private void closeSpillLog() {
+    if (spillLog == null) {
+      return;
+    }
+    try {
+      spillLog.close();
+    } catch (IOException e) {
+      logger.log(FINE, "Could not close the profiling spill log.", e);
+    }
+  }
+
+  private void warnAboutDroppedRecords() {
+    long now = System.nanoTime();
+    if (now - lastDropWarning < DROP_WARNING_INTERVAL_NANOS) {
+      return;
+    }
+    long total = droppedRecords.get();
+    long dropped = total - reportedDroppedRecords;
+    if (dropped > 0) {
+      lastDropWarning = now;
+      reportedDroppedRecords = total;
+      logger.log(
+          WARNING,
+          "Dropped {0} profiling log records because the export queue was full.",
+          dropped);
+    }
+  }
+
+  private static class QueuedRecord {
+    final LogRecordData data;
+    final long size;
+
+    QueuedRecord(LogRecordData data, long size) {
+      this.data = data;
+      this.size = size;
+    }
+  }
+
+  static Builder builder(LogRecordExporter exporter) {
+    return new Builder(exporter);
+  }
+
+  static class Builder {
+    private final LogRecordExporter exporter;
+    private long maxQueuedBytes = DEFAULT_MAX_QUEUED_BYTES;
+    private long maxBatchBytes = DEFAULT_MAX_BATCH_BYTES;
+    private int maxConcurrentExports = DEFAULT_MAX_CONCURRENT_EXPORTS;
+    private Duration scheduleDelay = DEFAULT_SCHEDULE_DELAY;
+    private Duration exportTimeout = DEFAULT_EXPORT_TIMEOUT;
+    private SpillLog spillLog;
+    private long replayBytesPerSecond = DEFAULT_REPLAY_BYTES_PER_SECOND;
+
+    private Builder(LogRecordExporter exporter) {
+      this.exporter = exporter;
+    }
+
+    Builder maxQueuedBytes(long maxQueuedBytes) {
+      this.maxQueuedBytes = maxQueuedBytes;
+      return this;
+    }
+
+    Builder maxBatchBytes(long maxBatchBytes) {
+      this.maxBatchBytes = maxBatchBytes;
+      return this;
+    }
+
+    Builder maxConcurrentExports(int maxConcurrentExports) {
+      this.maxConcurrentExports = maxConcurrentExports;
+      return this;
+    }
+
+    Builder scheduleDelay(Duration scheduleDelay) {
+      this.scheduleDelay = scheduleDelay;
+      return this;
+    }
+
+    Builder exportTimeout(Duration exportTimeout) {
+      this.exportTimeout = exportTimeout;
+      return this;
+    }
+
+    /** Writes records of failed exports to disk instead of dropping them. */
+    Builder spillLog(SpillLog spillLog) {
+      this.spillLog = spillLog;
+      return this;
+    }
+
+    Builder replayBytesPerSecond(long replayBytesPerSecond) {
+      this.replayBytesPerSecond = replayBytesPerSecond;
+      return this;
+    }
+
+    BatchingLogRecordProcessor build() {
+      if (maxBatchBytes <= 0 || maxQueuedBytes < maxBatchBytes) {
+        throw new IllegalArgumentException("maxQueuedBytes must be at least maxBatchBytes");
+      }
+      if (maxConcurrentExports <= 0) {
+        throw new IllegalArgumentException("maxConcurrentExports must be positive");
+      }
+      if (replayBytesPerSecond <= 0) {
+        throw new IllegalArgumentException("replayBytesPerSecond must be positive");
+      }
+      return new BatchingLogRecordProcessor(this);
+    }
+  }
+}
@@ -0,0 +1,79 @@
+/*
+ * Copyright Splunk Inc.
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+
+package com.splunk.opentelemetry.profiler;
+
+import java.time.Duration;
+import java.time.Instant;
+import javax.annotation.Nullable;
+
+/**
+ * The period of the thread dumps that call stacks are sampled from. The period is fixed unless
+ * {@link CallStackIntervalController} adapts it to the profiler overhead. A new period is
+ * requested by the controller, applied to JFR by the recorder and from then on reported with the
+ * samples. The previous period is kept for thread dumps that were taken before the change but are
+ * processed after it.
+ */
+public class CallStackInterval {
+  private volatile Duration requested;
+  private volatile Period effective;
+
+  public CallStackInterval(Duration period) {
+    this.requested = period;
+    this.effective = new Period(period, Instant.EPOCH, period);
+  }
+
+  /** Returns the period of the thread dumps taken at the given time. */
+  public Duration at(Instant time) {
+    Period period = effective;
+    return time.isBefore(period.since) ? period.previous : period.period;
+  }
+
+  Duration getRequested() {
+    return requested;
+  }
+
+  void request(Duration period) {
+    requested = period;
+  }
+
+  /**
+   * Returns the requested period if it has not been applied yet, and from now on reports it as the
+   * effective period. Called by the recorder that applies it.
+   */
+  @Nullable
+  Duration takeRequestedChange() {
+    Duration period = requested;
+    Period current = effective;
+    if (period.equals(current.period)) {
+      return null;
+    }
+    effective = new Period(period, Instant.now(), current.period);
+    return period;
+  }
+
+  private static class Period {
+    final Duration period;
+    final Instant since;
+    final Duration previous;
+
+    Period(Duration period, Instant since, Duration previous) {
+      this.period = period;
+      this.since = since;
+      this.previous = previous;
+    }
+  }
+}
@@ -0,0 +1,95 @@
+/*
+ * Copyright Splunk Inc.
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+
+package com.splunk.opentelemetry.profiler;
+
+import static java.util.logging.Level.FINE;
+
+import java.time.Duration;
+import java.util.concurrent.TimeUnit;
+import java.util.logging.Logger;
+
+/**
+ * Adapts the call stack interval to the cost of thread dumps. The cost of a thread dump is the
+ * duration of the {@code jdk.ThreadDump} event, which includes bringing the JVM to a safepoint, and
+ * the time spent processing and exporting it. Both grow with the number of threads. The period is
+ * chosen so that this cost stays near a target fraction of one core, within the configured bounds.
+ * To avoid reconfiguring JFR after every chunk, small changes of the period are ignored.
+ */
+class CallStackIntervalController {
+  private static final Logger logger =
+      Logger.getLogger(CallStackIntervalController.class.getName());
+
+  // weight of the latest measurement in the average cost of a thread dump
+  private static final double SMOOTHING = 0.5;
+  private static final double MIN_RELATIVE_CHANGE = 0.1;
+
+  private final CallStackInterval interval;
+  private final Duration minInterval;
+  private final Duration maxInterval;
+  private final double targetOverhead;
+  // average cost of a thread dump in nanoseconds, negative until the first measurement
+  private double averageCost = -1;
+
+  CallStackIntervalController(
+      CallStackInterval interval,
+      Duration minInterval,
+      Duration maxInterval,
+      double targetOverhead) {
+    if (minInterval.compareTo(maxInterval) > 0 || minInterval.isZero()) {
+      throw new IllegalArgumentException(
+          "Invalid call stack interval bounds " + minInterval + " - " + maxInterval);
+    }
+    if (targetOverhead <= 0) {
+      throw new IllegalArgumentException("Invalid call stack overhead target " + targetOverhead);
+    }
+    this.interval = interval;
+    this.minInterval = minInterval;
+    this.maxInterval = maxInterval;
+    this.targetOverhead = targetOverhead;
+  }
+
+  /**
+   * Requests a new call stack interval if the measured cost of thread dumps calls for it.
+   *
+   * @param threadDumpCount number of thread dumps that were measured
+   * @param threadDumpTime total duration of the thread dump events, in nanoseconds
+   * @param processingTime time spent processing the thread dumps, in nanoseconds
+   */
+  void update(long threadDumpCount, long threadDumpTime, long processingTime) {
+    if (threadDumpCount == 0) {
+      return;
+    }
+    double cost = (double) (threadDumpTime + processingTime) / threadDumpCount;
+    averageCost = averageCost < 0 ? cost : SMOOTHING * cost + (1 - SMOOTHING) * averageCost;
+
+    long targetMillis = TimeUnit.NANOSECONDS.toMillis((long) (averageCost / targetOverhead));
+    long newMillis =
+        Math.max(minInterval.toMillis(), Math.min(maxInterval.toMillis(), targetMillis));
+    long currentMillis = interval.getRequested().toMillis();
+    if (Math.abs(newMillis - currentMillis) <= currentMillis * MIN_RELATIVE_CHANGE) {
+      return;
+    }
+    if (logger.isLoggable(FINE)) {
+      long costMillis = TimeUnit.NANOSECONDS.toMillis((long) averageCost);
+      logger.log(
+          FINE,
+          "Changing call stack interval from {0}ms to {1}ms, a thread dump costs {2}ms",
+          new Object[] {currentMillis, newMillis, costMillis});
+    }
+    interval.request(Duration.ofMillis(newMillis));
+  }
+}
@@ -21,13 +21,17 @@ import static com.splunk.opentelemetry.SplunkConfiguration.PROFILER_MEMORY_ENABL
 import static java.util.logging.Level.WARNING;
 
 import com.google.auto.service.AutoService;
+import com.splunk.opentelemetry.profiler.pprof.PprofFormat;
 import io.opentelemetry.sdk.autoconfigure.spi.AutoConfigurationCustomizer;
 import io.opentelemetry.sdk.autoconfigure.spi.AutoConfigurationCustomizerProvider;
 import io.opentelemetry.sdk.autoconfigure.spi.ConfigProperties;
 import java.time.Duration;
+import java.util.Collections;
 import java.util.HashMap;
+import java.util.List;
 import java.util.Map;
 import java.util.logging.Logger;
+import java.util.zip.Deflater;
 
 @AutoService(AutoConfigurationCustomizerProvider.class)
 public class Configuration implements AutoConfigurationCustomizerProvider {
@@ -41,12 +45,44 @@ public class Configuration implements AutoConfigurationCustomizerProvider {
   public static final boolean DEFAULT_TRACING_STACKS_ONLY = false;
   private static final int DEFAULT_STACK_DEPTH = 1024;
   private static final boolean DEFAULT_MEMORY_EVENT_RATE_LIMIT_ENABLED = true;
+  public static final boolean DEFAULT_STREAMING_ENABLED = false;
+  public static final boolean DEFAULT_RECORDING_TO_DISK = false;
+  public static final boolean DEFAULT_CALL_STACK_AGGREGATE = false;
+  public static final boolean DEFAULT_THREAD_POOLS = false;
+  public static final int DEFAULT_CALL_STACK_BATCHES = 1;
+  public static final int DEFAULT_PROCESSING_PARALLELISM = 0;
+  public static final boolean DEFAULT_BINARY_CONTEXT_EVENTS = false;
+  public static final boolean DEFAULT_CALL_STACK_ADAPTIVE = false;
+  public static final Duration DEFAULT_CALL_STACK_INTERVAL_MAX = Duration.ofMinutes(1);
+  public static final double DEFAULT_CALL_STACK_BUDGET = 0.01;
+  public static final String CALL_STACK_SAMPLER_THREAD_DUMP = "thread-dump";
+  public static final String CALL_STACK_SAMPLER_THREAD_INFO = "thread-info";
+  public static final String DEFAULT_CALL_STACK_SAMPLER = CALL_STACK_SAMPLER_THREAD_DUMP;
+  public static final boolean DEFAULT_CPU_SAMPLES_ENABLED = false;
+  public static final Duration DEFAULT_CPU_SAMPLES_INTERVAL = Duration.ofMillis(20);
+  public static final boolean DEFAULT_CPU_SAMPLES_NATIVE = false;
+  public static final long DEFAULT_SPILL_MAX_BYTES = 0;
+  public static final long DEFAULT_SPILL_REPLAY_RATE = 1024 * 1024;
 
   public static final String CONFIG_KEY_ENABLE_PROFILER = PROFILER_ENABLED_PROPERTY;
   public static final String CONFIG_KEY_PROFILER_DIRECTORY = "splunk.profiler.directory";
   public static final String CONFIG_KEY_RECORDING_DURATION = "splunk.profiler.recording.duration";
   public static final String CONFIG_KEY_KEEP_FILES = "splunk.profiler.keep-files";
+  // Use jdk 14+ RecordingStream instead of periodic snapshots parsed with JMC
+  public static final String CONFIG_KEY_STREAMING_ENABLED = "splunk.profiler.streaming.enabled";
+  // Record to the JFR repository and read only the chunks completed since the last snapshot
+  public static final String CONFIG_KEY_RECORDING_TO_DISK = "splunk.profiler.recording.to.disk";
+  public static final String CONFIG_KEY_PPROF_COMPRESSION_LEVEL =
+      "splunk.profiler.pprof.compression.level";
+  public static final String CONFIG_KEY_PROCESSING_PARALLELISM =
+      "splunk.profiler.processing.parallelism";
+  // Record context changes with numeric instead of hex string ids
+  public static final String CONFIG_KEY_BINARY_CONTEXT_EVENTS =
+      "splunk.profiler.context.events.binary";
   public static final String CONFIG_KEY_INGEST_URL = "splunk.profiler.logs-endpoint";
+  // Keep records of failed exports on disk and replay them once exporting works again
+  public static final String CONFIG_KEY_SPILL_MAX_BYTES = "splunk.profiler.spill.max.bytes";
+  public static final String CONFIG_KEY_SPILL_REPLAY_RATE = "splunk.profiler.spill.replay.rate";
   public static final String CONFIG_KEY_PROFILER_OTLP_PROTOCOL = "splunk.profiler.otlp.protocol";
   public static final String CONFIG_KEY_OTLP_PROTOCOL = "otel.exporter.otlp.protocol";
   public static final String CONFIG_KEY_OTEL_OTLP_URL = "otel.exporter.otlp.endpoint";
@@ -58,7 +94,31 @@ public class Configuration implements AutoConfigurationCustomizerProvider {
   public static final String CONFIG_KEY_MEMORY_EVENT_RATE = "splunk.profiler.memory.event.rate";
   public static final String CONFIG_KEY_MEMORY_NATIVE_SAMPLING =
       "splunk.profiler.memory.native.sampling";
+  // Profile threads running java code with jdk.ExecutionSample events
+  public static final String CONFIG_KEY_CPU_SAMPLES_ENABLED = "splunk.profiler.cpu.samples.enabled";
+  public static final String CONFIG_KEY_CPU_SAMPLES_INTERVAL =
+      "splunk.profiler.cpu.samples.interval";
+  // Also profile threads running native code with jdk.NativeMethodSample events
+  public static final String CONFIG_KEY_CPU_SAMPLES_NATIVE = "splunk.profiler.cpu.samples.native";
   public static final String CONFIG_KEY_CALL_STACK_INTERVAL = "splunk.profiler.call.stack.interval";
+  // Adapt the call stack interval to the cost of thread dumps, within min and max
+  public static final String CONFIG_KEY_CALL_STACK_ADAPTIVE = "splunk.profiler.call.stack.adaptive";
+  public static final String CONFIG_KEY_CALL_STACK_INTERVAL_MIN =
+      "splunk.profiler.call.stack.interval.min";
+  public static final String CONFIG_KEY_CALL_STACK_INTERVAL_MAX =
+      "splunk.profiler.call.stack.interval.max";
+  // Fraction of one core that taking and processing thread dumps may use
+  public static final String CONFIG_KEY_CALL_STACK_BUDGET = "splunk.profiler.call.stack.budget";
+  public static final String CONFIG_KEY_CALL_STACK_AGGREGATE =
+      "splunk.profiler.call.stack.aggregate";
+  // Number of batches that aggregated call stacks are collected over before exporting them
+  public static final String CONFIG_KEY_CALL_STACK_BATCHES = "splunk.profiler.call.stack.batches";
+  // Label samples with thread pool names and aggregate stacks per pool
+  public static final String CONFIG_KEY_THREAD_POOLS = "splunk.profiler.thread.pools";
+  public static final String CONFIG_KEY_THREAD_POOL_PATTERNS =
+      "splunk.profiler.thread.pool.patterns";
+  // Take call stacks with jdk.ThreadDump events or by sampling ThreadMXBean thread info
+  public static final String CONFIG_KEY_CALL_STACK_SAMPLER = "splunk.profiler.call.stack.sampler";
   public static final String CONFIG_KEY_INCLUDE_AGENT_INTERNALS =
       "splunk.profiler.include.agent.internals";
   // Include stacks where every frame starts with jvm/sun/jdk
@@ -66,6 +126,11 @@ public class Configuration implements AutoConfigurationCustomizerProvider {
       "splunk.profiler.include.jvm.internals";
   public static final String CONFIG_KEY_INCLUDE_INTERNAL_STACKS =
       "splunk.profiler.include.internal.stacks";
+  // Prefixes of thread names and packages that are dropped or kept by the stack trace filter
+  public static final String CONFIG_KEY_EXCLUDE_THREADS = "splunk.profiler.exclude.threads";
+  public static final String CONFIG_KEY_INCLUDE_THREADS = "splunk.profiler.include.threads";
+  public static final String CONFIG_KEY_EXCLUDE_PACKAGES = "splunk.profiler.exclude.packages";
+  public static final String CONFIG_KEY_INCLUDE_PACKAGES = "splunk.profiler.include.packages";
   public static final String CONFIG_KEY_TRACING_STACKS_ONLY = "splunk.profiler.tracing.stacks.only";
   private static final String CONFIG_KEY_STACK_DEPTH = "splunk.profiler.max.stack.depth";
 
@@ -121,6 +186,32 @@ public class Configuration implements AutoConfigurationCustomizerProvider {
         config.getString(CONFIG_KEY_OTLP_PROTOCOL, "http/protobuf"));
   }
 
+  /** Returns the disk space spilled records may take up, 0 when spilling is disabled. */
+  public static long getSpillMaxBytes(ConfigProperties config) {
+    long maxBytes = config.getLong(CONFIG_KEY_SPILL_MAX_BYTES, DEFAULT_SPILL_MAX_BYTES);
+    if (maxBytes < 0) {
+      logger.log(
+          WARNING,
+          "Invalid spill size {0}, using {1}.",
+          new Object[] {maxBytes, DEFAULT_SPILL_MAX_BYTES});
+      return DEFAULT_SPILL_MAX_BYTES;
+    }
+    return maxBytes;
+  }
+
+  /** Returns the number of spilled bytes that are replayed per second. */
+  public static long getSpillReplayRate(ConfigProperties config) {
+    long rate = config.getLong(CONFIG_KEY_SPILL_REPLAY_RATE, DEFAULT_SPILL_REPLAY_RATE);
+    if (rate <= 0) {
+      logger.log(
+          WARNING,
+          "Invalid spill replay rate {0}, using {1}.",
+          new Object[] {rate, DEFAULT_SPILL_REPLAY_RATE});
+      return DEFAULT_SPILL_REPLAY_RATE;
+    }
+    return rate;
+  }
+
   public static boolean getMemoryEnabled(ConfigProperties config) {
     return config.getBoolean(CONFIG_KEY_MEMORY_ENABLED, DEFAULT_MEMORY_ENABLED);
   }
@@ -140,10 +231,115 @@ public class Configuration implements AutoConfigurationCustomizerProvider {
         && config.getBoolean(CONFIG_KEY_MEMORY_NATIVE_SAMPLING, false);
   }
 
+  public static boolean getCpuSamplesEnabled(ConfigProperties config) {
+    return config.getBoolean(CONFIG_KEY_CPU_SAMPLES_ENABLED, DEFAULT_CPU_SAMPLES_ENABLED);
+  }
+
+  public static Duration getCpuSamplesInterval(ConfigProperties config) {
+    Duration interval =
+        config.getDuration(CONFIG_KEY_CPU_SAMPLES_INTERVAL, DEFAULT_CPU_SAMPLES_INTERVAL);
+    if (interval.isZero() || interval.isNegative()) {
+      logger.log(
+          WARNING,
+          "Invalid cpu samples interval {0}, using {1}.",
+          new Object[] {interval, DEFAULT_CPU_SAMPLES_INTERVAL});
+      return DEFAULT_CPU_SAMPLES_INTERVAL;
+    }
+    return interval;
+  }
+
+  public static boolean getCpuSamplesNative(ConfigProperties config) {
+    return config.getBoolean(CONFIG_KEY_CPU_SAMPLES_NATIVE, DEFAULT_CPU_SAMPLES_NATIVE);
+  }
+
   public static Duration getCallStackInterval(ConfigProperties config) {
     return config.getDuration(CONFIG_KEY_CALL_STACK_INTERVAL, DEFAULT_CALL_STACK_INTERVAL);
   }
 
+  public static boolean getCallStackAdaptive(ConfigProperties config) {
+    return config.getBoolean(CONFIG_KEY_CALL_STACK_ADAPTIVE, DEFAULT_CALL_STACK_ADAPTIVE);
+  }
+
+  /** The adapted interval is not shorter than the configured interval unless set otherwise. */
+  public static Duration getCallStackIntervalMin(ConfigProperties config) {
+    Duration interval = getCallStackInterval(config);
+    Duration min = config.getDuration(CONFIG_KEY_CALL_STACK_INTERVAL_MIN, interval);
+    return min.isZero() || min.isNegative() ? interval : min;
+  }
+
+  public static Duration getCallStackIntervalMax(ConfigProperties config) {
+    Duration max =
+        config.getDuration(CONFIG_KEY_CALL_STACK_INTERVAL_MAX, DEFAULT_CALL_STACK_INTERVAL_MAX);
+    Duration min = getCallStackIntervalMin(config);
+    return max.compareTo(min) < 0 ? min : max;
+  }
+
+  public static double getCallStackBudget(ConfigProperties config) {
+    double budget = config.getDouble(CONFIG_KEY_CALL_STACK_BUDGET, DEFAULT_CALL_STACK_BUDGET);
+    if (budget <= 0 || budget > 1) {
+      logger.log(
+          WARNING,
+          "Invalid call stack budget {0}, using {1}.",
+          new Object[] {budget, DEFAULT_CALL_STACK_BUDGET});
+      return DEFAULT_CALL_STACK_BUDGET;
+    }
+    return budget;
+  }
+
+  public static boolean getCallStackAggregate(ConfigProperties config) {
+    return config.getBoolean(CONFIG_KEY_CALL_STACK_AGGREGATE, DEFAULT_CALL_STACK_AGGREGATE);
+  }
+
+  public static int getCallStackBatches(ConfigProperties config) {
+    int batches = config.getInt(CONFIG_KEY_CALL_STACK_BATCHES, DEFAULT_CALL_STACK_BATCHES);
+    if (batches < 1) {
+      logger.log(
+          WARNING,
+          "Invalid number of call stack batches {0}, using {1}.",
+          new Object[] {batches, DEFAULT_CALL_STACK_BATCHES});
+      return DEFAULT_CALL_STACK_BATCHES;
+    }
+    return batches;
+  }
+
+  public static boolean getThreadPools(ConfigProperties config) {
+    return config.getBoolean(CONFIG_KEY_THREAD_POOLS, DEFAULT_THREAD_POOLS);
+  }
+
+  public static List<String> getThreadPoolPatterns(ConfigProperties config) {
+    return config.getList(CONFIG_KEY_THREAD_POOL_PATTERNS, Collections.emptyList());
+  }
+
+  public static String getCallStackSampler(ConfigProperties config) {
+    String sampler = config.getString(CONFIG_KEY_CALL_STACK_SAMPLER, DEFAULT_CALL_STACK_SAMPLER);
+    if (!CALL_STACK_SAMPLER_THREAD_DUMP.equals(sampler)
+        && !CALL_STACK_SAMPLER_THREAD_INFO.equals(sampler)) {
+      logger.log(
+          WARNING,
+          "Unknown call stack sampler {0}, using {1}.",
+          new Object[] {sampler, DEFAULT_CALL_STACK_SAMPLER});
+      return DEFAULT_CALL_STACK_SAMPLER;
+    }
+    return sampler;
+  }
+
+  public static boolean getThreadInfoSamplerEnabled(ConfigProperties config) {
+    return CALL_STACK_SAMPLER_THREAD_INFO.equals(getCallStackSampler(config));
+  }
+
+  public static PprofFormat getPprofFormat(ConfigProperties config) {
+    int level = config.getInt(CONFIG_KEY_PPROF_COMPRESSION_LEVEL, Deflater.DEFAULT_COMPRESSION);
+    if (level < Deflater.DEFAULT_COMPRESSION || level > Deflater.BEST_COMPRESSION) {
+      logger.log(
+          WARNING,
+          "Invalid value {0} for {1}, using the default compression level.",
+          new Object[] {level, CONFIG_KEY_PPROF_COMPRESSION_LEVEL});
+      level = Deflater.DEFAULT_COMPRESSION;
+    }
+
+    return PprofFormat.gzipBase64(level);
+  }
+
   public static boolean getIncludeAgentInternalStacks(ConfigProperties config) {
     boolean includeInternals =
         config.getBoolean(CONFIG_KEY_INCLUDE_INTERNAL_STACKS, DEFAULT_INCLUDE_INTERNAL_STACKS);
@@ -156,10 +352,42 @@ public class Configuration implements AutoConfigurationCustomizerProvider {
     return config.getBoolean(CONFIG_KEY_INCLUDE_JVM_INTERNALS, includeInternals);
   }
 
+  public static List<String> getExcludedThreads(ConfigProperties config) {
+    return config.getList(CONFIG_KEY_EXCLUDE_THREADS, Collections.emptyList());
+  }
+
+  public static List<String> getIncludedThreads(ConfigProperties config) {
+    return config.getList(CONFIG_KEY_INCLUDE_THREADS, Collections.emptyList());
+  }
+
+  public static List<String> getExcludedPackages(ConfigProperties config) {
+    return config.getList(CONFIG_KEY_EXCLUDE_PACKAGES, Collections.emptyList());
+  }
+
+  public static List<String> getIncludedPackages(ConfigProperties config) {
+    return config.getList(CONFIG_KEY_INCLUDE_PACKAGES, Collections.emptyList());
+  }
+
   public static boolean getTracingStacksOnly(ConfigProperties config) {
     return config.getBoolean(CONFIG_KEY_TRACING_STACKS_ONLY, DEFAULT_TRACING_STACKS_ONLY);
   }
 
+  public static boolean getStreamingEnabled(ConfigProperties config) {
+    return config.getBoolean(CONFIG_KEY_STREAMING_ENABLED, DEFAULT_STREAMING_ENABLED);
+  }
+
+  public static boolean getRecordingToDisk(ConfigProperties config) {
+    return config.getBoolean(CONFIG_KEY_RECORDING_TO_DISK, DEFAULT_RECORDING_TO_DISK);
+  }
+
+  public static int getProcessingParallelism(ConfigProperties config) {
+    return config.getInt(CONFIG_KEY_PROCESSING_PARALLELISM, DEFAULT_PROCESSING_PARALLELISM);
+  }
+
+  public static boolean getBinaryContextEvents(ConfigProperties config) {
+    return config.getBoolean(CONFIG_KEY_BINARY_CONTEXT_EVENTS, DEFAULT_BINARY_CONTEXT_EVENTS);
+  }
+
   public static int getStackDepth(ConfigProperties config) {
     return config.getInt(CONFIG_KEY_STACK_DEPTH, DEFAULT_STACK_DEPTH);
   }
@@ -16,22 +16,46 @@
 
 package com.splunk.opentelemetry.profiler;
 
+import static com.splunk.opentelemetry.profiler.Configuration.CONFIG_KEY_BINARY_CONTEXT_EVENTS;
+import static com.splunk.opentelemetry.profiler.Configuration.CONFIG_KEY_CALL_STACK_ADAPTIVE;
+import static com.splunk.opentelemetry.profiler.Configuration.CONFIG_KEY_CALL_STACK_AGGREGATE;
+import static com.splunk.opentelemetry.profiler.Configuration.CONFIG_KEY_CALL_STACK_BATCHES;
+import static com.splunk.opentelemetry.profiler.Configuration.CONFIG_KEY_CALL_STACK_BUDGET;
 import static com.splunk.opentelemetry.profiler.Configuration.CONFIG_KEY_CALL_STACK_INTERVAL;
+import static com.splunk.opentelemetry.profiler.Configuration.CONFIG_KEY_CALL_STACK_INTERVAL_MAX;
+import static com.splunk.opentelemetry.profiler.Configuration.CONFIG_KEY_CALL_STACK_INTERVAL_MIN;
+import static com.splunk.opentelemetry.profiler.Configuration.CONFIG_KEY_CALL_STACK_SAMPLER;
+import static com.splunk.opentelemetry.profiler.Configuration.CONFIG_KEY_CPU_SAMPLES_ENABLED;
+import static com.splunk.opentelemetry.profiler.Configuration.CONFIG_KEY_CPU_SAMPLES_INTERVAL;
+import static com.splunk.opentelemetry.profiler.Configuration.CONFIG_KEY_CPU_SAMPLES_NATIVE;
 import static com.splunk.opentelemetry.profiler.Configuration.CONFIG_KEY_ENABLE_PROFILER;
+import static com.splunk.opentelemetry.profiler.Configuration.CONFIG_KEY_EXCLUDE_PACKAGES;
+import static com.splunk.opentelemetry.profiler.Configuration.CONFIG_KEY_EXCLUDE_THREADS;
 import static com.splunk.opentelemetry.profiler.Configuration.CONFIG_KEY_INCLUDE_INTERNAL_STACKS;
+import static com.splunk.opentelemetry.profiler.Configuration.CONFIG_KEY_INCLUDE_PACKAGES;
+import static com.splunk.opentelemetry.profiler.Configuration.CONFIG_KEY_INCLUDE_THREADS;
 import static com.splunk.opentelemetry.profiler.Configuration.CONFIG_KEY_INGEST_URL;
 import static com.splunk.opentelemetry.profiler.Configuration.CONFIG_KEY_KEEP_FILES;
 import static com.splunk.opentelemetry.profiler.Configuration.CONFIG_KEY_MEMORY_ENABLED;
 import static com.splunk.opentelemetry.profiler.Configuration.CONFIG_KEY_MEMORY_EVENT_RATE;
 import static com.splunk.opentelemetry.profiler.Configuration.CONFIG_KEY_OTEL_OTLP_URL;
+import static com.splunk.opentelemetry.profiler.Configuration.CONFIG_KEY_PPROF_COMPRESSION_LEVEL;
+import static com.splunk.opentelemetry.profiler.Configuration.CONFIG_KEY_PROCESSING_PARALLELISM;
 import static com.splunk.opentelemetry.profiler.Configuration.CONFIG_KEY_PROFILER_DIRECTORY;
 import static com.splunk.opentelemetry.profiler.Configuration.CONFIG_KEY_RECORDING_DURATION;
+import static com.splunk.opentelemetry.profiler.Configuration.CONFIG_KEY_RECORDING_TO_DISK;
+import static com.splunk.opentelemetry.profiler.Configuration.CONFIG_KEY_SPILL_MAX_BYTES;
+import static com.splunk.opentelemetry.profiler.Configuration.CONFIG_KEY_SPILL_REPLAY_RATE;
+import static com.splunk.opentelemetry.profiler.Configuration.CONFIG_KEY_STREAMING_ENABLED;
+import static com.splunk.opentelemetry.profiler.Configuration.CONFIG_KEY_THREAD_POOLS;
+import static com.splunk.opentelemetry.profiler.Configuration.CONFIG_KEY_THREAD_POOL_PATTERNS;
 import static com.splunk.opentelemetry.profiler.Configuration.CONFIG_KEY_TRACING_STACKS_ONLY;
 import static com.splunk.opentelemetry.profiler.Configuration.DEFAULT_INCLUDE_INTERNAL_STACKS;
 
 import io.opentelemetry.sdk.autoconfigure.spi.ConfigProperties;
 import java.util.function.Function;
 import java.util.logging.Logger;
+import java.util.zip.Deflater;
 
 /** This class logs the active profiler configuration for debug/troubleshooting purposes. */
 public class ConfigurationLogger {
@@ -45,16 +69,53 @@ public class ConfigurationLogger {
     log(CONFIG_KEY_PROFILER_DIRECTORY, config::getString);
     log(CONFIG_KEY_RECORDING_DURATION, config::getString);
     log(CONFIG_KEY_KEEP_FILES, (it) -> config.getBoolean(it, false));
+    log(CONFIG_KEY_STREAMING_ENABLED, (it) -> Configuration.getStreamingEnabled(config));
+    log(CONFIG_KEY_RECORDING_TO_DISK, (it) -> Configuration.getRecordingToDisk(config));
+    log(CONFIG_KEY_PROCESSING_PARALLELISM, (it) -> Configuration.getProcessingParallelism(config));
+    log(CONFIG_KEY_BINARY_CONTEXT_EVENTS, (it) -> Configuration.getBinaryContextEvents(config));
     log(CONFIG_KEY_INGEST_URL, (it) -> Configuration.getConfigUrl(config));
     log(CONFIG_KEY_OTEL_OTLP_URL, (it) -> config.getString(it, null));
+    log(CONFIG_KEY_SPILL_MAX_BYTES, (it) -> Configuration.getSpillMaxBytes(config));
+    if (Configuration.getSpillMaxBytes(config) > 0) {
+      log(CONFIG_KEY_SPILL_REPLAY_RATE, (it) -> Configuration.getSpillReplayRate(config));
+    }
     log(CONFIG_KEY_MEMORY_ENABLED, (it) -> Configuration.getMemoryEnabled(config));
     if (Configuration.getMemoryEventRateLimitEnabled(config)) {
       log(CONFIG_KEY_MEMORY_EVENT_RATE, (it) -> Configuration.getMemoryEventRate(config));
     }
+    log(CONFIG_KEY_CPU_SAMPLES_ENABLED, (it) -> Configuration.getCpuSamplesEnabled(config));
+    if (Configuration.getCpuSamplesEnabled(config)) {
+      log(CONFIG_KEY_CPU_SAMPLES_INTERVAL, (it) -> Configuration.getCpuSamplesInterval(config));
+      log(CONFIG_KEY_CPU_SAMPLES_NATIVE, (it) -> Configuration.getCpuSamplesNative(config));
+    }
+    log(CONFIG_KEY_CALL_STACK_SAMPLER, (it) -> Configuration.getCallStackSampler(config));
     log(CONFIG_KEY_CALL_STACK_INTERVAL, (it) -> Configuration.getCallStackInterval(config));
+    if (Configuration.getCallStackAdaptive(config)) {
+      log(CONFIG_KEY_CALL_STACK_ADAPTIVE, (it) -> true);
+      log(
+          CONFIG_KEY_CALL_STACK_INTERVAL_MIN,
+          (it) -> Configuration.getCallStackIntervalMin(config));
+      log(
+          CONFIG_KEY_CALL_STACK_INTERVAL_MAX,
+          (it) -> Configuration.getCallStackIntervalMax(config));
+      log(CONFIG_KEY_CALL_STACK_BUDGET, (it) -> Configuration.getCallStackBudget(config));
+    }
+    log(CONFIG_KEY_CALL_STACK_AGGREGATE, (it) -> Configuration.getCallStackAggregate(config));
+    log(CONFIG_KEY_CALL_STACK_BATCHES, (it) -> Configuration.getCallStackBatches(config));
+    log(CONFIG_KEY_THREAD_POOLS, (it) -> Configuration.getThreadPools(config));
+    if (Configuration.getThreadPools(config)) {
+      log(CONFIG_KEY_THREAD_POOL_PATTERNS, (it) -> Configuration.getThreadPoolPatterns(config));
+    }
+    log(
+        CONFIG_KEY_PPROF_COMPRESSION_LEVEL,
+        (it) -> config.getInt(it, Deflater.DEFAULT_COMPRESSION));
     log(
         CONFIG_KEY_INCLUDE_INTERNAL_STACKS,
         (it) -> config.getBoolean(it, DEFAULT_INCLUDE_INTERNAL_STACKS));
+    log(CONFIG_KEY_EXCLUDE_THREADS, (it) -> Configuration.getExcludedThreads(config));
+    log(CONFIG_KEY_INCLUDE_THREADS, (it) -> Configuration.getIncludedThreads(config));
+    log(CONFIG_KEY_EXCLUDE_PACKAGES, (it) -> Configuration.getExcludedPackages(config));
+    log(CONFIG_KEY_INCLUDE_PACKAGES, (it) -> Configuration.getIncludedPackages(config));
     log(CONFIG_KEY_TRACING_STACKS_ONLY, (it) -> Configuration.getTracingStacksOnly(config));
     logger.info("-----------------------");
   }
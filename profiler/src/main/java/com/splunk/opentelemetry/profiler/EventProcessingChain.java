@@ -17,10 +17,12 @@
 package com.splunk.opentelemetry.profiler;
 
 import static java.util.logging.Level.FINE;
+import static java.util.logging.Level.SEVERE;
 
 import com.splunk.opentelemetry.profiler.allocation.sampler.AllocationEventSampler;
 import com.splunk.opentelemetry.profiler.allocation.sampler.RateLimitingAllocationEventSampler;
 import com.splunk.opentelemetry.profiler.context.SpanContextualizer;
+import com.splunk.opentelemetry.profiler.events.BinaryContextAttached;
 import com.splunk.opentelemetry.profiler.events.ContextAttached;
 import java.time.Instant;
 import java.util.ArrayList;
@@ -28,8 +30,13 @@ import java.util.Comparator;
 import java.util.HashMap;
 import java.util.List;
 import java.util.Map;
+import java.util.concurrent.ForkJoinPool;
+import java.util.concurrent.ForkJoinTask;
+import java.util.concurrent.RecursiveAction;
 import java.util.concurrent.TimeUnit;
+import java.util.function.Consumer;
 import java.util.logging.Logger;
+import javax.annotation.Nullable;
 import org.openjdk.jmc.common.item.IItem;
 
 class EventProcessingChain {
@@ -40,19 +47,79 @@ class EventProcessingChain {
   private final SpanContextualizer spanContextualizer;
   private final ThreadDumpProcessor threadDumpProcessor;
   private final TLABProcessor tlabProcessor;
+  // null unless execution samples are profiled
+  @Nullable private final ExecutionSampleProcessor executionSampleProcessor;
   private final List<IItem> buffer = new ArrayList<>();
+  // event arrays of the current chunk by kind of event
+  private final List<IItem[]> contextArrays = new ArrayList<>();
+  private final List<IItem[]> threadDumpArrays = new ArrayList<>();
+  private final List<IItem[]> tlabArrays = new ArrayList<>();
+  private final List<IItem[]> executionSampleArrays = new ArrayList<>();
+  // context that is older than this is no longer needed once the current chunk is processed
+  private long contextHorizon = Long.MAX_VALUE;
+  @Nullable private Instant previousSegmentStart;
+  private long streamedTlabEventCount;
   private final EventStats eventStats =
       logger.isLoggable(FINE) ? new EventStatsImpl() : new NoOpEventStats();
+  // when set chunks are processed in parallel, see flush
+  @Nullable private final ForkJoinPool workerPool;
+  @Nullable private ForkJoinTask<?> pendingChunk;
+  @Nullable private ChunkTask[] pendingChunkTasks;
+  // when set the call stack interval is adapted to the cost of thread dumps
+  @Nullable private final CallStackIntervalController intervalController;
+  private long threadDumpTime;
+  private long streamedThreadDumpCount;
+  private long streamedThreadDumpProcessingTime;
 
   EventProcessingChain(
       EventReader eventReader,
       SpanContextualizer spanContextualizer,
       ThreadDumpProcessor threadDumpProcessor,
       TLABProcessor tlabProcessor) {
+    this(eventReader, spanContextualizer, threadDumpProcessor, tlabProcessor, null);
+  }
+
+  EventProcessingChain(
+      EventReader eventReader,
+      SpanContextualizer spanContextualizer,
+      ThreadDumpProcessor threadDumpProcessor,
+      TLABProcessor tlabProcessor,
+      @Nullable ForkJoinPool workerPool) {
+    this(eventReader, spanContextualizer, threadDumpProcessor, tlabProcessor, workerPool, null);
+  }
+
+  EventProcessingChain(
+      EventReader eventReader,
+      SpanContextualizer spanContextualizer,
+      ThreadDumpProcessor threadDumpProcessor,
+      TLABProcessor tlabProcessor,
+      @Nullable ForkJoinPool workerPool,
+      @Nullable CallStackIntervalController intervalController) {
+    this(
+        eventReader,
+        spanContextualizer,
+        threadDumpProcessor,
+        tlabProcessor,
+        null,
+        workerPool,
+        intervalController);
+  }
+
+  EventProcessingChain(
+      EventReader eventReader,
+      SpanContextualizer spanContextualizer,
+      ThreadDumpProcessor threadDumpProcessor,
+      TLABProcessor tlabProcessor,
+      @Nullable ExecutionSampleProcessor executionSampleProcessor,
+      @Nullable ForkJoinPool workerPool,
+      @Nullable CallStackIntervalController intervalController) {
     this.eventReader = eventReader;
     this.spanContextualizer = spanContextualizer;
     this.threadDumpProcessor = threadDumpProcessor;
     this.tlabProcessor = tlabProcessor;
+    this.executionSampleProcessor = executionSampleProcessor;
+    this.workerPool = workerPool;
+    this.intervalController = intervalController;
   }
 
   void accept(IItem event) {
@@ -60,18 +127,253 @@ class EventProcessingChain {
     buffer.add(event);
   }
 
+  /**
+   * Accepts all events of a single event type. The array is not copied. Context events are
+   * expected to be ordered by start time, if they are not the array is sorted in place. Other
+   * events are processed in the order they are in.
+   */
+  void acceptAll(IItem[] events) {
+    if (events.length == 0) {
+      return;
+    }
+    eventStats.addEventCount(events.length);
+    String eventName = events[0].getType().getIdentifier();
+    if (isContextEvent(eventName)) {
+      TimeOrderedEventMerger.ensureSorted(events, eventReader::getStartTime);
+      contextArrays.add(events);
+    } else if (ThreadDumpProcessor.EVENT_NAME.equals(eventName)) {
+      threadDumpArrays.add(events);
+    } else if (ExecutionSampleProcessor.isExecutionSampleEvent(eventName)) {
+      // also recorded when another recording enabled them, ignored unless they are profiled
+      if (executionSampleProcessor != null) {
+        executionSampleArrays.add(events);
+      }
+    } else {
+      tlabArrays.add(events);
+    }
+  }
+
   /**
    * Tells the processing chain that a work unit (JFR chunk) is complete and the result can be
    * exported.
+   *
+   * <p>The context events of the chunk are applied first, recording when the context of each
+   * thread changed, so that thread dumps and allocation events are linked to the span that was
+   * active at their start time without merging all events of the chunk in time order. With a
+   * worker pool the thread dumps, the allocation events and the execution samples are then
+   * processed and exported in parallel, and this method returns without waiting for that, so that
+   * the caller can load the next chunk in the meantime. Processing of a chunk is complete once the
+   * next chunk is flushed or {@link #awaitProcessing()} returns.
    */
   public void flush() {
-    buffer.sort(Comparator.comparingLong(eventReader::getStartTime));
+    awaitProcessing();
+    partitionBufferedEvents();
     updateAllocationSampler();
+    applyContext();
+    threadDumpTime = intervalController != null ? sumDurations(threadDumpArrays) : 0;
+
+    ChunkTask threadDumpTask =
+        new ChunkTask(
+            ThreadDumpProcessor.EVENT_NAME,
+            new ArrayList<>(threadDumpArrays),
+            threadDumpProcessor::accept,
+            threadDumpProcessor::flush);
+    ChunkTask tlabTask =
+        new ChunkTask(
+            "allocation", new ArrayList<>(tlabArrays), tlabProcessor::accept, tlabProcessor::flush);
+    threadDumpArrays.clear();
+    tlabArrays.clear();
+    if (executionSampleProcessor == null) {
+      pendingChunkTasks = new ChunkTask[] {threadDumpTask, tlabTask};
+    } else {
+      ChunkTask executionSampleTask =
+          new ChunkTask(
+              ExecutionSampleProcessor.EXECUTION_SAMPLE_EVENT_NAME,
+              new ArrayList<>(executionSampleArrays),
+              executionSampleProcessor::accept,
+              executionSampleProcessor::flush);
+      executionSampleArrays.clear();
+      pendingChunkTasks = new ChunkTask[] {threadDumpTask, tlabTask, executionSampleTask};
+    }
+    ChunkTask[] tasks = pendingChunkTasks;
 
-    buffer.forEach(this::dispatchEvent);
+    if (workerPool == null) {
+      try {
+        for (ChunkTask task : tasks) {
+          task.invoke();
+        }
+      } finally {
+        completeChunk();
+      }
+    } else {
+      pendingChunk = workerPool.submit(() -> ForkJoinTask.invokeAll(tasks));
+    }
+  }
+
+  // events accepted one at a time may be of any kind
+  private void partitionBufferedEvents() {
+    if (buffer.isEmpty()) {
+      return;
+    }
+    List<IItem> contextEvents = new ArrayList<>();
+    List<IItem> threadDumpEvents = new ArrayList<>();
+    List<IItem> tlabEvents = new ArrayList<>();
+    List<IItem> executionSampleEvents = new ArrayList<>();
+    for (IItem event : buffer) {
+      String eventName = event.getType().getIdentifier();
+      if (isContextEvent(eventName)) {
+        contextEvents.add(event);
+      } else if (ThreadDumpProcessor.EVENT_NAME.equals(eventName)) {
+        threadDumpEvents.add(event);
+      } else if (ExecutionSampleProcessor.isExecutionSampleEvent(eventName)) {
+        if (executionSampleProcessor != null) {
+          executionSampleEvents.add(event);
+        }
+      } else {
+        tlabEvents.add(event);
+      }
+    }
     buffer.clear();
+    if (!contextEvents.isEmpty()) {
+      contextEvents.sort(Comparator.comparingLong(eventReader::getStartTime));
+      contextArrays.add(contextEvents.toArray(new IItem[0]));
+    }
+    if (!threadDumpEvents.isEmpty()) {
+      threadDumpArrays.add(threadDumpEvents.toArray(new IItem[0]));
+    }
+    if (!tlabEvents.isEmpty()) {
+      tlabArrays.add(tlabEvents.toArray(new IItem[0]));
+    }
+    if (!executionSampleEvents.isEmpty()) {
+      executionSampleArrays.add(executionSampleEvents.toArray(new IItem[0]));
+    }
+  }
+
+  private long sumDurations(List<IItem[]> eventArrays) {
+    long sum = 0;
+    for (IItem[] events : eventArrays) {
+      for (IItem event : events) {
+        sum += eventReader.getDuration(event);
+      }
+    }
+    return sum;
+  }
+
+  private void applyContext() {
+    if (contextArrays.isEmpty()) {
+      return;
+    }
+    long start = System.nanoTime();
+    long count = 0;
+    for (IItem[] events : contextArrays) {
+      count += events.length;
+      contextHorizon = Math.min(contextHorizon, eventReader.getStartTime(events[0]));
+    }
+    new TimeOrderedEventMerger(contextArrays, eventReader::getStartTime)
+        .forEach(spanContextualizer::updateContext);
+    contextArrays.clear();
+    eventStats.addTime(ContextAttached.EVENT_NAME, count, System.nanoTime() - start);
+  }
+
+  /** Waits until the chunk that was last flushed has been processed and exported. */
+  void awaitProcessing() {
+    ForkJoinTask<?> chunk = pendingChunk;
+    if (chunk == null) {
+      return;
+    }
+    pendingChunk = null;
+    try {
+      chunk.join();
+    } catch (RuntimeException exception) {
+      logger.log(SEVERE, "Error processing JFR chunk", exception);
+    } finally {
+      completeChunk();
+    }
+  }
+
+  private void completeChunk() {
+    // keep the context of this chunk for events that end up in the next chunk
+    if (contextHorizon != Long.MAX_VALUE) {
+      spanContextualizer.removeContextBefore(contextHorizon);
+      contextHorizon = Long.MAX_VALUE;
+    }
+    for (ChunkTask task : pendingChunkTasks) {
+      task.addStats(eventStats);
+    }
+    if (intervalController != null) {
+      // the first task processes the thread dumps
+      ChunkTask threadDumpTask = pendingChunkTasks[0];
+      intervalController.update(
+          threadDumpTask.eventCount, threadDumpTime, threadDumpTask.timeSpent);
+    }
+    pendingChunkTasks = null;
+  }
+
+  /**
+   * Dispatches the event immediately, without buffering it until the end of the chunk. Used when
+   * events are streamed from JFR as they are recorded. Events are linked to the span that was
+   * active at their start time, so they don't need to be offered in time order, but a context
+   * event must be dispatched before the events it applies to.
+   */
+  void dispatch(IItem event) {
+    eventStats.incEventCount();
+    if (isTlabEvent(event)) {
+      streamedTlabEventCount++;
+    }
+    dispatchEvent(event);
+  }
+
+  /**
+   * Prepares the processing chain for streamed events. Until the first segment completes the
+   * allocation rate is unknown, so the rate limiting sampler keeps every allocation event.
+   */
+  void beginStreaming() {
+    AllocationEventSampler allocationEventSampler = tlabProcessor.getAllocationEventSampler();
+    if (allocationEventSampler instanceof RateLimitingAllocationEventSampler) {
+      ((RateLimitingAllocationEventSampler) allocationEventSampler).sampleAll();
+    }
+    streamedTlabEventCount = 0;
+  }
+
+  /**
+   * Tells the processing chain that a segment of streamed events is complete. Allocation events of
+   * the next segment are sampled based on the allocation rate observed in this segment.
+   */
+  void endSegment(Instant segmentStart, Instant segmentEnd) {
+    AllocationEventSampler allocationEventSampler = tlabProcessor.getAllocationEventSampler();
+    if (allocationEventSampler instanceof RateLimitingAllocationEventSampler
+        && streamedTlabEventCount > 0) {
+      ((RateLimitingAllocationEventSampler) allocationEventSampler)
+          .updateSampler(streamedTlabEventCount, segmentStart, segmentEnd);
+    }
+    streamedTlabEventCount = 0;
+    // events can be delivered late, keep the context of the previous segment a while longer
+    if (previousSegmentStart != null) {
+      spanContextualizer.removeContextBefore(
+          TimeUnit.SECONDS.toNanos(previousSegmentStart.getEpochSecond())
+              + previousSegmentStart.getNano());
+    }
+    previousSegmentStart = segmentStart;
+  }
+
+  /** Exports the data accumulated by the processors. */
+  void flushExporters() {
     tlabProcessor.flush();
+    if (executionSampleProcessor != null) {
+      executionSampleProcessor.flush();
+    }
+    if (intervalController == null) {
+      threadDumpProcessor.flush();
+      return;
+    }
+    long start = System.nanoTime();
     threadDumpProcessor.flush();
+    streamedThreadDumpProcessingTime += System.nanoTime() - start;
+    intervalController.update(
+        streamedThreadDumpCount, threadDumpTime, streamedThreadDumpProcessingTime);
+    streamedThreadDumpCount = 0;
+    threadDumpTime = 0;
+    streamedThreadDumpProcessingTime = 0;
   }
 
   private static boolean isTlabEvent(IItem event) {
@@ -88,27 +390,49 @@ class EventProcessingChain {
     RateLimitingAllocationEventSampler sampler =
         (RateLimitingAllocationEventSampler) allocationEventSampler;
 
-    long tlabEventCount = buffer.stream().filter(EventProcessingChain::isTlabEvent).count();
+    long tlabEventCount = 0;
+    long firstTime = Long.MAX_VALUE;
+    long lastTime = Long.MIN_VALUE;
+    for (IItem[] events : tlabArrays) {
+      for (IItem event : events) {
+        if (isTlabEvent(event)) {
+          tlabEventCount++;
+          long time = eventReader.getStartTime(event);
+          firstTime = Math.min(firstTime, time);
+          lastTime = Math.max(lastTime, time);
+        }
+      }
+    }
     if (tlabEventCount > 0) {
-      Instant firsEvent = eventReader.getStartInstant(buffer.get(0));
-      Instant lastEvent = eventReader.getStartInstant(buffer.get(buffer.size() - 1));
-
-      sampler.updateSampler(tlabEventCount, firsEvent, lastEvent);
+      sampler.updateSampler(
+          tlabEventCount, Instant.ofEpochSecond(0, firstTime), Instant.ofEpochSecond(0, lastTime));
     }
   }
 
+  private static boolean isContextEvent(String eventName) {
+    return ContextAttached.EVENT_NAME.equals(eventName)
+        || BinaryContextAttached.EVENT_NAME.equals(eventName);
+  }
+
   private void dispatchEvent(IItem event) {
     String eventName = event.getType().getIdentifier();
     switch (eventName) {
       case ContextAttached.EVENT_NAME:
+      case BinaryContextAttached.EVENT_NAME:
         try (EventTimer eventTimer = eventStats.time(eventName)) {
           spanContextualizer.updateContext(event);
         }
         break;
       case ThreadDumpProcessor.EVENT_NAME:
+        long start = intervalController != null ? System.nanoTime() : 0;
         try (EventTimer eventTimer = eventStats.time(eventName)) {
           threadDumpProcessor.accept(event);
         }
+        if (intervalController != null) {
+          streamedThreadDumpCount++;
+          threadDumpTime += eventReader.getDuration(event);
+          streamedThreadDumpProcessingTime += System.nanoTime() - start;
+        }
         break;
       case TLABProcessor.NEW_TLAB_EVENT_NAME:
       case TLABProcessor.OUTSIDE_TLAB_EVENT_NAME:
@@ -117,6 +441,14 @@ class EventProcessingChain {
           tlabProcessor.accept(event);
         }
         break;
+      case ExecutionSampleProcessor.EXECUTION_SAMPLE_EVENT_NAME:
+      case ExecutionSampleProcessor.NATIVE_METHOD_SAMPLE_EVENT_NAME:
+        if (executionSampleProcessor != null) {
+          try (EventTimer eventTimer = eventStats.time(eventName)) {
+            executionSampleProcessor.accept(event);
+          }
+        }
+        break;
     }
   }
 
@@ -124,11 +456,50 @@ class EventProcessingChain {
     eventStats.logEventStats();
   }
 
+  /** Processes the events of one kind in a chunk, on the worker pool if there is one. */
+  private class ChunkTask extends RecursiveAction {
+    private final String name;
+    private final List<IItem[]> eventArrays;
+    private final Consumer<IItem> processor;
+    private final Runnable flush;
+    private long eventCount;
+    private long timeSpent;
+
+    ChunkTask(String name, List<IItem[]> eventArrays, Consumer<IItem> processor, Runnable flush) {
+      this.name = name;
+      this.eventArrays = eventArrays;
+      this.processor = processor;
+      this.flush = flush;
+    }
+
+    @Override
+    protected void compute() {
+      long start = System.nanoTime();
+      for (IItem[] events : eventArrays) {
+        eventCount += events.length;
+        for (IItem event : events) {
+          processor.accept(event);
+        }
+      }
+      flush.run();
+      timeSpent = System.nanoTime() - start;
+    }
+
+    void addStats(EventStats eventStats) {
+      eventStats.addTime(name, eventCount, timeSpent);
+    }
+  }
+
   private interface EventStats {
     void incEventCount();
 
+    void addEventCount(int count);
+
     EventTimer time(String name);
 
+    /** Adds the time spent handling events that were not timed one at a time. */
+    void addTime(String name, long count, long timeSpent);
+
     void logEventStats();
   }
 
@@ -137,11 +508,17 @@ class EventProcessingChain {
     @Override
     public void incEventCount() {}
 
+    @Override
+    public void addEventCount(int count) {}
+
     @Override
     public EventTimer time(String name) {
       return null;
     }
 
+    @Override
+    public void addTime(String name, long count, long timeSpent) {}
+
     @Override
     public void logEventStats() {}
   }
@@ -155,6 +532,11 @@ class EventProcessingChain {
       eventCount++;
     }
 
+    @Override
+    public void addEventCount(int count) {
+      eventCount += count;
+    }
+
     @Override
     public EventTimer time(String name) {
       EventCounter counter = eventCounters.computeIfAbsent(name, (k) -> new EventCounter());
@@ -162,6 +544,16 @@ class EventProcessingChain {
       return new EventTimer(counter);
     }
 
+    @Override
+    public void addTime(String name, long count, long timeSpent) {
+      if (count == 0) {
+        return;
+      }
+      EventCounter counter = eventCounters.computeIfAbsent(name, (k) -> new EventCounter());
+      counter.count += count;
+      counter.timeSpent += timeSpent;
+    }
+
     private void reset() {
       eventCount = 0;
       eventCounters.clear();
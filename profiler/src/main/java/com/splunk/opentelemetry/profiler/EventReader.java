@@ -37,6 +37,11 @@ public class EventReader {
   private static final IAttribute<String> EVENT_SPAN_ID = attr("spanId", "span id", PLAIN_TEXT);
   private static final IAttribute<IQuantity> EVENT_TRACE_FLAGS =
       attr("traceFlags", "trace flags", NUMBER);
+  private static final IAttribute<IQuantity> EVENT_TRACE_ID_HIGH =
+      attr("traceIdHigh", "trace id high", NUMBER);
+  private static final IAttribute<IQuantity> EVENT_TRACE_ID_LOW =
+      attr("traceIdLow", "trace id low", NUMBER);
+  private static final IAttribute<IQuantity> EVENT_SPAN_ID_LONG = attr("spanId", "span id", NUMBER);
 
   public Instant getStartInstant(IItem event) {
     return Instant.ofEpochSecond(0, getStartTime(event));
@@ -48,6 +53,14 @@ public class EventReader {
     return accessor.getMember(event).longValue();
   }
 
+  /** Returns the duration of the event in nanoseconds, 0 for events without a duration. */
+  public long getDuration(IItem event) {
+    IMemberAccessor<IQuantity, IItem> accessor =
+        getItemType(event).getAccessor(JfrAttributes.END_TIME.getKey());
+    IQuantity endTime = accessor != null ? accessor.getMember(event) : null;
+    return endTime != null ? endTime.longValue() - getStartTime(event) : 0;
+  }
+
   public String getThreadDumpResult(IItem event) {
     IMemberAccessor<String, IItem> accessor =
         getItemType(event).getAccessor(THREAD_DUMP_RESULT.getKey());
@@ -79,6 +92,28 @@ public class EventReader {
     return accessor.getMember(event);
   }
 
+  /** Returns the upper half of the trace id of a binary context event. */
+  public long getTraceIdHigh(IItem event) {
+    return getLong(event, EVENT_TRACE_ID_HIGH);
+  }
+
+  /** Returns the lower half of the trace id of a binary context event. */
+  public long getTraceIdLow(IItem event) {
+    return getLong(event, EVENT_TRACE_ID_LOW);
+  }
+
+  /** Returns the span id of a binary context event. */
+  public long getSpanIdAsLong(IItem event) {
+    return getLong(event, EVENT_SPAN_ID_LONG);
+  }
+
+  private long getLong(IItem event, IAttribute<IQuantity> attribute) {
+    IMemberAccessor<IQuantity, IItem> accessor =
+        getItemType(event).getAccessor(attribute.getKey());
+    IQuantity value = accessor.getMember(event);
+    return value == null ? 0 : value.longValue();
+  }
+
   public byte getTraceFlags(IItem event) {
     IMemberAccessor<IQuantity, IItem> accessor =
         getItemType(event).getAccessor(EVENT_TRACE_FLAGS.getKey());
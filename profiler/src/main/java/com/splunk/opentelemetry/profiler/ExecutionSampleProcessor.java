@@ -0,0 +1,120 @@
+/*
+ * Copyright Splunk Inc.
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+
+package com.splunk.opentelemetry.profiler;
+
+import com.splunk.opentelemetry.profiler.context.SpanContextualizer;
+import com.splunk.opentelemetry.profiler.exporter.ExecutionSampleExporter;
+import io.opentelemetry.api.trace.SpanContext;
+import org.openjdk.jmc.common.IMCThread;
+import org.openjdk.jmc.common.item.IItem;
+
+/**
+ * Processes {@code jdk.ExecutionSample} and {@code jdk.NativeMethodSample} events, which sample
+ * the stacks of threads that are running java or native code. The stacks are linked to the span
+ * that was active on the sampled thread.
+ */
+public class ExecutionSampleProcessor {
+  public static final String EXECUTION_SAMPLE_EVENT_NAME = "jdk.ExecutionSample";
+  public static final String NATIVE_METHOD_SAMPLE_EVENT_NAME = "jdk.NativeMethodSample";
+
+  private final EventReader eventReader;
+  private final ExecutionSampleExporter executionSampleExporter;
+  private final SpanContextualizer spanContextualizer;
+  private final StackTraceFilter stackTraceFilter;
+  private final boolean onlyTracingSpans;
+
+  private ExecutionSampleProcessor(Builder builder) {
+    this.eventReader = builder.eventReader;
+    this.executionSampleExporter = builder.executionSampleExporter;
+    this.spanContextualizer = builder.spanContextualizer;
+    this.stackTraceFilter = builder.stackTraceFilter;
+    this.onlyTracingSpans = builder.onlyTracingSpans;
+  }
+
+  public void accept(IItem event) {
+    if (eventReader.getStackTrace(event) == null) {
+      return;
+    }
+    if (stackTraceFilter != null && !stackTraceFilter.test(event)) {
+      return;
+    }
+
+    SpanContext spanContext = SpanContext.getInvalid();
+    IMCThread thread = eventReader.getThread(event);
+    // the id is boxed by jmc, unbox it once for the primitive keyed lookup
+    Long threadId = thread == null ? null : thread.getThreadId();
+    if (threadId != null) {
+      long time = eventReader.getStartTime(event);
+      spanContext = spanContextualizer.link(threadId.longValue(), time).getSpanContext();
+    }
+    if (onlyTracingSpans && !spanContext.isValid()) {
+      return;
+    }
+
+    executionSampleExporter.export(event, spanContext);
+  }
+
+  public void flush() {
+    executionSampleExporter.flush();
+  }
+
+  static boolean isExecutionSampleEvent(String eventName) {
+    return EXECUTION_SAMPLE_EVENT_NAME.equals(eventName)
+        || NATIVE_METHOD_SAMPLE_EVENT_NAME.equals(eventName);
+  }
+
+  public static Builder builder() {
+    return new Builder();
+  }
+
+  public static class Builder {
+    private EventReader eventReader;
+    private ExecutionSampleExporter executionSampleExporter;
+    private SpanContextualizer spanContextualizer;
+    private StackTraceFilter stackTraceFilter;
+    private boolean onlyTracingSpans;
+
+    public Builder eventReader(EventReader eventReader) {
+      this.eventReader = eventReader;
+      return this;
+    }
+
+    public Builder executionSampleExporter(ExecutionSampleExporter executionSampleExporter) {
+      this.executionSampleExporter = executionSampleExporter;
+      return this;
+    }
+
+    public Builder spanContextualizer(SpanContextualizer spanContextualizer) {
+      this.spanContextualizer = spanContextualizer;
+      return this;
+    }
+
+    public Builder stackTraceFilter(StackTraceFilter stackTraceFilter) {
+      this.stackTraceFilter = stackTraceFilter;
+      return this;
+    }
+
+    public Builder onlyTracingSpans(boolean onlyTracingSpans) {
+      this.onlyTracingSpans = onlyTracingSpans;
+      return this;
+    }
+
+    public ExecutionSampleProcessor build() {
+      return new ExecutionSampleProcessor(this);
+    }
+  }
+}
@@ -22,8 +22,10 @@ import io.opentelemetry.javaagent.bootstrap.InstrumentationHolder;
 import java.io.IOException;
 import java.lang.instrument.Instrumentation;
 import java.nio.file.Path;
+import java.nio.file.Paths;
 import java.util.Collections;
 import java.util.logging.Logger;
+import javax.annotation.Nullable;
 import jdk.jfr.FlightRecorder;
 import jdk.jfr.Recording;
 import jdk.jfr.consumer.RecordedEvent;
@@ -37,7 +39,9 @@ class JFR {
   private static final Logger logger = Logger.getLogger(JFR.class.getName());
 
   public static final JFR instance = new JFR();
+  private static final String REPOSITORY_PROPERTY = "jdk.jfr.repository";
   private static final boolean jfrAvailable = checkJfr();
+  private static final boolean recordingStreamAvailable = checkRecordingStream();
 
   private static boolean checkJfr() {
     try {
@@ -48,14 +52,35 @@ class JFR {
     }
   }
 
+  private static boolean checkRecordingStream() {
+    try {
+      JFR.class.getClassLoader().loadClass("jdk.jfr.consumer.RecordingStream");
+      return true;
+    } catch (ClassNotFoundException e) {
+      return false;
+    }
+  }
+
   public boolean isAvailable() {
     return jfrAvailable;
   }
 
+  /** Event streaming was added in JDK 14. */
+  public boolean isRecordingStreamAvailable() {
+    return jfrAvailable && recordingStreamAvailable;
+  }
+
   public Recording takeSnapshot() {
     return FlightRecorder.getFlightRecorder().takeSnapshot();
   }
 
+  /** Returns the directory that disk recordings write their chunks to, if jfr has created it. */
+  @Nullable
+  public Path getRepository() {
+    String repository = System.getProperty(REPOSITORY_PROPERTY);
+    return repository != null ? Paths.get(repository) : null;
+  }
+
   public RecordingFile openRecordingFile(Path path) {
     try {
       return new RecordingFile(path);
@@ -30,7 +30,11 @@ import com.splunk.opentelemetry.profiler.allocation.exporter.AllocationEventExpo
 import com.splunk.opentelemetry.profiler.allocation.exporter.PprofAllocationEventExporter;
 import com.splunk.opentelemetry.profiler.context.SpanContextualizer;
 import com.splunk.opentelemetry.profiler.exporter.CpuEventExporter;
+import com.splunk.opentelemetry.profiler.exporter.ExecutionSampleExporter;
 import com.splunk.opentelemetry.profiler.exporter.PprofCpuEventExporter;
+import com.splunk.opentelemetry.profiler.exporter.PprofExecutionSampleExporter;
+import com.splunk.opentelemetry.profiler.exporter.ThreadPoolNames;
+import com.splunk.opentelemetry.profiler.pprof.PprofFormat;
 import com.splunk.opentelemetry.profiler.util.HelpfulExecutors;
 import io.opentelemetry.api.logs.Logger;
 import io.opentelemetry.javaagent.extension.AgentListener;
@@ -39,7 +43,6 @@ import io.opentelemetry.sdk.autoconfigure.spi.ConfigProperties;
 import io.opentelemetry.sdk.logs.LogRecordProcessor;
 import io.opentelemetry.sdk.logs.SdkLoggerProvider;
 import io.opentelemetry.sdk.logs.export.LogRecordExporter;
-import io.opentelemetry.sdk.logs.export.SimpleLogRecordProcessor;
 import io.opentelemetry.sdk.resources.Resource;
 import java.io.IOException;
 import java.nio.file.Files;
@@ -48,12 +51,17 @@ import java.nio.file.Paths;
 import java.time.Duration;
 import java.util.Map;
 import java.util.concurrent.ExecutorService;
+import java.util.concurrent.ForkJoinPool;
+import java.util.concurrent.TimeUnit;
 
 @AutoService(AgentListener.class)
 public class JfrActivator implements AgentListener {
 
   private static final java.util.logging.Logger logger =
       java.util.logging.Logger.getLogger(JfrActivator.class.getName());
+  // records of failed exports are kept in this directory under the profiler directory
+  private static final String SPILL_DIRECTORY = "splunk-profiler-spill";
+  private static final Duration SHUTDOWN_FLUSH_TIMEOUT = Duration.ofSeconds(10);
   private final ExecutorService executor = HelpfulExecutors.newSingleThreadExecutor("JFR Profiler");
   private final ConfigurationLogger configurationLogger = new ConfigurationLogger();
 
@@ -108,6 +116,23 @@ public class JfrActivator implements AgentListener {
     return true;
   }
 
+  private SpillLog openSpillLog(ConfigProperties config, Path outputDir) {
+    long maxBytes = Configuration.getSpillMaxBytes(config);
+    if (maxBytes == 0 || !checkOutputDir(outputDir)) {
+      return null;
+    }
+    Path spillDir = outputDir.resolve(SPILL_DIRECTORY);
+    try {
+      return SpillLog.open(spillDir, maxBytes);
+    } catch (IOException e) {
+      logger.log(
+          WARNING,
+          "Could not open " + spillDir + ", records of failed exports will be dropped.",
+          e);
+      return null;
+    }
+  }
+
   private void outdirWarn(Path dir, String suffix) {
     logger.log(WARNING, "The configured output directory {0} {1}.", new Object[] {dir, suffix});
   }
@@ -130,13 +155,19 @@ public class JfrActivator implements AgentListener {
     EventReader eventReader = new EventReader();
     SpanContextualizer spanContextualizer = new SpanContextualizer(eventReader);
     LogRecordExporter logsExporter = LogExporterBuilder.fromConfig(config);
+    // exports run off the JFR processing thread, shared so that the queue limit covers both loggers
+    LogRecordProcessor logProcessor =
+        BatchingLogRecordProcessor.builder(logsExporter)
+            .spillLog(openSpillLog(config, outputDir))
+            .replayBytesPerSecond(Configuration.getSpillReplayRate(config))
+            .build();
+    PprofFormat pprofFormat = Configuration.getPprofFormat(config);
+    CallStackInterval callStackInterval =
+        new CallStackInterval(Configuration.getCallStackInterval(config));
 
     CpuEventExporter cpuEventExporter =
-        PprofCpuEventExporter.builder()
-            .otelLogger(buildOtelLogger(SimpleLogRecordProcessor.create(logsExporter), resource))
-            .period(Configuration.getCallStackInterval(config))
-            .stackDepth(stackDepth)
-            .build();
+        buildCpuEventExporter(
+            config, logProcessor, resource, callStackInterval, stackDepth, pprofFormat);
 
     StackTraceFilter stackTraceFilter = buildStackTraceFilter(config, eventReader);
     ThreadDumpProcessor threadDumpProcessor =
@@ -146,8 +177,9 @@ public class JfrActivator implements AgentListener {
     AllocationEventExporter allocationEventExporter =
         PprofAllocationEventExporter.builder()
             .eventReader(eventReader)
-            .otelLogger(buildOtelLogger(SimpleLogRecordProcessor.create(logsExporter), resource))
+            .otelLogger(buildOtelLogger(logProcessor, resource))
             .stackDepth(stackDepth)
+            .pprofFormat(pprofFormat)
             .build();
 
     TLABProcessor tlabProcessor =
@@ -158,9 +190,97 @@ public class JfrActivator implements AgentListener {
             .stackTraceFilter(stackTraceFilter)
             .build();
 
+    ExecutionSampleProcessor executionSampleProcessor = null;
+    if (Configuration.getCpuSamplesEnabled(config)) {
+      ExecutionSampleExporter executionSampleExporter =
+          PprofExecutionSampleExporter.builder()
+              .eventReader(eventReader)
+              .otelLogger(buildOtelLogger(logProcessor, resource))
+              .stackDepth(stackDepth)
+              .period(Configuration.getCpuSamplesInterval(config))
+              .pprofFormat(pprofFormat)
+              .build();
+      executionSampleProcessor =
+          ExecutionSampleProcessor.builder()
+              .eventReader(eventReader)
+              .executionSampleExporter(executionSampleExporter)
+              .spanContextualizer(spanContextualizer)
+              .stackTraceFilter(stackTraceFilter)
+              .onlyTracingSpans(Configuration.getTracingStacksOnly(config))
+              .build();
+    }
+
+    boolean useRecordingStream = useRecordingStream(config);
+    int parallelism = Configuration.getProcessingParallelism(config);
+    ForkJoinPool workerPool = null;
+    if (parallelism > 0 && !useRecordingStream) {
+      workerPool = HelpfulExecutors.newForkJoinPool("JFR Profiler Worker", parallelism);
+    }
+    boolean useThreadInfoSampler = Configuration.getThreadInfoSamplerEnabled(config);
+    CallStackIntervalController intervalController = null;
+    if (Configuration.getCallStackAdaptive(config)) {
+      intervalController =
+          new CallStackIntervalController(
+              callStackInterval,
+              Configuration.getCallStackIntervalMin(config),
+              Configuration.getCallStackIntervalMax(config),
+              Configuration.getCallStackBudget(config));
+    }
+    // the thread info sampler applies the interval itself, there are no thread dumps to adapt
+    CallStackInterval threadDumpInterval = useThreadInfoSampler ? null : callStackInterval;
     EventProcessingChain eventProcessingChain =
         new EventProcessingChain(
-            eventReader, spanContextualizer, threadDumpProcessor, tlabProcessor);
+            eventReader,
+            spanContextualizer,
+            threadDumpProcessor,
+            tlabProcessor,
+            executionSampleProcessor,
+            workerPool,
+            useThreadInfoSampler ? null : intervalController);
+
+    ThreadInfoSampler threadInfoSampler;
+    if (useThreadInfoSampler) {
+      // exports from the sampler thread, so it has its own exporter
+      threadInfoSampler =
+          ThreadInfoSampler.builder()
+              .cpuEventExporter(
+                  buildCpuEventExporter(
+                      config, logProcessor, resource, callStackInterval, stackDepth, pprofFormat))
+              .stackTraceFilter(stackTraceFilter)
+              .onlyTracingSpans(Configuration.getTracingStacksOnly(config))
+              .stackDepth(stackDepth)
+              .callStackInterval(callStackInterval)
+              .exportInterval(recordingDuration)
+              .intervalController(intervalController)
+              .build();
+      threadInfoSampler.start();
+    } else {
+      threadInfoSampler = null;
+    }
+
+    if (useRecordingStream) {
+      if (keepFiles) {
+        logger.warning("JFR files are not kept when the profiler streams JFR events.");
+      }
+      JfrStreamingRecorder streamingRecorder =
+          JfrStreamingRecorder.builder()
+              .settings(jfrSettings)
+              .recordingDuration(recordingDuration)
+              .eventProcessingChain(eventProcessingChain)
+              .callStackInterval(threadDumpInterval)
+              .build();
+      streamingRecorder.start();
+      addShutdownHook(
+          () -> {
+            streamingRecorder.stop(SHUTDOWN_FLUSH_TIMEOUT);
+            if (threadInfoSampler != null) {
+              threadInfoSampler.stop(SHUTDOWN_FLUSH_TIMEOUT);
+            }
+            cpuEventExporter.close();
+            flush(logProcessor);
+          });
+      return;
+    }
 
     JfrRecordingHandler jfrRecordingHandler =
         JfrRecordingHandler.builder().eventProcessingChain(eventProcessingChain).build();
@@ -173,6 +293,8 @@ public class JfrActivator implements AgentListener {
             .onNewRecording(jfrRecordingHandler)
             .namingConvention(namingConvention)
             .keepRecordingFiles(keepFiles)
+            .toDisk(Configuration.getRecordingToDisk(config))
+            .callStackInterval(threadDumpInterval)
             .build();
 
     RecordingSequencer sequencer =
@@ -182,6 +304,41 @@ public class JfrActivator implements AgentListener {
             .build();
 
     sequencer.start();
+    addShutdownHook(
+        () -> {
+          boolean stopped = sequencer.stop(SHUTDOWN_FLUSH_TIMEOUT);
+          if (threadInfoSampler != null) {
+            threadInfoSampler.stop(SHUTDOWN_FLUSH_TIMEOUT);
+          }
+          // the exporter may still be used by the snapshot that is being processed
+          if (stopped) {
+            cpuEventExporter.close();
+          } else {
+            logger.warning("JFR snapshot was not processed in time, samples are not exported.");
+          }
+          flush(logProcessor);
+        });
+  }
+
+  private static void addShutdownHook(Runnable action) {
+    Runtime.getRuntime().addShutdownHook(new Thread(logUncaught(action), "JFR Profiler Shutdown"));
+  }
+
+  /** Exports the records that are still queued, the log processor is not owned by the SDK. */
+  private static void flush(LogRecordProcessor logProcessor) {
+    logProcessor.shutdown().join(SHUTDOWN_FLUSH_TIMEOUT.toMillis(), TimeUnit.MILLISECONDS);
+  }
+
+  private boolean useRecordingStream(ConfigProperties config) {
+    if (!Configuration.getStreamingEnabled(config)) {
+      return false;
+    }
+    if (!JFR.instance.isRecordingStreamAvailable()) {
+      logger.warning(
+          "JFR event streaming is not available in this JVM, using periodic JFR snapshots.");
+      return false;
+    }
+    return true;
   }
 
   private Logger buildOtelLogger(LogRecordProcessor logProcessor, Resource resource) {
@@ -194,6 +351,29 @@ public class JfrActivator implements AgentListener {
         .build();
   }
 
+  private CpuEventExporter buildCpuEventExporter(
+      ConfigProperties config,
+      LogRecordProcessor logProcessor,
+      Resource resource,
+      CallStackInterval callStackInterval,
+      int stackDepth,
+      PprofFormat pprofFormat) {
+    boolean threadPools = Configuration.getThreadPools(config);
+    return PprofCpuEventExporter.builder()
+        .otelLogger(buildOtelLogger(logProcessor, resource))
+        .callStackInterval(callStackInterval)
+        .stackDepth(stackDepth)
+        // stacks are aggregated per thread pool
+        .aggregateStacks(threadPools || Configuration.getCallStackAggregate(config))
+        .aggregationBatches(Configuration.getCallStackBatches(config))
+        .threadPoolNames(
+            threadPools
+                ? ThreadPoolNames.withDefaultPatterns(Configuration.getThreadPoolPatterns(config))
+                : null)
+        .pprofFormat(pprofFormat)
+        .build();
+  }
+
   private ThreadDumpProcessor buildThreadDumpProcessor(
       EventReader eventReader,
       SpanContextualizer spanContextualizer,
@@ -209,11 +389,20 @@ public class JfrActivator implements AgentListener {
         .build();
   }
 
-  /** Based on config, filters out agent internal stacks and/or JVM internal stacks */
+  /**
+   * Based on config, filters out agent internal stacks, JVM internal stacks and stacks of
+   * configured threads and packages
+   */
   private StackTraceFilter buildStackTraceFilter(ConfigProperties config, EventReader eventReader) {
-    boolean includeAgentInternalStacks = Configuration.getIncludeAgentInternalStacks(config);
-    boolean includeJVMInternalStacks = Configuration.getIncludeJvmInternalStacks(config);
-    return new StackTraceFilter(eventReader, includeAgentInternalStacks, includeJVMInternalStacks);
+    return StackTraceFilter.builder()
+        .eventReader(eventReader)
+        .includeAgentInternalStacks(Configuration.getIncludeAgentInternalStacks(config))
+        .includeJvmInternalStacks(Configuration.getIncludeJvmInternalStacks(config))
+        .excludedThreads(Configuration.getExcludedThreads(config))
+        .includedThreads(Configuration.getIncludedThreads(config))
+        .excludedPackages(Configuration.getExcludedPackages(config))
+        .includedPackages(Configuration.getIncludedPackages(config))
+        .build();
   }
 
   private Map<String, String> buildJfrSettings(ConfigProperties config) {
@@ -16,8 +16,9 @@
 
 package com.splunk.opentelemetry.profiler;
 
-import com.google.common.annotations.VisibleForTesting;
+import com.splunk.opentelemetry.profiler.events.BinaryContextAttached;
 import com.splunk.opentelemetry.profiler.events.ContextAttached;
+import com.splunk.opentelemetry.profiler.util.Base16;
 import io.opentelemetry.api.trace.Span;
 import io.opentelemetry.api.trace.SpanContext;
 import io.opentelemetry.api.trace.TraceFlags;
@@ -26,21 +27,36 @@ import io.opentelemetry.context.ContextStorage;
 import io.opentelemetry.context.Scope;
 import java.util.function.Function;
 import javax.annotation.Nullable;
+import jdk.jfr.Event;
 
 class JfrContextStorage implements ContextStorage {
+  private static final ThreadLocal<DecodedIds> decodedIds =
+      ThreadLocal.withInitial(DecodedIds::new);
 
   private final ContextStorage delegate;
-  private final Function<SpanContext, ContextAttached> newEvent;
-  private final ThreadLocal<Span> activeSpan = ThreadLocal.withInitial(Span::getInvalid);
+  private final Function<SpanContext, ? extends Event> newEvent;
+  @Nullable private final ActiveSpanThreads activeSpanThreads;
+  private final ThreadLocal<ThreadState> threadState = ThreadLocal.withInitial(ThreadState::new);
 
   JfrContextStorage(ContextStorage delegate) {
     this(delegate, JfrContextStorage::newEvent);
   }
 
-  @VisibleForTesting
-  JfrContextStorage(ContextStorage delegate, Function<SpanContext, ContextAttached> newEvent) {
+  JfrContextStorage(ContextStorage delegate, Function<SpanContext, ? extends Event> newEvent) {
+    this(delegate, newEvent, null);
+  }
+
+  /**
+   * When {@code activeSpanThreads} is not null, the span that is active on each thread is also
+   * kept there for call stack sampling.
+   */
+  JfrContextStorage(
+      ContextStorage delegate,
+      Function<SpanContext, ? extends Event> newEvent,
+      @Nullable ActiveSpanThreads activeSpanThreads) {
     this.delegate = delegate;
     this.newEvent = newEvent;
+    this.activeSpanThreads = activeSpanThreads;
   }
 
   static ContextAttached newEvent(SpanContext spanContext) {
@@ -51,11 +67,25 @@ class JfrContextStorage implements ContextStorage {
     return new ContextAttached(null, null, TraceFlags.getDefault().asByte());
   }
 
+  static BinaryContextAttached newBinaryEvent(SpanContext spanContext) {
+    if (spanContext.isValid()) {
+      DecodedIds decoded = decodedIds.get();
+      int i = decoded.decode(spanContext);
+      return new BinaryContextAttached(
+          decoded.ids[i],
+          decoded.ids[i + 1],
+          decoded.ids[i + 2],
+          spanContext.getTraceFlags().asByte());
+    }
+    return new BinaryContextAttached(0, 0, 0, TraceFlags.getDefault().asByte());
+  }
+
   @Override
   public Scope attach(Context toAttach) {
     Scope delegatedScope = delegate.attach(toAttach);
     Span span = Span.fromContext(toAttach);
-    Span current = activeSpan.get();
+    ThreadState state = threadState.get();
+    Span current = state.activeSpan;
     // do nothing when active span didn't change
     // do nothing if the span isn't sampled
     if (span == current || !span.getSpanContext().isSampled()) {
@@ -63,25 +93,106 @@ class JfrContextStorage implements ContextStorage {
     }
 
     // mark new span as active and generate event
-    activeSpan.set(span);
-    generateEvent(span);
-    return () -> {
+    state.activate(span);
+    return new RestoringScope(current, delegatedScope);
+  }
+
+  /**
+   * Context tracking state of a single thread. Besides the active span this remembers the span
+   * context that was last written to the recording, so that switching between different span
+   * instances of the same span, as async frameworks do when they wrap the propagated context, does
+   * not generate events.
+   */
+  private class ThreadState {
+    // boxed once, the id is used for every change of the active span
+    private final Long threadId = Thread.currentThread().getId();
+    private Span activeSpan = Span.getInvalid();
+    // null when it is not known what the recording contains, e.g. before recording started
+    @Nullable private SpanContext recorded = SpanContext.getInvalid();
+
+    void activate(Span span) {
+      activeSpan = span;
+      record(span.getSpanContext());
+      if (activeSpanThreads != null) {
+        activeSpanThreads.set(threadId, span.getSpanContext());
+      }
+    }
+
+    void record(SpanContext spanContext) {
+      if (recorded != null && sameSpan(recorded, spanContext)) {
+        return;
+      }
+      Event event = newEvent.apply(spanContext);
+      event.begin();
+      if (event.shouldCommit()) {
+        event.commit();
+        recorded = spanContext;
+      } else {
+        recorded = null;
+      }
+    }
+  }
+
+  private class RestoringScope implements Scope {
+    private final Span previous;
+    private final Scope delegatedScope;
+    private boolean closed;
+
+    RestoringScope(Span previous, Scope delegatedScope) {
+      this.previous = previous;
+      this.delegatedScope = delegatedScope;
+    }
+
+    @Override
+    public void close() {
+      // scopes may be closed more than once, only the first close restores the previous span
+      if (closed) {
+        return;
+      }
+      closed = true;
       // restore previous active span
-      activeSpan.set(current);
-      generateEvent(current);
+      threadState.get().activate(previous);
       delegatedScope.close();
-    };
+    }
   }
 
-  private void generateEvent(Span span) {
-    SpanContext context = span.getSpanContext();
-    ContextAttached event = newEvent.apply(context);
-    event.begin();
-    if (event.shouldCommit()) {
-      event.commit();
+  /**
+   * Binary trace and span ids of the span contexts last written on a thread. Closing a scope
+   * switches back to the span that was active before, so two entries avoid decoding the hex ids of
+   * the same spans over and over.
+   */
+  private static class DecodedIds {
+    private final SpanContext[] spanContexts = new SpanContext[2];
+    // trace id high, trace id low and span id of each entry
+    private final long[] ids = new long[6];
+    private int next;
+
+    /** Returns the index of the decoded ids of the span context in {@link #ids}. */
+    int decode(SpanContext spanContext) {
+      for (int i = 0; i < spanContexts.length; i++) {
+        if (spanContexts[i] == spanContext) {
+          return i * 3;
+        }
+      }
+      int entry = next;
+      next = (next + 1) % spanContexts.length;
+      String traceId = spanContext.getTraceId();
+      int i = entry * 3;
+      ids[i] = Base16.decodeLong(traceId, 0);
+      ids[i + 1] = Base16.decodeLong(traceId, 16);
+      ids[i + 2] = Base16.decodeLong(spanContext.getSpanId(), 0);
+      spanContexts[entry] = spanContext;
+      return i;
     }
   }
 
+  private static boolean sameSpan(SpanContext a, SpanContext b) {
+    return a == b
+        || (a.getSpanId().equals(b.getSpanId())
+            && a.getTraceId().equals(b.getTraceId())
+            && a.getTraceFlags().equals(b.getTraceFlags()));
+  }
+
   @Nullable
   @Override
   public Context current() {
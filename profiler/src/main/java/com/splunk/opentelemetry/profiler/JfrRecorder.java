@@ -19,22 +19,31 @@ package com.splunk.opentelemetry.profiler;
 import static java.util.Objects.requireNonNull;
 import static java.util.logging.Level.FINE;
 import static java.util.logging.Level.SEVERE;
+import static java.util.logging.Level.WARNING;
 
 import com.google.common.annotations.VisibleForTesting;
 import java.io.IOException;
 import java.io.InputStream;
 import java.io.OutputStream;
 import java.nio.file.Files;
+import java.nio.file.NoSuchFileException;
 import java.nio.file.Path;
 import java.time.Duration;
 import java.time.Instant;
+import java.util.List;
 import java.util.Map;
 import java.util.function.Consumer;
 import java.util.logging.Logger;
+import javax.annotation.Nullable;
 import jdk.jfr.Recording;
 import jdk.jfr.RecordingState;
 
-/** Responsible for starting a single JFR recording. */
+/**
+ * Responsible for starting a single JFR recording. By default the recording is kept in memory and
+ * each snapshot streams the events recorded since the previous one. A disk recording instead
+ * writes to the JFR repository, where taking a snapshot completes the current chunk, so only the
+ * chunk files completed since the previous snapshot are read.
+ */
 class JfrRecorder {
   private static final Logger logger = Logger.getLogger(JfrRecorder.class.getName());
 
@@ -47,6 +56,9 @@ class JfrRecorder {
   private final Consumer<InputStream> onNewRecording;
   private final RecordingFileNamingConvention namingConvention;
   private final boolean keepRecordingFiles;
+  private final boolean toDisk;
+  private final JfrRepositoryChunks repositoryChunks;
+  @Nullable private final CallStackInterval callStackInterval;
   private volatile Recording recording;
   private volatile Instant snapshotStart = Instant.now();
 
@@ -57,17 +69,27 @@ class JfrRecorder {
     this.onNewRecording = requireNonNull(builder.onNewRecording);
     this.namingConvention = requireNonNull(builder.namingConvention);
     this.keepRecordingFiles = builder.keepRecordingFiles;
+    this.toDisk = builder.toDisk;
+    this.repositoryChunks = new JfrRepositoryChunks(jfr::getRepository);
+    this.callStackInterval = builder.callStackInterval;
   }
 
   public void start() {
     logger.fine("Profiler is starting a JFR recording");
     recording = newRecording();
     recording.setSettings(settings);
-    recording.setToDisk(false);
+    recording.setToDisk(toDisk);
     recording.setName(RECORDING_NAME);
     recording.setDuration(null); // record forever
     recording.setMaxAge(maxAgeDuration);
     recording.start();
+    if (toDisk) {
+      try {
+        repositoryChunks.start();
+      } catch (IOException e) {
+        logger.log(WARNING, "Could not list the JFR repository", e);
+      }
+    }
   }
 
   @VisibleForTesting
@@ -80,7 +102,12 @@ class JfrRecorder {
       Instant snapshotEnd = snap.getStopTime();
       Instant start = snapshotStart;
       snapshotStart = snapshotEnd;
-      if (keepRecordingFiles) {
+      List<Path> chunks = toDisk ? repositoryChunks.takeNewChunks() : null;
+      if (chunks != null) {
+        for (Path chunk : chunks) {
+          flushChunk(chunk);
+        }
+      } else if (keepRecordingFiles) {
         Path path = namingConvention.newOutputPath().toAbsolutePath();
         logger.log(FINE, "Flushing a JFR snapshot: {0}", path);
         try (InputStream in = snap.getStream(start, snapshotEnd)) {
@@ -105,6 +132,42 @@ class JfrRecorder {
     } catch (IOException e) {
       logger.log(SEVERE, "Error handling JFR recording", e);
     }
+    applyCallStackInterval();
+  }
+
+  private void flushChunk(Path chunk) throws IOException {
+    try (InputStream in = Files.newInputStream(chunk)) {
+      if (keepRecordingFiles) {
+        keepChunk(chunk);
+      }
+      onNewRecording.accept(in);
+    } catch (NoSuchFileException e) {
+      logger.log(FINE, "JFR chunk {0} was removed before it was read", chunk);
+    }
+  }
+
+  private void keepChunk(Path chunk) throws IOException {
+    Path path = namingConvention.newOutputPath().toAbsolutePath();
+    logger.log(FINE, "Keeping JFR chunk {0} as {1}", new Object[] {chunk, path});
+    Files.delete(path);
+    try {
+      Files.createLink(path, chunk);
+    } catch (IOException | UnsupportedOperationException e) {
+      // links need the profiler directory to be on the same file system as the jfr repository
+      Files.copy(chunk, path);
+    }
+  }
+
+  // the interval may have been adapted while processing the snapshot
+  private void applyCallStackInterval() {
+    Recording recording = this.recording;
+    if (callStackInterval == null || recording == null) {
+      return;
+    }
+    Duration period = callStackInterval.takeRequestedChange();
+    if (period != null) {
+      recording.enable(ThreadDumpProcessor.EVENT_NAME).withPeriod(period);
+    }
   }
 
   private static void copy(InputStream in, OutputStream out) throws IOException {
@@ -135,6 +198,8 @@ class JfrRecorder {
     private JFR jfr = JFR.instance;
     private Consumer<InputStream> onNewRecording;
     private boolean keepRecordingFiles;
+    private boolean toDisk;
+    private CallStackInterval callStackInterval;
 
     public Builder settings(Map<String, String> settings) {
       this.settings = settings;
@@ -166,6 +231,18 @@ class JfrRecorder {
       return this;
     }
 
+    /** Records to the JFR repository on disk and reads each completed chunk once. */
+    public Builder toDisk(boolean toDisk) {
+      this.toDisk = toDisk;
+      return this;
+    }
+
+    /** Applies changes of the call stack interval to the running recording. */
+    public Builder callStackInterval(CallStackInterval callStackInterval) {
+      this.callStackInterval = callStackInterval;
+      return this;
+    }
+
     public JfrRecorder build() {
       return new JfrRecorder(this);
     }
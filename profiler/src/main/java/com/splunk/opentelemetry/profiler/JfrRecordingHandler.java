@@ -19,6 +19,7 @@ package com.splunk.opentelemetry.profiler;
 import static java.util.logging.Level.FINE;
 import static java.util.logging.Level.SEVERE;
 
+import com.splunk.opentelemetry.profiler.events.BinaryContextAttached;
 import com.splunk.opentelemetry.profiler.events.ContextAttached;
 import java.io.InputStream;
 import java.lang.reflect.Method;
@@ -51,10 +52,13 @@ class JfrRecordingHandler implements Consumer<InputStream> {
       new HashSet<>(
           Arrays.asList(
               ContextAttached.EVENT_NAME,
+              BinaryContextAttached.EVENT_NAME,
               ThreadDumpProcessor.EVENT_NAME,
               TLABProcessor.NEW_TLAB_EVENT_NAME,
               TLABProcessor.OUTSIDE_TLAB_EVENT_NAME,
-              TLABProcessor.ALLOCATION_SAMPLE_EVENT_NAME));
+              TLABProcessor.ALLOCATION_SAMPLE_EVENT_NAME,
+              ExecutionSampleProcessor.EXECUTION_SAMPLE_EVENT_NAME,
+              ExecutionSampleProcessor.NATIVE_METHOD_SAMPLE_EVENT_NAME));
   private final EventProcessingChain eventProcessingChain;
 
   public JfrRecordingHandler(Builder builder) {
@@ -81,7 +85,7 @@ class JfrRecordingHandler implements Consumer<InputStream> {
         for (EventArray eventArray : context.buildEventArrays().getArrays()) {
           IType<IItem> type = eventArray.getType();
           if (eventTypes.contains(type.getIdentifier())) {
-            Arrays.asList(eventArray.getEvents()).forEach(eventProcessingChain::accept);
+            eventProcessingChain.acceptAll(eventArray.getEvents());
           }
         }
 
@@ -90,6 +94,7 @@ class JfrRecordingHandler implements Consumer<InputStream> {
     } catch (Exception exception) {
       logger.log(SEVERE, "Error parsing JFR recording", exception);
     } finally {
+      eventProcessingChain.awaitProcessing();
       Instant end = Instant.now();
       long timeElapsed = Duration.between(start, end).toMillis();
       if (logger.isLoggable(FINE)) {
@@ -0,0 +1,137 @@
+/*
+ * Copyright Splunk Inc.
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+
+package com.splunk.opentelemetry.profiler;
+
+import java.io.IOException;
+import java.nio.file.DirectoryStream;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.Comparator;
+import java.util.HashSet;
+import java.util.List;
+import java.util.Objects;
+import java.util.Set;
+import java.util.function.Supplier;
+import java.util.regex.Matcher;
+import java.util.regex.Pattern;
+import javax.annotation.Nullable;
+
+/**
+ * Finds the chunk files in the JFR disk repository that were completed since the last call. Taking
+ * a snapshot while a disk recording is running makes JFR start a new chunk, so after a snapshot
+ * all chunks but the one that is being written are complete.
+ */
+class JfrRepositoryChunks {
+  // chunk files are named after their start time, chunks started in the same second get a counter
+  private static final Pattern CHUNK_NAME =
+      Pattern.compile("(\\d{4}_\\d{2}_\\d{2}_\\d{2}_\\d{2}_\\d{2})(?:_(\\d+))?\\.jfr");
+  // jdk 11 writes the current chunk to a .part file and renames it once it is complete
+  private static final String PART_SUFFIX = ".part";
+  private static final Comparator<Path> CHUNK_ORDER =
+      Comparator.comparing((Path path) -> chunkName(path).group(1))
+          .thenComparingInt(JfrRepositoryChunks::chunkCounter);
+
+  private final Supplier<Path> repository;
+  private final Set<Path> seen = new HashSet<>();
+  private Path currentRepository;
+
+  JfrRepositoryChunks(Supplier<Path> repository) {
+    this.repository = repository;
+  }
+
+  /**
+   * Marks the chunks that are already complete as seen, they hold data from before the recording
+   * was started. Called after starting the recording, as jfr creates the repository on demand.
+   */
+  void start() throws IOException {
+    seen.clear();
+    currentRepository = repository.get();
+    if (currentRepository != null) {
+      seen.addAll(completeChunks(listChunks(currentRepository)));
+    }
+  }
+
+  /**
+   * Returns the complete chunks that were not returned before, oldest first. Returns null when the
+   * location of the repository is not known.
+   */
+  @Nullable
+  List<Path> takeNewChunks() throws IOException {
+    Path path = repository.get();
+    if (path == null) {
+      return null;
+    }
+    if (!Objects.equals(path, currentRepository)) {
+      // the repository was moved, chunks in the new location were all written after the move
+      seen.clear();
+      currentRepository = path;
+    }
+    Listing listing = listChunks(path);
+    List<Path> newChunks = new ArrayList<>();
+    for (Path chunk : completeChunks(listing)) {
+      if (seen.add(chunk)) {
+        newChunks.add(chunk);
+      }
+    }
+    // forget chunks that jfr has removed
+    seen.retainAll(listing.chunks);
+    return newChunks;
+  }
+
+  private static List<Path> completeChunks(Listing listing) {
+    List<Path> chunks = listing.chunks;
+    if (listing.hasPartialChunk || chunks.isEmpty()) {
+      return chunks;
+    }
+    // the newest chunk is still being written
+    return chunks.subList(0, chunks.size() - 1);
+  }
+
+  private static Listing listChunks(Path repository) throws IOException {
+    Listing listing = new Listing();
+    try (DirectoryStream<Path> stream = Files.newDirectoryStream(repository)) {
+      for (Path path : stream) {
+        String name = path.getFileName().toString();
+        if (name.endsWith(PART_SUFFIX)) {
+          listing.hasPartialChunk = true;
+        } else if (CHUNK_NAME.matcher(name).matches()) {
+          listing.chunks.add(path);
+        }
+      }
+    }
+    Collections.sort(listing.chunks, CHUNK_ORDER);
+    return listing;
+  }
+
+  private static Matcher chunkName(Path path) {
+    Matcher matcher = CHUNK_NAME.matcher(path.getFileName().toString());
+    matcher.matches();
+    return matcher;
+  }
+
+  private static int chunkCounter(Path path) {
+    String counter = chunkName(path).group(2);
+    return counter != null ? Integer.parseInt(counter) : 0;
+  }
+
+  private static class Listing {
+    final List<Path> chunks = new ArrayList<>();
+    boolean hasPartialChunk;
+  }
+}
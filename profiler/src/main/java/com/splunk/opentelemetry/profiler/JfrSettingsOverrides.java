@@ -42,9 +42,27 @@ class JfrSettingsOverrides {
     if (customInterval != Duration.ZERO) {
       settings.put("jdk.ThreadDump#period", customInterval.toMillis() + " ms");
     }
+    if (Configuration.getThreadInfoSamplerEnabled(config)) {
+      // call stacks are sampled by ThreadInfoSampler instead
+      settings.put("jdk.ThreadDump#enabled", "false");
+    }
+    maybeEnableExecutionSamples(settings);
     return maybeEnableTLABs(settings);
   }
 
+  private void maybeEnableExecutionSamples(Map<String, String> settings) {
+    if (!Configuration.getCpuSamplesEnabled(config)) {
+      return;
+    }
+    String period = Configuration.getCpuSamplesInterval(config).toMillis() + " ms";
+    settings.put("jdk.ExecutionSample#enabled", "true");
+    settings.put("jdk.ExecutionSample#period", period);
+    if (Configuration.getCpuSamplesNative(config)) {
+      settings.put("jdk.NativeMethodSample#enabled", "true");
+      settings.put("jdk.NativeMethodSample#period", period);
+    }
+  }
+
   private Duration getCustomInterval() {
     Duration customInterval = config.getDuration(CONFIG_KEY_CALL_STACK_INTERVAL, Duration.ZERO);
     if (customInterval != Duration.ZERO) {
@@ -0,0 +1,170 @@
+/*
+ * Copyright Splunk Inc.
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+
+package com.splunk.opentelemetry.profiler;
+
+import static java.util.Objects.requireNonNull;
+import static java.util.logging.Level.SEVERE;
+
+import com.splunk.opentelemetry.profiler.events.BinaryContextAttached;
+import com.splunk.opentelemetry.profiler.events.ContextAttached;
+import java.time.Duration;
+import java.time.Instant;
+import java.util.Map;
+import java.util.logging.Logger;
+import javax.annotation.Nullable;
+import jdk.jfr.consumer.RecordedEvent;
+import jdk.jfr.consumer.RecordingStream;
+
+/**
+ * Alternative to {@link JfrRecorder} and {@link JfrRecordingHandler} that uses the JDK event
+ * streaming api (JDK 14+). Only the event types handled by the {@link EventProcessingChain} are
+ * subscribed to, and events are dispatched to the processors as they arrive instead of taking a
+ * snapshot of the recording and parsing complete chunks. Collected profiling data is exported once
+ * per recording duration.
+ */
+class JfrStreamingRecorder {
+  private static final Logger logger = Logger.getLogger(JfrStreamingRecorder.class.getName());
+
+  static final String[] EVENT_TYPES =
+      new String[] {
+        ContextAttached.EVENT_NAME,
+        BinaryContextAttached.EVENT_NAME,
+        ThreadDumpProcessor.EVENT_NAME,
+        TLABProcessor.NEW_TLAB_EVENT_NAME,
+        TLABProcessor.OUTSIDE_TLAB_EVENT_NAME,
+        TLABProcessor.ALLOCATION_SAMPLE_EVENT_NAME,
+        ExecutionSampleProcessor.EXECUTION_SAMPLE_EVENT_NAME,
+        ExecutionSampleProcessor.NATIVE_METHOD_SAMPLE_EVENT_NAME
+      };
+
+  private final Map<String, String> settings;
+  private final Duration recordingDuration;
+  private final EventProcessingChain eventProcessingChain;
+  @Nullable private final CallStackInterval callStackInterval;
+  // closed by a shutdown hook while events are delivered on the stream's thread
+  private volatile RecordingStream stream;
+  private Instant segmentStart;
+  private Instant lastExport;
+
+  private JfrStreamingRecorder(Builder builder) {
+    this.settings = requireNonNull(builder.settings);
+    this.recordingDuration = requireNonNull(builder.recordingDuration);
+    this.eventProcessingChain = requireNonNull(builder.eventProcessingChain);
+    this.callStackInterval = builder.callStackInterval;
+  }
+
+  public void start() {
+    logger.fine("Profiler is starting a JFR recording stream");
+    stream = new RecordingStream();
+    stream.setSettings(settings);
+    // events are consumed as they are flushed, no need to retain the repository for long
+    stream.setMaxAge(recordingDuration);
+    for (String eventType : EVENT_TYPES) {
+      stream.onEvent(eventType, this::onEvent);
+    }
+    stream.onFlush(this::onFlush);
+    stream.onError(error -> logger.log(SEVERE, "Error processing JFR recording stream", error));
+
+    segmentStart = lastExport = Instant.now();
+    eventProcessingChain.beginStreaming();
+    stream.startAsync();
+  }
+
+  private void onEvent(RecordedEvent event) {
+    eventProcessingChain.dispatch(new RecordedEventItem(event));
+  }
+
+  private void onFlush() {
+    Instant now = Instant.now();
+    eventProcessingChain.endSegment(segmentStart, now);
+    segmentStart = now;
+    if (Duration.between(lastExport, now).compareTo(recordingDuration) >= 0) {
+      lastExport = now;
+      eventProcessingChain.flushExporters();
+      eventProcessingChain.logEventStats();
+      applyCallStackInterval();
+    }
+  }
+
+  private void applyCallStackInterval() {
+    RecordingStream stream = this.stream;
+    if (callStackInterval == null || stream == null) {
+      return;
+    }
+    Duration period = callStackInterval.takeRequestedChange();
+    if (period != null) {
+      stream.enable(ThreadDumpProcessor.EVENT_NAME).withPeriod(period);
+    }
+  }
+
+  /**
+   * Closes the recording stream and waits within the given timeout for the events that are being
+   * dispatched. The data collected since the last export is then exported on the calling thread.
+   */
+  public void stop(Duration timeout) {
+    RecordingStream stream = this.stream;
+    this.stream = null;
+    if (stream == null) {
+      return;
+    }
+    stream.close();
+    try {
+      stream.awaitTermination(timeout);
+    } catch (InterruptedException exception) {
+      Thread.currentThread().interrupt();
+      return;
+    }
+    eventProcessingChain.endSegment(segmentStart, Instant.now());
+    eventProcessingChain.flushExporters();
+  }
+
+  public static Builder builder() {
+    return new Builder();
+  }
+
+  public static class Builder {
+    private Map<String, String> settings;
+    private Duration recordingDuration;
+    private EventProcessingChain eventProcessingChain;
+    private CallStackInterval callStackInterval;
+
+    public Builder settings(Map<String, String> settings) {
+      this.settings = settings;
+      return this;
+    }
+
+    public Builder recordingDuration(Duration recordingDuration) {
+      this.recordingDuration = recordingDuration;
+      return this;
+    }
+
+    public Builder eventProcessingChain(EventProcessingChain eventProcessingChain) {
+      this.eventProcessingChain = eventProcessingChain;
+      return this;
+    }
+
+    /** Applies changes of the call stack interval to the running stream. */
+    public Builder callStackInterval(CallStackInterval callStackInterval) {
+      this.callStackInterval = callStackInterval;
+      return this;
+    }
+
+    public JfrStreamingRecorder build() {
+      return new JfrStreamingRecorder(this);
+    }
+  }
+}
@@ -0,0 +1,154 @@
+/*
+ * Copyright Splunk Inc.
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+
+package com.splunk.opentelemetry.profiler;
+
+import java.util.Arrays;
+import java.util.Map;
+import java.util.TreeMap;
+
+/**
+ * Matches the start of a string against a fixed set of included and excluded prefixes, compiled
+ * into a trie. When several prefixes match, the longest one decides. Matching walks the string
+ * once and doesn't allocate, so it can be used for every thread and frame in a thread dump.
+ */
+final class PrefixMatcher {
+  static final int NO_MATCH = 0;
+  static final int INCLUDED = 1;
+  static final int EXCLUDED = 2;
+  // for strings that are not terminated by a special character
+  static final char NO_TERMINATOR = '\uffff';
+
+  private static final char[] NO_KEYS = new char[0];
+  private static final Node[] NO_CHILDREN = new Node[0];
+
+  private final Node root;
+  private final boolean hasExclusions;
+
+  private PrefixMatcher(Node root, boolean hasExclusions) {
+    this.root = root;
+    this.hasExclusions = hasExclusions;
+  }
+
+  /** Returns false when nothing can be excluded, so that matching can be skipped. */
+  boolean hasExclusions() {
+    return hasExclusions;
+  }
+
+  int match(String text) {
+    return match(text, 0, text.length(), NO_TERMINATOR);
+  }
+
+  /**
+   * Matches the text between start and end, or up to the first terminator character. Prefixes
+   * that were added as exact matches only match when the whole text was consumed.
+   */
+  int match(String text, int start, int end, char terminator) {
+    Node node = root;
+    int result = root.value;
+    for (int i = start; i < end; i++) {
+      char c = text.charAt(i);
+      if (c == terminator) {
+        break;
+      }
+      node = node.child(c);
+      if (node == null) {
+        return result;
+      }
+      if (node.value != NO_MATCH) {
+        result = node.value;
+      }
+    }
+    return node.exactValue != NO_MATCH ? node.exactValue : result;
+  }
+
+  static Builder builder() {
+    return new Builder();
+  }
+
+  private static final class Node {
+    private char[] keys = NO_KEYS;
+    private Node[] children = NO_CHILDREN;
+    private int value = NO_MATCH;
+    private int exactValue = NO_MATCH;
+
+    Node child(char c) {
+      int index = Arrays.binarySearch(keys, c);
+      return index >= 0 ? children[index] : null;
+    }
+  }
+
+  static final class Builder {
+    private final BuilderNode root = new BuilderNode();
+    private boolean hasExclusions;
+
+    Builder include(String prefix) {
+      return add(prefix, INCLUDED, false);
+    }
+
+    Builder exclude(String prefix) {
+      return add(prefix, EXCLUDED, false);
+    }
+
+    /** Excludes strings that are equal to the given string. */
+    Builder excludeExact(String string) {
+      return add(string, EXCLUDED, true);
+    }
+
+    private Builder add(String prefix, int value, boolean exact) {
+      BuilderNode node = root;
+      for (int i = 0; i < prefix.length(); i++) {
+        node = node.children.computeIfAbsent(prefix.charAt(i), c -> new BuilderNode());
+      }
+      // when a prefix is both included and excluded, included wins
+      if (exact) {
+        node.exactValue = Math.min(value, node.exactValue == NO_MATCH ? value : node.exactValue);
+      } else {
+        node.value = Math.min(value, node.value == NO_MATCH ? value : node.value);
+      }
+      hasExclusions |= value == EXCLUDED;
+      return this;
+    }
+
+    PrefixMatcher build() {
+      return new PrefixMatcher(root.compile(), hasExclusions);
+    }
+  }
+
+  private static final class BuilderNode {
+    // sorted, so that compiled nodes can be binary searched
+    private final Map<Character, BuilderNode> children = new TreeMap<>();
+    private int value = NO_MATCH;
+    private int exactValue = NO_MATCH;
+
+    Node compile() {
+      Node node = new Node();
+      node.value = value;
+      node.exactValue = exactValue;
+      if (!children.isEmpty()) {
+        node.keys = new char[children.size()];
+        node.children = new Node[children.size()];
+        int i = 0;
+        for (Map.Entry<Character, BuilderNode> entry : children.entrySet()) {
+          node.keys[i] = entry.getKey();
+          node.children[i] = entry.getValue().compile();
+          i++;
+        }
+      }
+      return node;
+    }
+  }
+}
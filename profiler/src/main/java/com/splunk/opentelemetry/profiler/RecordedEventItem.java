@@ -0,0 +1,316 @@
+/*
+ * Copyright Splunk Inc.
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+
+package com.splunk.opentelemetry.profiler;
+
+import static org.openjdk.jmc.common.unit.UnitLookup.BYTE;
+import static org.openjdk.jmc.common.unit.UnitLookup.EPOCH_NS;
+import static org.openjdk.jmc.common.unit.UnitLookup.NUMBER_UNITY;
+
+import java.time.Instant;
+import java.util.AbstractList;
+import java.util.Collections;
+import java.util.List;
+import java.util.Map;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.TimeUnit;
+import java.util.function.Function;
+import jdk.jfr.consumer.RecordedClass;
+import jdk.jfr.consumer.RecordedEvent;
+import jdk.jfr.consumer.RecordedFrame;
+import jdk.jfr.consumer.RecordedMethod;
+import jdk.jfr.consumer.RecordedStackTrace;
+import jdk.jfr.consumer.RecordedThread;
+import org.openjdk.jmc.common.IDescribable;
+import org.openjdk.jmc.common.IMCFrame;
+import org.openjdk.jmc.common.IMCMethod;
+import org.openjdk.jmc.common.IMCPackage;
+import org.openjdk.jmc.common.IMCStackTrace;
+import org.openjdk.jmc.common.IMCThread;
+import org.openjdk.jmc.common.IMCThreadGroup;
+import org.openjdk.jmc.common.IMCType;
+import org.openjdk.jmc.common.item.IAccessorKey;
+import org.openjdk.jmc.common.item.IAttribute;
+import org.openjdk.jmc.common.item.ICanonicalAccessorFactory;
+import org.openjdk.jmc.common.item.IItem;
+import org.openjdk.jmc.common.item.IMemberAccessor;
+import org.openjdk.jmc.common.item.IType;
+import org.openjdk.jmc.flightrecorder.JfrAttributes;
+import org.openjdk.jmc.flightrecorder.jdk.JdkAttributes;
+
+/**
+ * Exposes a {@link RecordedEvent} read with the JDK event streaming api as a JMC {@link IItem}, so
+ * that events streamed from a {@link jdk.jfr.consumer.RecordingStream} can be handled by the same
+ * processing chain as events parsed by the JMC loader. Only the attributes read by {@link
+ * EventReader} are supported.
+ */
+class RecordedEventItem implements IItem {
+
+  private static final Map<String, EventType> types = new ConcurrentHashMap<>();
+
+  private final RecordedEvent event;
+  private final EventType type;
+
+  RecordedEventItem(RecordedEvent event) {
+    this.event = event;
+    this.type = types.computeIfAbsent(event.getEventType().getName(), EventType::new);
+  }
+
+  @Override
+  public IType<?> getType() {
+    return type;
+  }
+
+  private static Object readMember(IAccessorKey<?> key, RecordedEvent event) {
+    if (JfrAttributes.START_TIME.getKey().equals(key)) {
+      Instant startTime = event.getStartTime();
+      return EPOCH_NS.quantity(
+          TimeUnit.SECONDS.toNanos(startTime.getEpochSecond()) + startTime.getNano());
+    }
+    if (JfrAttributes.END_TIME.getKey().equals(key)) {
+      Instant endTime = event.getEndTime();
+      return EPOCH_NS.quantity(
+          TimeUnit.SECONDS.toNanos(endTime.getEpochSecond()) + endTime.getNano());
+    }
+    if (JfrAttributes.EVENT_THREAD.getKey().equals(key)) {
+      RecordedThread thread = event.getThread();
+      // execution samples are recorded by the sampler thread, jmc reports the sampled thread
+      if (thread == null && event.hasField("sampledThread")) {
+        thread = event.getThread("sampledThread");
+      }
+      return thread != null ? new EventThread(thread) : null;
+    }
+    if (JfrAttributes.EVENT_STACKTRACE.getKey().equals(key)) {
+      RecordedStackTrace stackTrace = event.getStackTrace();
+      return stackTrace != null ? new EventStackTrace(stackTrace) : null;
+    }
+    if (JdkAttributes.THREAD_DUMP_RESULT.getKey().equals(key)) {
+      return event.getString("result");
+    }
+    if (JdkAttributes.ALLOCATION_SIZE.getKey().equals(key)) {
+      return BYTE.quantity(event.getLong("allocationSize"));
+    }
+    if (JdkAttributes.SAMPLE_WEIGHT.getKey().equals(key)) {
+      return BYTE.quantity(event.getLong("weight"));
+    }
+    // custom otel.ContextAttached and otel.BinaryContextAttached fields
+    String field = key.getIdentifier();
+    if (!event.hasField(field)) {
+      return null;
+    }
+    Object value = event.getValue(field);
+    if (value instanceof Number) {
+      return NUMBER_UNITY.quantity((Number) value);
+    }
+    return value;
+  }
+
+  private static class EventType implements IType<IItem> {
+    private final String identifier;
+
+    EventType(String identifier) {
+      this.identifier = identifier;
+    }
+
+    @Override
+    public String getIdentifier() {
+      return identifier;
+    }
+
+    @Override
+    public String getName() {
+      return identifier;
+    }
+
+    @Override
+    public String getDescription() {
+      return identifier;
+    }
+
+    @Override
+    public List<IAttribute<?>> getAttributes() {
+      return Collections.emptyList();
+    }
+
+    @Override
+    public Map<IAccessorKey<?>, ? extends IDescribable> getAccessorKeys() {
+      return Collections.emptyMap();
+    }
+
+    @Override
+    public boolean hasAttribute(ICanonicalAccessorFactory<?> attribute) {
+      return false;
+    }
+
+    @Override
+    @SuppressWarnings("unchecked")
+    public <M> IMemberAccessor<M, IItem> getAccessor(IAccessorKey<M> key) {
+      return item -> (M) readMember(key, ((RecordedEventItem) item).event);
+    }
+  }
+
+  private static class EventThread implements IMCThread {
+    private final RecordedThread thread;
+
+    EventThread(RecordedThread thread) {
+      this.thread = thread;
+    }
+
+    @Override
+    public Long getThreadId() {
+      long threadId = thread.getJavaThreadId();
+      return threadId != -1 ? threadId : null;
+    }
+
+    @Override
+    public String getThreadName() {
+      return thread.getJavaName();
+    }
+
+    @Override
+    public IMCThreadGroup getThreadGroup() {
+      return null;
+    }
+  }
+
+  private static class EventStackTrace implements IMCStackTrace {
+    private final RecordedStackTrace stackTrace;
+
+    EventStackTrace(RecordedStackTrace stackTrace) {
+      this.stackTrace = stackTrace;
+    }
+
+    @Override
+    public List<? extends IMCFrame> getFrames() {
+      List<RecordedFrame> frames = stackTrace.getFrames();
+      return new MappedList<>(frames, EventFrame::new);
+    }
+
+    @Override
+    public TruncationState getTruncationState() {
+      return stackTrace.isTruncated() ? TruncationState.TRUNCATED : TruncationState.NOT_TRUNCATED;
+    }
+  }
+
+  private static class EventFrame implements IMCFrame {
+    private final RecordedFrame frame;
+
+    EventFrame(RecordedFrame frame) {
+      this.frame = frame;
+    }
+
+    @Override
+    public Integer getFrameLineNumber() {
+      return frame.getLineNumber();
+    }
+
+    @Override
+    public Integer getBCI() {
+      return frame.getBytecodeIndex();
+    }
+
+    @Override
+    public IMCMethod getMethod() {
+      RecordedMethod method = frame.getMethod();
+      return method != null ? new EventMethod(method) : null;
+    }
+
+    @Override
+    public Type getType() {
+      return Type.UNKNOWN;
+    }
+  }
+
+  private static class EventMethod implements IMCMethod {
+    private final RecordedMethod method;
+
+    EventMethod(RecordedMethod method) {
+      this.method = method;
+    }
+
+    @Override
+    public IMCType getType() {
+      return new EventClass(method.getType());
+    }
+
+    @Override
+    public String getMethodName() {
+      return method.getName();
+    }
+
+    @Override
+    public String getFormalDescriptor() {
+      return method.getDescriptor();
+    }
+
+    @Override
+    public Integer getModifier() {
+      return method.getModifiers();
+    }
+
+    @Override
+    public Boolean isNative() {
+      return null;
+    }
+  }
+
+  private static class EventClass implements IMCType {
+    private final RecordedClass type;
+
+    EventClass(RecordedClass type) {
+      this.type = type;
+    }
+
+    @Override
+    public String getTypeName() {
+      String fullName = getFullName();
+      if (fullName == null) {
+        return null;
+      }
+      return fullName.substring(fullName.lastIndexOf('.') + 1);
+    }
+
+    @Override
+    public IMCPackage getPackage() {
+      return null;
+    }
+
+    @Override
+    public String getFullName() {
+      return type != null ? type.getName() : null;
+    }
+  }
+
+  private static class MappedList<S, T> extends AbstractList<T> {
+    private final List<S> source;
+    private final Function<S, T> mapper;
+
+    MappedList(List<S> source, Function<S, T> mapper) {
+      this.source = source;
+      this.mapper = mapper;
+    }
+
+    @Override
+    public T get(int index) {
+      return mapper.apply(source.get(index));
+    }
+
+    @Override
+    public int size() {
+      return source.size();
+    }
+  }
+}
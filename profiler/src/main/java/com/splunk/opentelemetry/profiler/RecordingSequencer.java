@@ -45,6 +45,20 @@ class RecordingSequencer {
         this::handleInterval, 0, recordingDuration.toMillis(), TimeUnit.MILLISECONDS);
   }
 
+  /**
+   * Stops taking snapshots, waits for the snapshot that is being processed to be exported within
+   * the given timeout. Returns false when processing did not complete in time.
+   */
+  public boolean stop(Duration timeout) {
+    executor.shutdown();
+    try {
+      return executor.awaitTermination(timeout.toMillis(), TimeUnit.MILLISECONDS);
+    } catch (InterruptedException exception) {
+      Thread.currentThread().interrupt();
+      return false;
+    }
+  }
+
   @VisibleForTesting
   void handleInterval() {
     try {
@@ -20,10 +20,13 @@ import static com.splunk.opentelemetry.profiler.Configuration.CONFIG_KEY_ENABLE_
 import static java.util.Collections.emptyMap;
 
 import com.google.auto.service.AutoService;
+import io.opentelemetry.api.trace.SpanContext;
 import io.opentelemetry.context.ContextStorage;
 import io.opentelemetry.sdk.autoconfigure.spi.AutoConfigurationCustomizer;
 import io.opentelemetry.sdk.autoconfigure.spi.AutoConfigurationCustomizerProvider;
 import io.opentelemetry.sdk.autoconfigure.spi.ConfigProperties;
+import java.util.function.Function;
+import jdk.jfr.Event;
 
 @AutoService(AutoConfigurationCustomizerProvider.class)
 public class SdkCustomizer implements AutoConfigurationCustomizerProvider {
@@ -33,7 +36,16 @@ public class SdkCustomizer implements AutoConfigurationCustomizerProvider {
     autoConfigurationCustomizer.addPropertiesCustomizer(
         config -> {
           if (jfrIsAvailable() && jfrIsEnabledInConfig(config)) {
-            ContextStorage.addWrapper(JfrContextStorage::new);
+            Function<SpanContext, ? extends Event> newEvent =
+                Configuration.getBinaryContextEvents(config)
+                    ? JfrContextStorage::newBinaryEvent
+                    : JfrContextStorage::newEvent;
+            ActiveSpanThreads activeSpanThreads =
+                Configuration.getThreadInfoSamplerEnabled(config)
+                    ? ActiveSpanThreads.instance
+                    : null;
+            ContextStorage.addWrapper(
+                storage -> new JfrContextStorage(storage, newEvent, activeSpanThreads));
           }
           return emptyMap();
         });
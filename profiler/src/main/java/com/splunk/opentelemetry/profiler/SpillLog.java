@@ -0,0 +1,571 @@
+/*
+ * Copyright Splunk Inc.
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+
+package com.splunk.opentelemetry.profiler;
+
+import static java.nio.charset.StandardCharsets.UTF_8;
+import static java.util.logging.Level.FINE;
+import static java.util.logging.Level.WARNING;
+
+import io.opentelemetry.api.common.AttributeKey;
+import io.opentelemetry.api.common.Attributes;
+import io.opentelemetry.api.common.AttributesBuilder;
+import io.opentelemetry.api.common.Value;
+import io.opentelemetry.api.logs.Severity;
+import io.opentelemetry.api.trace.SpanContext;
+import io.opentelemetry.sdk.common.InstrumentationScopeInfo;
+import io.opentelemetry.sdk.logs.data.Body;
+import io.opentelemetry.sdk.logs.data.LogRecordData;
+import io.opentelemetry.sdk.resources.Resource;
+import java.io.ByteArrayInputStream;
+import java.io.ByteArrayOutputStream;
+import java.io.Closeable;
+import java.io.DataInputStream;
+import java.io.DataOutputStream;
+import java.io.EOFException;
+import java.io.IOException;
+import java.nio.Buffer;
+import java.nio.ByteBuffer;
+import java.nio.channels.FileChannel;
+import java.nio.channels.FileLock;
+import java.nio.channels.OverlappingFileLockException;
+import java.nio.file.DirectoryStream;
+import java.nio.file.Files;
+import java.nio.file.NoSuchFileException;
+import java.nio.file.Path;
+import java.nio.file.StandardOpenOption;
+import java.util.ArrayDeque;
+import java.util.ArrayList;
+import java.util.Collection;
+import java.util.Collections;
+import java.util.List;
+import java.util.Map;
+import java.util.logging.Logger;
+
+/**
+ * Bounded on-disk log of profiling log records that could not be exported. Records are appended to
+ * segment files, which are replayed and removed oldest first. When the segments take up more than
+ * the configured number of bytes the oldest ones are deleted, so a collector that stays unavailable
+ * costs at most that much disk space. Every segment starts with the resource of its records, which
+ * lets segments left behind by a previous run be replayed with the resource they were recorded
+ * with. The directory is locked while the log is open, so only one process appends to it.
+ */
+class SpillLog implements Closeable {
+  private static final Logger logger = Logger.getLogger(SpillLog.class.getName());
+
+  static final long DEFAULT_SEGMENT_BYTES = 4 * 1024 * 1024;
+  private static final int MAGIC = 0x53504c31;
+  private static final String LOCK_FILE = "spill.lock";
+  private static final String SEGMENT_PREFIX = "segment-";
+  private static final String SEGMENT_SUFFIX = ".spill";
+
+  private static final byte BODY_NONE = 0;
+  private static final byte BODY_STRING = 1;
+  private static final byte BODY_BYTES = 2;
+  private static final byte TYPE_STRING = 0;
+  private static final byte TYPE_LONG = 1;
+  private static final byte TYPE_DOUBLE = 2;
+  private static final byte TYPE_BOOLEAN = 3;
+
+  private final Path directory;
+  private final long maxBytes;
+  private final long segmentBytes;
+  private final FileChannel lockChannel;
+  private final FileLock lock;
+  private final ArrayDeque<Segment> segments = new ArrayDeque<>();
+  private long totalBytes;
+  private long nextSequence;
+  private boolean closed;
+
+  // segment that records are appended to, null when the newest segment is sealed
+  private FileChannel writer;
+  private Resource headerResource;
+  private byte[] header;
+
+  private SpillLog(
+      Path directory, long maxBytes, long segmentBytes, FileChannel lockChannel, FileLock lock) {
+    this.directory = directory;
+    this.maxBytes = maxBytes;
+    this.segmentBytes = segmentBytes;
+    this.lockChannel = lockChannel;
+    this.lock = lock;
+  }
+
+  static SpillLog open(Path directory, long maxBytes) throws IOException {
+    return open(directory, maxBytes, Math.min(DEFAULT_SEGMENT_BYTES, maxBytes));
+  }
+
+  static SpillLog open(Path directory, long maxBytes, long segmentBytes) throws IOException {
+    Files.createDirectories(directory);
+    FileChannel lockChannel =
+        FileChannel.open(
+            directory.resolve(LOCK_FILE), StandardOpenOption.CREATE, StandardOpenOption.WRITE);
+    FileLock lock;
+    try {
+      lock = lockChannel.tryLock();
+    } catch (OverlappingFileLockException e) {
+      lock = null;
+    }
+    if (lock == null) {
+      lockChannel.close();
+      throw new IOException(directory + " is in use by another process");
+    }
+    SpillLog spillLog = new SpillLog(directory, maxBytes, segmentBytes, lockChannel, lock);
+    spillLog.loadSegments();
+    return spillLog;
+  }
+
+  private void loadSegments() throws IOException {
+    List<Path> paths = new ArrayList<>();
+    try (DirectoryStream<Path> stream =
+        Files.newDirectoryStream(directory, SEGMENT_PREFIX + "*" + SEGMENT_SUFFIX)) {
+      stream.forEach(paths::add);
+    }
+    // sequence numbers are zero padded, so segments sort by name in the order they were written
+    Collections.sort(paths);
+    for (Path path : paths) {
+      Segment segment = new Segment(path, Files.size(path));
+      segments.add(segment);
+      totalBytes += segment.size;
+      nextSequence = Math.max(nextSequence, sequenceOf(path) + 1);
+    }
+    evict();
+  }
+
+  private static long sequenceOf(Path path) {
+    String name = path.getFileName().toString();
+    try {
+      return Long.parseLong(
+          name.substring(SEGMENT_PREFIX.length(), name.length() - SEGMENT_SUFFIX.length()));
+    } catch (NumberFormatException e) {
+      return -1;
+    }
+  }
+
+  /** Appends records, records that can not be written are dropped. */
+  synchronized void append(Collection<LogRecordData> records) {
+    if (closed) {
+      return;
+    }
+    try {
+      for (LogRecordData record : records) {
+        append(record);
+      }
+    } catch (IOException e) {
+      logger.log(WARNING, "Could not write profiling log records to " + directory, e);
+      closeWriter();
+    }
+  }
+
+  private void append(LogRecordData record) throws IOException {
+    Resource resource = record.getResource() != null ? record.getResource() : Resource.empty();
+    if (!resource.equals(headerResource)) {
+      header = writeHeader(resource);
+      headerResource = resource;
+    }
+    byte[] bytes = writeRecord(record);
+    long size = Integer.BYTES + bytes.length;
+    if (header.length + size > maxBytes) {
+      logger.log(FINE, "Dropping profiling log record of {0} bytes, it does not fit.", size);
+      return;
+    }
+    Segment current = writer != null ? segments.peekLast() : null;
+    if (current == null
+        || !resource.equals(current.resource)
+        || (current.size > header.length && current.size + size > segmentBytes)) {
+      current = newSegment(resource);
+    }
+
+    ByteBuffer buffer = ByteBuffer.allocate((int) size);
+    buffer.putInt(bytes.length).put(bytes);
+    // cast for Java 8, where ByteBuffer does not override flip()
+    ((Buffer) buffer).flip();
+    while (buffer.hasRemaining()) {
+      writer.write(buffer);
+    }
+    current.size += size;
+    totalBytes += size;
+    evict();
+  }
+
+  private Segment newSegment(Resource resource) throws IOException {
+    closeWriter();
+    String name = String.format("%s%020d%s", SEGMENT_PREFIX, nextSequence++, SEGMENT_SUFFIX);
+    Path path = directory.resolve(name);
+    writer = FileChannel.open(path, StandardOpenOption.CREATE_NEW, StandardOpenOption.WRITE);
+    Segment segment = new Segment(path, 0);
+    segment.resource = resource;
+    segments.add(segment);
+    ByteBuffer buffer = ByteBuffer.wrap(header);
+    while (buffer.hasRemaining()) {
+      writer.write(buffer);
+    }
+    segment.size = header.length;
+    totalBytes += header.length;
+    return segment;
+  }
+
+  private void evict() {
+    // the newest segment alone always fits, because larger records are not written
+    while (totalBytes > maxBytes && segments.size() > 1) {
+      Segment oldest = segments.poll();
+      totalBytes -= oldest.size;
+      delete(oldest);
+      logger.log(
+          FINE,
+          "Deleted spilled profiling log records in {0} to stay within {1} bytes.",
+          new Object[] {oldest.path, maxBytes});
+    }
+  }
+
+  /**
+   * Returns the oldest segment, or null when there is nothing to replay. When that segment is still
+   * being appended to it is sealed, so that new records go into a new segment.
+   */
+  synchronized Segment oldest() {
+    Segment oldest = segments.peek();
+    if (oldest != null && writer != null && oldest == segments.peekLast()) {
+      closeWriter();
+    }
+    return oldest;
+  }
+
+  /** Reads the records of a sealed segment, records after a damaged one are skipped. */
+  List<LogRecordData> read(Segment segment) {
+    byte[] bytes;
+    try {
+      bytes = Files.readAllBytes(segment.path);
+    } catch (NoSuchFileException e) {
+      // evicted while it was waiting to be replayed
+      return Collections.emptyList();
+    } catch (IOException e) {
+      logger.log(WARNING, "Could not read spilled profiling log records from " + segment.path, e);
+      return Collections.emptyList();
+    }
+
+    List<LogRecordData> records = new ArrayList<>();
+    DataInputStream in = new DataInputStream(new ByteArrayInputStream(bytes));
+    try {
+      if (in.readInt() != MAGIC) {
+        logger.log(WARNING, "Ignoring {0}, it is not a profiling spill segment.", segment.path);
+        return records;
+      }
+      Resource resource = Resource.create(readAttributes(in), readString(in));
+      while (in.available() >= Integer.BYTES) {
+        int length = in.readInt();
+        if (length > in.available()) {
+          // the application stopped while the record was being written
+          break;
+        }
+        records.add(readRecord(in, resource));
+      }
+    } catch (IOException | RuntimeException e) {
+      logger.log(WARNING, "Spilled profiling log records in " + segment.path + " are damaged", e);
+    }
+    return records;
+  }
+
+  /** Deletes a segment after its records have been replayed. */
+  synchronized void remove(Segment segment) {
+    if (segments.remove(segment)) {
+      totalBytes -= segment.size;
+      delete(segment);
+    }
+  }
+
+  /** Returns the number of bytes the segments take up on disk. */
+  synchronized long size() {
+    return totalBytes;
+  }
+
+  @Override
+  public synchronized void close() throws IOException {
+    if (closed) {
+      return;
+    }
+    closed = true;
+    closeWriter();
+    try {
+      lock.release();
+    } finally {
+      lockChannel.close();
+    }
+  }
+
+  private void closeWriter() {
+    if (writer == null) {
+      return;
+    }
+    try {
+      writer.close();
+    } catch (IOException e) {
+      logger.log(FINE, "Could not close spill segment.", e);
+    }
+    writer = null;
+  }
+
+  private static void delete(Segment segment) {
+    try {
+      Files.deleteIfExists(segment.path);
+    } catch (IOException e) {
+      logger.log(WARNING, "Could not delete spilled profiling log records in " + segment.path, e);
+    }
+  }
+
+  private static byte[] writeHeader(Resource resource) throws IOException {
+    ByteArrayOutputStream bytes = new ByteArrayOutputStream();
+    DataOutputStream out = new DataOutputStream(bytes);
+    out.writeInt(MAGIC);
+    writeAttributes(out, resource.getAttributes());
+    writeString(out, resource.getSchemaUrl());
+    return bytes.toByteArray();
+  }
+
+  private static byte[] writeRecord(LogRecordData record) throws IOException {
+    ByteArrayOutputStream bytes = new ByteArrayOutputStream();
+    DataOutputStream out = new DataOutputStream(bytes);
+    InstrumentationScopeInfo scope = record.getInstrumentationScopeInfo();
+    writeString(out, scope != null ? scope.getName() : null);
+    writeString(out, scope != null ? scope.getVersion() : null);
+    out.writeLong(record.getTimestampEpochNanos());
+    out.writeLong(record.getObservedTimestampEpochNanos());
+    Severity severity = record.getSeverity();
+    out.writeByte(severity != null ? severity.ordinal() : 0);
+    writeString(out, record.getSeverityText());
+
+    Value<?> body = record.getBodyValue();
+    Object value = body != null ? body.getValue() : null;
+    if (value instanceof ByteBuffer) {
+      ByteBuffer buffer = ((ByteBuffer) value).duplicate();
+      out.writeByte(BODY_BYTES);
+      out.writeInt(buffer.remaining());
+      while (buffer.hasRemaining()) {
+        out.writeByte(buffer.get());
+      }
+    } else if (body != null) {
+      out.writeByte(BODY_STRING);
+      writeString(out, body.asString());
+    } else {
+      out.writeByte(BODY_NONE);
+    }
+    writeAttributes(out, record.getAttributes());
+    return bytes.toByteArray();
+  }
+
+  private static LogRecordData readRecord(DataInputStream in, Resource resource)
+      throws IOException {
+    String scopeName = readString(in);
+    String scopeVersion = readString(in);
+    InstrumentationScopeInfo scope =
+        InstrumentationScopeInfo.builder(scopeName != null ? scopeName : "")
+            .setVersion(scopeVersion)
+            .build();
+    long timestamp = in.readLong();
+    long observedTimestamp = in.readLong();
+    Severity severity = Severity.values()[in.readUnsignedByte()];
+    String severityText = readString(in);
+
+    Value<?> body;
+    byte bodyType = in.readByte();
+    if (bodyType == BODY_BYTES) {
+      byte[] bytes = new byte[in.readInt()];
+      in.readFully(bytes);
+      body = Value.of(bytes);
+    } else if (bodyType == BODY_STRING) {
+      body = Value.of(readString(in));
+    } else {
+      body = null;
+    }
+    return new SpilledLogRecord(
+        resource,
+        scope,
+        timestamp,
+        observedTimestamp,
+        severity,
+        severityText,
+        body,
+        readAttributes(in));
+  }
+
+  private static void writeAttributes(DataOutputStream out, Attributes attributes)
+      throws IOException {
+    Map<AttributeKey<?>, Object> map = attributes.asMap();
+    out.writeInt(map.size());
+    for (Map.Entry<AttributeKey<?>, Object> entry : map.entrySet()) {
+      writeString(out, entry.getKey().getKey());
+      Object value = entry.getValue();
+      if (value instanceof Long) {
+        out.writeByte(TYPE_LONG);
+        out.writeLong((Long) value);
+      } else if (value instanceof Double) {
+        out.writeByte(TYPE_DOUBLE);
+        out.writeDouble((Double) value);
+      } else if (value instanceof Boolean) {
+        out.writeByte(TYPE_BOOLEAN);
+        out.writeBoolean((Boolean) value);
+      } else {
+        // profiling records have no array attributes, should one appear it is kept as a string
+        out.writeByte(TYPE_STRING);
+        writeString(out, String.valueOf(value));
+      }
+    }
+  }
+
+  private static Attributes readAttributes(DataInputStream in) throws IOException {
+    AttributesBuilder attributes = Attributes.builder();
+    int count = in.readInt();
+    for (int i = 0; i < count; i++) {
+      String key = readString(in);
+      byte type = in.readByte();
+      switch (type) {
+        case TYPE_LONG:
+          attributes.put(AttributeKey.longKey(key), in.readLong());
+          break;
+        case TYPE_DOUBLE:
+          attributes.put(AttributeKey.doubleKey(key), in.readDouble());
+          break;
+        case TYPE_BOOLEAN:
+          attributes.put(AttributeKey.booleanKey(key), in.readBoolean());
+          break;
+        default:
+          attributes.put(AttributeKey.stringKey(key), readString(in));
+      }
+    }
+    return attributes.build();
+  }
+
+  private static void writeString(DataOutputStream out, String value) throws IOException {
+    if (value == null) {
+      out.writeInt(-1);
+      return;
+    }
+    byte[] bytes = value.getBytes(UTF_8);
+    out.writeInt(bytes.length);
+    out.write(bytes);
+  }
+
+  private static String readString(DataInputStream in) throws IOException {
+    int length = in.readInt();
+    if (length < 0) {
+      return null;
+    }
+    if (length > in.available()) {
+      throw new EOFException();
+    }
+    byte[] bytes = new byte[length];
+    in.readFully(bytes);
+    return new String(bytes, UTF_8);
+  }
+
+  static class Segment {
+    final Path path;
+    long size;
+    // resource of the records in a segment created by this process
+    Resource resource;
+
+    Segment(Path path, long size) {
+      this.path = path;
+      this.size = size;
+    }
+  }
+
+  private static class SpilledLogRecord implements LogRecordData {
+    private final Resource resource;
+    private final InstrumentationScopeInfo instrumentationScopeInfo;
+    private final long timestampEpochNanos;
+    private final long observedTimestampEpochNanos;
+    private final Severity severity;
+    private final String severityText;
+    private final Value<?> body;
+    private final Attributes attributes;
+
+    SpilledLogRecord(
+        Resource resource,
+        InstrumentationScopeInfo instrumentationScopeInfo,
+        long timestampEpochNanos,
+        long observedTimestampEpochNanos,
+        Severity severity,
+        String severityText,
+        Value<?> body,
+        Attributes attributes) {
+      this.resource = resource;
+      this.instrumentationScopeInfo = instrumentationScopeInfo;
+      this.timestampEpochNanos = timestampEpochNanos;
+      this.observedTimestampEpochNanos = observedTimestampEpochNanos;
+      this.severity = severity;
+      this.severityText = severityText;
+      this.body = body;
+      this.attributes = attributes;
+    }
+
+    @Override
+    public Resource getResource() {
+      return resource;
+    }
+
+    @Override
+    public InstrumentationScopeInfo getInstrumentationScopeInfo() {
+      return instrumentationScopeInfo;
+    }
+
+    @Override
+    public long getTimestampEpochNanos() {
+      return timestampEpochNanos;
+    }
+
+    @Override
+    public long getObservedTimestampEpochNanos() {
+      return observedTimestampEpochNanos;
+    }
+
+    @Override
+    public SpanContext getSpanContext() {
+      // profiling records carry trace and span ids in the pprof labels
+      return SpanContext.getInvalid();
+    }
+
+    @Override
+    public Severity getSeverity() {
+      return severity;
+    }
+
+    @Override
+    public String getSeverityText() {
+      return severityText;
+    }
+
+    @Override
+    @Deprecated
+    public Body getBody() {
+      return body != null ? Body.string(body.asString()) : Body.empty();
+    }
+
+    @Override
+    public Value<?> getBodyValue() {
+      return body;
+    }
+
+    @Override
+    public Attributes getAttributes() {
+      return attributes;
+    }
+
+    @Override
+    public int getTotalAttributeCount() {
+      return attributes.size();
+    }
+  }
+}
@@ -16,7 +16,11 @@
 
 package com.splunk.opentelemetry.profiler;
 
-import java.util.stream.Stream;
+import static com.splunk.opentelemetry.profiler.PrefixMatcher.EXCLUDED;
+import static com.splunk.opentelemetry.profiler.PrefixMatcher.NO_TERMINATOR;
+
+import java.util.Collections;
+import java.util.List;
 import org.openjdk.jmc.common.IMCFrame;
 import org.openjdk.jmc.common.IMCMethod;
 import org.openjdk.jmc.common.IMCStackTrace;
@@ -24,6 +28,12 @@ import org.openjdk.jmc.common.IMCThread;
 import org.openjdk.jmc.common.IMCType;
 import org.openjdk.jmc.common.item.IItem;
 
+/**
+ * Drops stacks of agent internal threads and stacks where every frame is JVM internal. Thread names
+ * and the packages of frames are matched against prefixes compiled into a {@link PrefixMatcher},
+ * which can be extended with configured lists of excluded and included prefixes. Stacks in thread
+ * dumps are checked in place, without allocating.
+ */
 public class StackTraceFilter {
 
   static final String[] UNWANTED_PREFIXES =
@@ -34,15 +44,21 @@ public class StackTraceFilter {
         "\"JFR Periodic Tasks\"",
         "\"JFR Recording Scheduler\"",
         "\"JFR Recording Sequencer\"",
+        "\"" + ThreadInfoSampler.THREAD_NAME + "\"",
         "\"Reference Handler\"",
         "\"Finalizer\"",
         "\"C1 CompilerThread",
         "\"Common-Cleaner\""
       };
 
+  static final String[] JVM_INTERNAL_PACKAGES = new String[] {"java.", "jdk.", "sun."};
+
   private final EventReader eventReader;
-  private final boolean includeAgentInternalStacks;
-  private final boolean includeJvmInternalStacks;
+  // thread names in thread dumps, where built-in names ending with a quote must match exactly
+  private final PrefixMatcher threadDumpNameMatcher;
+  // thread names of events and sampled threads, which are only matched by prefix
+  private final PrefixMatcher threadNameMatcher;
+  private final PrefixMatcher packageMatcher;
 
   public StackTraceFilter(EventReader eventReader, boolean includeAgentInternalStacks) {
     this(eventReader, includeAgentInternalStacks, false);
@@ -52,9 +68,46 @@ public class StackTraceFilter {
       EventReader eventReader,
       boolean includeAgentInternalStacks,
       boolean includeJvmInternalStacks) {
-    this.eventReader = eventReader;
-    this.includeAgentInternalStacks = includeAgentInternalStacks;
-    this.includeJvmInternalStacks = includeJvmInternalStacks;
+    this(
+        builder()
+            .eventReader(eventReader)
+            .includeAgentInternalStacks(includeAgentInternalStacks)
+            .includeJvmInternalStacks(includeJvmInternalStacks));
+  }
+
+  private StackTraceFilter(Builder builder) {
+    this.eventReader = builder.eventReader;
+    this.threadDumpNameMatcher = buildThreadNameMatcher(builder, true);
+    this.threadNameMatcher = buildThreadNameMatcher(builder, false);
+
+    PrefixMatcher.Builder packages = PrefixMatcher.builder();
+    if (!builder.includeJvmInternalStacks) {
+      for (String prefix : JVM_INTERNAL_PACKAGES) {
+        packages.exclude(prefix);
+      }
+    }
+    builder.excludedPackages.forEach(packages::exclude);
+    builder.includedPackages.forEach(packages::include);
+    this.packageMatcher = packages.build();
+  }
+
+  private static PrefixMatcher buildThreadNameMatcher(Builder builder, boolean threadDump) {
+    PrefixMatcher.Builder threadNames = PrefixMatcher.builder();
+    if (!builder.includeAgentInternalStacks) {
+      for (String prefix : UNWANTED_PREFIXES) {
+        boolean quoted = prefix.endsWith("\"");
+        String name = prefix.substring(1, quoted ? prefix.length() - 1 : prefix.length());
+        // in thread dumps a prefix ending with " must match the whole thread name
+        if (quoted && threadDump) {
+          threadNames.excludeExact(name);
+        } else {
+          threadNames.exclude(name);
+        }
+      }
+    }
+    builder.excludedThreads.forEach(threadNames::exclude);
+    builder.includedThreads.forEach(threadNames::include);
+    return threadNames.build();
   }
 
   public boolean test(ThreadDumpRegion region) {
@@ -76,18 +129,13 @@ public class StackTraceFilter {
     if (wallOfStacks.lastIndexOf('\n', previousNewlineIndex - 1) <= region.startIndex) {
       return false;
     }
-    if (!includeAgentInternalStacks) {
-      if (Stream.of(StackTraceFilter.UNWANTED_PREFIXES)
-          .anyMatch(
-              prefix ->
-                  wallOfStacks.regionMatches(region.startIndex, prefix, 0, prefix.length()))) {
-        return false;
-      }
+    if (threadDumpNameMatcher.hasExclusions()
+        && isUnwantedThread(wallOfStacks, region.startIndex)) {
+      return false;
     }
-    if (!includeJvmInternalStacks) {
-      if (everyFrameIsJvmInternal(wallOfStacks, region.startIndex, region.endIndex - 1)) {
-        return false;
-      }
+    if (packageMatcher.hasExclusions()
+        && everyFrameIsInternal(wallOfStacks, region.startIndex, region.endIndex - 1)) {
+      return false;
     }
     return true;
   }
@@ -98,59 +146,87 @@ public class StackTraceFilter {
       return true;
     }
 
-    if (!includeAgentInternalStacks) {
-      String threadName = thread.getThreadName();
-      for (String prefix : UNWANTED_PREFIXES) {
-        // if prefix ends with " we expect it to match thread name
-        if (prefix.endsWith("\"")) {
-          // prefix is surrounded by "
-          if (threadName.regionMatches(0, prefix, 1, prefix.length() - 2)) {
-            return false;
-          }
-          // prefix starts with "
-        } else if (threadName.regionMatches(0, prefix, 1, prefix.length() - 1)) {
-          return false;
-        }
-      }
+    if (isUnwantedThread(thread.getThreadName())) {
+      return false;
     }
-    if (!includeJvmInternalStacks) {
-      if (everyFrameIsJvmInternal(eventReader.getStackTrace(event))) {
-        return false;
-      }
+    if (packageMatcher.hasExclusions() && everyFrameIsInternal(eventReader.getStackTrace(event))) {
+      return false;
     }
 
     return true;
   }
 
+  /** Tests a stack that was taken from {@link java.lang.management.ThreadInfo}. */
+  public boolean test(String threadName, StackTraceElement[] stackTrace) {
+    if (stackTrace.length == 0) {
+      return false;
+    }
+    if (isUnwantedThread(threadName)) {
+      return false;
+    }
+    if (packageMatcher.hasExclusions() && everyFrameIsInternal(stackTrace)) {
+      return false;
+    }
+    return true;
+  }
+
+  private boolean isUnwantedThread(String threadName) {
+    return threadNameMatcher.hasExclusions() && threadNameMatcher.match(threadName) == EXCLUDED;
+  }
+
+  /**
+   * The thread name is enclosed in the first and the last quote of the header line, thread names
+   * may contain quotes themselves.
+   */
+  private boolean isUnwantedThread(String wallOfStacks, int startIndex) {
+    int headerEnd = wallOfStacks.indexOf('\n', startIndex);
+    int nameEnd = wallOfStacks.lastIndexOf('"', headerEnd - 1);
+    if (nameEnd <= startIndex) {
+      nameEnd = headerEnd;
+    }
+    return threadDumpNameMatcher.match(wallOfStacks, startIndex + 1, nameEnd, NO_TERMINATOR)
+        == EXCLUDED;
+  }
+
   /**
-   * Frames are considered JVM internal if every frame in the stack stars with one of "jdk.", "sun."
-   * or "java.".
+   * Frames are considered internal if their class is in one of the excluded packages, by default
+   * "jdk.", "sun." or "java.". Lines with locking information are skipped.
    */
-  private static boolean everyFrameIsJvmInternal(
-      String wallOfStacks, int startIndex, int lastIndex) {
+  private boolean everyFrameIsInternal(String wallOfStacks, int startIndex, int lastIndex) {
     int offsetToThreadState = wallOfStacks.indexOf('\n', startIndex) + 1;
     if (offsetToThreadState <= 0 || offsetToThreadState >= lastIndex) return false;
-    int offsetToFirstFrame = wallOfStacks.indexOf('\n', offsetToThreadState) + 1;
-    if (offsetToFirstFrame <= 0 || offsetToFirstFrame >= lastIndex) return false;
-    return checkFramesInternal(wallOfStacks, offsetToFirstFrame, lastIndex);
+    int startOfFrame = wallOfStacks.indexOf('\n', offsetToThreadState) + 1;
+    if (startOfFrame <= 0 || startOfFrame >= lastIndex) return false;
+    // iterate instead of recursing, stacks can be thousands of frames deep
+    while (startOfFrame < lastIndex) {
+      if (!wallOfStacks.regionMatches(startOfFrame, "\t-", 0, 2)) {
+        if (!wallOfStacks.regionMatches(startOfFrame, "\tat ", 0, 4)
+            || packageMatcher.match(wallOfStacks, startOfFrame + 4, lastIndex, '(') != EXCLUDED) {
+          return false;
+        }
+      }
+      int endOfFrame = wallOfStacks.indexOf('\n', startOfFrame);
+      // the last line of the region does not necessarily end with a newline
+      startOfFrame = endOfFrame < 0 ? lastIndex : endOfFrame + 1;
+    }
+    // reached the bottom, every frame is internal
+    return true;
   }
 
-  private static boolean checkFramesInternal(String wallOfStacks, int startOfFrame, int lastIndex) {
-    if (startOfFrame == -1 || (startOfFrame >= lastIndex)) {
-      // reached the bottom, every item is jvm internal
-      return true;
-    }
-    int nextLine = wallOfStacks.indexOf('\n', startOfFrame) + 1;
-    if (wallOfStacks.regionMatches(startOfFrame, "\t-", 0, 2)
-        || wallOfStacks.regionMatches(startOfFrame, "\tat java.", 0, 9)
-        || wallOfStacks.regionMatches(startOfFrame, "\tat jdk.", 0, 8)
-        || wallOfStacks.regionMatches(startOfFrame, "\tat sun.", 0, 8)) {
-      return checkFramesInternal(wallOfStacks, nextLine, lastIndex);
+  private boolean everyFrameIsInternal(StackTraceElement[] stackTrace) {
+    for (StackTraceElement frame : stackTrace) {
+      if (!isInternal(frame.getClassName())) {
+        return false;
+      }
     }
-    return false;
+    return true;
+  }
+
+  private boolean isInternal(String className) {
+    return packageMatcher.match(className) == EXCLUDED;
   }
 
-  private static boolean everyFrameIsJvmInternal(IMCStackTrace stackTrace) {
+  private boolean everyFrameIsInternal(IMCStackTrace stackTrace) {
     if (stackTrace == null) {
       return false;
     }
@@ -167,12 +243,67 @@ public class StackTraceFilter {
       if (className == null) {
         continue;
       }
-      if (!className.startsWith("java.")
-          && !className.startsWith("jdk.")
-          && !className.startsWith("sun.")) {
+      if (!isInternal(className)) {
         return false;
       }
     }
     return true;
   }
+
+  public static Builder builder() {
+    return new Builder();
+  }
+
+  public static class Builder {
+    private EventReader eventReader;
+    private boolean includeAgentInternalStacks;
+    private boolean includeJvmInternalStacks;
+    private List<String> excludedThreads = Collections.emptyList();
+    private List<String> includedThreads = Collections.emptyList();
+    private List<String> excludedPackages = Collections.emptyList();
+    private List<String> includedPackages = Collections.emptyList();
+
+    public StackTraceFilter build() {
+      return new StackTraceFilter(this);
+    }
+
+    public Builder eventReader(EventReader eventReader) {
+      this.eventReader = eventReader;
+      return this;
+    }
+
+    public Builder includeAgentInternalStacks(boolean includeAgentInternalStacks) {
+      this.includeAgentInternalStacks = includeAgentInternalStacks;
+      return this;
+    }
+
+    public Builder includeJvmInternalStacks(boolean includeJvmInternalStacks) {
+      this.includeJvmInternalStacks = includeJvmInternalStacks;
+      return this;
+    }
+
+    /** Prefixes of names of threads whose stacks are dropped. */
+    public Builder excludedThreads(List<String> excludedThreads) {
+      this.excludedThreads = excludedThreads;
+      return this;
+    }
+
+    /** Prefixes of thread names that are kept, overriding shorter excluded prefixes. */
+    public Builder includedThreads(List<String> includedThreads) {
+      this.includedThreads = includedThreads;
+      return this;
+    }
+
+    /** Packages that are treated as JVM internal, stacks with only such frames are dropped. */
+    public Builder excludedPackages(List<String> excludedPackages) {
+      this.excludedPackages = excludedPackages;
+      return this;
+    }
+
+    /** Packages that are never treated as JVM internal, overriding shorter excluded prefixes. */
+    public Builder includedPackages(List<String> includedPackages) {
+      this.includedPackages = includedPackages;
+      return this;
+    }
+  }
 }
@@ -68,8 +68,11 @@ public class TLABProcessor {
 
     SpanContext spanContext = null;
     IMCThread thread = eventReader.getThread(event);
-    if (thread != null && thread.getThreadId() != null) {
-      spanContext = spanContextualizer.link(thread.getThreadId()).getSpanContext();
+    // the id is boxed by jmc, unbox it once for the primitive keyed lookup
+    Long threadId = thread == null ? null : thread.getThreadId();
+    if (threadId != null) {
+      long time = eventReader.getStartTime(event);
+      spanContext = spanContextualizer.link(threadId.longValue(), time).getSpanContext();
     }
 
     allocationEventExporter.export(event, sampler, spanContext);
@@ -48,18 +48,24 @@ public class ThreadDumpProcessor {
     String wallOfStacks = eventReader.getThreadDumpResult(event);
 
     ThreadDumpRegion stack = new ThreadDumpRegion(wallOfStacks, 0, 0);
+    long time = eventReader.getStartTime(event);
 
     while (stack.findNextStack()) {
       if (!stackTraceFilter.test(stack)) {
         continue;
       }
-      SpanLinkage linkage = contextualizer.link(stack);
+      SpanLinkage linkage = contextualizer.link(stack, time);
       if (onlyTracingSpans && !linkage.getSpanContext().isValid()) {
         continue;
       }
       StackToSpanLinkage spanWithLinkage =
           new StackToSpanLinkage(
-              eventReader.getStartInstant(event), stack.getCurrentRegion(), eventName, linkage);
+              eventReader.getStartInstant(event),
+              stack.threadDump,
+              stack.startIndex,
+              stack.endIndex,
+              eventName,
+              linkage);
       cpuEventExporter.export(spanWithLinkage);
     }
   }
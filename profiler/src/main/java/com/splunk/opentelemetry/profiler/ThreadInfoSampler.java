@@ -0,0 +1,289 @@
+/*
+ * Copyright Splunk Inc.
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+
+package com.splunk.opentelemetry.profiler;
+
+import static com.splunk.opentelemetry.profiler.util.Runnables.logUncaught;
+import static java.util.logging.Level.FINE;
+
+import com.splunk.opentelemetry.profiler.exporter.CpuEventExporter;
+import com.splunk.opentelemetry.profiler.util.HelpfulExecutors;
+import io.opentelemetry.api.trace.SpanContext;
+import java.lang.management.ManagementFactory;
+import java.lang.management.ThreadInfo;
+import java.lang.management.ThreadMXBean;
+import java.time.Duration;
+import java.time.Instant;
+import java.util.concurrent.ScheduledExecutorService;
+import java.util.concurrent.TimeUnit;
+import java.util.logging.Logger;
+import javax.annotation.Nullable;
+
+/**
+ * Samples call stacks with {@link ThreadMXBean#getThreadInfo(long[], int)} instead of {@code
+ * jdk.ThreadDump} events. A thread dump stops the whole VM to format the stack of every thread
+ * into one string, even when most of them are filtered out afterwards. This sampler only takes the
+ * stacks of the threads it asks for, which in tracing stacks only mode are the threads that have
+ * an active span, and gets them as stack trace elements that don't need to be parsed. Stacks are
+ * linked to the span that is active when they are taken. Samples are exported with the same
+ * source event name as thread dumps, as they are the same kind of data.
+ */
+class ThreadInfoSampler {
+  static final String THREAD_NAME = "JFR Profiler Thread Sampler";
+  private static final Logger logger = Logger.getLogger(ThreadInfoSampler.class.getName());
+
+  private final ThreadMXBean threadMXBean;
+  private final ActiveSpanThreads activeSpanThreads;
+  private final CpuEventExporter cpuEventExporter;
+  private final StackTraceFilter stackTraceFilter;
+  private final boolean onlyTracingSpans;
+  private final int stackDepth;
+  private final CallStackInterval callStackInterval;
+  private final Duration exportInterval;
+  @Nullable private final CallStackIntervalController intervalController;
+  private final ScheduledExecutorService executor;
+
+  // accessed only from the executor thread
+  private long[] activeThreadIds = new long[0];
+  private Duration period;
+  private long nextSampleTime;
+  private long sampleCount;
+  private long samplingTime;
+  private long processingTime;
+
+  private ThreadInfoSampler(Builder builder) {
+    this.threadMXBean = builder.threadMXBean;
+    this.activeSpanThreads = builder.activeSpanThreads;
+    this.cpuEventExporter = builder.cpuEventExporter;
+    this.stackTraceFilter = builder.stackTraceFilter;
+    this.onlyTracingSpans = builder.onlyTracingSpans;
+    this.stackDepth = builder.stackDepth;
+    this.callStackInterval = builder.callStackInterval;
+    this.exportInterval = builder.exportInterval;
+    this.intervalController = builder.intervalController;
+    this.executor = builder.executor;
+    this.period = callStackInterval.getRequested();
+  }
+
+  void start() {
+    nextSampleTime = System.nanoTime() + period.toNanos();
+    scheduleSample(period.toNanos());
+    long exportNanos = exportInterval.toNanos();
+    executor.scheduleAtFixedRate(
+        logUncaught(this::flush), exportNanos, exportNanos, TimeUnit.NANOSECONDS);
+  }
+
+  /**
+   * Stops sampling and exports the samples taken since the last export, a sample that is being
+   * taken is awaited within the given timeout.
+   */
+  void stop(Duration timeout) {
+    executor.shutdownNow();
+    try {
+      if (!executor.awaitTermination(timeout.toMillis(), TimeUnit.MILLISECONDS)) {
+        logger.warning("Call stack sampler did not stop in time, last samples are not exported.");
+        return;
+      }
+    } catch (InterruptedException exception) {
+      Thread.currentThread().interrupt();
+      return;
+    }
+    cpuEventExporter.close();
+  }
+
+  private void sampleAndReschedule() {
+    try {
+      sample();
+    } finally {
+      // the interval may have been adapted since the previous sample
+      Duration requested = callStackInterval.takeRequestedChange();
+      if (requested != null) {
+        period = requested;
+      }
+      nextSampleTime += period.toNanos();
+      long delay = Math.max(0, nextSampleTime - System.nanoTime());
+      if (!executor.isShutdown()) {
+        scheduleSample(delay);
+      }
+    }
+  }
+
+  private void scheduleSample(long delayNanos) {
+    executor.schedule(logUncaught(this::sampleAndReschedule), delayNanos, TimeUnit.NANOSECONDS);
+  }
+
+  // Exists for testing
+  void sample() {
+    long start = System.nanoTime();
+    if (onlyTracingSpans) {
+      activeThreadIds = activeSpanThreads.getThreadIds(activeThreadIds);
+    }
+    long[] threadIds = onlyTracingSpans ? activeThreadIds : threadMXBean.getAllThreadIds();
+    if (threadIds.length == 0) {
+      return;
+    }
+    // one frame more than exported, so that truncated stacks can be told apart
+    ThreadInfo[] threadInfos = threadMXBean.getThreadInfo(threadIds, stackDepth + 1);
+    long sampled = System.nanoTime();
+    Instant time = Instant.now();
+    Duration samplePeriod = callStackInterval.at(time);
+
+    for (int i = 0; i < threadInfos.length; i++) {
+      ThreadInfo threadInfo = threadInfos[i];
+      if (threadInfo == null) {
+        // the thread has ended
+        if (onlyTracingSpans) {
+          activeSpanThreads.remove(threadIds[i]);
+        }
+        continue;
+      }
+      StackTraceElement[] stackTrace = threadInfo.getStackTrace();
+      if (!stackTraceFilter.test(threadInfo.getThreadName(), stackTrace)) {
+        continue;
+      }
+      SpanContext spanContext = activeSpanThreads.get(threadInfo.getThreadId());
+      if (onlyTracingSpans && !spanContext.isValid()) {
+        continue;
+      }
+      cpuEventExporter.export(
+          threadInfo.getThreadId(),
+          threadInfo.getThreadName(),
+          threadInfo.getThreadState(),
+          stackTrace,
+          time,
+          spanContext.getTraceId(),
+          spanContext.getSpanId(),
+          samplePeriod);
+    }
+
+    sampleCount++;
+    samplingTime += sampled - start;
+    processingTime += System.nanoTime() - sampled;
+  }
+
+  // Exists for testing
+  void flush() {
+    long start = System.nanoTime();
+    cpuEventExporter.flush();
+    processingTime += System.nanoTime() - start;
+    if (!onlyTracingSpans) {
+      removeEndedThreads();
+    }
+
+    logger.log(
+        FINE,
+        "Took {0} call stack samples in {1}ms",
+        new Object[] {sampleCount, TimeUnit.NANOSECONDS.toMillis(samplingTime)});
+    if (intervalController != null) {
+      intervalController.update(sampleCount, samplingTime, processingTime);
+    }
+    sampleCount = 0;
+    samplingTime = 0;
+    processingTime = 0;
+  }
+
+  // a thread can end while a span is active on it, only sampled threads are checked otherwise
+  private void removeEndedThreads() {
+    if (activeSpanThreads.isEmpty()) {
+      return;
+    }
+    activeThreadIds = activeSpanThreads.getThreadIds(activeThreadIds);
+    long[] threadIds = activeThreadIds;
+    // without stack frames this does not need to stop the threads
+    ThreadInfo[] threadInfos = threadMXBean.getThreadInfo(threadIds, 0);
+    for (int i = 0; i < threadInfos.length; i++) {
+      if (threadInfos[i] == null) {
+        activeSpanThreads.remove(threadIds[i]);
+      }
+    }
+  }
+
+  static Builder builder() {
+    return new Builder();
+  }
+
+  static class Builder {
+    private ThreadMXBean threadMXBean = ManagementFactory.getThreadMXBean();
+    private ActiveSpanThreads activeSpanThreads = ActiveSpanThreads.instance;
+    private CpuEventExporter cpuEventExporter;
+    private StackTraceFilter stackTraceFilter;
+    private boolean onlyTracingSpans;
+    private int stackDepth;
+    private CallStackInterval callStackInterval;
+    private Duration exportInterval;
+    private CallStackIntervalController intervalController;
+    private ScheduledExecutorService executor;
+
+    Builder threadMXBean(ThreadMXBean threadMXBean) {
+      this.threadMXBean = threadMXBean;
+      return this;
+    }
+
+    Builder activeSpanThreads(ActiveSpanThreads activeSpanThreads) {
+      this.activeSpanThreads = activeSpanThreads;
+      return this;
+    }
+
+    Builder cpuEventExporter(CpuEventExporter cpuEventExporter) {
+      this.cpuEventExporter = cpuEventExporter;
+      return this;
+    }
+
+    Builder stackTraceFilter(StackTraceFilter stackTraceFilter) {
+      this.stackTraceFilter = stackTraceFilter;
+      return this;
+    }
+
+    Builder onlyTracingSpans(boolean onlyTracingSpans) {
+      this.onlyTracingSpans = onlyTracingSpans;
+      return this;
+    }
+
+    Builder stackDepth(int stackDepth) {
+      this.stackDepth = stackDepth;
+      return this;
+    }
+
+    Builder callStackInterval(CallStackInterval callStackInterval) {
+      this.callStackInterval = callStackInterval;
+      return this;
+    }
+
+    /** How often the sampled stacks are exported. */
+    Builder exportInterval(Duration exportInterval) {
+      this.exportInterval = exportInterval;
+      return this;
+    }
+
+    /** Adapts the call stack interval to the cost of sampling, may be null. */
+    Builder intervalController(@Nullable CallStackIntervalController intervalController) {
+      this.intervalController = intervalController;
+      return this;
+    }
+
+    Builder executor(ScheduledExecutorService executor) {
+      this.executor = executor;
+      return this;
+    }
+
+    ThreadInfoSampler build() {
+      if (executor == null) {
+        executor = HelpfulExecutors.newSingleThreadedScheduledExecutor(THREAD_NAME);
+      }
+      return new ThreadInfoSampler(this);
+    }
+  }
+}
@@ -0,0 +1,137 @@
+/*
+ * Copyright Splunk Inc.
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+
+package com.splunk.opentelemetry.profiler;
+
+import java.util.Arrays;
+import java.util.Comparator;
+import java.util.List;
+import java.util.function.Consumer;
+import java.util.function.ToLongFunction;
+import org.openjdk.jmc.common.item.IItem;
+
+/**
+ * Merges several event arrays, each of which is ordered by start time, into a single time ordered
+ * sequence without copying the events into an intermediate buffer. Memory used by the merge is
+ * proportional to the number of arrays, not to the number of events, but the arrays themselves
+ * still hold every event of the chunk, so overall memory grows with the chunk size. Events with
+ * equal start time are emitted in the order of the arrays they come from, which matches a stable
+ * sort of the concatenated arrays.
+ */
+class TimeOrderedEventMerger {
+
+  private final List<IItem[]> arrays;
+  private final ToLongFunction<IItem> startTime;
+
+  TimeOrderedEventMerger(List<IItem[]> arrays, ToLongFunction<IItem> startTime) {
+    this.arrays = arrays;
+    this.startTime = startTime;
+  }
+
+  /**
+   * Sorts the array in place by start time unless it is already sorted. The arrays are owned by
+   * the JMC {@code EventArray} of the chunk being loaded, which builds them for this load only and
+   * does not rely on their order, so they are sorted without making a copy.
+   */
+  static void ensureSorted(IItem[] events, ToLongFunction<IItem> startTime) {
+    long previous = Long.MIN_VALUE;
+    for (IItem event : events) {
+      long time = startTime.applyAsLong(event);
+      if (time < previous) {
+        Arrays.sort(events, Comparator.comparingLong(startTime));
+        return;
+      }
+      previous = time;
+    }
+  }
+
+  void forEach(Consumer<IItem> consumer) {
+    int arrayCount = arrays.size();
+    // position of the next unconsumed event in each array
+    int[] positions = new int[arrayCount];
+    // start time of the next unconsumed event in each array
+    long[] heads = new long[arrayCount];
+    // binary min heap of array indexes ordered by (head time, array index)
+    int[] heap = new int[arrayCount];
+    int heapSize = 0;
+
+    for (int i = 0; i < arrayCount; i++) {
+      IItem[] events = arrays.get(i);
+      if (events.length == 0) {
+        continue;
+      }
+      heads[i] = startTime.applyAsLong(events[0]);
+      heap[heapSize] = i;
+      siftUp(heap, heapSize, heads);
+      heapSize++;
+    }
+
+    while (heapSize > 0) {
+      int arrayIndex = heap[0];
+      IItem[] events = arrays.get(arrayIndex);
+      consumer.accept(events[positions[arrayIndex]]);
+
+      int next = ++positions[arrayIndex];
+      if (next < events.length) {
+        heads[arrayIndex] = startTime.applyAsLong(events[next]);
+      } else {
+        heapSize--;
+        heap[0] = heap[heapSize];
+      }
+      siftDown(heap, heapSize, heads);
+    }
+  }
+
+  private static boolean less(int a, int b, long[] heads) {
+    return heads[a] < heads[b] || (heads[a] == heads[b] && a < b);
+  }
+
+  private static void siftUp(int[] heap, int index, long[] heads) {
+    int value = heap[index];
+    while (index > 0) {
+      int parent = (index - 1) >>> 1;
+      if (!less(value, heap[parent], heads)) {
+        break;
+      }
+      heap[index] = heap[parent];
+      index = parent;
+    }
+    heap[index] = value;
+  }
+
+  private static void siftDown(int[] heap, int size, long[] heads) {
+    if (size == 0) {
+      return;
+    }
+    int index = 0;
+    int value = heap[0];
+    while (true) {
+      int child = 2 * index + 1;
+      if (child >= size) {
+        break;
+      }
+      if (child + 1 < size && less(heap[child + 1], heap[child], heads)) {
+        child++;
+      }
+      if (!less(heap[child], value, heads)) {
+        break;
+      }
+      heap[index] = heap[child];
+      index = child;
+    }
+    heap[index] = value;
+  }
+}
@@ -33,11 +33,14 @@ import com.splunk.opentelemetry.profiler.InstrumentationSource;
 import com.splunk.opentelemetry.profiler.ProfilingDataType;
 import com.splunk.opentelemetry.profiler.allocation.sampler.AllocationEventSampler;
 import com.splunk.opentelemetry.profiler.exporter.PprofLogDataExporter;
+import com.splunk.opentelemetry.profiler.pprof.FrameInterner;
 import com.splunk.opentelemetry.profiler.pprof.Pprof;
+import com.splunk.opentelemetry.profiler.pprof.PprofFormat;
 import io.opentelemetry.api.logs.Logger;
 import io.opentelemetry.api.trace.SpanContext;
 import java.time.Instant;
-import org.openjdk.jmc.common.IMCMethod;
+import java.util.List;
+import org.openjdk.jmc.common.IMCFrame;
 import org.openjdk.jmc.common.IMCStackTrace;
 import org.openjdk.jmc.common.IMCThread;
 import org.openjdk.jmc.common.item.IItem;
@@ -46,6 +49,7 @@ public class PprofAllocationEventExporter implements AllocationEventExporter {
   private final EventReader eventReader;
   private final PprofLogDataExporter pprofLogDataExporter;
   private final int stackDepth;
+  private final FrameInterner frameInterner = new FrameInterner();
   private Pprof pprof = createPprof();
 
   private PprofAllocationEventExporter(Builder builder) {
@@ -53,7 +57,10 @@ public class PprofAllocationEventExporter implements AllocationEventExporter {
     this.stackDepth = builder.stackDepth;
     this.pprofLogDataExporter =
         new PprofLogDataExporter(
-            builder.otelLogger, ProfilingDataType.ALLOCATION, InstrumentationSource.CONTINUOUS);
+            builder.otelLogger,
+            ProfilingDataType.ALLOCATION,
+            InstrumentationSource.CONTINUOUS,
+            builder.pprofFormat);
   }
 
   @Override
@@ -74,39 +81,17 @@ public class PprofAllocationEventExporter implements AllocationEventExporter {
     Sample.Builder sample = Sample.newBuilder();
     sample.addValue(allocationSize);
 
-    if (stackTrace.getTruncationState().isTruncated()
-        || stackTrace.getFrames().size() > stackDepth) {
+    List<? extends IMCFrame> frames = stackTrace.getFrames();
+    if (stackTrace.getTruncationState().isTruncated() || frames.size() > stackDepth) {
       pprof.addLabel(sample, THREAD_STACK_TRUNCATED, true);
     }
 
-    stackTrace.getFrames().stream()
-        // limit the number of stack frames in case jfr stack depth is greater than our stack depth
-        // truncate the bottom stack frames the same way as jfr
-        .limit(stackDepth)
-        .forEachOrdered(
-            frame -> {
-              IMCMethod method = frame.getMethod();
-              if (method == null) {
-                sample.addLocationId(pprof.getLocationId("unknown", "unknown", "unknown", 0));
-              } else {
-                String className = method.getType().getFullName();
-                if (className == null) {
-                  className = "unknown";
-                }
-                String methodName = method.getMethodName();
-                if (methodName == null) {
-                  methodName = "unknown";
-                }
-                Integer lineNumber = frame.getFrameLineNumber();
-                sample.addLocationId(
-                    pprof.getLocationId(
-                        "unknown", // file name is not known
-                        className,
-                        methodName,
-                        lineNumber != null && lineNumber != -1 ? lineNumber : 0));
-              }
-              pprof.incFrameCount();
-            });
+    // truncate the bottom stack frames the same way as jfr
+    int frameCount = Math.min(stackDepth, frames.size());
+    for (int i = 0; i < frameCount; i++) {
+      sample.addLocationId(pprof.getLocationId(frameInterner.intern(frames.get(i))));
+      pprof.incFrameCount();
+    }
 
     String eventName = event.getType().getIdentifier();
     pprof.addLabel(sample, SOURCE_EVENT_NAME, eventName);
@@ -146,12 +131,6 @@ public class PprofAllocationEventExporter implements AllocationEventExporter {
     return pprof;
   }
 
-  private byte[] serializePprof() {
-    byte[] result = pprof.serialize();
-    pprof = createPprof();
-    return result;
-  }
-
   @Override
   public void flush() {
     if (!pprof.hasSamples()) {
@@ -159,8 +138,8 @@ public class PprofAllocationEventExporter implements AllocationEventExporter {
     }
     int frameCount = pprof.frameCount();
     // Flush is called after each JFR chunk, hopefully this will keep batch sizes small enough.
-    byte[] bytes = serializePprof();
-    pprofLogDataExporter.export(bytes, frameCount);
+    pprofLogDataExporter.export(pprof, frameCount);
+    pprof = createPprof();
   }
 
   public static Builder builder() {
@@ -171,6 +150,7 @@ public class PprofAllocationEventExporter implements AllocationEventExporter {
     private EventReader eventReader;
     private Logger otelLogger;
     private int stackDepth;
+    private PprofFormat pprofFormat = PprofFormat.getDefault();
 
     public PprofAllocationEventExporter build() {
       return new PprofAllocationEventExporter(this);
@@ -190,5 +170,10 @@ public class PprofAllocationEventExporter implements AllocationEventExporter {
       this.stackDepth = stackDepth;
       return this;
     }
+
+    public Builder pprofFormat(PprofFormat pprofFormat) {
+      this.pprofFormat = pprofFormat;
+      return this;
+    }
   }
 }
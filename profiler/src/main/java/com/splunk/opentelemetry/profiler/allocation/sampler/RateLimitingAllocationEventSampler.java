@@ -71,6 +71,11 @@ public class RateLimitingAllocationEventSampler implements AllocationEventSample
     updateSampler(probability);
   }
 
+  /** Keeps every event until the sampler is updated with an observed event rate. */
+  public void sampleAll() {
+    updateSampler(1.0);
+  }
+
   @VisibleForTesting
   public void updateSampler(double probability) {
     delegate = new ProbabilisticAllocationEventSampler(probability);
@@ -0,0 +1,146 @@
+/*
+ * Copyright Splunk Inc.
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+
+package com.splunk.opentelemetry.profiler.context;
+
+import java.util.function.Consumer;
+import java.util.function.Predicate;
+
+/**
+ * Open addressing hash map from primitive long keys, such as thread ids, to non null values.
+ * Unlike a {@code HashMap<Long, V>} lookups don't box the key and don't allocate. Reading is safe
+ * from several threads at once while the map is not modified. This class is not thread safe.
+ */
+class LongObjectMap<V> {
+  private static final int INITIAL_CAPACITY = 64;
+
+  private long[] keys;
+  // a null value marks an empty slot
+  private Object[] values;
+  private int shift;
+  private int size;
+
+  LongObjectMap() {
+    allocate(INITIAL_CAPACITY);
+  }
+
+  private void allocate(int capacity) {
+    keys = new long[capacity];
+    values = new Object[capacity];
+    shift = 64 - Integer.numberOfTrailingZeros(capacity);
+  }
+
+  @SuppressWarnings("unchecked")
+  V get(long key) {
+    int mask = keys.length - 1;
+    int slot = slot(key);
+    while (true) {
+      Object value = values[slot];
+      if (value == null || keys[slot] == key) {
+        return (V) value;
+      }
+      slot = (slot + 1) & mask;
+    }
+  }
+
+  void put(long key, V value) {
+    if (value == null) {
+      throw new NullPointerException("value");
+    }
+    int slot = find(key);
+    if (values[slot] == null) {
+      keys[slot] = key;
+      size++;
+    }
+    values[slot] = value;
+    // keep load factor below 0.5
+    if (size * 2 > keys.length) {
+      resize(keys.length * 2);
+    }
+  }
+
+  /** Removes the entries whose value matches the predicate. */
+  @SuppressWarnings("unchecked")
+  void removeIf(Predicate<V> predicate) {
+    long[] oldKeys = keys;
+    Object[] oldValues = values;
+    int removed = 0;
+    for (int i = 0; i < oldValues.length; i++) {
+      if (oldValues[i] != null && predicate.test((V) oldValues[i])) {
+        oldValues[i] = null;
+        removed++;
+      }
+    }
+    if (removed == 0) {
+      return;
+    }
+    // removing from a linear probing table breaks probe sequences, rehash the remaining entries
+    int capacity = keys.length;
+    while (capacity > INITIAL_CAPACITY && (size - removed) * 8 < capacity) {
+      capacity /= 2;
+    }
+    allocate(capacity);
+    size = 0;
+    for (int i = 0; i < oldValues.length; i++) {
+      if (oldValues[i] != null) {
+        int slot = find(oldKeys[i]);
+        keys[slot] = oldKeys[i];
+        values[slot] = oldValues[i];
+        size++;
+      }
+    }
+  }
+
+  @SuppressWarnings("unchecked")
+  void forEachValue(Consumer<V> consumer) {
+    for (Object value : values) {
+      if (value != null) {
+        consumer.accept((V) value);
+      }
+    }
+  }
+
+  int size() {
+    return size;
+  }
+
+  private int find(long key) {
+    int mask = keys.length - 1;
+    int slot = slot(key);
+    while (values[slot] != null && keys[slot] != key) {
+      slot = (slot + 1) & mask;
+    }
+    return slot;
+  }
+
+  private int slot(long key) {
+    // fibonacci hashing spreads sequential ids over the table
+    return (int) ((key * 0x9E3779B97F4A7C15L) >>> shift);
+  }
+
+  private void resize(int capacity) {
+    long[] oldKeys = keys;
+    Object[] oldValues = values;
+    allocate(capacity);
+    for (int i = 0; i < oldValues.length; i++) {
+      if (oldValues[i] != null) {
+        int slot = find(oldKeys[i]);
+        keys[slot] = oldKeys[i];
+        values[slot] = oldValues[i];
+      }
+    }
+  }
+}
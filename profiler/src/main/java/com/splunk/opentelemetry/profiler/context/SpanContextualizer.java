@@ -21,24 +21,28 @@ import static java.util.logging.Level.FINE;
 
 import com.splunk.opentelemetry.profiler.EventReader;
 import com.splunk.opentelemetry.profiler.ThreadDumpRegion;
-import io.opentelemetry.api.trace.SpanContext;
-import io.opentelemetry.api.trace.TraceFlags;
-import io.opentelemetry.api.trace.TraceState;
-import java.util.HashMap;
-import java.util.Map;
+import com.splunk.opentelemetry.profiler.events.BinaryContextAttached;
+import com.splunk.opentelemetry.profiler.util.Base16;
+import io.opentelemetry.api.trace.SpanId;
+import io.opentelemetry.api.trace.TraceId;
 import java.util.logging.Logger;
 import org.openjdk.jmc.common.IMCThread;
 import org.openjdk.jmc.common.item.IItem;
 
 /**
  * Keeps track of span scope changes and, when applicable, can wrap the RecordedEvent with span
- * context information. This class is not thread safe.
+ * context information. Context changes are indexed by thread and time, so that an event is linked
+ * to the span that was active on its thread when the event happened. Context and other events
+ * therefore don't need to be processed in time order, and context that was set in one chunk is
+ * still available to events of the next one until {@link #removeContextBefore(long)} is called.
+ * This class is not thread safe, but the link methods may be called from several threads at once
+ * while the context is not being updated.
  */
 public class SpanContextualizer {
 
   private static final Logger logger = Logger.getLogger(SpanContextualizer.class.getName());
 
-  private final Map<Long, SpanLinkage> threadSpans = new HashMap<>();
+  private final LongObjectMap<ThreadContextTimeline> threadContexts = new LongObjectMap<>();
   private final StackDescriptorLineParser descriptorParser = new StackDescriptorLineParser();
 
   private final EventReader eventReader;
@@ -48,8 +52,8 @@ public class SpanContextualizer {
   }
 
   /**
-   * This updates the tracked thread context for a given span. This must only be called with
-   * ContextAttached events.
+   * This records a change of the tracked thread context at the start time of the event. This must
+   * only be called with ContextAttached or BinaryContextAttached events.
    */
   public void updateContext(IItem event) {
     // jdk 17 doesn't report thread for events that happened on a thread that has terminated by now
@@ -57,46 +61,95 @@ public class SpanContextualizer {
     if (eventThread == null) {
       return;
     }
-    String traceId = eventReader.getTraceId(event);
-    String spanId = eventReader.getSpanId(event);
     long javaThreadId = eventThread.getThreadId();
+    long time = eventReader.getStartTime(event);
+    ThreadContextTimeline timeline = threadContexts.get(javaThreadId);
+    if (timeline == null) {
+      timeline = new ThreadContextTimeline(javaThreadId);
+      threadContexts.put(javaThreadId, timeline);
+    }
 
-    if (logger.isLoggable(FINE)) {
-      logger.log(
-          FINE,
-          "Set thread context: [{0}] {1} {2} at {3}",
-          new Object[] {javaThreadId, traceId, spanId, eventReader.getStartInstant(event)});
+    if (BinaryContextAttached.EVENT_NAME.equals(event.getType().getIdentifier())) {
+      // ids are already numbers, all zero ids mean that no span is active
+      long traceIdHigh = eventReader.getTraceIdHigh(event);
+      long traceIdLow = eventReader.getTraceIdLow(event);
+      long spanId = eventReader.getSpanIdAsLong(event);
+      if (logger.isLoggable(FINE)) {
+        String traceId = TraceId.fromLongs(traceIdHigh, traceIdLow);
+        logContextChange(event, javaThreadId, traceId, SpanId.fromLong(spanId));
+      }
+      timeline.add(time, traceIdHigh, traceIdLow, spanId, eventReader.getTraceFlags(event));
+      return;
     }
 
-    if (traceId == null || spanId == null) {
-      threadSpans.remove(javaThreadId);
+    String traceId = eventReader.getTraceId(event);
+    String spanId = eventReader.getSpanId(event);
+    if (logger.isLoggable(FINE)) {
+      logContextChange(event, javaThreadId, traceId, spanId);
+    }
+    if (traceId == null || spanId == null || !TraceId.isValid(traceId) || !SpanId.isValid(spanId)) {
+      timeline.add(time, 0, 0, 0, (byte) 0);
     } else {
-      TraceFlags traceFlags = TraceFlags.fromByte(eventReader.getTraceFlags(event));
-      SpanContext spanContext =
-          SpanContext.create(traceId, spanId, traceFlags, TraceState.getDefault());
-      SpanLinkage linkage = new SpanLinkage(spanContext, javaThreadId);
-      threadSpans.put(javaThreadId, linkage);
+      timeline.add(
+          time,
+          Base16.decodeLong(traceId, 0),
+          Base16.decodeLong(traceId, 16),
+          Base16.decodeLong(spanId, 0),
+          eventReader.getTraceFlags(event));
     }
   }
 
+  private void logContextChange(IItem event, long threadId, String traceId, String spanId) {
+    logger.log(
+        FINE,
+        "Set thread context: [{0}] {1} {2} at {3}",
+        new Object[] {threadId, traceId, spanId, eventReader.getStartInstant(event)});
+  }
+
   /**
-   * Parses the thread info from the specified range of the wall of stacks, and returns the linkage
-   * info for the thread referenced by that stack.
+   * Forgets context changes that are not needed to link events that happened at or after the
+   * given time. Threads that have no span context at that time are forgotten completely.
+   */
+  public void removeContextBefore(long time) {
+    threadContexts.removeIf(timeline -> !timeline.removeBefore(time));
+  }
+
+  /**
+   * Parses the thread info from the specified range of the wall of stacks, and returns the latest
+   * linkage info for the thread referenced by that stack.
    */
   public SpanLinkage link(ThreadDumpRegion stack) {
-    // Many GC and other VM threads don't actually have a stack...
-    if (isStacklessThread(stack)) {
-      return SpanLinkage.NONE;
-    }
-    long threadId = descriptorParser.parseThreadId(stack);
-    if (threadId == CANT_PARSE_THREAD_ID) {
-      return SpanLinkage.NONE;
-    }
-    return link(threadId);
+    long threadId = parseThreadId(stack);
+    return threadId == CANT_PARSE_THREAD_ID ? SpanLinkage.NONE : link(threadId);
+  }
+
+  /**
+   * Parses the thread info from the specified range of the wall of stacks, and returns the linkage
+   * info for the thread referenced by that stack at the given event start time.
+   */
+  public SpanLinkage link(ThreadDumpRegion stack, long time) {
+    long threadId = parseThreadId(stack);
+    return threadId == CANT_PARSE_THREAD_ID ? SpanLinkage.NONE : link(threadId, time);
   }
 
+  /** Returns the latest linkage info for the thread. */
   public SpanLinkage link(long threadId) {
-    return threadSpans.getOrDefault(threadId, SpanLinkage.NONE);
+    ThreadContextTimeline timeline = threadContexts.get(threadId);
+    return timeline == null ? SpanLinkage.NONE : timeline.latest();
+  }
+
+  /** Returns the linkage info for the thread at the given event start time. */
+  public SpanLinkage link(long threadId, long time) {
+    ThreadContextTimeline timeline = threadContexts.get(threadId);
+    return timeline == null ? SpanLinkage.NONE : timeline.linkageAt(time);
+  }
+
+  private long parseThreadId(ThreadDumpRegion stack) {
+    // Many GC and other VM threads don't actually have a stack...
+    if (isStacklessThread(stack)) {
+      return CANT_PARSE_THREAD_ID;
+    }
+    return descriptorParser.parseThreadId(stack);
   }
 
   private boolean isStacklessThread(ThreadDumpRegion stack) {
@@ -108,6 +161,13 @@ public class SpanContextualizer {
 
   // Exists for testing
   int inFlightThreadCount() {
-    return threadSpans.size();
+    int[] count = new int[1];
+    threadContexts.forEachValue(
+        timeline -> {
+          if (timeline.hasContext()) {
+            count[0]++;
+          }
+        });
+    return count[0];
   }
 }
@@ -53,10 +53,22 @@ class StackDescriptorLineParser {
     if (secondSpace == -1) {
       return CANT_PARSE_THREAD_ID;
     }
-    try {
-      return Long.parseLong(threadDump.substring(firstSpaceAfterSecondQuote + 2, secondSpace));
-    } catch (NumberFormatException e) {
+    return parseDecimal(threadDump, firstSpaceAfterSecondQuote + 2, secondSpace);
+  }
+
+  // parses in place instead of Long.parseLong(substring) to not allocate for every stack
+  private static long parseDecimal(String text, int start, int end) {
+    if (start >= end || end - start > 18) {
       return CANT_PARSE_THREAD_ID;
     }
+    long result = 0;
+    for (int i = start; i < end; i++) {
+      char c = text.charAt(i);
+      if (c < '0' || c > '9') {
+        return CANT_PARSE_THREAD_ID;
+      }
+      result = result * 10 + (c - '0');
+    }
+    return result;
   }
 }
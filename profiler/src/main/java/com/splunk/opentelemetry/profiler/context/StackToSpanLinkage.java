@@ -22,14 +22,32 @@ import java.time.Instant;
 /** A wrapper for a RecordedEvent that may or may not have accompanying span information. */
 public class StackToSpanLinkage {
   private final Instant time;
-  private final String rawStack;
+  private final String threadDump;
+  private final int stackStart;
+  private final int stackEnd;
   private final String sourceEventName;
   private final SpanLinkage spanLinkage;
 
   public StackToSpanLinkage(
       Instant time, String rawStack, String sourceEventName, SpanLinkage spanLinkage) {
+    this(time, rawStack, 0, rawStack.length(), sourceEventName, spanLinkage);
+  }
+
+  /**
+   * Creates a linkage for the stack located between {@code stackStart} and {@code stackEnd} in the
+   * given thread dump, without copying the stack out of the thread dump.
+   */
+  public StackToSpanLinkage(
+      Instant time,
+      String threadDump,
+      int stackStart,
+      int stackEnd,
+      String sourceEventName,
+      SpanLinkage spanLinkage) {
     this.time = time;
-    this.rawStack = rawStack;
+    this.threadDump = threadDump;
+    this.stackStart = stackStart;
+    this.stackEnd = stackEnd;
     this.sourceEventName = sourceEventName;
     this.spanLinkage = spanLinkage;
   }
@@ -43,7 +61,23 @@ public class StackToSpanLinkage {
   }
 
   public String getRawStack() {
-    return rawStack;
+    if (stackStart == 0 && stackEnd == threadDump.length()) {
+      return threadDump;
+    }
+    return threadDump.substring(stackStart, stackEnd);
+  }
+
+  /** Returns the string containing the stack, the stack is between start and end index. */
+  public String getThreadDump() {
+    return threadDump;
+  }
+
+  public int getStackStart() {
+    return stackStart;
+  }
+
+  public int getStackEnd() {
+    return stackEnd;
   }
 
   public SpanContext getSpanContext() {
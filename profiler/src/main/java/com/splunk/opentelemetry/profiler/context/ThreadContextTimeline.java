@@ -0,0 +1,158 @@
+/*
+ * Copyright Splunk Inc.
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+
+package com.splunk.opentelemetry.profiler.context;
+
+import io.opentelemetry.api.trace.SpanContext;
+import io.opentelemetry.api.trace.SpanId;
+import io.opentelemetry.api.trace.TraceFlags;
+import io.opentelemetry.api.trace.TraceId;
+import io.opentelemetry.api.trace.TraceState;
+import java.util.Arrays;
+
+/**
+ * Context changes of a single thread ordered by time. Each change is kept as primitive values, the
+ * {@link SpanLinkage} for a change is only created when a stack is linked to it, most context
+ * changes are never sampled. A change with all zero ids means that the thread has no span context.
+ * Reading is safe from several threads at once while no changes are added.
+ */
+class ThreadContextTimeline {
+  private static final int INITIAL_CAPACITY = 4;
+
+  private final long threadId;
+  private long[] times = new long[INITIAL_CAPACITY];
+  private long[] traceIdHigh = new long[INITIAL_CAPACITY];
+  private long[] traceIdLow = new long[INITIAL_CAPACITY];
+  private long[] spanIds = new long[INITIAL_CAPACITY];
+  private byte[] traceFlags = new byte[INITIAL_CAPACITY];
+  private SpanLinkage[] linkages = new SpanLinkage[INITIAL_CAPACITY];
+  private int size;
+
+  ThreadContextTimeline(long threadId) {
+    this.threadId = threadId;
+  }
+
+  /** Adds a context change, keeping the changes ordered by time. */
+  void add(long time, long traceIdHigh, long traceIdLow, long spanId, byte traceFlags) {
+    if (size == times.length) {
+      grow();
+    }
+    // changes usually arrive in time order, if not find the place for this one
+    int index = size;
+    while (index > 0 && times[index - 1] > time) {
+      index--;
+    }
+    if (index < size) {
+      shift(index, index + 1, size - index);
+    }
+    this.times[index] = time;
+    this.traceIdHigh[index] = traceIdHigh;
+    this.traceIdLow[index] = traceIdLow;
+    this.spanIds[index] = spanId;
+    this.traceFlags[index] = traceFlags;
+    this.linkages[index] = null;
+    size++;
+  }
+
+  /** Returns the context that was active at the given time. */
+  SpanLinkage linkageAt(long time) {
+    // find the last change at or before the given time
+    int low = 0;
+    int high = size - 1;
+    while (low <= high) {
+      int middle = (low + high) >>> 1;
+      if (times[middle] <= time) {
+        low = middle + 1;
+      } else {
+        high = middle - 1;
+      }
+    }
+    return high >= 0 ? linkage(high) : SpanLinkage.NONE;
+  }
+
+  /** Returns the context set by the latest change. */
+  SpanLinkage latest() {
+    return size > 0 ? linkage(size - 1) : SpanLinkage.NONE;
+  }
+
+  boolean hasContext() {
+    return size > 0 && isValid(size - 1);
+  }
+
+  /**
+   * Removes the changes that are no longer needed to link events at or after the given time. The
+   * last change before that time is kept. Returns false when the thread has no context left.
+   */
+  boolean removeBefore(long time) {
+    int first = 0;
+    while (first + 1 < size && times[first + 1] <= time) {
+      first++;
+    }
+    if (first > 0) {
+      shift(first, 0, size - first);
+      Arrays.fill(linkages, size - first, size, null);
+      size -= first;
+    }
+    return size > 1 || hasContext();
+  }
+
+  int size() {
+    return size;
+  }
+
+  private SpanLinkage linkage(int index) {
+    SpanLinkage linkage = linkages[index];
+    if (linkage == null) {
+      if (!isValid(index)) {
+        linkage = SpanLinkage.NONE;
+      } else {
+        SpanContext spanContext =
+            SpanContext.create(
+                TraceId.fromLongs(traceIdHigh[index], traceIdLow[index]),
+                SpanId.fromLong(spanIds[index]),
+                TraceFlags.fromByte(traceFlags[index]),
+                TraceState.getDefault());
+        linkage = new SpanLinkage(spanContext, threadId);
+      }
+      // racing readers create equal linkages, it does not matter which one is kept
+      linkages[index] = linkage;
+    }
+    return linkage;
+  }
+
+  private boolean isValid(int index) {
+    return (traceIdHigh[index] != 0 || traceIdLow[index] != 0) && spanIds[index] != 0;
+  }
+
+  private void shift(int from, int to, int length) {
+    System.arraycopy(times, from, times, to, length);
+    System.arraycopy(traceIdHigh, from, traceIdHigh, to, length);
+    System.arraycopy(traceIdLow, from, traceIdLow, to, length);
+    System.arraycopy(spanIds, from, spanIds, to, length);
+    System.arraycopy(traceFlags, from, traceFlags, to, length);
+    System.arraycopy(linkages, from, linkages, to, length);
+  }
+
+  private void grow() {
+    int capacity = times.length * 2;
+    times = Arrays.copyOf(times, capacity);
+    traceIdHigh = Arrays.copyOf(traceIdHigh, capacity);
+    traceIdLow = Arrays.copyOf(traceIdLow, capacity);
+    spanIds = Arrays.copyOf(spanIds, capacity);
+    traceFlags = Arrays.copyOf(traceFlags, capacity);
+    linkages = Arrays.copyOf(linkages, capacity);
+  }
+}
@@ -0,0 +1,67 @@
+/*
+ * Copyright Splunk Inc.
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+
+package com.splunk.opentelemetry.profiler.events;
+
+import static com.splunk.opentelemetry.profiler.events.BinaryContextAttached.EVENT_NAME;
+
+import jdk.jfr.Category;
+import jdk.jfr.Event;
+import jdk.jfr.Label;
+import jdk.jfr.Name;
+import jdk.jfr.StackTrace;
+
+/**
+ * Variant of {@link ContextAttached} that carries the trace and span ids as numbers instead of hex
+ * strings, which makes the event cheaper to commit on application threads and to read back. All
+ * zero ids mean that no span is active.
+ */
+@Name(EVENT_NAME)
+@Label("otel binary context attached")
+@Category("opentelemetry")
+@StackTrace(false)
+public class BinaryContextAttached extends Event {
+
+  public static final String EVENT_NAME = "otel.BinaryContextAttached";
+
+  public final long traceIdHigh;
+  public final long traceIdLow;
+  public final long spanId;
+  public final byte traceFlags;
+
+  public BinaryContextAttached(long traceIdHigh, long traceIdLow, long spanId, byte traceFlags) {
+    this.traceIdHigh = traceIdHigh;
+    this.traceIdLow = traceIdLow;
+    this.spanId = spanId;
+    this.traceFlags = traceFlags;
+  }
+
+  public long getTraceIdHigh() {
+    return traceIdHigh;
+  }
+
+  public long getTraceIdLow() {
+    return traceIdLow;
+  }
+
+  public long getSpanId() {
+    return spanId;
+  }
+
+  public byte getTraceFlags() {
+    return traceFlags;
+  }
+}
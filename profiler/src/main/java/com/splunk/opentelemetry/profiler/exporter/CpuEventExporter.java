@@ -35,4 +35,9 @@ public interface CpuEventExporter {
       Duration duration) {}
 
   default void flush() {}
+
+  /** Exports all remaining data, including data that is held back over several flushes. */
+  default void close() {
+    flush();
+  }
 }
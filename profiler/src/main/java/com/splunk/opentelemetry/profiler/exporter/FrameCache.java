@@ -0,0 +1,173 @@
+/*
+ * Copyright Splunk Inc.
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+
+package com.splunk.opentelemetry.profiler.exporter;
+
+import com.splunk.opentelemetry.profiler.pprof.Pprof;
+
+/**
+ * Bounded cache of parsed stack frames keyed by the text of the frame in a thread dump. Unlike the
+ * tables of a {@link Pprof} the cache is kept across batches, so frames are parsed only once while
+ * they keep showing up. When full, the least recently used frame is evicted. Lookups compare the
+ * region of the thread dump in place, the key string is only extracted when a frame is added. This
+ * class is not thread safe.
+ */
+class FrameCache {
+  private final int maxSize;
+  // open addressing hash table containing entry index + 1, 0 marks an empty slot
+  private final int[] table;
+  private final int mask;
+
+  // entries, linked in least recently used order
+  private final String[] keys;
+  private final int[] hashes;
+  private final Pprof.Frame[] frames;
+  private final int[] previous;
+  private final int[] next;
+  private int head = -1;
+  private int tail = -1;
+  private int size;
+
+  FrameCache(int maxSize) {
+    if (maxSize <= 0) {
+      throw new IllegalArgumentException("maxSize must be positive");
+    }
+    this.maxSize = maxSize;
+    // keep load factor at or below 0.5
+    this.table = new int[Integer.highestOneBit(maxSize) * 4];
+    this.mask = table.length - 1;
+    this.keys = new String[maxSize];
+    this.hashes = new int[maxSize];
+    this.frames = new Pprof.Frame[maxSize];
+    this.previous = new int[maxSize];
+    this.next = new int[maxSize];
+  }
+
+  /** Returns the frame cached for the given region of text, or null when it is not cached. */
+  Pprof.Frame get(String text, int start, int end) {
+    int slot = find(text, start, end, hash(text, start, end));
+    int entry = table[slot] - 1;
+    if (entry < 0) {
+      return null;
+    }
+    if (entry != head) {
+      unlink(entry);
+      linkFirst(entry);
+    }
+    return frames[entry];
+  }
+
+  /** Adds a frame that is not cached yet, evicting the least recently used one when full. */
+  void put(String text, int start, int end, Pprof.Frame frame) {
+    int hash = hash(text, start, end);
+    int entry;
+    if (size == maxSize) {
+      entry = tail;
+      removeSlot(slotOf(entry));
+      unlink(entry);
+    } else {
+      entry = size++;
+    }
+    keys[entry] = text.substring(start, end);
+    hashes[entry] = hash;
+    frames[entry] = frame;
+    linkFirst(entry);
+    table[find(text, start, end, hash)] = entry + 1;
+  }
+
+  int size() {
+    return size;
+  }
+
+  private int find(String text, int start, int end, int hash) {
+    int length = end - start;
+    int slot = hash & mask;
+    while (true) {
+      int entry = table[slot] - 1;
+      if (entry < 0
+          || (hashes[entry] == hash
+              && keys[entry].length() == length
+              && text.regionMatches(start, keys[entry], 0, length))) {
+        return slot;
+      }
+      slot = (slot + 1) & mask;
+    }
+  }
+
+  private int slotOf(int entry) {
+    int slot = hashes[entry] & mask;
+    while (table[slot] != entry + 1) {
+      slot = (slot + 1) & mask;
+    }
+    return slot;
+  }
+
+  // removes a slot from the linear probing table by shifting back the entries that follow it
+  private void removeSlot(int slot) {
+    table[slot] = 0;
+    int current = slot;
+    while (true) {
+      current = (current + 1) & mask;
+      int entry = table[current] - 1;
+      if (entry < 0) {
+        return;
+      }
+      int ideal = hashes[entry] & mask;
+      boolean inPlace =
+          slot <= current ? slot < ideal && ideal <= current : slot < ideal || ideal <= current;
+      if (!inPlace) {
+        table[slot] = table[current];
+        table[current] = 0;
+        slot = current;
+      }
+    }
+  }
+
+  private void linkFirst(int entry) {
+    previous[entry] = -1;
+    next[entry] = head;
+    if (head != -1) {
+      previous[head] = entry;
+    }
+    head = entry;
+    if (tail == -1) {
+      tail = entry;
+    }
+  }
+
+  private void unlink(int entry) {
+    int before = previous[entry];
+    int after = next[entry];
+    if (before != -1) {
+      next[before] = after;
+    } else {
+      head = after;
+    }
+    if (after != -1) {
+      previous[after] = before;
+    } else {
+      tail = before;
+    }
+  }
+
+  private static int hash(String text, int start, int end) {
+    int hash = 0;
+    for (int i = start; i < end; i++) {
+      hash = 31 * hash + text.charAt(i);
+    }
+    return hash ^ (hash >>> 16);
+  }
+}
@@ -27,71 +27,109 @@ import static com.splunk.opentelemetry.profiler.ProfilingSemanticAttributes.THRE
 import static com.splunk.opentelemetry.profiler.ProfilingSemanticAttributes.TRACE_ID;
 
 import com.google.perftools.profiles.ProfileProto.Sample;
+import com.google.perftools.profiles.ProfileProto.ValueType;
+import com.splunk.opentelemetry.profiler.CallStackInterval;
 import com.splunk.opentelemetry.profiler.InstrumentationSource;
 import com.splunk.opentelemetry.profiler.ProfilingDataType;
 import com.splunk.opentelemetry.profiler.context.StackToSpanLinkage;
-import com.splunk.opentelemetry.profiler.exporter.StackTraceParser.StackTrace;
+import com.splunk.opentelemetry.profiler.exporter.StackTraceParser.StackTraceLine;
+import com.splunk.opentelemetry.profiler.pprof.FrameInterner;
 import com.splunk.opentelemetry.profiler.pprof.Pprof;
+import com.splunk.opentelemetry.profiler.pprof.PprofFormat;
 import io.opentelemetry.api.logs.Logger;
 import io.opentelemetry.api.trace.SpanContext;
 import io.opentelemetry.api.trace.SpanId;
 import io.opentelemetry.api.trace.TraceId;
 import java.time.Duration;
 import java.time.Instant;
+import java.util.Arrays;
 
 public class PprofCpuEventExporter implements CpuEventExporter {
-  private final Duration period;
+  static final int DEFAULT_FRAME_CACHE_SIZE = 16384;
+
+  private final CallStackInterval callStackInterval;
   private final int stackDepth;
   private final PprofLogDataExporter pprofLogDataExporter;
-  private Pprof pprof = createPprof();
+  private final StackTraceParser stackTraceParser;
+  private final FrameCache frameCache;
+  private final FrameInterner frameInterner;
+  private final StackTraceParser.FrameConsumer frameConsumer = this::addFrame;
+  // null unless samples without a linked span are aggregated
+  private final SampleAggregator sampleAggregator;
+  // null unless threads of a pool are labeled with the name of the pool
+  private final ThreadPoolNames threadPoolNames;
+  private final int aggregationBatches;
+  private int batchesSinceAggregatedExport;
+  private Pprof pprof;
+  // same as pprof unless aggregated samples are collected over several batches
+  private Pprof aggregatedPprof;
+  // batch that frames of the stack that is being exported are added to
+  private Pprof currentPprof;
+  // location ids of the stack that is being exported
+  private long[] locationIds = new long[64];
+  private int locationCount;
 
   private PprofCpuEventExporter(Builder builder) {
-    this.period = builder.period;
+    this.callStackInterval = builder.callStackInterval;
     this.stackDepth = builder.stackDepth;
     this.pprofLogDataExporter =
         new PprofLogDataExporter(
-            builder.otelLogger, ProfilingDataType.CPU, builder.instrumentationSource);
+            builder.otelLogger,
+            ProfilingDataType.CPU,
+            builder.instrumentationSource,
+            builder.pprofFormat);
+    this.stackTraceParser = new StackTraceParser(stackDepth);
+    this.frameCache = new FrameCache(builder.frameCacheSize);
+    this.frameInterner = new FrameInterner(builder.frameCacheSize);
+    this.sampleAggregator = builder.aggregateStacks ? new SampleAggregator() : null;
+    this.threadPoolNames = builder.threadPoolNames;
+    this.aggregationBatches = builder.aggregationBatches;
+    this.pprof = createPprof();
+    this.aggregatedPprof = aggregationBatches > 1 ? createPprof() : pprof;
   }
 
   @Override
   public void export(StackToSpanLinkage stackToSpanLinkage) {
-    StackTrace stackTrace = StackTraceParser.parse(stackToSpanLinkage.getRawStack(), stackDepth);
-    if (stackTrace == null || stackTrace.getStackTraceLines().isEmpty()) {
+    SpanContext spanContext = stackToSpanLinkage.getSpanContext();
+    boolean hasSpan = spanContext != null && spanContext.isValid();
+    startSample(hasSpan);
+    boolean parsed =
+        stackTraceParser.parse(
+            stackToSpanLinkage.getThreadDump(),
+            stackToSpanLinkage.getStackStart(),
+            stackToSpanLinkage.getStackEnd(),
+            frameConsumer);
+    if (!parsed || locationCount == 0) {
       return;
     }
 
-    Sample.Builder sample = Sample.newBuilder();
-
-    if (stackTrace.getThreadId() != 0) {
-      pprof.addLabel(sample, THREAD_ID, stackTrace.getThreadId());
-      pprof.addLabel(sample, THREAD_NAME, stackTrace.getThreadName());
-    }
-    pprof.addLabel(sample, THREAD_STATE, stackTrace.getThreadState());
-
-    if (stackTrace.isTruncated()) {
-      pprof.addLabel(sample, THREAD_STACK_TRUNCATED, true);
-    }
-
-    for (StackTraceParser.StackTraceLine stl : stackTrace.getStackTraceLines()) {
-      sample.addLocationId(
-          pprof.getLocationId(
-              stl.getLocation(), stl.getClassName(), stl.getMethod(), stl.getLineNumber()));
-      pprof.incFrameCount();
-    }
-
-    String eventName = stackToSpanLinkage.getSourceEventName();
-    pprof.addLabel(sample, SOURCE_EVENT_NAME, eventName);
-    pprof.addLabel(sample, SOURCE_EVENT_PERIOD, period.toMillis());
     Instant time = stackToSpanLinkage.getTime();
-    pprof.addLabel(sample, SOURCE_EVENT_TIME, time.toEpochMilli());
+    addSample(
+        hasSpan,
+        true,
+        stackTraceParser.getThreadId(),
+        stackTraceParser.getThreadName(),
+        stackTraceParser.getThreadState(),
+        stackTraceParser.isTruncated(),
+        stackToSpanLinkage.getSourceEventName(),
+        callStackInterval.at(time).toMillis(),
+        time,
+        hasSpan ? spanContext.getTraceId() : null,
+        hasSpan ? spanContext.getSpanId() : null);
+  }
 
-    SpanContext spanContext = stackToSpanLinkage.getSpanContext();
-    if (spanContext != null && spanContext.isValid()) {
-      pprof.addLabel(sample, TRACE_ID, spanContext.getTraceId());
-      pprof.addLabel(sample, SPAN_ID, spanContext.getSpanId());
+  // adds the frame to the batch of the stack that is being exported
+  private void addFrame(String text, int start, int methodSeparator, int locationStart, int end) {
+    Pprof.Frame frame = frameCache.get(text, start, end);
+    if (frame == null) {
+      StackTraceLine stl =
+          StackTraceParser.parseStackTraceLine(text, start, methodSeparator, locationStart, end);
+      frame =
+          new Pprof.Frame(
+              stl.getLocation(), stl.getClassName(), stl.getMethod(), stl.getLineNumber());
+      frameCache.put(text, start, end, frame);
     }
-
-    pprof.getProfileBuilder().addSample(sample);
+    addLocation(currentPprof.getLocationId(frame));
   }
 
   @Override
@@ -104,62 +142,170 @@ public class PprofCpuEventExporter implements CpuEventExporter {
       String traceId,
       String spanId,
       Duration duration) {
-    Sample.Builder sample = Sample.newBuilder();
+    boolean hasSpan = TraceId.isValid(traceId);
+    startSample(hasSpan);
+    for (int i = 0; i < Math.min(stackDepth, stackTrace.length); i++) {
+      addLocation(currentPprof.getLocationId(frameInterner.intern(stackTrace[i])));
+    }
 
-    pprof.addLabel(sample, THREAD_ID, threadId);
-    pprof.addLabel(sample, THREAD_NAME, threadName);
-    pprof.addLabel(sample, THREAD_STATE, threadState.name());
+    addSample(
+        hasSpan,
+        false,
+        threadId,
+        threadName,
+        threadState.name(),
+        stackTrace.length > stackDepth,
+        null,
+        duration.toMillis(),
+        eventTime,
+        hasSpan ? traceId : null,
+        SpanId.isValid(spanId) ? spanId : null);
+  }
 
-    if (stackTrace.length > stackDepth) {
-      pprof.addLabel(sample, THREAD_STACK_TRUNCATED, true);
-    }
+  private void startSample(boolean hasSpan) {
+    currentPprof = sampleAggregator != null && !hasSpan ? aggregatedPprof : pprof;
+    locationCount = 0;
+  }
 
-    for (int i = 0; i < Math.min(stackDepth, stackTrace.length); i++) {
-      StackTraceElement ste = stackTrace[i];
+  private void addLocation(long locationId) {
+    if (locationCount == locationIds.length) {
+      locationIds = Arrays.copyOf(locationIds, locationCount * 2);
+    }
+    locationIds[locationCount++] = locationId;
+    currentPprof.incFrameCount();
+  }
 
-      String fileName = ste.getFileName();
-      if (fileName == null) {
-        fileName = "unknown";
+  /**
+   * Adds the sample with the locations collected since {@link #startSample(boolean)}. Samples of
+   * thread dumps only have thread labels when the dump has a thread id, other samples always have
+   * them unless the thread id is dropped for aggregation.
+   */
+  private void addSample(
+      boolean hasSpan,
+      boolean threadDump,
+      long threadId,
+      String threadName,
+      String threadState,
+      boolean truncated,
+      String eventName,
+      long periodMillis,
+      Instant time,
+      String traceId,
+      String spanId) {
+    // samples linked to a span keep their own timestamp and span labels
+    boolean aggregate = sampleAggregator != null && !hasSpan;
+    String poolName = getPoolName(threadName);
+    if (poolName != null) {
+      threadName = poolName;
+      // stacks of threads in the same pool are aggregated into the same sample
+      if (aggregate) {
+        threadId = 0;
       }
-      String className = ste.getClassName();
-      String methodName = ste.getMethodName();
-      int lineNumber = Math.max(ste.getLineNumber(), 0);
-      sample.addLocationId(pprof.getLocationId(fileName, className, methodName, lineNumber));
-      pprof.incFrameCount();
+    }
+    if (aggregate
+        && sampleAggregator.increment(
+            locationIds,
+            locationCount,
+            threadId,
+            threadName,
+            threadState,
+            truncated,
+            eventName,
+            periodMillis)) {
+      return;
+    }
+
+    Sample.Builder sample = Sample.newBuilder();
+    for (int i = 0; i < locationCount; i++) {
+      sample.addLocationId(locationIds[i]);
     }
 
-    pprof.addLabel(sample, SOURCE_EVENT_PERIOD, duration.toMillis());
-    pprof.addLabel(sample, SOURCE_EVENT_TIME, eventTime.toEpochMilli());
+    if (aggregate && poolName != null) {
+      currentPprof.addLabel(sample, THREAD_NAME, poolName);
+    } else if (threadId != 0 || !threadDump) {
+      currentPprof.addLabel(sample, THREAD_ID, threadId);
+      currentPprof.addLabel(sample, THREAD_NAME, threadName);
+    }
+    currentPprof.addLabel(sample, THREAD_STATE, threadState);
 
-    if (TraceId.isValid(traceId)) {
-      pprof.addLabel(sample, TRACE_ID, traceId);
+    if (truncated) {
+      currentPprof.addLabel(sample, THREAD_STACK_TRUNCATED, true);
     }
-    if (SpanId.isValid(spanId)) {
-      pprof.addLabel(sample, SPAN_ID, spanId);
+
+    currentPprof.addLabel(sample, SOURCE_EVENT_NAME, eventName);
+    currentPprof.addLabel(sample, SOURCE_EVENT_PERIOD, periodMillis);
+
+    if (aggregate) {
+      sampleAggregator.add(sample);
+      return;
     }
 
-    pprof.getProfileBuilder().addSample(sample);
+    currentPprof.addLabel(sample, SOURCE_EVENT_TIME, time.toEpochMilli());
+    currentPprof.addLabel(sample, TRACE_ID, traceId);
+    currentPprof.addLabel(sample, SPAN_ID, spanId);
+
+    if (sampleAggregator != null) {
+      sample.addValue(1);
+    }
+    currentPprof.getProfileBuilder().addSample(sample);
   }
 
-  private static Pprof createPprof() {
-    return new Pprof();
+  private String getPoolName(String threadName) {
+    if (threadPoolNames == null || threadName == null) {
+      return null;
+    }
+    return threadPoolNames.getPoolName(threadName);
   }
 
-  private byte[] serializePprof() {
-    byte[] result = pprof.serialize();
-    pprof = createPprof();
-    return result;
+  private Pprof createPprof() {
+    Pprof pprof = new Pprof();
+    if (sampleAggregator != null) {
+      pprof
+          .getProfileBuilder()
+          .addSampleType(
+              ValueType.newBuilder()
+                  .setType(pprof.getStringId("samples"))
+                  .setUnit(pprof.getStringId("count"))
+                  .build());
+    }
+    return pprof;
   }
 
   @Override
   public void flush() {
-    if (!pprof.hasSamples()) {
-      return;
+    flush(false);
+  }
+
+  /** Also exports the aggregated samples of the batches since the last aggregated export. */
+  @Override
+  public void close() {
+    flush(true);
+  }
+
+  private void flush(boolean force) {
+    if (sampleAggregator != null
+        && (force || ++batchesSinceAggregatedExport >= aggregationBatches)) {
+      sampleAggregator.addTo(aggregatedPprof);
+      batchesSinceAggregatedExport = 0;
+      if (aggregatedPprof != pprof) {
+        aggregatedPprof = export(aggregatedPprof);
+      }
     }
-    int frameCount = pprof.frameCount();
+    boolean shared = aggregatedPprof == pprof;
     // Flush is called after each JFR chunk, hopefully this will keep batch sizes small enough.
-    byte[] bytes = serializePprof();
-    pprofLogDataExporter.export(bytes, frameCount);
+    pprof = export(pprof);
+    if (shared) {
+      aggregatedPprof = pprof;
+    }
+  }
+
+  /** Exports the batch when it has samples, returns the batch that should be used next. */
+  private Pprof export(Pprof batch) {
+    if (!batch.hasSamples()) {
+      return batch;
+    }
+    pprofLogDataExporter.export(batch, batch.frameCount());
+    return createPprof();
   }
 
   public static Builder builder() {
@@ -168,8 +314,13 @@ public class PprofCpuEventExporter implements CpuEventExporter {
 
   public static class Builder {
     private Logger otelLogger;
-    private Duration period;
+    private CallStackInterval callStackInterval;
     private int stackDepth;
+    private int frameCacheSize = DEFAULT_FRAME_CACHE_SIZE;
+    private boolean aggregateStacks;
+    private ThreadPoolNames threadPoolNames;
+    private int aggregationBatches = 1;
+    private PprofFormat pprofFormat = PprofFormat.getDefault();
     private InstrumentationSource instrumentationSource = InstrumentationSource.CONTINUOUS;
 
     public PprofCpuEventExporter build() {
@@ -182,7 +333,12 @@ public class PprofCpuEventExporter implements CpuEventExporter {
     }
 
     public Builder period(Duration period) {
-      this.period = period;
+      return callStackInterval(new CallStackInterval(period));
+    }
+
+    /** The period of thread dumps, which changes over time when it is adapted. */
+    public Builder callStackInterval(CallStackInterval callStackInterval) {
+      this.callStackInterval = callStackInterval;
       return this;
     }
 
@@ -191,6 +347,47 @@ public class PprofCpuEventExporter implements CpuEventExporter {
       return this;
     }
 
+    /** Maximum number of converted stack frames kept between batches, per source of frames. */
+    public Builder frameCacheSize(int frameCacheSize) {
+      this.frameCacheSize = frameCacheSize;
+      return this;
+    }
+
+    /**
+     * Aggregate identical stacks that are not linked to a span into a single sample counting their
+     * occurrences. Aggregated samples do not have the source event time label.
+     */
+    public Builder aggregateStacks(boolean aggregateStacks) {
+      this.aggregateStacks = aggregateStacks;
+      return this;
+    }
+
+    /**
+     * Number of batches that aggregated samples are collected over before they are exported.
+     * Samples that are linked to a span are still exported with every batch. Collecting steady
+     * state stacks over several batches exports them, and the frames they reference, once instead
+     * of with every batch. Stacks sampled at different periods are kept in separate samples.
+     */
+    public Builder aggregationBatches(int aggregationBatches) {
+      this.aggregationBatches = aggregationBatches;
+      return this;
+    }
+
+    /**
+     * Label samples of thread pool threads with the name of the pool instead of the name of the
+     * thread. When stacks are aggregated, samples that are not linked to a span drop their thread
+     * id, so that stacks of all threads in a pool end up in the same sample.
+     */
+    public Builder threadPoolNames(ThreadPoolNames threadPoolNames) {
+      this.threadPoolNames = threadPoolNames;
+      return this;
+    }
+
+    public Builder pprofFormat(PprofFormat pprofFormat) {
+      this.pprofFormat = pprofFormat;
+      return this;
+    }
+
     public Builder instrumentationSource(InstrumentationSource instrumentationSource) {
       this.instrumentationSource = instrumentationSource;
       return this;
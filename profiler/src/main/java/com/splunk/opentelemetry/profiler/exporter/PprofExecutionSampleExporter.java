@@ -0,0 +1,182 @@
+/*
+ * Copyright Splunk Inc.
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+
+package com.splunk.opentelemetry.profiler.exporter;
+
+import static com.splunk.opentelemetry.profiler.ProfilingSemanticAttributes.SOURCE_EVENT_NAME;
+import static com.splunk.opentelemetry.profiler.ProfilingSemanticAttributes.SOURCE_EVENT_PERIOD;
+import static com.splunk.opentelemetry.profiler.ProfilingSemanticAttributes.SOURCE_EVENT_TIME;
+import static com.splunk.opentelemetry.profiler.ProfilingSemanticAttributes.SPAN_ID;
+import static com.splunk.opentelemetry.profiler.ProfilingSemanticAttributes.THREAD_ID;
+import static com.splunk.opentelemetry.profiler.ProfilingSemanticAttributes.THREAD_NAME;
+import static com.splunk.opentelemetry.profiler.ProfilingSemanticAttributes.THREAD_STACK_TRUNCATED;
+import static com.splunk.opentelemetry.profiler.ProfilingSemanticAttributes.THREAD_STATE;
+import static com.splunk.opentelemetry.profiler.ProfilingSemanticAttributes.TRACE_ID;
+
+import com.google.perftools.profiles.ProfileProto.Profile;
+import com.google.perftools.profiles.ProfileProto.Sample;
+import com.google.perftools.profiles.ProfileProto.ValueType;
+import com.splunk.opentelemetry.profiler.EventReader;
+import com.splunk.opentelemetry.profiler.InstrumentationSource;
+import com.splunk.opentelemetry.profiler.ProfilingDataType;
+import com.splunk.opentelemetry.profiler.pprof.FrameInterner;
+import com.splunk.opentelemetry.profiler.pprof.Pprof;
+import com.splunk.opentelemetry.profiler.pprof.PprofFormat;
+import io.opentelemetry.api.logs.Logger;
+import io.opentelemetry.api.trace.SpanContext;
+import java.time.Duration;
+import java.time.Instant;
+import java.util.List;
+import org.openjdk.jmc.common.IMCFrame;
+import org.openjdk.jmc.common.IMCStackTrace;
+import org.openjdk.jmc.common.IMCThread;
+import org.openjdk.jmc.common.item.IItem;
+
+/**
+ * Exports stacks of {@code jdk.ExecutionSample} and {@code jdk.NativeMethodSample} events. JFR
+ * samples threads that are running at a fixed period, so unlike thread dumps these samples show
+ * where CPU time is spent. Each sample is weighted with the sampling period as CPU time in
+ * nanoseconds.
+ */
+public class PprofExecutionSampleExporter implements ExecutionSampleExporter {
+  private final EventReader eventReader;
+  private final PprofLogDataExporter pprofLogDataExporter;
+  private final int stackDepth;
+  private final Duration period;
+  private final FrameInterner frameInterner = new FrameInterner();
+  private Pprof pprof;
+
+  private PprofExecutionSampleExporter(Builder builder) {
+    this.eventReader = builder.eventReader;
+    this.stackDepth = builder.stackDepth;
+    this.period = builder.period;
+    this.pprofLogDataExporter =
+        new PprofLogDataExporter(
+            builder.otelLogger,
+            ProfilingDataType.CPU,
+            InstrumentationSource.CONTINUOUS,
+            builder.pprofFormat);
+    this.pprof = createPprof();
+  }
+
+  @Override
+  public void export(IItem event, SpanContext spanContext) {
+    IMCStackTrace stackTrace = eventReader.getStackTrace(event);
+    if (stackTrace == null) {
+      return;
+    }
+
+    Sample.Builder sample = Sample.newBuilder();
+    sample.addValue(period.toNanos());
+
+    List<? extends IMCFrame> frames = stackTrace.getFrames();
+    if (stackTrace.getTruncationState().isTruncated() || frames.size() > stackDepth) {
+      pprof.addLabel(sample, THREAD_STACK_TRUNCATED, true);
+    }
+    // truncate the bottom stack frames the same way as jfr
+    int frameCount = Math.min(stackDepth, frames.size());
+    for (int i = 0; i < frameCount; i++) {
+      sample.addLocationId(pprof.getLocationId(frameInterner.intern(frames.get(i))));
+      pprof.incFrameCount();
+    }
+
+    String eventName = event.getType().getIdentifier();
+    pprof.addLabel(sample, SOURCE_EVENT_NAME, eventName);
+    pprof.addLabel(sample, SOURCE_EVENT_PERIOD, period.toMillis());
+    Instant time = eventReader.getStartInstant(event);
+    pprof.addLabel(sample, SOURCE_EVENT_TIME, time.toEpochMilli());
+
+    IMCThread thread = eventReader.getThread(event);
+    if (thread != null && thread.getThreadId() != null) {
+      pprof.addLabel(sample, THREAD_ID, thread.getThreadId());
+      pprof.addLabel(sample, THREAD_NAME, thread.getThreadName());
+    }
+    pprof.addLabel(sample, THREAD_STATE, "RUNNABLE");
+
+    if (spanContext != null && spanContext.isValid()) {
+      pprof.addLabel(sample, TRACE_ID, spanContext.getTraceId());
+      pprof.addLabel(sample, SPAN_ID, spanContext.getSpanId());
+    }
+
+    pprof.getProfileBuilder().addSample(sample);
+  }
+
+  private Pprof createPprof() {
+    Pprof pprof = new Pprof();
+    Profile.Builder profile = pprof.getProfileBuilder();
+    ValueType cpuTime =
+        ValueType.newBuilder()
+            .setType(pprof.getStringId("cpu"))
+            .setUnit(pprof.getStringId("nanoseconds"))
+            .build();
+    profile.addSampleType(cpuTime);
+    profile.setPeriodType(cpuTime);
+    profile.setPeriod(period.toNanos());
+    return pprof;
+  }
+
+  @Override
+  public void flush() {
+    if (!pprof.hasSamples()) {
+      return;
+    }
+    int frameCount = pprof.frameCount();
+    pprofLogDataExporter.export(pprof, frameCount);
+    pprof = createPprof();
+  }
+
+  public static Builder builder() {
+    return new Builder();
+  }
+
+  public static class Builder {
+    private EventReader eventReader;
+    private Logger otelLogger;
+    private int stackDepth;
+    private Duration period;
+    private PprofFormat pprofFormat = PprofFormat.getDefault();
+
+    public PprofExecutionSampleExporter build() {
+      return new PprofExecutionSampleExporter(this);
+    }
+
+    public Builder eventReader(EventReader eventReader) {
+      this.eventReader = eventReader;
+      return this;
+    }
+
+    public Builder otelLogger(Logger otelLogger) {
+      this.otelLogger = otelLogger;
+      return this;
+    }
+
+    public Builder stackDepth(int stackDepth) {
+      this.stackDepth = stackDepth;
+      return this;
+    }
+
+    /** The sampling period of the execution sample events. */
+    public Builder period(Duration period) {
+      this.period = period;
+      return this;
+    }
+
+    public Builder pprofFormat(PprofFormat pprofFormat) {
+      this.pprofFormat = pprofFormat;
+      return this;
+    }
+  }
+}
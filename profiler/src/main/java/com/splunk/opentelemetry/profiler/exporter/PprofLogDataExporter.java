@@ -20,13 +20,15 @@ import static com.splunk.opentelemetry.profiler.ProfilingSemanticAttributes.DATA
 import static com.splunk.opentelemetry.profiler.ProfilingSemanticAttributes.DATA_TYPE;
 import static com.splunk.opentelemetry.profiler.ProfilingSemanticAttributes.FRAME_COUNT;
 import static com.splunk.opentelemetry.profiler.ProfilingSemanticAttributes.INSTRUMENTATION_SOURCE;
-import static com.splunk.opentelemetry.profiler.ProfilingSemanticAttributes.PPROF_GZIP_BASE64;
 import static com.splunk.opentelemetry.profiler.ProfilingSemanticAttributes.PROFILING_SOURCE;
 import static com.splunk.opentelemetry.profiler.ProfilingSemanticAttributes.SOURCE_TYPE;
 import static java.util.logging.Level.FINE;
 
 import com.splunk.opentelemetry.profiler.InstrumentationSource;
 import com.splunk.opentelemetry.profiler.ProfilingDataType;
+import com.splunk.opentelemetry.profiler.pprof.Pprof;
+import com.splunk.opentelemetry.profiler.pprof.PprofFormat;
+import com.splunk.opentelemetry.profiler.pprof.PprofOutputBuffer;
 import io.opentelemetry.api.common.Attributes;
 import io.opentelemetry.api.logs.Logger;
 import java.nio.charset.StandardCharsets;
@@ -37,30 +39,63 @@ public class PprofLogDataExporter {
 
   private final Logger otelLogger;
   private final ProfilingDataType dataType;
+  private final PprofFormat format;
   private final Attributes commonAttributes;
+  private final PprofOutputBuffer buffer = new PprofOutputBuffer();
 
   public PprofLogDataExporter(
       Logger otelLogger, ProfilingDataType dataType, InstrumentationSource instrumentationSource) {
+    this(otelLogger, dataType, instrumentationSource, PprofFormat.getDefault());
+  }
+
+  public PprofLogDataExporter(
+      Logger otelLogger,
+      ProfilingDataType dataType,
+      InstrumentationSource instrumentationSource,
+      PprofFormat format) {
     this.otelLogger = otelLogger;
     this.dataType = dataType;
+    this.format = format;
     this.commonAttributes =
         Attributes.builder()
             .put(SOURCE_TYPE, PROFILING_SOURCE)
             .put(DATA_TYPE, dataType.value())
-            .put(DATA_FORMAT, PPROF_GZIP_BASE64)
+            .put(DATA_FORMAT, format.getDataFormat())
             .put(INSTRUMENTATION_SOURCE, instrumentationSource.value())
             .build();
   }
 
+  /** Exports data that is already serialized in the format of this exporter. */
   public void export(byte[] bytes, int frameCount) {
+    logExport(bytes.length);
+    emit(new String(bytes, StandardCharsets.ISO_8859_1), frameCount);
+  }
+
+  /**
+   * Serializes the pprof into a buffer that is reused between calls. The serialized data is
+   * copied only once, into the log body. Exporters may be called from several threads, the buffer
+   * is only used while holding its lock.
+   */
+  public void export(Pprof pprof, int frameCount) {
+    String body;
+    synchronized (buffer) {
+      buffer.reset();
+      pprof.serialize(buffer, format);
+      logExport(buffer.size());
+      body = buffer.toLatin1String();
+      buffer.reset();
+    }
+    emit(body, frameCount);
+  }
+
+  private void logExport(int size) {
     if (logger.isLoggable(FINE)) {
       logger.log(
-          FINE,
-          "Exporting {0} data as pprof, size {1}.",
-          new Object[] {dataType.value(), bytes.length});
+          FINE, "Exporting {0} data as pprof, size {1}.", new Object[] {dataType.value(), size});
     }
+  }
 
-    String body = new String(bytes, StandardCharsets.ISO_8859_1);
+  private void emit(String body, int frameCount) {
     Attributes attributes = commonAttributes.toBuilder().put(FRAME_COUNT, frameCount).build();
     otelLogger.logRecordBuilder().setBody(body).setAllAttributes(attributes).emit();
   }
@@ -0,0 +1,172 @@
+/*
+ * Copyright Splunk Inc.
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+
+package com.splunk.opentelemetry.profiler.exporter;
+
+import com.google.perftools.profiles.ProfileProto.Sample;
+import com.splunk.opentelemetry.profiler.pprof.Pprof;
+import java.util.Arrays;
+import java.util.HashMap;
+import java.util.Map;
+import java.util.Objects;
+
+/**
+ * Collects samples that have the same stack and the same labels into a single pprof sample, whose
+ * value is the number of times the stack was seen. Lookups reuse a mutable key, a key is only
+ * allocated when a new sample is added. This class is not thread safe.
+ */
+class SampleAggregator {
+  private final Map<SampleKey, AggregatedSample> samples = new HashMap<>();
+  private final SampleKey lookupKey = new SampleKey();
+
+  /**
+   * Counts one more occurrence of the described sample. Returns false when there is no such
+   * sample yet, in which case it should be built and passed to {@link #add(Sample.Builder)}.
+   */
+  boolean increment(
+      long[] locationIds,
+      int locationCount,
+      long threadId,
+      String threadName,
+      String threadState,
+      boolean truncated,
+      String sourceEventName,
+      long periodMillis) {
+    lookupKey.set(
+        locationIds,
+        locationCount,
+        threadId,
+        threadName,
+        threadState,
+        truncated,
+        sourceEventName,
+        periodMillis);
+    AggregatedSample sample = samples.get(lookupKey);
+    if (sample == null) {
+      return false;
+    }
+    sample.count++;
+    return true;
+  }
+
+  /** Adds the sample described by the last call to {@link #increment} that returned false. */
+  void add(Sample.Builder sample) {
+    samples.put(lookupKey.copy(), new AggregatedSample(sample));
+  }
+
+  /** Adds the collected samples with their counts to the profile and starts over. */
+  void addTo(Pprof pprof) {
+    for (AggregatedSample sample : samples.values()) {
+      sample.sample.addValue(sample.count);
+      pprof.getProfileBuilder().addSample(sample.sample);
+    }
+    samples.clear();
+  }
+
+  private static class AggregatedSample {
+    final Sample.Builder sample;
+    long count = 1;
+
+    AggregatedSample(Sample.Builder sample) {
+      this.sample = sample;
+    }
+  }
+
+  private static class SampleKey {
+    private long[] locationIds;
+    private int locationCount;
+    private long threadId;
+    private String threadName;
+    private String threadState;
+    private boolean truncated;
+    private String sourceEventName;
+    // weight of the sample, the period changes over time when it is adapted
+    private long periodMillis;
+    private int hashCode;
+
+    void set(
+        long[] locationIds,
+        int locationCount,
+        long threadId,
+        String threadName,
+        String threadState,
+        boolean truncated,
+        String sourceEventName,
+        long periodMillis) {
+      this.locationIds = locationIds;
+      this.locationCount = locationCount;
+      this.threadId = threadId;
+      this.threadName = threadName;
+      this.threadState = threadState;
+      this.truncated = truncated;
+      this.sourceEventName = sourceEventName;
+      this.periodMillis = periodMillis;
+
+      int hash = Long.hashCode(threadId);
+      hash = 31 * hash + Objects.hashCode(threadName);
+      hash = 31 * hash + Objects.hashCode(threadState);
+      hash = 31 * hash + Boolean.hashCode(truncated);
+      hash = 31 * hash + Objects.hashCode(sourceEventName);
+      hash = 31 * hash + Long.hashCode(periodMillis);
+      for (int i = 0; i < locationCount; i++) {
+        hash = 31 * hash + Long.hashCode(locationIds[i]);
+      }
+      this.hashCode = hash;
+    }
+
+    SampleKey copy() {
+      SampleKey key = new SampleKey();
+      key.set(
+          Arrays.copyOf(locationIds, locationCount),
+          locationCount,
+          threadId,
+          threadName,
+          threadState,
+          truncated,
+          sourceEventName,
+          periodMillis);
+      return key;
+    }
+
+    @Override
+    public boolean equals(Object o) {
+      if (this == o) return true;
+      if (o == null || getClass() != o.getClass()) return false;
+      SampleKey that = (SampleKey) o;
+      if (hashCode != that.hashCode
+          || locationCount != that.locationCount
+          || threadId != that.threadId
+          || truncated != that.truncated
+          || periodMillis != that.periodMillis
+          || !Objects.equals(threadName, that.threadName)
+          || !Objects.equals(threadState, that.threadState)
+          || !Objects.equals(sourceEventName, that.sourceEventName)) {
+        return false;
+      }
+      for (int i = 0; i < locationCount; i++) {
+        if (locationIds[i] != that.locationIds[i]) {
+          return false;
+        }
+      }
+      return true;
+    }
+
+    @Override
+    public int hashCode() {
+      return hashCode;
+    }
+  }
+}
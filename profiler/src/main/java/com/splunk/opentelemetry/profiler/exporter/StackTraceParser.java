@@ -18,198 +18,293 @@ package com.splunk.opentelemetry.profiler.exporter;
 
 import java.util.ArrayList;
 import java.util.List;
-import java.util.function.Consumer;
 
+/**
+ * Parses stack traces in the text format used by thread dumps. The parser walks the lines of the
+ * stack in place, without splitting the thread dump into separate strings. Frames are reported to
+ * a {@link FrameConsumer} as regions of the thread dump, so that callers can look up frames they
+ * have already seen without extracting them. Thread names and states are interned, as the same
+ * values repeat in every thread dump. Instances are reusable but not thread safe.
+ */
 class StackTraceParser {
   private static final String STACK_LINE_PREFIX = "\tat ";
   private static final String THREAD_STATE_PREFIX = "java.lang.Thread.State: ";
   private static final String THREAD_NATIVE_ID_PREFIX = "nid=0x";
+  private static final int MAX_INTERNED_STRINGS = 4096;
+
+  private final int stackDepth;
+  private final TextRegionTable strings = new TextRegionTable();
+
+  private int threadId;
+  private String threadName;
+  private int osThreadId;
+  private String threadState;
+  private int frameCount;
+  private boolean truncated;
+
+  StackTraceParser(int stackDepth) {
+    this.stackDepth = stackDepth;
+  }
 
   public static StackTrace parse(String stackTrace, int stackDepth) {
-    // \\R - Any Unicode linebreak sequence
-    String[] lines = stackTrace.split("\\R");
-    if (lines.length < 2) {
+    StackTraceParser parser = new StackTraceParser(stackDepth);
+    List<StackTraceLine> stackTraceLines = new ArrayList<>();
+    boolean parsed =
+        parser.parse(
+            stackTrace,
+            0,
+            stackTrace.length(),
+            (text, start, methodSeparator, locationStart, end) ->
+                stackTraceLines.add(
+                    parseStackTraceLine(text, start, methodSeparator, locationStart, end)));
+    if (!parsed) {
       return null;
     }
+    return new StackTrace(parser, stackTraceLines);
+  }
+
+  /**
+   * Parses the stack located between {@code start} and {@code end} in the given text. Header
+   * values of the stack are available from this parser after the call, frames are passed to the
+   * consumer in order. Returns false when the region does not contain a stack trace.
+   */
+  boolean parse(String text, int start, int end, FrameConsumer frameConsumer) {
+    reset();
+
+    // trailing empty lines are not part of the stack and must not count toward the depth limit
+    while (end > start && isLineBreak(text.charAt(end - 1))) {
+      end--;
+    }
+
+    int headerEnd = lineEnd(text, start, end);
+    int lineStart = nextLineStart(text, headerEnd, end);
+    if (lineStart >= end) {
+      return false;
+    }
+    parseHeader(text, start, headerEnd);
 
-    StackTraceBuilder builder = new StackTraceBuilder();
+    int lineEnd = lineEnd(text, lineStart, end);
+    parseThreadState(text, lineStart, lineEnd);
 
-    parseHeader(builder, lines[0]);
-    builder.setThreadState(parseThreadState(lines[1]));
-    for (int i = 2; i < lines.length; i++) {
+    for (int i = 2; ; i++) {
+      lineStart = nextLineStart(text, lineEnd, end);
+      if (lineStart >= end) {
+        break;
+      }
       // truncate the bottom stack frames the same way as jfr stack frame limiting does
       if (i > stackDepth + 2) {
-        builder.setTruncated();
+        truncated = true;
         break;
       }
-      StackTraceLine stackTraceLine = parseStackTraceLine(lines[i]);
-      if (stackTraceLine != null) {
-        builder.addStackTraceLine(stackTraceLine);
-      }
+      lineEnd = lineEnd(text, lineStart, end);
+      parseFrame(text, lineStart, lineEnd, frameConsumer);
     }
 
-    return builder.build();
+    return true;
   }
 
-  private static void parseHeader(StackTraceBuilder builder, String header) {
-    if (header.indexOf('"') != 0) {
-      return;
+  private void reset() {
+    threadId = 0;
+    threadName = null;
+    osThreadId = 0;
+    threadState = null;
+    frameCount = 0;
+    truncated = false;
+    // thread names are not bounded, start over instead of growing indefinitely
+    if (strings.size() > MAX_INTERNED_STRINGS) {
+      strings.clear();
     }
-    int nameEnd = header.lastIndexOf('"');
-    if (nameEnd == 0) {
+  }
+
+  int getThreadId() {
+    return threadId;
+  }
+
+  String getThreadName() {
+    return threadName;
+  }
+
+  int getOsThreadId() {
+    return osThreadId;
+  }
+
+  String getThreadState() {
+    return threadState;
+  }
+
+  /** Returns the number of frames passed to the frame consumer by the last parse. */
+  int getFrameCount() {
+    return frameCount;
+  }
+
+  boolean isTruncated() {
+    return truncated;
+  }
+
+  private void parseHeader(String text, int start, int end) {
+    if (start >= end || text.charAt(start) != '"') {
       return;
     }
-    builder.setThreadName(header.substring(1, nameEnd));
-
-    int idEnd =
-        parseId(
-            header,
-            "#",
-            nameEnd,
-            s -> {
-              try {
-                builder.setThreadId(Integer.parseInt(s));
-              } catch (NumberFormatException ignore) {
-              }
-            });
-    if (idEnd < 0) {
+    int nameEnd = lastIndexOf(text, '"', start, end);
+    if (nameEnd == start) {
       return;
     }
+    threadName = strings.intern(text, start + 1, nameEnd);
 
-    parseId(
-        header,
-        THREAD_NATIVE_ID_PREFIX,
-        idEnd,
-        s -> {
-          try {
-            builder.setOsThreadId(Integer.parseInt(s, 16));
-          } catch (NumberFormatException ignore) {
-          }
-        });
-  }
-
-  private static int parseId(String text, String prefix, int startFrom, Consumer<String> consumer) {
-    int idEnd = startFrom;
-    int idStart = text.indexOf(prefix, startFrom);
+    int idEnd = nameEnd;
+    int idStart = indexOf(text, '#', nameEnd, end);
     if (idStart != -1) {
-      idEnd = text.indexOf(' ', idStart);
-      if (idEnd != -1) {
-        consumer.accept(text.substring(idStart + prefix.length(), idEnd));
+      idEnd = indexOf(text, ' ', idStart, end);
+      if (idEnd == -1) {
+        return;
       }
+      threadId = parseInt(text, idStart + 1, idEnd, 10, threadId);
     }
-    return idEnd;
-  }
 
-  private static String parseThreadState(String status) {
-    int i = status.indexOf(THREAD_STATE_PREFIX);
-    if (i == -1) {
-      return null;
+    int nativeIdStart = indexOf(text, THREAD_NATIVE_ID_PREFIX, idEnd, end);
+    if (nativeIdStart != -1) {
+      nativeIdStart += THREAD_NATIVE_ID_PREFIX.length();
+      int nativeIdEnd = indexOf(text, ' ', nativeIdStart, end);
+      if (nativeIdEnd != -1) {
+        osThreadId = parseInt(text, nativeIdStart, nativeIdEnd, 16, osThreadId);
+      }
     }
+  }
 
-    return status.substring(i + THREAD_STATE_PREFIX.length());
+  private void parseThreadState(String text, int start, int end) {
+    int i = indexOf(text, THREAD_STATE_PREFIX, start, end);
+    if (i != -1) {
+      threadState = strings.intern(text, i + THREAD_STATE_PREFIX.length(), end);
+    }
   }
 
-  private static StackTraceLine parseStackTraceLine(String line) {
+  private void parseFrame(String text, int start, int end, FrameConsumer frameConsumer) {
     // we expect the stack trace line to look like
     // at java.lang.Thread.run(java.base@11.0.9.1/Thread.java:834)
-    if (!line.startsWith(STACK_LINE_PREFIX)) {
-      return null;
+    if (!text.startsWith(STACK_LINE_PREFIX, start)) {
+      return;
     }
-    if (!line.endsWith(")")) {
-      return null;
+    // skip "\tat " and trailing ")"
+    start += STACK_LINE_PREFIX.length();
+    if (end <= start || text.charAt(end - 1) != ')') {
+      return;
     }
-    // remove "\tat " and trailing ")"
-    line = line.substring(STACK_LINE_PREFIX.length(), line.length() - 1);
-    int i = line.lastIndexOf('(');
-    if (i == -1) {
-      return null;
+    end--;
+    int locationStart = lastIndexOf(text, '(', start, end);
+    if (locationStart == -1) {
+      return;
     }
-    int j = line.lastIndexOf('.', i);
-    if (j == -1) {
-      return null;
+    int methodSeparator = lastIndexOf(text, '.', start, locationStart);
+    if (methodSeparator == -1) {
+      return;
     }
-    String className = line.substring(0, j);
-    String method = line.substring(j + 1, i);
-
-    String location = line.substring(i + 1);
+    frameCount++;
+    frameConsumer.accept(text, start, methodSeparator, locationStart, end);
+  }
 
-    i = location.indexOf('/');
+  /**
+   * Extracts the parts of a frame reported to a {@link FrameConsumer}. Intended to be called only
+   * for frames that the caller has not seen before.
+   */
+  static StackTraceLine parseStackTraceLine(
+      String text, int start, int methodSeparator, int locationStart, int end) {
+    String className = text.substring(start, methodSeparator);
+    String method = text.substring(methodSeparator + 1, locationStart);
+
+    int fileStart = locationStart + 1;
+    int i = indexOf(text, '/', fileStart, end);
     if (i != -1) {
-      location = location.substring(i + 1);
+      fileStart = i + 1;
     }
 
     int lineNumber = 0;
-    i = location.indexOf(':');
+    int fileEnd = end;
+    i = indexOf(text, ':', fileStart, end);
     if (i != -1) {
-      try {
-        lineNumber = Integer.parseInt(location.substring(i + 1));
-      } catch (NumberFormatException ignored) {
-      }
-      location = location.substring(0, i);
+      lineNumber = parseInt(text, i + 1, end, 10, 0);
+      fileEnd = i;
     }
+    String location = text.substring(fileStart, fileEnd);
 
     return new StackTraceLine(className, method, location, lineNumber);
   }
 
-  private static class StackTraceBuilder {
-    private int threadId = 0;
-    private String threadName;
-    private int osThreadId = 0;
-    private String threadState;
-    private List<StackTraceLine> stackTraceLines = new ArrayList<>();
-    private boolean truncated;
-
-    StackTrace build() {
-      return new StackTrace(this);
-    }
-
-    int getThreadId() {
-      return threadId;
-    }
-
-    void setThreadId(int threadId) {
-      this.threadId = threadId;
-    }
-
-    String getThreadName() {
-      return threadName;
+  private static int lineEnd(String text, int start, int end) {
+    for (int i = start; i < end; i++) {
+      if (isLineBreak(text.charAt(i))) {
+        return i;
+      }
     }
+    return end;
+  }
 
-    void setThreadName(String threadName) {
-      this.threadName = threadName;
-    }
+  private static boolean isLineBreak(char c) {
+    return c == '\n' || c == '\r';
+  }
 
-    int getOsThreadId() {
-      return osThreadId;
+  private static int nextLineStart(String text, int lineEnd, int end) {
+    if (lineEnd < end && text.charAt(lineEnd) == '\r') {
+      lineEnd++;
     }
-
-    void setOsThreadId(int osThreadId) {
-      this.osThreadId = osThreadId;
+    if (lineEnd < end && text.charAt(lineEnd) == '\n') {
+      lineEnd++;
     }
+    return lineEnd;
+  }
 
-    String getThreadState() {
-      return threadState;
+  private static int indexOf(String text, char c, int start, int end) {
+    for (int i = start; i < end; i++) {
+      if (text.charAt(i) == c) {
+        return i;
+      }
     }
+    return -1;
+  }
 
-    void setThreadState(String threadState) {
-      this.threadState = threadState;
+  private static int indexOf(String text, String s, int start, int end) {
+    for (int i = start; i <= end - s.length(); i++) {
+      if (text.startsWith(s, i)) {
+        return i;
+      }
     }
+    return -1;
+  }
 
-    List<StackTraceLine> getStackTraceLines() {
-      return stackTraceLines;
+  private static int lastIndexOf(String text, char c, int start, int end) {
+    for (int i = end - 1; i >= start; i--) {
+      if (text.charAt(i) == c) {
+        return i;
+      }
     }
+    return -1;
+  }
 
-    void addStackTraceLine(StackTraceLine stackTraceLine) {
-      stackTraceLines.add(stackTraceLine);
+  /** Parses a non negative int, returns the default value if the region is not a valid number. */
+  private static int parseInt(String text, int start, int end, int radix, int defaultValue) {
+    if (start >= end) {
+      return defaultValue;
     }
-
-    boolean isTruncated() {
-      return truncated;
+    long result = 0;
+    for (int i = start; i < end; i++) {
+      int digit = Character.digit(text.charAt(i), radix);
+      if (digit < 0) {
+        return defaultValue;
+      }
+      result = result * radix + digit;
+      if (result > Integer.MAX_VALUE) {
+        return defaultValue;
+      }
     }
+    return (int) result;
+  }
 
-    void setTruncated() {
-      this.truncated = true;
-    }
+  interface FrameConsumer {
+    /**
+     * Receives a frame located between {@code start} and {@code end} in the text, formatted as
+     * {@code class.method(location}. {@code methodSeparator} is the index of the dot before the
+     * method name and {@code locationStart} the index of the opening parenthesis.
+     */
+    void accept(String text, int start, int methodSeparator, int locationStart, int end);
   }
 
   static class StackTrace {
@@ -220,13 +315,13 @@ class StackTraceParser {
     private final List<StackTraceLine> stackTraceLines;
     private final boolean truncated;
 
-    StackTrace(StackTraceBuilder builder) {
-      this.threadId = builder.getThreadId();
-      this.threadName = builder.getThreadName();
-      this.osThreadId = builder.getOsThreadId();
-      this.threadState = builder.getThreadState();
-      this.stackTraceLines = builder.getStackTraceLines();
-      this.truncated = builder.isTruncated();
+    StackTrace(StackTraceParser parser, List<StackTraceLine> stackTraceLines) {
+      this.threadId = parser.getThreadId();
+      this.threadName = parser.getThreadName();
+      this.osThreadId = parser.getOsThreadId();
+      this.threadState = parser.getThreadState();
+      this.stackTraceLines = stackTraceLines;
+      this.truncated = parser.isTruncated();
     }
 
     int getThreadId() {
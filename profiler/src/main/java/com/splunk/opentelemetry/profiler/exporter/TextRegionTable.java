@@ -0,0 +1,142 @@
+/*
+ * Copyright Splunk Inc.
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+
+package com.splunk.opentelemetry.profiler.exporter;
+
+/**
+ * Open addressing hash table keyed by a region of a larger string, for example a single frame
+ * line in a thread dump. Lookups hash and compare the characters of the region in place, a key
+ * string is only extracted when a new entry is added. Each entry can hold a long value. This class
+ * is not thread safe.
+ */
+class TextRegionTable {
+  static final long NO_VALUE = -1;
+  private static final int INITIAL_CAPACITY = 256;
+
+  private String[] keys;
+  private int[] hashes;
+  private long[] values;
+  private int size;
+
+  TextRegionTable() {
+    allocate(INITIAL_CAPACITY);
+  }
+
+  private void allocate(int capacity) {
+    keys = new String[capacity];
+    hashes = new int[capacity];
+    values = new long[capacity];
+  }
+
+  /** Returns the canonical string for the given region, adding it to the table when missing. */
+  String intern(String text, int start, int end) {
+    int hash = hash(text, start, end);
+    int slot = find(text, start, end, hash);
+    if (keys[slot] != null) {
+      return keys[slot];
+    }
+    String key = text.substring(start, end);
+    insert(slot, key, hash, NO_VALUE);
+    return key;
+  }
+
+  /** Returns the value stored for the given region, or {@link #NO_VALUE} when there is none. */
+  long get(String text, int start, int end) {
+    int slot = find(text, start, end, hash(text, start, end));
+    return keys[slot] != null ? values[slot] : NO_VALUE;
+  }
+
+  void put(String text, int start, int end, long value) {
+    int hash = hash(text, start, end);
+    int slot = find(text, start, end, hash);
+    if (keys[slot] != null) {
+      values[slot] = value;
+    } else {
+      insert(slot, text.substring(start, end), hash, value);
+    }
+  }
+
+  int size() {
+    return size;
+  }
+
+  /** Removes all entries, keeping the allocated capacity for reuse. */
+  void clear() {
+    if (size == 0) {
+      return;
+    }
+    for (int i = 0; i < keys.length; i++) {
+      keys[i] = null;
+    }
+    size = 0;
+  }
+
+  private void insert(int slot, String key, int hash, long value) {
+    keys[slot] = key;
+    hashes[slot] = hash;
+    values[slot] = value;
+    size++;
+    // keep load factor below 0.5
+    if (size * 2 > keys.length) {
+      resize();
+    }
+  }
+
+  private int find(String text, int start, int end, int hash) {
+    int mask = keys.length - 1;
+    int slot = hash & mask;
+    int length = end - start;
+    while (true) {
+      String key = keys[slot];
+      if (key == null
+          || (hashes[slot] == hash
+              && key.length() == length
+              && text.regionMatches(start, key, 0, length))) {
+        return slot;
+      }
+      slot = (slot + 1) & mask;
+    }
+  }
+
+  private void resize() {
+    String[] oldKeys = keys;
+    int[] oldHashes = hashes;
+    long[] oldValues = values;
+    allocate(oldKeys.length * 2);
+    int mask = keys.length - 1;
+    for (int i = 0; i < oldKeys.length; i++) {
+      if (oldKeys[i] == null) {
+        continue;
+      }
+      int slot = oldHashes[i] & mask;
+      while (keys[slot] != null) {
+        slot = (slot + 1) & mask;
+      }
+      keys[slot] = oldKeys[i];
+      hashes[slot] = oldHashes[i];
+      values[slot] = oldValues[i];
+    }
+  }
+
+  private static int hash(String text, int start, int end) {
+    int hash = 0;
+    for (int i = start; i < end; i++) {
+      hash = 31 * hash + text.charAt(i);
+    }
+    // spread the higher bits, as the table is indexed with the lower bits
+    return hash ^ (hash >>> 16);
+  }
+}
@@ -0,0 +1,112 @@
+/*
+ * Copyright Splunk Inc.
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+
+package com.splunk.opentelemetry.profiler.exporter;
+
+import static java.util.logging.Level.WARNING;
+
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.Collections;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.logging.Logger;
+import java.util.regex.Matcher;
+import java.util.regex.Pattern;
+import java.util.regex.PatternSyntaxException;
+
+/**
+ * Maps names of thread pool threads, like {@code http-nio-8080-exec-137}, to the name of their
+ * pool, like {@code http-nio-8080-exec}. A pattern is a regular expression that must match the
+ * whole thread name, its first capturing group is the pool name. Without a group the pattern itself
+ * is the pool name. Results are cached, so the patterns are only evaluated when a thread is seen
+ * for the first time. This class is not thread safe.
+ */
+public class ThreadPoolNames {
+  private static final Logger logger = Logger.getLogger(ThreadPoolNames.class.getName());
+
+  static final List<String> DEFAULT_PATTERNS =
+      Collections.unmodifiableList(
+          Arrays.asList(
+              // tomcat
+              "((?:https?|ajp)-.+-exec)-\\d+",
+              // jetty
+              "(qtp\\d+)-\\d+",
+              // netty
+              "(\\w*EventLoopGroup-\\d+)-\\d+",
+              "(reactor-http-\\w+)-\\d+",
+              // fork join pools
+              "(ForkJoinPool-\\d+-worker)-\\d+",
+              "(ForkJoinPool\\.commonPool-worker)-\\d+",
+              // kafka clients, thread names end with the client id or group id
+              "(kafka-producer-network-thread) \\| .*",
+              "(kafka-coordinator-heartbeat-thread) \\| .*",
+              // Executors.defaultThreadFactory()
+              "(pool-\\d+-thread)-\\d+"));
+
+  private static final int MAX_CACHE_SIZE = 4096;
+  // caches thread names that are not in a pool too
+  private static final String NO_POOL = new String("");
+
+  private final List<Pattern> patterns;
+  private final Map<String, String> poolNames =
+      new LinkedHashMap<String, String>(16, 0.75f, true) {
+        @Override
+        protected boolean removeEldestEntry(Map.Entry<String, String> eldest) {
+          return size() > MAX_CACHE_SIZE;
+        }
+      };
+
+  /** Creates an instance that uses the given patterns before the built-in patterns. */
+  public static ThreadPoolNames withDefaultPatterns(List<String> patterns) {
+    List<String> allPatterns = new ArrayList<>(patterns);
+    allPatterns.addAll(DEFAULT_PATTERNS);
+    return new ThreadPoolNames(allPatterns);
+  }
+
+  ThreadPoolNames(List<String> patterns) {
+    this.patterns = new ArrayList<>(patterns.size());
+    for (String pattern : patterns) {
+      try {
+        this.patterns.add(Pattern.compile(pattern));
+      } catch (PatternSyntaxException exception) {
+        logger.log(WARNING, "Ignoring invalid thread pool pattern {0}.", pattern);
+      }
+    }
+  }
+
+  /** Returns the name of the pool the thread belongs to, or null when it matches no pattern. */
+  public String getPoolName(String threadName) {
+    String poolName = poolNames.get(threadName);
+    if (poolName == null) {
+      poolName = findPoolName(threadName);
+      poolNames.put(threadName, poolName);
+    }
+    return poolName == NO_POOL ? null : poolName;
+  }
+
+  private String findPoolName(String threadName) {
+    for (Pattern pattern : patterns) {
+      Matcher matcher = pattern.matcher(threadName);
+      if (matcher.matches()) {
+        String poolName = matcher.groupCount() > 0 ? matcher.group(1) : null;
+        return poolName != null ? poolName : pattern.pattern();
+      }
+    }
+    return NO_POOL;
+  }
+}
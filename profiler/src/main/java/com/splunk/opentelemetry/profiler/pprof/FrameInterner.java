@@ -0,0 +1,136 @@
+/*
+ * Copyright Splunk Inc.
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+
+package com.splunk.opentelemetry.profiler.pprof;
+
+import java.util.LinkedHashMap;
+import java.util.Map;
+import org.openjdk.jmc.common.IMCFrame;
+import org.openjdk.jmc.common.IMCMethod;
+
+/**
+ * Interns stack frames from structured sources, JFR stack traces and {@link StackTraceElement}s,
+ * as {@link Pprof.Frame}s that are kept across pprof batches. A frame that keeps showing up is
+ * converted only once, and after the first reference in a batch its location id is read from the
+ * frame without any lookups. When full, the least recently used frame is evicted. This class is
+ * not thread safe.
+ *
+ * <p>Thread dump frames are cached separately by {@code FrameCache}, which is keyed by regions of
+ * the thread dump text. Here the key is made of the strings of the frame, whose hash codes are
+ * cached, so a lookup with a reused key does not need to copy or hash any text.
+ */
+public final class FrameInterner {
+  public static final int DEFAULT_MAX_SIZE = 16384;
+  private static final String UNKNOWN = "unknown";
+
+  private final Map<FrameKey, Pprof.Frame> frames;
+  // reused for lookups so that hits don't allocate
+  private final FrameKey lookupKey = new FrameKey();
+
+  public FrameInterner() {
+    this(DEFAULT_MAX_SIZE);
+  }
+
+  public FrameInterner(int maxSize) {
+    if (maxSize <= 0) {
+      throw new IllegalArgumentException("maxSize must be positive");
+    }
+    this.frames =
+        new LinkedHashMap<FrameKey, Pprof.Frame>(16, 0.75f, true) {
+          @Override
+          protected boolean removeEldestEntry(Map.Entry<FrameKey, Pprof.Frame> eldest) {
+            return size() > maxSize;
+          }
+        };
+  }
+
+  public Pprof.Frame intern(IMCFrame frame) {
+    IMCMethod method = frame.getMethod();
+    if (method == null) {
+      return intern(UNKNOWN, UNKNOWN, UNKNOWN, 0);
+    }
+    String className = method.getType().getFullName();
+    String methodName = method.getMethodName();
+    Integer lineNumber = frame.getFrameLineNumber();
+    return intern(
+        UNKNOWN, // file name is not known
+        className != null ? className : UNKNOWN,
+        methodName != null ? methodName : UNKNOWN,
+        lineNumber != null && lineNumber != -1 ? lineNumber : 0);
+  }
+
+  public Pprof.Frame intern(StackTraceElement element) {
+    String fileName = element.getFileName();
+    return intern(
+        fileName != null ? fileName : UNKNOWN,
+        element.getClassName(),
+        element.getMethodName(),
+        Math.max(element.getLineNumber(), 0));
+  }
+
+  Pprof.Frame intern(String file, String className, String function, int line) {
+    lookupKey.set(file, className, function, line);
+    Pprof.Frame frame = frames.get(lookupKey);
+    if (frame == null) {
+      frame = new Pprof.Frame(file, className, function, line);
+      FrameKey key = new FrameKey();
+      key.set(file, className, function, line);
+      frames.put(key, frame);
+    }
+    return frame;
+  }
+
+  int size() {
+    return frames.size();
+  }
+
+  private static final class FrameKey {
+    private String file;
+    private String className;
+    private String function;
+    private int line;
+    private int hash;
+
+    void set(String file, String className, String function, int line) {
+      this.file = file;
+      this.className = className;
+      this.function = function;
+      this.line = line;
+      // string hash codes are cached, strings from jfr constant pools are hashed only once
+      int hash = file.hashCode();
+      hash = 31 * hash + className.hashCode();
+      hash = 31 * hash + function.hashCode();
+      this.hash = 31 * hash + line;
+    }
+
+    @Override
+    public boolean equals(Object o) {
+      if (this == o) return true;
+      if (!(o instanceof FrameKey)) return false;
+      FrameKey that = (FrameKey) o;
+      return hash == that.hash
+          && line == that.line
+          && function.equals(that.function)
+          && className.equals(that.className)
+          && file.equals(that.file);
+    }
+
+    @Override
+    public int hashCode() {
+      return hash;
+    }
+  }
+}
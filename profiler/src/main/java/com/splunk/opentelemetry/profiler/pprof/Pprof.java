@@ -24,17 +24,18 @@ import static com.google.perftools.profiles.ProfileProto.Profile;
 import static com.google.perftools.profiles.ProfileProto.Sample;
 
 import io.opentelemetry.api.common.AttributeKey;
-import java.io.ByteArrayOutputStream;
 import java.io.IOException;
 import java.io.OutputStream;
-import java.util.Base64;
 import java.util.HashMap;
 import java.util.Map;
 import java.util.Objects;
+import java.util.concurrent.atomic.AtomicLong;
 import java.util.function.Consumer;
-import java.util.zip.GZIPOutputStream;
 
 public class Pprof {
+  private static final AtomicLong nextBatchId = new AtomicLong();
+
+  private final long batchId = nextBatchId.incrementAndGet();
   private final Profile.Builder profileBuilder = Profile.newBuilder();
   private final StringTable stringTable = new StringTable(profileBuilder);
   private final FunctionTable functionTable = new FunctionTable(profileBuilder, stringTable);
@@ -53,6 +54,29 @@ public class Pprof {
     return locationTable.get(file, className, function, line);
   }
 
+  /**
+   * Returns the location id for a frame that may be shared between batches. The frame is added to
+   * this batch the first time it is referenced, later calls return the id remembered in the frame
+   * without any lookups. The frame remembers its id in the two batches that referenced it last, so
+   * that two batches that are filled at the same time don't evict each other.
+   */
+  public long getLocationId(Frame frame) {
+    if (frame.batchId == batchId) {
+      return frame.locationId;
+    }
+    long locationId;
+    if (frame.previousBatchId == batchId) {
+      locationId = frame.previousLocationId;
+    } else {
+      locationId = getLocationId(frame.file, frame.className, frame.function, frame.line);
+    }
+    frame.previousBatchId = frame.batchId;
+    frame.previousLocationId = frame.locationId;
+    frame.batchId = batchId;
+    frame.locationId = locationId;
+    return locationId;
+  }
+
   public void addLabel(Sample.Builder sample, AttributeKey<String> key, String value) {
     addLabel(sample, key.getKey(), value);
   }
@@ -99,18 +123,48 @@ public class Pprof {
   }
 
   public byte[] serialize() {
+    PprofOutputBuffer buffer = new PprofOutputBuffer();
+    serialize(buffer, PprofFormat.getDefault());
+    return buffer.toByteArray();
+  }
+
+  /**
+   * Writes the profile to the given stream in the given format. The profile is encoded, compressed
+   * and optionally base64 encoded in a single pass, without buffering the uncompressed profile.
+   */
+  public void serialize(OutputStream out, PprofFormat format) {
     Profile profile = profileBuilder.build();
     try {
-      ByteArrayOutputStream byteStream = new ByteArrayOutputStream();
-      try (OutputStream outputStream = new GZIPOutputStream(Base64.getEncoder().wrap(byteStream))) {
+      try (OutputStream outputStream = format.wrap(out)) {
         profile.writeTo(outputStream);
       }
-      return byteStream.toByteArray();
     } catch (IOException exception) {
       throw new IllegalStateException("Failed to serialize pprof", exception);
     }
   }
 
+  /**
+   * Stack frame that can be kept across pprof batches. Remembers its location id in the two batches
+   * that last referenced it, a frame should only be used from one thread at a time.
+   */
+  public static final class Frame {
+    private final String file;
+    private final String className;
+    private final String function;
+    private final long line;
+    private long batchId;
+    private long locationId;
+    private long previousBatchId;
+    private long previousLocationId;
+
+    public Frame(String file, String className, String function, long line) {
+      this.file = file;
+      this.className = className;
+      this.function = function;
+      this.line = line;
+    }
+  }
+
   // copied from
   // https://github.com/bazelbuild/bazel/blob/master/src/main/java/com/google/devtools/build/lib/profiler/memory/AllocationTracker.java
   private static class StringTable {
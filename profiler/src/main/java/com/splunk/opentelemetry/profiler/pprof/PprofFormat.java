@@ -0,0 +1,73 @@
+/*
+ * Copyright Splunk Inc.
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+
+package com.splunk.opentelemetry.profiler.pprof;
+
+import java.io.IOException;
+import java.io.OutputStream;
+import java.util.Base64;
+import java.util.zip.Deflater;
+import java.util.zip.GZIPOutputStream;
+
+/**
+ * Describes how serialized pprof data is encoded in log records. The ingest side only accepts
+ * {@code pprof-gzip-base64}, so only the gzip compression level can be chosen.
+ */
+public final class PprofFormat {
+  private static final int BUFFER_SIZE = 16 * 1024;
+  private static final String DATA_FORMAT = "pprof-gzip-base64";
+  private static final PprofFormat DEFAULT = gzipBase64(Deflater.DEFAULT_COMPRESSION);
+
+  private final int level;
+
+  private PprofFormat(int level) {
+    this.level = level;
+  }
+
+  /** Gzip with default compression level and base64 encoding. */
+  public static PprofFormat getDefault() {
+    return DEFAULT;
+  }
+
+  /**
+   * Gzip with the given compression level, from 0 to 9 or -1 for the default level of {@link
+   * Deflater}, and base64 encoding. The level does not change the data format.
+   */
+  public static PprofFormat gzipBase64(int level) {
+    if (level != Deflater.DEFAULT_COMPRESSION
+        && (level < Deflater.NO_COMPRESSION || level > Deflater.BEST_COMPRESSION)) {
+      throw new IllegalArgumentException("Invalid compression level " + level);
+    }
+    return new PprofFormat(level);
+  }
+
+  /** Value of the profiling data format attribute. */
+  public String getDataFormat() {
+    return DATA_FORMAT;
+  }
+
+  /**
+   * Returns a stream that encodes data written to it into the given stream. Closing the returned
+   * stream finishes the encoded data and closes the given stream.
+   */
+  OutputStream wrap(OutputStream out) throws IOException {
+    return new GZIPOutputStream(Base64.getEncoder().wrap(out), BUFFER_SIZE) {
+      {
+        def.setLevel(level);
+      }
+    };
+  }
+}
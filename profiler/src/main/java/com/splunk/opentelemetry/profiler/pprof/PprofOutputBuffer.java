@@ -0,0 +1,82 @@
+/*
+ * Copyright Splunk Inc.
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+
+package com.splunk.opentelemetry.profiler.pprof;
+
+import java.io.OutputStream;
+import java.nio.charset.StandardCharsets;
+import java.util.Arrays;
+
+/**
+ * Output stream for serialized pprof data that is reused between batches. Unlike {@link
+ * java.io.ByteArrayOutputStream} the contents can be turned into a log body without first copying
+ * them into a separate array. Buffers that grew beyond {@link #MAX_RETAINED_CAPACITY} are released
+ * on {@link #reset()}, so that a single large batch does not pin memory for the lifetime of the
+ * exporter. This class is not thread safe.
+ */
+public class PprofOutputBuffer extends OutputStream {
+  static final int INITIAL_CAPACITY = 64 * 1024;
+  static final int MAX_RETAINED_CAPACITY = 4 * 1024 * 1024;
+
+  private byte[] buffer = new byte[INITIAL_CAPACITY];
+  private int size;
+
+  @Override
+  public void write(int b) {
+    ensureCapacity(size + 1);
+    buffer[size++] = (byte) b;
+  }
+
+  @Override
+  public void write(byte[] bytes, int offset, int length) {
+    ensureCapacity(size + length);
+    System.arraycopy(bytes, offset, buffer, size, length);
+    size += length;
+  }
+
+  private void ensureCapacity(int capacity) {
+    if (capacity < 0) {
+      throw new OutOfMemoryError("pprof data too large");
+    }
+    if (capacity > buffer.length) {
+      int newCapacity = buffer.length * 2;
+      if (newCapacity < capacity || newCapacity < 0) {
+        newCapacity = capacity;
+      }
+      buffer = Arrays.copyOf(buffer, newCapacity);
+    }
+  }
+
+  public int size() {
+    return size;
+  }
+
+  public void reset() {
+    size = 0;
+    if (buffer.length > MAX_RETAINED_CAPACITY) {
+      buffer = new byte[INITIAL_CAPACITY];
+    }
+  }
+
+  public byte[] toByteArray() {
+    return Arrays.copyOf(buffer, size);
+  }
+
+  /** Returns the contents as a string with one char per byte, without an intermediate copy. */
+  public String toLatin1String() {
+    return new String(buffer, 0, size, StandardCharsets.ISO_8859_1);
+  }
+}
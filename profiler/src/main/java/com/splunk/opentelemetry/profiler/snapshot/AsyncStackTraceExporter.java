@@ -32,13 +32,17 @@ class AsyncStackTraceExporter implements StackTraceExporter {
 
   private final ExecutorService executor =
       HelpfulExecutors.newSingleThreadExecutor("async-stack-trace-exporter");
-  private final Logger otelLogger;
-  private final int maxDepth;
+  // only used from the executor thread, reused so that converted frames are kept between batches
+  private final CpuEventExporter cpuEventExporter;
   private volatile boolean closed = false;
 
   AsyncStackTraceExporter(Logger logger, int maxDepth) {
-    this.otelLogger = logger;
-    this.maxDepth = maxDepth;
+    this.cpuEventExporter =
+        PprofCpuEventExporter.builder()
+            .otelLogger(logger)
+            .stackDepth(maxDepth)
+            .instrumentationSource(InstrumentationSource.SNAPSHOT)
+            .build();
   }
 
   @Override
@@ -46,7 +50,7 @@ class AsyncStackTraceExporter implements StackTraceExporter {
     if (closed) {
       return;
     }
-    executor.submit(pprofExporter(otelLogger, stackTraces));
+    executor.submit(pprofExporter(stackTraces));
   }
 
   @Override
@@ -64,16 +68,9 @@ class AsyncStackTraceExporter implements StackTraceExporter {
     }
   }
 
-  private Runnable pprofExporter(Logger otelLogger, Collection<StackTrace> stackTraces) {
+  private Runnable pprofExporter(Collection<StackTrace> stackTraces) {
     return () -> {
       try {
-        CpuEventExporter cpuEventExporter =
-            PprofCpuEventExporter.builder()
-                .otelLogger(otelLogger)
-                .stackDepth(maxDepth)
-                .instrumentationSource(InstrumentationSource.SNAPSHOT)
-                .build();
-
         for (StackTrace stackTrace : stackTraces) {
           cpuEventExporter.export(
               stackTrace.getThreadId(),
@@ -0,0 +1,32 @@
+/*
+ * Copyright Splunk Inc.
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+
+package com.splunk.opentelemetry.profiler.util;
+
+/** Decodes lower case hex encoded trace and span ids without creating intermediate strings. */
+public final class Base16 {
+
+  private Base16() {}
+
+  /** Decodes the 16 hex characters starting at offset, the input must have been validated. */
+  public static long decodeLong(CharSequence chars, int offset) {
+    long result = 0;
+    for (int i = offset; i < offset + 16; i++) {
+      result = (result << 4) | Character.digit(chars.charAt(i), 16);
+    }
+    return result;
+  }
+}
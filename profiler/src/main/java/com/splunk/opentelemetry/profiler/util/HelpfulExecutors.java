@@ -18,6 +18,8 @@ package com.splunk.opentelemetry.profiler.util;
 
 import java.util.concurrent.ExecutorService;
 import java.util.concurrent.Executors;
+import java.util.concurrent.ForkJoinPool;
+import java.util.concurrent.ForkJoinWorkerThread;
 import java.util.concurrent.ScheduledExecutorService;
 import java.util.concurrent.ThreadFactory;
 
@@ -31,6 +33,21 @@ public class HelpfulExecutors {
     return Executors.newSingleThreadExecutor(new HelpfulThreadFactory(name));
   }
 
+  /** Creates a fork join pool whose daemon worker threads are named after the pool. */
+  public static ForkJoinPool newForkJoinPool(String name, int parallelism) {
+    return new ForkJoinPool(
+        parallelism,
+        pool -> {
+          ForkJoinWorkerThread thread =
+              ForkJoinPool.defaultForkJoinWorkerThreadFactory.newThread(pool);
+          thread.setName(name + " " + thread.getPoolIndex());
+          thread.setDaemon(true);
+          return thread;
+        },
+        null,
+        false);
+  }
+
   private static class HelpfulThreadFactory implements ThreadFactory {
     private final String threadName;
 
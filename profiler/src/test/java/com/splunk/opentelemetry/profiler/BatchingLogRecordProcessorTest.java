@@ -0,0 +1,235 @@
+/*
+ * Copyright Splunk Inc.
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+
+package com.splunk.opentelemetry.profiler;
+
+import static org.assertj.core.api.Assertions.assertThat;
+import static org.awaitility.Awaitility.await;
+
+import io.opentelemetry.api.logs.Logger;
+import io.opentelemetry.sdk.common.CompletableResultCode;
+import io.opentelemetry.sdk.logs.SdkLoggerProvider;
+import io.opentelemetry.sdk.logs.data.LogRecordData;
+import io.opentelemetry.sdk.logs.export.LogRecordExporter;
+import io.opentelemetry.sdk.testing.exporter.InMemoryLogRecordExporter;
+import java.io.IOException;
+import java.nio.file.Path;
+import java.time.Duration;
+import java.util.ArrayList;
+import java.util.Collection;
+import java.util.List;
+import java.util.concurrent.CopyOnWriteArrayList;
+import java.util.concurrent.TimeUnit;
+import org.junit.jupiter.api.Test;
+import org.junit.jupiter.api.io.TempDir;
+
+class BatchingLogRecordProcessorTest {
+  private static final int BODY_SIZE = 1000;
+  private static final long RECORD_SIZE =
+      BODY_SIZE + BatchingLogRecordProcessor.RECORD_OVERHEAD_BYTES;
+
+  @Test
+  void exportQueuedRecordsOnFlush() {
+    var exporter = InMemoryLogRecordExporter.create();
+    var processor =
+        BatchingLogRecordProcessor.builder(exporter).scheduleDelay(Duration.ofHours(1)).build();
+    var logger = logger(processor);
+
+    for (int i = 0; i < 10; i++) {
+      logger.logRecordBuilder().setBody(body()).emit();
+    }
+    assertThat(exporter.getFinishedLogRecordItems()).isEmpty();
+
+    processor.forceFlush().join(10, TimeUnit.SECONDS);
+    assertThat(exporter.getFinishedLogRecordItems()).hasSize(10);
+    processor.shutdown().join(10, TimeUnit.SECONDS);
+  }
+
+  @Test
+  void exportAfterScheduleDelay() {
+    var exporter = InMemoryLogRecordExporter.create();
+    var processor =
+        BatchingLogRecordProcessor.builder(exporter).scheduleDelay(Duration.ofMillis(10)).build();
+
+    logger(processor).logRecordBuilder().setBody(body()).emit();
+
+    await().until(() -> exporter.getFinishedLogRecordItems().size() == 1);
+    processor.shutdown().join(10, TimeUnit.SECONDS);
+  }
+
+  @Test
+  void batchBySize() {
+    var exporter = new RecordingExporter();
+    var processor =
+        BatchingLogRecordProcessor.builder(exporter)
+            .maxBatchBytes(3 * RECORD_SIZE)
+            .scheduleDelay(Duration.ofHours(1))
+            .build();
+    var logger = logger(processor);
+
+    for (int i = 0; i < 7; i++) {
+      logger.logRecordBuilder().setBody(body()).emit();
+    }
+    processor.forceFlush().join(10, TimeUnit.SECONDS);
+
+    List<Integer> batchSizes = new ArrayList<>();
+    exporter.batches.forEach(batch -> batchSizes.add(batch.size()));
+    assertThat(batchSizes).containsExactly(3, 3, 1);
+    processor.shutdown().join(10, TimeUnit.SECONDS);
+  }
+
+  @Test
+  void dropRecordsInsteadOfBlockingWhenExportsAreStuck() {
+    var exporter = new RecordingExporter();
+    exporter.complete = false;
+    var processor =
+        BatchingLogRecordProcessor.builder(exporter)
+            .maxQueuedBytes(5 * RECORD_SIZE)
+            .maxBatchBytes(RECORD_SIZE)
+            .maxConcurrentExports(1)
+            .scheduleDelay(Duration.ofMillis(1))
+            .build();
+    var logger = logger(processor);
+
+    for (int i = 0; i < 100; i++) {
+      logger.logRecordBuilder().setBody(body()).emit();
+    }
+
+    // one record is being exported, one is waiting for an export slot and five are queued
+    assertThat(processor.getDroppedRecords()).isGreaterThanOrEqualTo(93);
+    await().until(() -> exporter.batches.size() == 1);
+
+    exporter.completeAll();
+    await().until(() -> exporter.batches.size() == 100 - processor.getDroppedRecords());
+    processor.shutdown().join(10, TimeUnit.SECONDS);
+  }
+
+  @Test
+  void shutdownExportsRemainingRecordsAndShutsDownExporter() {
+    var exporter = new RecordingExporter();
+    var processor =
+        BatchingLogRecordProcessor.builder(exporter).scheduleDelay(Duration.ofHours(1)).build();
+    var logger = logger(processor);
+
+    logger.logRecordBuilder().setBody(body()).emit();
+    var result = processor.shutdown().join(10, TimeUnit.SECONDS);
+
+    assertThat(result.isSuccess()).isTrue();
+    assertThat(exporter.batches).hasSize(1);
+    assertThat(exporter.shutdown).isTrue();
+
+    logger.logRecordBuilder().setBody(body()).emit();
+    assertThat(exporter.batches).hasSize(1);
+  }
+
+  @Test
+  void spillFailedExportsAndReplayThemWhenExportsSucceed(@TempDir Path dir) throws IOException {
+    var exporter = new RecordingExporter();
+    exporter.fail = true;
+    var spillLog = SpillLog.open(dir, 1024 * 1024);
+    var processor =
+        BatchingLogRecordProcessor.builder(exporter)
+            .scheduleDelay(Duration.ofMillis(10))
+            .spillLog(spillLog)
+            .build();
+    var logger = logger(processor);
+
+    for (int i = 0; i < 3; i++) {
+      logger.logRecordBuilder().setBody(body()).emit();
+    }
+    processor.forceFlush().join(10, TimeUnit.SECONDS);
+    assertThat(spillLog.size()).isGreaterThan(3 * BODY_SIZE);
+
+    exporter.fail = false;
+    exporter.batches.clear();
+    logger.logRecordBuilder().setBody(body()).emit();
+
+    await().until(() -> spillLog.size() == 0);
+    assertThat(exporter.batches.stream().mapToInt(Collection::size).sum()).isEqualTo(4);
+    processor.shutdown().join(10, TimeUnit.SECONDS);
+  }
+
+  @Test
+  void spillExportsThatFailOnAnotherThread(@TempDir Path dir) throws Exception {
+    var exporter = new RecordingExporter();
+    exporter.complete = false;
+    var spillLog = SpillLog.open(dir, 1024 * 1024);
+    var processor =
+        BatchingLogRecordProcessor.builder(exporter)
+            .scheduleDelay(Duration.ofMillis(10))
+            .spillLog(spillLog)
+            .build();
+    var logger = logger(processor);
+
+    logger.logRecordBuilder().setBody(body()).emit();
+    logger.logRecordBuilder().setBody(body()).emit();
+    await().until(() -> !exporter.pending.isEmpty());
+    var flushed = processor.forceFlush();
+    var failing = new Thread(() -> exporter.pending.forEach(CompletableResultCode::fail));
+    failing.start();
+    failing.join();
+
+    assertThat(flushed.join(10, TimeUnit.SECONDS).isSuccess()).isTrue();
+    assertThat(spillLog.size()).isGreaterThan(2 * BODY_SIZE);
+    processor.shutdown().join(10, TimeUnit.SECONDS);
+  }
+
+  private static Logger logger(BatchingLogRecordProcessor processor) {
+    return SdkLoggerProvider.builder().addLogRecordProcessor(processor).build().get("test");
+  }
+
+  private static String body() {
+    return "x".repeat(BODY_SIZE);
+  }
+
+  private static class RecordingExporter implements LogRecordExporter {
+    final List<Collection<LogRecordData>> batches = new CopyOnWriteArrayList<>();
+    final List<CompletableResultCode> pending = new CopyOnWriteArrayList<>();
+    volatile boolean complete = true;
+    volatile boolean fail;
+    volatile boolean shutdown;
+
+    @Override
+    public CompletableResultCode export(Collection<LogRecordData> logs) {
+      batches.add(logs);
+      if (fail) {
+        return CompletableResultCode.ofFailure();
+      }
+      if (complete) {
+        return CompletableResultCode.ofSuccess();
+      }
+      CompletableResultCode result = new CompletableResultCode();
+      pending.add(result);
+      return result;
+    }
+
+    void completeAll() {
+      complete = true;
+      pending.forEach(CompletableResultCode::succeed);
+    }
+
+    @Override
+    public CompletableResultCode flush() {
+      return CompletableResultCode.ofSuccess();
+    }
+
+    @Override
+    public CompletableResultCode shutdown() {
+      shutdown = true;
+      return CompletableResultCode.ofSuccess();
+    }
+  }
+}
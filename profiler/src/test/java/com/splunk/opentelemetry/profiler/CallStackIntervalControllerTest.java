@@ -0,0 +1,113 @@
+/*
+ * Copyright Splunk Inc.
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+
+package com.splunk.opentelemetry.profiler;
+
+import static org.assertj.core.api.Assertions.assertThat;
+import static org.junit.jupiter.api.Assertions.assertThrows;
+
+import java.time.Duration;
+import java.time.Instant;
+import java.util.concurrent.TimeUnit;
+import org.junit.jupiter.api.Test;
+
+class CallStackIntervalControllerTest {
+
+  private final CallStackInterval interval = new CallStackInterval(Duration.ofSeconds(10));
+  private final CallStackIntervalController controller =
+      new CallStackIntervalController(
+          interval, Duration.ofSeconds(1), Duration.ofSeconds(60), 0.01);
+
+  @Test
+  void lengthensIntervalWhenThreadDumpsAreExpensive() {
+    // 2 thread dumps costing 200ms each need a 20s period for a 1% budget
+    controller.update(2, millis(300), millis(100));
+
+    assertThat(interval.getRequested()).isEqualTo(Duration.ofSeconds(20));
+  }
+
+  @Test
+  void shortensIntervalWhenThreadDumpsAreCheap() {
+    // 5ms per thread dump would be a 500ms period, below the minimum
+    controller.update(5, millis(20), millis(5));
+
+    assertThat(interval.getRequested()).isEqualTo(Duration.ofSeconds(1));
+  }
+
+  @Test
+  void keepsIntervalWithinBounds() {
+    controller.update(1, millis(5_000), 0);
+    assertThat(interval.getRequested()).isEqualTo(Duration.ofSeconds(60));
+
+    // the cost is averaged, so a single cheap chunk does not go straight to the minimum
+    controller.update(1, 0, 0);
+    assertThat(interval.getRequested()).isEqualTo(Duration.ofSeconds(60));
+
+    for (int i = 0; i < 20; i++) {
+      controller.update(1, 0, 0);
+    }
+    assertThat(interval.getRequested()).isEqualTo(Duration.ofSeconds(1));
+  }
+
+  @Test
+  void ignoresSmallChanges() {
+    // 105ms per thread dump would be a 10.5s period
+    controller.update(1, millis(105), 0);
+
+    assertThat(interval.getRequested()).isEqualTo(Duration.ofSeconds(10));
+  }
+
+  @Test
+  void averagesCostOverChunks() {
+    controller.update(1, millis(400), 0);
+    assertThat(interval.getRequested()).isEqualTo(Duration.ofSeconds(40));
+
+    controller.update(1, millis(200), 0);
+    assertThat(interval.getRequested()).isEqualTo(Duration.ofSeconds(30));
+  }
+
+  @Test
+  void chunksWithoutThreadDumpsAreIgnored() {
+    controller.update(0, 0, millis(100));
+
+    assertThat(interval.getRequested()).isEqualTo(Duration.ofSeconds(10));
+  }
+
+  @Test
+  void requestedIntervalTakesEffectWhenApplied() {
+    Instant before = Instant.now();
+    controller.update(1, millis(300), 0);
+    assertThat(interval.at(Instant.now())).isEqualTo(Duration.ofSeconds(10));
+
+    assertThat(interval.takeRequestedChange()).isEqualTo(Duration.ofSeconds(30));
+    assertThat(interval.takeRequestedChange()).isNull();
+    assertThat(interval.at(before)).isEqualTo(Duration.ofSeconds(10));
+    assertThat(interval.at(Instant.now().plusMillis(1))).isEqualTo(Duration.ofSeconds(30));
+  }
+
+  @Test
+  void invalidBounds() {
+    assertThrows(
+        IllegalArgumentException.class,
+        () ->
+            new CallStackIntervalController(
+                interval, Duration.ofSeconds(10), Duration.ofSeconds(1), 0.01));
+  }
+
+  private static long millis(long millis) {
+    return TimeUnit.MILLISECONDS.toNanos(millis);
+  }
+}
@@ -21,6 +21,8 @@ import static java.time.temporal.ChronoUnit.SECONDS;
 import static org.assertj.core.api.Assertions.assertThat;
 import static org.mockito.Mockito.inOrder;
 import static org.mockito.Mockito.mock;
+import static org.mockito.Mockito.never;
+import static org.mockito.Mockito.verify;
 import static org.mockito.Mockito.verifyNoInteractions;
 import static org.mockito.Mockito.when;
 
@@ -32,6 +34,7 @@ import java.time.Instant;
 import java.time.temporal.ChronoUnit;
 import java.util.ArrayList;
 import java.util.List;
+import java.util.concurrent.ForkJoinPool;
 import java.util.concurrent.TimeUnit;
 import java.util.concurrent.atomic.AtomicInteger;
 import org.assertj.core.data.Offset;
@@ -80,27 +83,27 @@ class EventProcessingChainTest {
 
     chain.flush();
     InOrder inOrder = inOrder(contextualizer, threadDumpProcessor, tlabProcessor);
+    inOrder.verify(contextualizer).updateContext(contextEvent);
     inOrder.verify(threadDumpProcessor).accept(threadDump);
+    inOrder.verify(threadDumpProcessor).flush();
     inOrder.verify(tlabProcessor).accept(tlab1);
-    inOrder.verify(contextualizer).updateContext(contextEvent);
     inOrder.verify(tlabProcessor).accept(tlab2);
     inOrder.verify(tlabProcessor).flush();
-    inOrder.verify(threadDumpProcessor).flush();
+    inOrder.verify(contextualizer).removeContextBefore(toNanos(now));
     inOrder.verifyNoMoreInteractions();
   }
 
   @Test
-  void eventsDispatchedInTimeOrder() {
+  void contextAppliedInTimeOrderBeforeOtherEvents() {
     IType<?> contextAttachedType = newEventType(ContextAttached.EVENT_NAME);
     IType<?> threadDumpType = newEventType(ThreadDumpProcessor.EVENT_NAME);
     Instant now = Instant.now();
     IItem event1 = newEvent(contextAttachedType, now.plus(1, SECONDS));
     IItem event2 = newEvent(contextAttachedType, now.plus(2, SECONDS));
-    IItem event3 = newEvent(threadDumpType, now.plus(3, SECONDS));
+    IItem event3 = newEvent(threadDumpType, now);
 
-    // Our events are in time order: context1, context2, threadDump1, threadDump2.
-    // However, we will send them to the chain out of order: context2, context1, threadDump.
-    // Expectation is that we see them dispatched in the correct order.
+    // Context events are sent to the chain out of order: context2, context1. The thread dump
+    // happened before both, it is linked by time and does not need to be dispatched first.
 
     EventProcessingChain chain =
         new EventProcessingChain(eventReader, contextualizer, threadDumpProcessor, tlabProcessor);
@@ -114,9 +117,93 @@ class EventProcessingChainTest {
     ordered.verify(contextualizer).updateContext(event2);
     ordered.verify(threadDumpProcessor).accept(event3);
     ordered.verify(threadDumpProcessor).flush();
+    ordered.verify(contextualizer).removeContextBefore(toNanos(now.plus(1, SECONDS)));
+    ordered.verifyNoMoreInteractions();
+  }
+
+  @Test
+  void contextArraysMergedInTimeOrder() {
+    IType<?> contextAttachedType = newEventType(ContextAttached.EVENT_NAME);
+    IType<?> threadDumpType = newEventType(ThreadDumpProcessor.EVENT_NAME);
+    IType<?> tlabType = newEventType(TLABProcessor.NEW_TLAB_EVENT_NAME);
+    Instant now = Instant.now();
+    IItem context1 = newEvent(contextAttachedType, now.plus(1, SECONDS));
+    IItem context2 = newEvent(contextAttachedType, now.plus(3, SECONDS));
+    IItem context3 = newEvent(contextAttachedType, now.plus(2, SECONDS));
+    IItem threadDump1 = newEvent(threadDumpType, now.plus(2, SECONDS));
+    IItem threadDump2 = newEvent(threadDumpType, now.plus(4, SECONDS));
+    IItem tlab = newEvent(tlabType, now.plus(3, SECONDS));
+
+    EventProcessingChain chain =
+        new EventProcessingChain(eventReader, contextualizer, threadDumpProcessor, tlabProcessor);
+    chain.acceptAll(new IItem[] {context2, context1}); // Out of order
+    chain.acceptAll(new IItem[] {threadDump2, threadDump1});
+    chain.acceptAll(new IItem[] {tlab});
+    chain.acceptAll(new IItem[] {context3});
+
+    verifyNoInteractions(contextualizer, threadDumpProcessor, tlabProcessor);
+
+    chain.flush();
+    InOrder ordered = inOrder(contextualizer, threadDumpProcessor, tlabProcessor);
+    ordered.verify(contextualizer).updateContext(context1);
+    ordered.verify(contextualizer).updateContext(context3);
+    ordered.verify(contextualizer).updateContext(context2);
+    // other events are processed in the order they were accepted
+    ordered.verify(threadDumpProcessor).accept(threadDump2);
+    ordered.verify(threadDumpProcessor).accept(threadDump1);
+    ordered.verify(threadDumpProcessor).flush();
+    ordered.verify(tlabProcessor).accept(tlab);
+    ordered.verify(tlabProcessor).flush();
+    ordered.verify(contextualizer).removeContextBefore(toNanos(now.plus(1, SECONDS)));
     ordered.verifyNoMoreInteractions();
   }
 
+  @Test
+  void processChunkInParallel() {
+    IType<?> contextAttachedType = newEventType(ContextAttached.EVENT_NAME);
+    IType<?> threadDumpType = newEventType(ThreadDumpProcessor.EVENT_NAME);
+    IType<?> tlabType = newEventType(TLABProcessor.NEW_TLAB_EVENT_NAME);
+    Instant now = Instant.now();
+    IItem context1 = newEvent(contextAttachedType, now.plus(1, SECONDS));
+    IItem context2 = newEvent(contextAttachedType, now.plus(3, SECONDS));
+    IItem threadDump1 = newEvent(threadDumpType, now.plus(2, SECONDS));
+    IItem threadDump2 = newEvent(threadDumpType, now.plus(4, SECONDS));
+    IItem tlab1 = newEvent(tlabType, now.plus(1, SECONDS));
+    IItem tlab2 = newEvent(tlabType, now.plus(2, SECONDS));
+
+    ForkJoinPool workerPool = new ForkJoinPool(2);
+    try {
+      EventProcessingChain chain =
+          new EventProcessingChain(
+              eventReader, contextualizer, threadDumpProcessor, tlabProcessor, workerPool);
+      chain.acceptAll(new IItem[] {threadDump1, threadDump2});
+      chain.acceptAll(new IItem[] {context1, context2});
+      chain.accept(tlab1);
+      chain.accept(tlab2);
+      chain.flush();
+      chain.awaitProcessing();
+
+      // all context changes are applied before any other event is processed
+      InOrder contextFirst = inOrder(contextualizer, threadDumpProcessor, tlabProcessor);
+      contextFirst.verify(contextualizer).updateContext(context1);
+      contextFirst.verify(contextualizer).updateContext(context2);
+      contextFirst.verify(threadDumpProcessor).accept(threadDump1);
+      contextFirst.verify(contextualizer).removeContextBefore(toNanos(now.plus(1, SECONDS)));
+
+      InOrder threadDumps = inOrder(threadDumpProcessor);
+      threadDumps.verify(threadDumpProcessor).accept(threadDump1);
+      threadDumps.verify(threadDumpProcessor).accept(threadDump2);
+      threadDumps.verify(threadDumpProcessor).flush();
+
+      InOrder allocations = inOrder(tlabProcessor);
+      allocations.verify(tlabProcessor).accept(tlab1);
+      allocations.verify(tlabProcessor).accept(tlab2);
+      allocations.verify(tlabProcessor).flush();
+    } finally {
+      workerPool.shutdown();
+    }
+  }
+
   @Test
   void eventRateLimit() {
     IType<?> eventType = newEventType(TLABProcessor.NEW_TLAB_EVENT_NAME);
@@ -153,12 +240,122 @@ class EventProcessingChainTest {
     assertThat(sampler.maxEventsPerSecond()).isEqualTo(100);
   }
 
+  @Test
+  void streamedEventsDispatchedImmediately() {
+    IType<?> contextAttachedType = newEventType(ContextAttached.EVENT_NAME);
+    IType<?> threadDumpType = newEventType(ThreadDumpProcessor.EVENT_NAME);
+    Instant now = Instant.now();
+    IItem contextEvent = newEvent(contextAttachedType, now);
+    IItem threadDump = newEvent(threadDumpType, now.plus(1, SECONDS));
+
+    EventProcessingChain chain =
+        new EventProcessingChain(eventReader, contextualizer, threadDumpProcessor, tlabProcessor);
+    chain.beginStreaming();
+    chain.dispatch(contextEvent);
+    chain.dispatch(threadDump);
+
+    InOrder ordered = inOrder(contextualizer, threadDumpProcessor, tlabProcessor);
+    ordered.verify(contextualizer).updateContext(contextEvent);
+    ordered.verify(threadDumpProcessor).accept(threadDump);
+    ordered.verifyNoMoreInteractions();
+
+    chain.flushExporters();
+    ordered.verify(tlabProcessor).flush();
+    ordered.verify(threadDumpProcessor).flush();
+  }
+
+  @Test
+  void streamedEventRateLimit() {
+    IType<?> eventType = newEventType(TLABProcessor.NEW_TLAB_EVENT_NAME);
+    Instant now = Instant.now();
+    RateLimitingAllocationEventSampler sampler = new RateLimitingAllocationEventSampler("100/s");
+    AtomicInteger receivedCount = new AtomicInteger();
+    AllocationEventExporter exporter =
+        (event, sampler1, spanContext) -> receivedCount.incrementAndGet();
+
+    TLABProcessor processor =
+        new TLABProcessor.Builder(true)
+            .eventReader(eventReader)
+            .allocationEventExporter(exporter)
+            .spanContextualizer(mock(SpanContextualizer.class))
+            .sampler(sampler)
+            .build();
+    EventProcessingChain chain =
+        new EventProcessingChain(eventReader, contextualizer, threadDumpProcessor, processor);
+    chain.beginStreaming();
+
+    // every event is kept until the allocation rate is known
+    for (int segment = 0; segment < 2; segment++) {
+      Instant segmentStart = now.plus(segment, SECONDS);
+      for (int i = 0; i < 1000; i++) {
+        IItem event = newEvent(eventType, segmentStart.plus(i, MILLIS));
+        when(eventReader.getStackTrace(event)).thenReturn(mock(IMCStackTrace.class));
+        chain.dispatch(event);
+      }
+      chain.endSegment(segmentStart, segmentStart.plus(1, SECONDS));
+    }
+
+    // probabilistic sampling can over or undersample
+    assertThat(receivedCount.get()).isCloseTo(1100, Offset.offset(30));
+  }
+
+  @Test
+  void executionSamplesProcessedWithChunk() {
+    ExecutionSampleProcessor executionSampleProcessor = mock(ExecutionSampleProcessor.class);
+    IType<?> executionSampleType =
+        newEventType(ExecutionSampleProcessor.EXECUTION_SAMPLE_EVENT_NAME);
+    IType<?> nativeSampleType =
+        newEventType(ExecutionSampleProcessor.NATIVE_METHOD_SAMPLE_EVENT_NAME);
+    Instant now = Instant.now();
+    IItem executionSample = newEvent(executionSampleType, now);
+    IItem nativeSample = newEvent(nativeSampleType, now.plus(1, SECONDS));
+
+    EventProcessingChain chain =
+        new EventProcessingChain(
+            eventReader,
+            contextualizer,
+            threadDumpProcessor,
+            tlabProcessor,
+            executionSampleProcessor,
+            null,
+            null);
+    chain.acceptAll(new IItem[] {executionSample});
+    chain.accept(nativeSample);
+    chain.flush();
+
+    InOrder inOrder = inOrder(executionSampleProcessor);
+    inOrder.verify(executionSampleProcessor).accept(executionSample);
+    inOrder.verify(executionSampleProcessor).accept(nativeSample);
+    inOrder.verify(executionSampleProcessor).flush();
+    verify(tlabProcessor, never()).accept(executionSample);
+  }
+
+  @Test
+  void executionSamplesIgnoredWhenNotProfiled() {
+    IType<?> executionSampleType =
+        newEventType(ExecutionSampleProcessor.EXECUTION_SAMPLE_EVENT_NAME);
+    IItem executionSample = newEvent(executionSampleType, Instant.now());
+
+    EventProcessingChain chain =
+        new EventProcessingChain(eventReader, contextualizer, threadDumpProcessor, tlabProcessor);
+    chain.acceptAll(new IItem[] {executionSample});
+    chain.dispatch(executionSample);
+    chain.flush();
+
+    verify(tlabProcessor, never()).accept(executionSample);
+    verify(threadDumpProcessor, never()).accept(executionSample);
+  }
+
   private IType<?> newEventType(String name) {
     IType<?> type = mock(IType.class);
     when(type.getIdentifier()).thenReturn(name);
     return type;
   }
 
+  private static long toNanos(Instant time) {
+    return TimeUnit.SECONDS.toNanos(time.getEpochSecond()) + time.getNano();
+  }
+
   private IItem newEvent(IType<?> eventType, Instant startTime) {
     IItem event = mock(IItem.class);
     if (eventType != null) {
@@ -166,8 +363,7 @@ class EventProcessingChainTest {
     }
     if (startTime != null) {
       when(eventReader.getStartInstant(event)).thenReturn(startTime);
-      when(eventReader.getStartTime(event))
-          .thenReturn(TimeUnit.SECONDS.toNanos(startTime.getEpochSecond()) + startTime.getNano());
+      when(eventReader.getStartTime(event)).thenReturn(toNanos(startTime));
     }
     return event;
   }
@@ -0,0 +1,141 @@
+/*
+ * Copyright Splunk Inc.
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+
+package com.splunk.opentelemetry.profiler;
+
+import static org.assertj.core.api.Assertions.assertThat;
+import static org.mockito.ArgumentMatchers.anyLong;
+import static org.mockito.ArgumentMatchers.eq;
+import static org.mockito.Mockito.mock;
+import static org.mockito.Mockito.when;
+
+import com.splunk.opentelemetry.profiler.context.SpanContextualizer;
+import com.splunk.opentelemetry.profiler.context.SpanLinkage;
+import com.splunk.opentelemetry.profiler.exporter.ExecutionSampleExporter;
+import io.opentelemetry.api.trace.SpanContext;
+import io.opentelemetry.api.trace.SpanId;
+import io.opentelemetry.api.trace.TraceFlags;
+import io.opentelemetry.api.trace.TraceId;
+import io.opentelemetry.api.trace.TraceState;
+import java.util.ArrayList;
+import java.util.List;
+import org.junit.jupiter.api.BeforeEach;
+import org.junit.jupiter.api.Test;
+import org.junit.jupiter.api.extension.ExtendWith;
+import org.mockito.Mock;
+import org.mockito.junit.jupiter.MockitoExtension;
+import org.mockito.junit.jupiter.MockitoSettings;
+import org.mockito.quality.Strictness;
+import org.openjdk.jmc.common.IMCStackTrace;
+import org.openjdk.jmc.common.IMCThread;
+import org.openjdk.jmc.common.item.IItem;
+
+@ExtendWith(MockitoExtension.class)
+@MockitoSettings(strictness = Strictness.LENIENT)
+class ExecutionSampleProcessorTest {
+
+  private static final long LINKED_THREAD_ID = 606L;
+  private static final long OTHER_THREAD_ID = 707L;
+  private static final SpanContext SPAN_CONTEXT =
+      SpanContext.create(
+          TraceId.fromLongs(123, 456),
+          SpanId.fromLong(123),
+          TraceFlags.getSampled(),
+          TraceState.getDefault());
+
+  @Mock EventReader eventReader;
+  @Mock SpanContextualizer spanContextualizer;
+  private final TestExecutionSampleExporter exporter = new TestExecutionSampleExporter();
+
+  @BeforeEach
+  void setUp() {
+    when(spanContextualizer.link(eq(LINKED_THREAD_ID), anyLong()))
+        .thenReturn(new SpanLinkage(SPAN_CONTEXT, LINKED_THREAD_ID));
+    when(spanContextualizer.link(eq(OTHER_THREAD_ID), anyLong())).thenReturn(SpanLinkage.NONE);
+  }
+
+  @Test
+  void linksSamplesToSpans() {
+    IItem linked = newEvent(LINKED_THREAD_ID);
+    IItem other = newEvent(OTHER_THREAD_ID);
+
+    ExecutionSampleProcessor processor = newProcessor(false);
+    processor.accept(linked);
+    processor.accept(other);
+    processor.flush();
+
+    assertThat(exporter.events).containsExactly(linked, other);
+    assertThat(exporter.spanContexts).containsExactly(SPAN_CONTEXT, SpanContext.getInvalid());
+    assertThat(exporter.flushCount).isEqualTo(1);
+  }
+
+  @Test
+  void onlyTracingSpans() {
+    IItem linked = newEvent(LINKED_THREAD_ID);
+    IItem other = newEvent(OTHER_THREAD_ID);
+
+    ExecutionSampleProcessor processor = newProcessor(true);
+    processor.accept(linked);
+    processor.accept(other);
+
+    assertThat(exporter.events).containsExactly(linked);
+  }
+
+  @Test
+  void samplesWithoutStackAreIgnored() {
+    IItem event = newEvent(LINKED_THREAD_ID);
+    when(eventReader.getStackTrace(event)).thenReturn(null);
+
+    newProcessor(false).accept(event);
+
+    assertThat(exporter.events).isEmpty();
+  }
+
+  private ExecutionSampleProcessor newProcessor(boolean onlyTracingSpans) {
+    return ExecutionSampleProcessor.builder()
+        .eventReader(eventReader)
+        .executionSampleExporter(exporter)
+        .spanContextualizer(spanContextualizer)
+        .onlyTracingSpans(onlyTracingSpans)
+        .build();
+  }
+
+  private IItem newEvent(long threadId) {
+    IItem event = mock(IItem.class);
+    IMCThread thread = mock(IMCThread.class);
+    when(thread.getThreadId()).thenReturn(threadId);
+    when(eventReader.getThread(event)).thenReturn(thread);
+    when(eventReader.getStackTrace(event)).thenReturn(mock(IMCStackTrace.class));
+    return event;
+  }
+
+  private static class TestExecutionSampleExporter implements ExecutionSampleExporter {
+    final List<IItem> events = new ArrayList<>();
+    final List<SpanContext> spanContexts = new ArrayList<>();
+    int flushCount;
+
+    @Override
+    public void export(IItem event, SpanContext spanContext) {
+      events.add(event);
+      spanContexts.add(spanContext);
+    }
+
+    @Override
+    public void flush() {
+      flushCount++;
+    }
+  }
+}
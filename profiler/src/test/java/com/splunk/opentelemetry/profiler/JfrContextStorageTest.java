@@ -18,12 +18,16 @@ package com.splunk.opentelemetry.profiler;
 
 import static org.junit.jupiter.api.Assertions.assertEquals;
 import static org.junit.jupiter.api.Assertions.assertFalse;
+import static org.junit.jupiter.api.Assertions.assertNotSame;
 import static org.junit.jupiter.api.Assertions.fail;
+import static org.mockito.ArgumentMatchers.any;
 import static org.mockito.Mockito.mock;
 import static org.mockito.Mockito.never;
+import static org.mockito.Mockito.times;
 import static org.mockito.Mockito.verify;
 import static org.mockito.Mockito.when;
 
+import com.splunk.opentelemetry.profiler.events.BinaryContextAttached;
 import com.splunk.opentelemetry.profiler.events.ContextAttached;
 import io.opentelemetry.api.trace.Span;
 import io.opentelemetry.api.trace.SpanContext;
@@ -34,6 +38,9 @@ import io.opentelemetry.api.trace.TraceState;
 import io.opentelemetry.context.Context;
 import io.opentelemetry.context.ContextStorage;
 import io.opentelemetry.context.Scope;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.List;
 import java.util.concurrent.atomic.AtomicBoolean;
 import java.util.function.Function;
 import org.junit.jupiter.api.BeforeEach;
@@ -70,6 +77,38 @@ class JfrContextStorageTest {
     assertEquals(spanId, result.getSpanId());
   }
 
+  @Test
+  void testNewBinaryEvent() {
+    BinaryContextAttached result = JfrContextStorage.newBinaryEvent(spanContext);
+    assertEquals(123, result.getTraceIdHigh());
+    assertEquals(455, result.getTraceIdLow());
+    assertEquals(23498, result.getSpanId());
+    assertEquals(TraceFlags.getSampled().asByte(), result.getTraceFlags());
+
+    // decoded ids are cached, switching between span contexts must not mix them up
+    SpanContext other =
+        SpanContext.create(
+            TraceId.fromLongs(1, 2),
+            SpanId.fromLong(3),
+            TraceFlags.getSampled(),
+            TraceState.getDefault());
+    for (int i = 0; i < 3; i++) {
+      result = JfrContextStorage.newBinaryEvent(other);
+      assertEquals(1, result.getTraceIdHigh());
+      assertEquals(2, result.getTraceIdLow());
+      assertEquals(3, result.getSpanId());
+      result = JfrContextStorage.newBinaryEvent(spanContext);
+      assertEquals(123, result.getTraceIdHigh());
+      assertEquals(455, result.getTraceIdLow());
+      assertEquals(23498, result.getSpanId());
+    }
+
+    BinaryContextAttached invalid = JfrContextStorage.newBinaryEvent(SpanContext.getInvalid());
+    assertEquals(0, invalid.getTraceIdHigh());
+    assertEquals(0, invalid.getTraceIdLow());
+    assertEquals(0, invalid.getSpanId());
+  }
+
   @Test
   void testAttachLifecycle() {
     ContextAttached inEvent = mock(ContextAttached.class);
@@ -97,6 +136,105 @@ class JfrContextStorageTest {
     verify(delegatedScope).close();
   }
 
+  @Test
+  void testSameSpanWrappedAgainDoesNotCreateEvents() {
+    List<SpanContext> events = new ArrayList<>();
+    when(delegate.attach(any())).thenReturn(delegatedScope);
+    JfrContextStorage contextStorage = new JfrContextStorage(delegate, recordingEvents(events));
+
+    Scope outer = contextStorage.attach(newContext);
+    // async frameworks wrap the propagated span context into a new span instance
+    Scope inner = contextStorage.attach(Context.root().with(Span.wrap(spanContext)));
+    inner.close();
+    outer.close();
+
+    assertEquals(Arrays.asList(spanContext, SpanContext.getInvalid()), events);
+    verify(delegatedScope, times(2)).close();
+  }
+
+  @Test
+  void testScopeClosedTwice() {
+    Scope otherDelegatedScope = mock(Scope.class);
+    List<SpanContext> events = new ArrayList<>();
+    when(delegate.attach(any())).thenReturn(delegatedScope, otherDelegatedScope);
+    JfrContextStorage contextStorage = new JfrContextStorage(delegate, recordingEvents(events));
+
+    Scope first = contextStorage.attach(newContext);
+    first.close();
+    Scope second = contextStorage.attach(newContext);
+    // a late close of the first scope must not affect the second one
+    first.close();
+
+    assertNotSame(first, second);
+    assertEquals(Arrays.asList(spanContext, SpanContext.getInvalid(), spanContext), events);
+    verify(delegatedScope).close();
+    verify(otherDelegatedScope, never()).close();
+
+    second.close();
+    second.close();
+    assertEquals(4, events.size());
+    verify(otherDelegatedScope).close();
+  }
+
+  @Test
+  void testScopesClosedOutOfOrder() {
+    SpanContext otherContext =
+        SpanContext.create(
+            traceId, SpanId.fromLong(42), TraceFlags.getSampled(), TraceState.getDefault());
+    List<SpanContext> events = new ArrayList<>();
+    when(delegate.attach(any())).thenReturn(delegatedScope);
+    JfrContextStorage contextStorage = new JfrContextStorage(delegate, recordingEvents(events));
+
+    Scope outer = contextStorage.attach(newContext);
+    Scope inner = contextStorage.attach(Context.root().with(Span.wrap(otherContext)));
+    outer.close();
+    Scope next = contextStorage.attach(newContext);
+    Scope nested = contextStorage.attach(Context.root().with(Span.wrap(otherContext)));
+    nested.close();
+    next.close();
+    inner.close();
+
+    SpanContext invalid = SpanContext.getInvalid();
+    assertEquals(
+        Arrays.asList(
+            spanContext,
+            otherContext,
+            invalid,
+            spanContext,
+            otherContext,
+            spanContext,
+            invalid,
+            spanContext),
+        events);
+  }
+
+  @Test
+  void testEventsNotCommittedAreRecordedAgain() {
+    ContextAttached notCommitted = mock(ContextAttached.class);
+    ContextAttached committed = mock(ContextAttached.class);
+    when(committed.shouldCommit()).thenReturn(true);
+    Function<SpanContext, ContextAttached> newEvent = mock(Function.class);
+    when(newEvent.apply(spanContext)).thenReturn(notCommitted, committed);
+    when(newEvent.apply(SpanContext.getInvalid())).thenReturn(notCommitted);
+    when(delegate.attach(newContext)).thenReturn(delegatedScope);
+    JfrContextStorage contextStorage = new JfrContextStorage(delegate, newEvent);
+
+    // recording was not running yet
+    contextStorage.attach(newContext).close();
+    contextStorage.attach(newContext);
+
+    verify(committed).commit();
+  }
+
+  private static Function<SpanContext, ContextAttached> recordingEvents(List<SpanContext> events) {
+    return spanContext -> {
+      events.add(spanContext);
+      ContextAttached event = mock(ContextAttached.class);
+      when(event.shouldCommit()).thenReturn(true);
+      return event;
+    };
+  }
+
   @Test
   void testAttachWithInvalidContextDoesNotCreateAnyEvents() {
 
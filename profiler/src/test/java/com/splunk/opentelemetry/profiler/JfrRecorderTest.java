@@ -17,6 +17,7 @@
 package com.splunk.opentelemetry.profiler;
 
 import static com.splunk.opentelemetry.profiler.JfrRecorder.RECORDING_NAME;
+import static org.assertj.core.api.Assertions.assertThat;
 import static org.junit.jupiter.api.Assertions.assertFalse;
 import static org.junit.jupiter.api.Assertions.assertNotNull;
 import static org.junit.jupiter.api.Assertions.assertTrue;
@@ -25,8 +26,13 @@ import static org.mockito.Mockito.*;
 import java.io.ByteArrayInputStream;
 import java.io.IOException;
 import java.io.InputStream;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Files;
+import java.nio.file.Path;
 import java.time.Duration;
+import java.util.ArrayList;
 import java.util.HashMap;
+import java.util.List;
 import java.util.Map;
 import java.util.function.Consumer;
 import jdk.jfr.Recording;
@@ -34,6 +40,7 @@ import jdk.jfr.RecordingState;
 import org.junit.jupiter.api.BeforeEach;
 import org.junit.jupiter.api.Test;
 import org.junit.jupiter.api.extension.ExtendWith;
+import org.junit.jupiter.api.io.TempDir;
 import org.mockito.ArgumentCaptor;
 import org.mockito.Mock;
 import org.mockito.junit.jupiter.MockitoExtension;
@@ -90,6 +97,37 @@ class JfrRecorderTest {
     // No exception propagated
   }
 
+  @Test
+  void testFlushCompletedChunks(@TempDir Path dir) throws Exception {
+    Path repository = Files.createDirectory(dir.resolve("repository"));
+    Path output = Files.createDirectory(dir.resolve("output"));
+    JFR jfr = mock(JFR.class);
+    when(jfr.getRepository()).thenReturn(repository);
+    when(jfr.takeSnapshot()).thenReturn(mock(Recording.class));
+    Path kept = Files.createFile(output.resolve("kept.jfr"));
+    when(namingConvention.newOutputPath()).thenReturn(kept);
+    List<String> contents = new ArrayList<>();
+    doAnswer(
+            invocation -> {
+              InputStream in = invocation.getArgument(0);
+              contents.add(new String(in.readAllBytes(), StandardCharsets.UTF_8));
+              return null;
+            })
+        .when(onNewRecording)
+        .accept(any());
+    JfrRecorder jfrRecorder =
+        buildJfrRecorder(jfr, builder -> builder.toDisk(true).keepRecordingFiles(true));
+
+    jfrRecorder.start();
+    verify(recording).setToDisk(true);
+    Files.writeString(repository.resolve("2024_01_01_10_00_00.jfr"), "complete");
+    Files.writeString(repository.resolve("2024_01_01_10_00_10.jfr"), "current");
+    jfrRecorder.flushSnapshot();
+
+    assertThat(contents).containsExactly("complete");
+    assertThat(kept).hasContent("complete");
+  }
+
   @Test
   void testIsStarted() {
     JFR jfr = mock(JFR.class);
@@ -113,6 +151,10 @@ class JfrRecorderTest {
   }
 
   private JfrRecorder buildJfrRecorder(JFR jfr) {
+    return buildJfrRecorder(jfr, builder -> {});
+  }
+
+  private JfrRecorder buildJfrRecorder(JFR jfr, Consumer<JfrRecorder.Builder> customizer) {
     JfrRecorder.Builder builder =
         JfrRecorder.builder()
             .maxAgeDuration(maxAge)
@@ -120,6 +162,7 @@ class JfrRecorderTest {
             .onNewRecording(onNewRecording)
             .namingConvention(namingConvention)
             .jfr(jfr);
+    customizer.accept(builder);
 
     return new JfrRecorder(builder) {
       @Override
@@ -0,0 +1,88 @@
+/*
+ * Copyright Splunk Inc.
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+
+package com.splunk.opentelemetry.profiler;
+
+import static org.assertj.core.api.Assertions.assertThat;
+
+import java.io.IOException;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import org.junit.jupiter.api.Test;
+import org.junit.jupiter.api.io.TempDir;
+
+class JfrRepositoryChunksTest {
+
+  @TempDir Path repository;
+
+  @Test
+  void returnCompletedChunksOnce() throws IOException {
+    Path before = chunk("2024_01_01_10_00_00.jfr");
+    // the chunk that the recording started writing to
+    Path first = chunk("2024_01_01_10_00_10.jfr");
+    JfrRepositoryChunks chunks = new JfrRepositoryChunks(() -> repository);
+    chunks.start();
+
+    Path second = chunk("2024_01_01_10_00_20.jfr");
+    assertThat(chunks.takeNewChunks()).containsExactly(first);
+
+    Path third = chunk("2024_01_01_10_00_30.jfr");
+    assertThat(chunks.takeNewChunks()).containsExactly(second);
+
+    Files.delete(before);
+    Files.delete(first);
+    assertThat(chunks.takeNewChunks()).isEmpty();
+    assertThat(third).exists();
+  }
+
+  @Test
+  void orderChunksStartedInTheSameSecond() throws IOException {
+    JfrRepositoryChunks chunks = new JfrRepositoryChunks(() -> repository);
+    chunks.start();
+
+    Path first = chunk("2024_01_01_10_00_00.jfr");
+    Path second = chunk("2024_01_01_10_00_00_2.jfr");
+    Path third = chunk("2024_01_01_10_00_00_10.jfr");
+    chunk("2024_01_01_10_00_01.jfr");
+    chunk("otel-profiler-2024-01-01T10_00_00-1.jfr");
+
+    assertThat(chunks.takeNewChunks()).containsExactly(first, second, third);
+  }
+
+  @Test
+  void allChunksAreCompleteWhenTheCurrentOneIsAPartFile() throws IOException {
+    JfrRepositoryChunks chunks = new JfrRepositoryChunks(() -> repository);
+    chunks.start();
+
+    Path first = chunk("2024_01_01_10_00_00.jfr");
+    Path second = chunk("2024_01_01_10_00_10.jfr");
+    chunk("2024_01_01_10_00_20.part");
+
+    assertThat(chunks.takeNewChunks()).containsExactly(first, second);
+  }
+
+  @Test
+  void unknownRepository() throws IOException {
+    JfrRepositoryChunks chunks = new JfrRepositoryChunks(() -> null);
+    chunks.start();
+
+    assertThat(chunks.takeNewChunks()).isNull();
+  }
+
+  private Path chunk(String name) throws IOException {
+    return Files.write(repository.resolve(name), new byte[] {1});
+  }
+}
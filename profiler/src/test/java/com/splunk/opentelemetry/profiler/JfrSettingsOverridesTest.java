@@ -17,6 +17,8 @@
 package com.splunk.opentelemetry.profiler;
 
 import static com.splunk.opentelemetry.profiler.Configuration.CONFIG_KEY_CALL_STACK_INTERVAL;
+import static com.splunk.opentelemetry.profiler.Configuration.CONFIG_KEY_CALL_STACK_SAMPLER;
+import static com.splunk.opentelemetry.profiler.Configuration.DEFAULT_CALL_STACK_SAMPLER;
 import static org.junit.jupiter.api.Assertions.assertEquals;
 import static org.junit.jupiter.api.Assertions.assertNotSame;
 import static org.mockito.Mockito.mock;
@@ -48,4 +50,16 @@ class JfrSettingsOverridesTest {
     assertEquals("true", result.get("jdk.ObjectAllocationInNewTLAB#enabled"));
     assertEquals("true", result.get("jdk.ObjectAllocationOutsideTLAB#enabled"));
   }
+
+  @Test
+  void threadInfoSamplerDisablesThreadDumps() {
+    ConfigProperties config = mock(ConfigProperties.class);
+    when(config.getDuration(CONFIG_KEY_CALL_STACK_INTERVAL, Duration.ZERO))
+        .thenReturn(Duration.ofMillis(163));
+    when(config.getString(CONFIG_KEY_CALL_STACK_SAMPLER, DEFAULT_CALL_STACK_SAMPLER))
+        .thenReturn("thread-info");
+    JfrSettingsOverrides overrides = new JfrSettingsOverrides(config);
+    Map<String, String> result = overrides.apply(Map.of("jdk.ThreadDump#enabled", "true"));
+    assertEquals("false", result.get("jdk.ThreadDump#enabled"));
+  }
 }
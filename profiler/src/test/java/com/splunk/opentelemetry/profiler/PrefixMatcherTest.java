@@ -0,0 +1,80 @@
+/*
+ * Copyright Splunk Inc.
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+
+package com.splunk.opentelemetry.profiler;
+
+import static com.splunk.opentelemetry.profiler.PrefixMatcher.EXCLUDED;
+import static com.splunk.opentelemetry.profiler.PrefixMatcher.INCLUDED;
+import static com.splunk.opentelemetry.profiler.PrefixMatcher.NO_MATCH;
+import static org.assertj.core.api.Assertions.assertThat;
+
+import org.junit.jupiter.api.Test;
+
+class PrefixMatcherTest {
+
+  @Test
+  void longestPrefixWins() {
+    PrefixMatcher matcher =
+        PrefixMatcher.builder()
+            .exclude("java.")
+            .include("java.util.concurrent.")
+            .exclude("java.util.concurrent.locks.")
+            .build();
+
+    assertThat(matcher.match("java.lang.Thread")).isEqualTo(EXCLUDED);
+    assertThat(matcher.match("java.util.concurrent.ForkJoinPool")).isEqualTo(INCLUDED);
+    assertThat(matcher.match("java.util.concurrent.locks.LockSupport")).isEqualTo(EXCLUDED);
+    assertThat(matcher.match("javax.Foo")).isEqualTo(NO_MATCH);
+    assertThat(matcher.match("java")).isEqualTo(NO_MATCH);
+    assertThat(matcher.match("")).isEqualTo(NO_MATCH);
+  }
+
+  @Test
+  void exactMatch() {
+    PrefixMatcher matcher = PrefixMatcher.builder().excludeExact("Finalizer").build();
+
+    assertThat(matcher.match("Finalizer")).isEqualTo(EXCLUDED);
+    assertThat(matcher.match("Finalizer-1")).isEqualTo(NO_MATCH);
+    assertThat(matcher.match("Final")).isEqualTo(NO_MATCH);
+  }
+
+  @Test
+  void matchUpToTerminator() {
+    PrefixMatcher matcher =
+        PrefixMatcher.builder().excludeExact("Finalizer").exclude("pool-").build();
+    String text = "\"Finalizer\" #3 daemon\n\"pool-1-thread-1\" #4\n";
+
+    assertThat(matcher.match(text, 1, text.length(), '"')).isEqualTo(EXCLUDED);
+    int secondName = text.indexOf("pool");
+    assertThat(matcher.match(text, secondName, text.length(), '"')).isEqualTo(EXCLUDED);
+    // region ends before the name is complete
+    assertThat(matcher.match(text, 1, 6, '"')).isEqualTo(NO_MATCH);
+  }
+
+  @Test
+  void includedWinsOverExcludedWithSamePrefix() {
+    PrefixMatcher matcher = PrefixMatcher.builder().exclude("grpc-").include("grpc-").build();
+
+    assertThat(matcher.match("grpc-default-executor-1")).isEqualTo(INCLUDED);
+  }
+
+  @Test
+  void hasExclusions() {
+    assertThat(PrefixMatcher.builder().build().hasExclusions()).isFalse();
+    assertThat(PrefixMatcher.builder().include("a").build().hasExclusions()).isFalse();
+    assertThat(PrefixMatcher.builder().exclude("a").build().hasExclusions()).isTrue();
+  }
+}
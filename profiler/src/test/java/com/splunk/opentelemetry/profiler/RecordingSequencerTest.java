@@ -64,6 +64,14 @@ class RecordingSequencerTest {
     assertTrue(latch.await(5, SECONDS));
   }
 
+  @Test
+  void stopWaitsForSnapshot() {
+    when(recorder.isStarted()).thenReturn(true);
+    RecordingSequencer sequencer = buildSequencer();
+    sequencer.start();
+    assertTrue(sequencer.stop(Duration.ofSeconds(5)));
+  }
+
   private RecordingSequencer buildSequencer() {
     return buildSequencer(recorder);
   }
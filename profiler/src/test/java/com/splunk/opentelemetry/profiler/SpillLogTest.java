@@ -0,0 +1,197 @@
+/*
+ * Copyright Splunk Inc.
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+
+package com.splunk.opentelemetry.profiler;
+
+import static io.opentelemetry.api.common.AttributeKey.booleanKey;
+import static io.opentelemetry.api.common.AttributeKey.doubleKey;
+import static io.opentelemetry.api.common.AttributeKey.longKey;
+import static io.opentelemetry.api.common.AttributeKey.stringKey;
+import static org.assertj.core.api.Assertions.assertThat;
+import static org.assertj.core.api.Assertions.assertThatThrownBy;
+
+import io.opentelemetry.api.common.Attributes;
+import io.opentelemetry.api.common.Value;
+import io.opentelemetry.api.logs.Logger;
+import io.opentelemetry.sdk.logs.SdkLoggerProvider;
+import io.opentelemetry.sdk.logs.data.LogRecordData;
+import io.opentelemetry.sdk.logs.export.SimpleLogRecordProcessor;
+import io.opentelemetry.sdk.resources.Resource;
+import io.opentelemetry.sdk.testing.exporter.InMemoryLogRecordExporter;
+import java.io.IOException;
+import java.nio.channels.FileChannel;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.nio.file.StandardOpenOption;
+import java.time.Instant;
+import java.util.List;
+import java.util.stream.Collectors;
+import java.util.stream.Stream;
+import org.junit.jupiter.api.Test;
+import org.junit.jupiter.api.io.TempDir;
+
+class SpillLogTest {
+  private static final Resource RESOURCE =
+      Resource.create(Attributes.of(stringKey("service.name"), "test"));
+
+  @TempDir Path dir;
+
+  @Test
+  void readAppendedRecords() throws IOException {
+    List<LogRecordData> records = records(2, 100);
+    try (SpillLog spillLog = SpillLog.open(dir, 1024 * 1024)) {
+      spillLog.append(records);
+
+      SpillLog.Segment segment = spillLog.oldest();
+      List<LogRecordData> replayed = spillLog.read(segment);
+
+      assertThat(replayed).hasSize(2);
+      for (int i = 0; i < 2; i++) {
+        LogRecordData expected = records.get(i);
+        LogRecordData actual = replayed.get(i);
+        assertThat(actual.getResource()).isEqualTo(RESOURCE);
+        assertThat(actual.getInstrumentationScopeInfo().getName()).isEqualTo("test");
+        assertThat(actual.getInstrumentationScopeInfo().getVersion()).isEqualTo("1.0");
+        assertThat(actual.getTimestampEpochNanos()).isEqualTo(expected.getTimestampEpochNanos());
+        assertThat(actual.getObservedTimestampEpochNanos())
+            .isEqualTo(expected.getObservedTimestampEpochNanos());
+        assertThat(actual.getBodyValue().getValue())
+            .isEqualTo(expected.getBodyValue().getValue());
+        assertThat(actual.getAttributes()).isEqualTo(expected.getAttributes());
+      }
+    }
+  }
+
+  @Test
+  void readStringBody() throws IOException {
+    InMemoryLogRecordExporter exporter = InMemoryLogRecordExporter.create();
+    logger(exporter).logRecordBuilder().setBody("profile").emit();
+
+    try (SpillLog spillLog = SpillLog.open(dir, 1024 * 1024)) {
+      spillLog.append(exporter.getFinishedLogRecordItems());
+      List<LogRecordData> replayed = spillLog.read(spillLog.oldest());
+
+      assertThat(replayed).hasSize(1);
+      assertThat(replayed.get(0).getBodyValue().getValue()).isEqualTo("profile");
+    }
+  }
+
+  @Test
+  void evictOldestSegmentsToStayWithinLimit() throws IOException {
+    List<LogRecordData> records = records(10, 1000);
+    long maxBytes = 5000;
+    // one record per segment
+    try (SpillLog spillLog = SpillLog.open(dir, maxBytes, 1)) {
+      for (LogRecordData record : records) {
+        spillLog.append(List.of(record));
+        assertThat(spillLog.size()).isLessThanOrEqualTo(maxBytes);
+      }
+
+      assertThat(segmentFiles()).hasSizeLessThan(5);
+      List<LogRecordData> oldest = spillLog.read(spillLog.oldest());
+      assertThat(oldest).hasSize(1);
+      assertThat(oldest.get(0).getTimestampEpochNanos())
+          .isGreaterThan(records.get(5).getTimestampEpochNanos());
+    }
+  }
+
+  @Test
+  void removeReplayedSegments() throws IOException {
+    try (SpillLog spillLog = SpillLog.open(dir, 1024 * 1024)) {
+      spillLog.append(records(3, 100));
+
+      spillLog.remove(spillLog.oldest());
+
+      assertThat(spillLog.oldest()).isNull();
+      assertThat(spillLog.size()).isZero();
+      assertThat(segmentFiles()).isEmpty();
+    }
+  }
+
+  @Test
+  void replaySegmentsOfPreviousRun() throws IOException {
+    try (SpillLog spillLog = SpillLog.open(dir, 1024 * 1024)) {
+      spillLog.append(records(3, 100));
+    }
+
+    try (SpillLog spillLog = SpillLog.open(dir, 1024 * 1024)) {
+      spillLog.append(records(1, 100));
+
+      List<LogRecordData> previous = spillLog.read(spillLog.oldest());
+      assertThat(previous).hasSize(3);
+      assertThat(previous.get(0).getResource()).isEqualTo(RESOURCE);
+      spillLog.remove(spillLog.oldest());
+      assertThat(spillLog.read(spillLog.oldest())).hasSize(1);
+    }
+  }
+
+  @Test
+  void skipRecordThatWasNotWrittenCompletely() throws IOException {
+    try (SpillLog spillLog = SpillLog.open(dir, 1024 * 1024)) {
+      spillLog.append(records(2, 100));
+    }
+    Path segment = segmentFiles().get(0);
+    try (FileChannel channel = FileChannel.open(segment, StandardOpenOption.WRITE)) {
+      channel.truncate(channel.size() - 10);
+    }
+
+    try (SpillLog spillLog = SpillLog.open(dir, 1024 * 1024)) {
+      assertThat(spillLog.read(spillLog.oldest())).hasSize(1);
+    }
+  }
+
+  @Test
+  void lockDirectory() throws IOException {
+    try (SpillLog spillLog = SpillLog.open(dir, 1024 * 1024)) {
+      assertThatThrownBy(() -> SpillLog.open(dir, 1024 * 1024)).isInstanceOf(IOException.class);
+    }
+  }
+
+  private List<Path> segmentFiles() throws IOException {
+    try (Stream<Path> files = Files.list(dir)) {
+      return files.filter(path -> path.toString().endsWith(".spill")).sorted().collect(Collectors.toList());
+    }
+  }
+
+  private static List<LogRecordData> records(int count, int bodySize) {
+    InMemoryLogRecordExporter exporter = InMemoryLogRecordExporter.create();
+    var logger = logger(exporter);
+    for (int i = 0; i < count; i++) {
+      byte[] body = new byte[bodySize];
+      body[0] = (byte) i;
+      logger
+          .logRecordBuilder()
+          .setTimestamp(Instant.ofEpochSecond(1000 + i))
+          .setBody(Value.of(body))
+          .setAttribute(stringKey("profiling.data.type"), "cpu")
+          .setAttribute(longKey("profiling.data.total.frame.count"), 10L + i)
+          .setAttribute(booleanKey("test.boolean"), true)
+          .setAttribute(doubleKey("test.double"), 0.5)
+          .emit();
+    }
+    return exporter.getFinishedLogRecordItems();
+  }
+
+  private static Logger logger(InMemoryLogRecordExporter exporter) {
+    return SdkLoggerProvider.builder()
+        .setResource(RESOURCE)
+        .addLogRecordProcessor(SimpleLogRecordProcessor.create(exporter))
+        .build()
+        .loggerBuilder("test")
+        .setInstrumentationVersion("1.0")
+        .build();
+  }
+}
@@ -223,6 +223,118 @@ class StackTraceFilterTest {
     assertFalse(result);
   }
 
+  @Test
+  void excludesJvmInternalStackWithoutTrailingNewline() {
+    // the last frame line of a region does not necessarily end with a newline
+    String stack = JVM_INTERNAL_STACK.substring(0, JVM_INTERNAL_STACK.length() - 1);
+    StackTraceFilter filter = new StackTraceFilter(eventReader, true, false);
+    boolean result = filter.test(regionFromStackTrace(stack));
+    assertFalse(result);
+  }
+
+  @Test
+  void configuredThreads() {
+    String stack =
+        "\"pool-3-thread-1\" #31 prio=5 os_prio=0 cpu=1.20ms elapsed=12.34s tid=0x00007f51\n"
+            + "   java.lang.Thread.State: RUNNABLE\n"
+            + "\tat com.example.Worker.work(Worker.java:12)\n"
+            + "\tat java.lang.Thread.run(java.base@11.0.12/Thread.java:829)\n";
+    StackTraceFilter excluding =
+        StackTraceFilter.builder()
+            .eventReader(eventReader)
+            .excludedThreads(Collections.singletonList("pool-"))
+            .build();
+    StackTraceFilter including =
+        StackTraceFilter.builder()
+            .eventReader(eventReader)
+            .excludedThreads(Collections.singletonList("pool-"))
+            .includedThreads(Collections.singletonList("pool-3-"))
+            .build();
+
+    assertFalse(excluding.test(regionFromStackTrace(stack)));
+    assertFalse(excluding.test("pool-3-thread-1", new StackTraceElement[] {frame("a.B")}));
+    assertTrue(including.test(regionFromStackTrace(stack)));
+    assertTrue(including.test("pool-3-thread-1", new StackTraceElement[] {frame("a.B")}));
+    assertFalse(including.test(regionFromStackTrace(AGENT_INTERNAL_STACK)));
+  }
+
+  @Test
+  void configuredPackages() {
+    String stack =
+        "\"nioEventLoopGroup-2-1\" #33 prio=5 os_prio=0 cpu=4.51ms elapsed=12.34s tid=0x00007f51\n"
+            + "   java.lang.Thread.State: RUNNABLE\n"
+            + "\tat sun.nio.ch.EPoll.wait(java.base@11.0.12/Native Method)\n"
+            + "\tat io.netty.channel.nio.NioEventLoop.run(NioEventLoop.java:500)\n"
+            + "\tat java.lang.Thread.run(java.base@11.0.12/Thread.java:829)\n";
+    StackTraceFilter excluding =
+        StackTraceFilter.builder()
+            .eventReader(eventReader)
+            .excludedPackages(Collections.singletonList("io.netty."))
+            .build();
+    StackTraceFilter including =
+        StackTraceFilter.builder()
+            .eventReader(eventReader)
+            .includedPackages(Collections.singletonList("java.util.concurrent."))
+            .build();
+
+    assertTrue(new StackTraceFilter(eventReader, false).test(regionFromStackTrace(stack)));
+    assertFalse(excluding.test(regionFromStackTrace(stack)));
+    assertFalse(
+        excluding.test("worker", new StackTraceElement[] {frame("io.netty.Foo"), frame("sun.X")}));
+    assertTrue(including.test(regionFromStackTrace(JVM_INTERNAL_STACK)));
+    assertFalse(including.test("worker", new StackTraceElement[] {frame("java.lang.Thread")}));
+  }
+
+  @Test
+  void threadNameWithQuotes() {
+    String stack =
+        "\"worker \"a\"\" #31 prio=5 os_prio=0 cpu=1.20ms elapsed=12.34s tid=0x00007f51\n"
+            + "   java.lang.Thread.State: RUNNABLE\n"
+            + "\tat com.example.Worker.work(Worker.java:12)\n";
+    StackTraceFilter filter =
+        StackTraceFilter.builder()
+            .eventReader(eventReader)
+            .excludedThreads(Collections.singletonList("worker \"a\""))
+            .build();
+
+    assertFalse(filter.test(regionFromStackTrace(stack)));
+    assertFalse(filter.test("worker \"a\"", new StackTraceElement[] {frame("a.B")}));
+    assertTrue(filter.test("worker \"b\"", new StackTraceElement[] {frame("a.B")}));
+    assertTrue(new StackTraceFilter(eventReader, false).test(regionFromStackTrace(stack)));
+  }
+
+  @Test
+  void lastFrameWithoutNewline() {
+    String header =
+        "\"main\" #1 prio=5 os_prio=0 tid=0x00007f51 nid=0xe9 runnable\n"
+            + "   java.lang.Thread.State: RUNNABLE\n"
+            + "\tat java.lang.Object.wait(java.base@11.0.12/Native Method)\n";
+    StackTraceFilter filter = new StackTraceFilter(eventReader, false);
+
+    String internalFrame = "\tat java.lang.Thread.run(java.base@11.0.12/Thread.java:1)";
+    String applicationFrame = "\tat com.example.Main.main(Main.java:1)";
+
+    // the last frame is checked like every other frame
+    assertFalse(filter.test(regionFromStackTrace(header + internalFrame)));
+    assertTrue(filter.test(regionFromStackTrace(header + applicationFrame)));
+  }
+
+  @Test
+  void deepStack() {
+    StringBuilder stack =
+        new StringBuilder("\"deep\" #40 prio=5 os_prio=0 tid=0x00007f51 nid=0xe9 runnable\n")
+            .append("   java.lang.Thread.State: RUNNABLE\n");
+    for (int i = 0; i < 100_000; i++) {
+      stack.append("\tat java.lang.Recursive.call(java.base@11.0.12/Recursive.java:1)\n");
+    }
+    StackTraceFilter filter = new StackTraceFilter(eventReader, false);
+    assertFalse(filter.test(regionFromStackTrace(stack.toString())));
+  }
+
+  private static StackTraceElement frame(String className) {
+    return new StackTraceElement(className, "run", null, 1);
+  }
+
   private static ThreadDumpRegion regionFromStackTrace(String stack) {
     return new ThreadDumpRegion(stack, 0, stack.length());
   }
@@ -238,6 +350,15 @@ class StackTraceFilterTest {
     assertTrue(filter.test(applicationEvent));
   }
 
+  @Test
+  void builtInThreadNamesOfEventsMatchByPrefix() {
+    // only thread dumps tell where a thread name ends
+    StackTraceFilter filter = new StackTraceFilter(eventReader, false, true);
+    assertFalse(filter.test(createMockEvent("Finalizer")));
+    assertFalse(filter.test(createMockEvent("Finalizer-2")));
+    assertFalse(filter.test("Finalizer-2", new StackTraceElement[] {frame("a.B")}));
+  }
+
   @Test
   void filterByStackTrace() {
     IMCFrame frame1 = createMockFrame("java.lang.Thread", "run", 1);
@@ -254,6 +375,25 @@ class StackTraceFilterTest {
     assertTrue(filter.test(applicationEvent));
   }
 
+  @Test
+  void filterThreadInfoStacks() {
+    StackTraceElement[] vmStack = {
+      new StackTraceElement("sun.Bar", "bar", "Bar.java", 3),
+      new StackTraceElement("java.lang.Thread", "run", "Thread.java", 1)
+    };
+    StackTraceElement[] applicationStack = {
+      new StackTraceElement("baz.Baz", "baz", "Baz.java", 4),
+      new StackTraceElement("java.lang.Thread", "run", "Thread.java", 1)
+    };
+
+    StackTraceFilter filter = new StackTraceFilter(eventReader, false, false);
+    assertTrue(filter.test("My Thread", applicationStack));
+    assertFalse(filter.test("My Thread", vmStack));
+    assertFalse(filter.test("My Thread", new StackTraceElement[0]));
+    assertFalse(filter.test("JFR Recorder Thread", applicationStack));
+    assertFalse(filter.test(ThreadInfoSampler.THREAD_NAME, applicationStack));
+  }
+
   private IItem createMockEvent(String threadName) {
     return createMockEvent(threadName, Collections.emptyList());
   }
@@ -20,6 +20,7 @@ import static com.splunk.opentelemetry.profiler.Configuration.CONFIG_KEY_MEMORY_
 import static com.splunk.opentelemetry.profiler.Configuration.DEFAULT_MEMORY_ENABLED;
 import static org.assertj.core.api.Assertions.assertThat;
 import static org.mockito.ArgumentMatchers.anyLong;
+import static org.mockito.ArgumentMatchers.eq;
 import static org.mockito.Mockito.mock;
 import static org.mockito.Mockito.when;
 
@@ -28,7 +29,6 @@ import com.splunk.opentelemetry.profiler.allocation.sampler.AllocationEventSampl
 import com.splunk.opentelemetry.profiler.allocation.sampler.RateLimitingAllocationEventSampler;
 import com.splunk.opentelemetry.profiler.context.SpanContextualizer;
 import com.splunk.opentelemetry.profiler.context.SpanLinkage;
-import com.splunk.opentelemetry.profiler.util.StackSerializer;
 import io.opentelemetry.api.trace.SpanContext;
 import io.opentelemetry.api.trace.SpanId;
 import io.opentelemetry.api.trace.TraceFlags;
@@ -96,9 +96,7 @@ class TLABProcessorTest {
   @Test
   void testProcess() {
     Instant now = Instant.now();
-    StackSerializer serializer = mock(StackSerializer.class);
-
-    IItem event = createMockEvent(serializer, now);
+    IItem event = createMockEvent(now);
 
     ConfigProperties config = mock(ConfigProperties.class);
     when(config.getBoolean(CONFIG_KEY_MEMORY_ENABLED, DEFAULT_MEMORY_ENABLED)).thenReturn(true);
@@ -110,7 +108,8 @@ class TLABProcessorTest {
             TraceFlags.getSampled(),
             TraceState.getDefault());
     SpanContextualizer spanContextualizer = mock(SpanContextualizer.class);
-    when(spanContextualizer.link(THREAD_ID)).thenReturn(new SpanLinkage(spanContext, THREAD_ID));
+    when(spanContextualizer.link(eq(THREAD_ID), anyLong()))
+        .thenReturn(new SpanLinkage(spanContext, THREAD_ID));
 
     TestAllocationEventExporter allocationEventExporter = new TestAllocationEventExporter();
 
@@ -126,9 +125,7 @@ class TLABProcessorTest {
     assertThat(allocationEventExporter.events).isNotEmpty();
   }
 
-  private IItem createMockEvent(StackSerializer serializer, Instant now) {
-    String stackAsString = "i am a serialized stack believe me";
-
+  private IItem createMockEvent(Instant now) {
     IItem event = mock(IItem.class);
     IMCStackTrace stack = mock(IMCStackTrace.class);
     IType eventType = mock(IType.class);
@@ -143,16 +140,14 @@ class TLABProcessorTest {
     when(mockThread.getThreadName()).thenReturn("mockingbird");
     when(stack.getTruncationState()).thenReturn(IMCStackTrace.TruncationState.NOT_TRUNCATED);
     when(eventType.getIdentifier()).thenReturn("tee-lab");
-    when(serializer.serialize(stack)).thenReturn(stackAsString);
 
     return event;
   }
 
   @Test
   void testSampling() {
-    StackSerializer serializer = mock(StackSerializer.class);
     SpanContextualizer spanContextualizer = mock(SpanContextualizer.class);
-    when(spanContextualizer.link(anyLong())).thenReturn(SpanLinkage.NONE);
+    when(spanContextualizer.link(anyLong(), anyLong())).thenReturn(SpanLinkage.NONE);
 
     ConfigProperties config = mock(ConfigProperties.class);
     when(config.getBoolean(CONFIG_KEY_MEMORY_ENABLED, DEFAULT_MEMORY_ENABLED)).thenReturn(true);
@@ -168,7 +163,7 @@ class TLABProcessorTest {
             .sampler(sampler)
             .build();
 
-    IItem event = createMockEvent(serializer, Instant.now());
+    IItem event = createMockEvent(Instant.now());
 
     for (int i = 0; i < 10; i++) {
       sampler.updateSampler(i % 2 == 0 ? 1.0 : 0.0);
@@ -0,0 +1,170 @@
+/*
+ * Copyright Splunk Inc.
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+
+package com.splunk.opentelemetry.profiler;
+
+import static org.assertj.core.api.Assertions.assertThat;
+
+import com.splunk.opentelemetry.profiler.context.StackToSpanLinkage;
+import com.splunk.opentelemetry.profiler.exporter.CpuEventExporter;
+import io.opentelemetry.api.trace.SpanContext;
+import io.opentelemetry.api.trace.TraceFlags;
+import io.opentelemetry.api.trace.TraceState;
+import java.time.Duration;
+import java.time.Instant;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.concurrent.CountDownLatch;
+import org.junit.jupiter.api.AfterEach;
+import org.junit.jupiter.api.BeforeEach;
+import org.junit.jupiter.api.Test;
+
+class ThreadInfoSamplerTest {
+
+  private static final SpanContext SPAN_CONTEXT =
+      SpanContext.create(
+          "deadbeefdeadbeefdeadbeefdeadbeef",
+          "0123456789abcdef",
+          TraceFlags.getSampled(),
+          TraceState.getDefault());
+
+  private final ActiveSpanThreads activeSpanThreads = new ActiveSpanThreads();
+  private final RecordingExporter exporter = new RecordingExporter();
+  private final CallStackInterval interval = new CallStackInterval(Duration.ofSeconds(10));
+  private final CountDownLatch done = new CountDownLatch(1);
+  private Thread worker;
+
+  @BeforeEach
+  void startWorker() {
+    worker = new Thread(this::awaitDone, "test-worker");
+    worker.start();
+  }
+
+  @AfterEach
+  void stopWorker() throws InterruptedException {
+    done.countDown();
+    worker.join();
+  }
+
+  @Test
+  void samplesOnlyThreadsWithSpanInTracingStacksOnlyMode() {
+    activeSpanThreads.set(worker.getId(), SPAN_CONTEXT);
+
+    newSampler(true).sample();
+
+    assertThat(exporter.threadIds).containsExactly(worker.getId());
+    assertThat(exporter.spanIds).containsExactly(SPAN_CONTEXT.getSpanId());
+  }
+
+  @Test
+  void samplesAllThreads() {
+    newSampler(false).sample();
+
+    assertThat(exporter.threadIds).contains(worker.getId(), Thread.currentThread().getId());
+    // no span is active on the worker
+    int i = exporter.threadIds.indexOf(worker.getId());
+    assertThat(exporter.spanIds.get(i)).isEqualTo(SpanContext.getInvalid().getSpanId());
+  }
+
+  @Test
+  void forgetsThreadsThatEndedWithActiveSpan() throws InterruptedException {
+    Thread ended = new Thread(() -> {});
+    ended.start();
+    ended.join();
+    activeSpanThreads.set(ended.getId(), SPAN_CONTEXT);
+
+    newSampler(true).sample();
+
+    assertThat(exporter.threadIds).isEmpty();
+    assertThat(activeSpanThreads.isEmpty()).isTrue();
+  }
+
+  @Test
+  void reportsSamplingCostToIntervalController() {
+    // any measured cost is over this budget
+    CallStackIntervalController controller =
+        new CallStackIntervalController(
+            interval, Duration.ofSeconds(1), Duration.ofMinutes(1), 1e-12);
+    ThreadInfoSampler sampler = newSamplerBuilder(false).intervalController(controller).build();
+
+    sampler.sample();
+    sampler.flush();
+
+    assertThat(exporter.flushCount).isEqualTo(1);
+    assertThat(interval.getRequested()).isEqualTo(Duration.ofMinutes(1));
+  }
+
+  @Test
+  void stopExportsRemainingSamples() {
+    ThreadInfoSampler sampler = newSampler(false);
+    sampler.start();
+
+    sampler.stop(Duration.ofSeconds(5));
+
+    assertThat(exporter.flushCount).isEqualTo(1);
+  }
+
+  private ThreadInfoSampler newSampler(boolean onlyTracingSpans) {
+    return newSamplerBuilder(onlyTracingSpans).build();
+  }
+
+  private ThreadInfoSampler.Builder newSamplerBuilder(boolean onlyTracingSpans) {
+    return ThreadInfoSampler.builder()
+        .activeSpanThreads(activeSpanThreads)
+        .cpuEventExporter(exporter)
+        .stackTraceFilter(new StackTraceFilter(null, false))
+        .onlyTracingSpans(onlyTracingSpans)
+        .stackDepth(128)
+        .callStackInterval(interval)
+        .exportInterval(Duration.ofSeconds(10));
+  }
+
+  private void awaitDone() {
+    try {
+      done.await();
+    } catch (InterruptedException e) {
+      Thread.currentThread().interrupt();
+    }
+  }
+
+  private static class RecordingExporter implements CpuEventExporter {
+    final List<Long> threadIds = new ArrayList<>();
+    final List<String> spanIds = new ArrayList<>();
+    int flushCount;
+
+    @Override
+    public void export(StackToSpanLinkage stackToSpanLinkage) {}
+
+    @Override
+    public void export(
+        long threadId,
+        String threadName,
+        Thread.State threadState,
+        StackTraceElement[] stackTrace,
+        Instant eventTime,
+        String traceId,
+        String spanId,
+        Duration duration) {
+      threadIds.add(threadId);
+      spanIds.add(spanId);
+    }
+
+    @Override
+    public void flush() {
+      flushCount++;
+    }
+  }
+}
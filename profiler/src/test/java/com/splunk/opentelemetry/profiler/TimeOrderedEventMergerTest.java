@@ -0,0 +1,87 @@
+/*
+ * Copyright Splunk Inc.
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+
+package com.splunk.opentelemetry.profiler;
+
+import static org.assertj.core.api.Assertions.assertThat;
+import static org.mockito.Mockito.mock;
+
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.Collections;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.Random;
+import java.util.function.ToLongFunction;
+import org.junit.jupiter.api.Test;
+import org.openjdk.jmc.common.item.IItem;
+
+class TimeOrderedEventMergerTest {
+
+  private final Map<IItem, Long> startTimes = new HashMap<>();
+  private final ToLongFunction<IItem> startTime = startTimes::get;
+
+  @Test
+  void mergesSortedArrays() {
+    Random random = new Random(42);
+    List<IItem[]> arrays = new ArrayList<>();
+    List<IItem> expected = new ArrayList<>();
+    for (int i = 0; i < 5; i++) {
+      IItem[] events = new IItem[random.nextInt(50)];
+      long time = 0;
+      for (int j = 0; j < events.length; j++) {
+        time += random.nextInt(10);
+        events[j] = newEvent(time);
+      }
+      arrays.add(events);
+      expected.addAll(Arrays.asList(events));
+    }
+    // stable sort of the concatenated arrays is what the merge must reproduce
+    expected.sort((a, b) -> Long.compare(startTimes.get(a), startTimes.get(b)));
+
+    List<IItem> result = new ArrayList<>();
+    new TimeOrderedEventMerger(arrays, startTime).forEach(result::add);
+
+    assertThat(result).containsExactlyElementsOf(expected);
+  }
+
+  @Test
+  void emptyInput() {
+    List<IItem> result = new ArrayList<>();
+    new TimeOrderedEventMerger(Collections.singletonList(new IItem[0]), startTime)
+        .forEach(result::add);
+    assertThat(result).isEmpty();
+  }
+
+  @Test
+  void sortsUnorderedArray() {
+    IItem event1 = newEvent(1);
+    IItem event2 = newEvent(2);
+    IItem event3 = newEvent(3);
+    IItem[] events = new IItem[] {event2, event3, event1};
+
+    TimeOrderedEventMerger.ensureSorted(events, startTime);
+
+    assertThat(events).containsExactly(event1, event2, event3);
+  }
+
+  private IItem newEvent(long time) {
+    IItem event = mock(IItem.class);
+    startTimes.put(event, time);
+    return event;
+  }
+}
@@ -0,0 +1,82 @@
+/*
+ * Copyright Splunk Inc.
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+
+package com.splunk.opentelemetry.profiler.context;
+
+import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.junit.jupiter.api.Assertions.assertNull;
+
+import java.util.ArrayList;
+import java.util.List;
+import org.junit.jupiter.api.Test;
+
+class LongObjectMapTest {
+
+  @Test
+  void putAndGet() {
+    LongObjectMap<String> map = new LongObjectMap<>();
+    map.put(1, "one");
+    map.put(0, "zero");
+    map.put(-5, "minus five");
+    map.put(Long.MAX_VALUE, "max");
+
+    assertEquals("one", map.get(1));
+    assertEquals("zero", map.get(0));
+    assertEquals("minus five", map.get(-5));
+    assertEquals("max", map.get(Long.MAX_VALUE));
+    assertNull(map.get(2));
+    assertEquals(4, map.size());
+
+    map.put(1, "uno");
+    assertEquals("uno", map.get(1));
+    assertEquals(4, map.size());
+  }
+
+  @Test
+  void growBeyondInitialCapacity() {
+    LongObjectMap<Long> map = new LongObjectMap<>();
+    for (long i = 0; i < 10_000; i++) {
+      map.put(i * 7, i);
+    }
+    assertEquals(10_000, map.size());
+    for (long i = 0; i < 10_000; i++) {
+      assertEquals(Long.valueOf(i), map.get(i * 7));
+      assertNull(map.get(i * 7 + 1));
+    }
+  }
+
+  @Test
+  void removeIf() {
+    LongObjectMap<Long> map = new LongObjectMap<>();
+    for (long i = 0; i < 1_000; i++) {
+      map.put(i, i);
+    }
+    map.removeIf(value -> value % 10 != 0);
+
+    assertEquals(100, map.size());
+    for (long i = 0; i < 1_000; i++) {
+      if (i % 10 == 0) {
+        assertEquals(Long.valueOf(i), map.get(i));
+      } else {
+        assertNull(map.get(i));
+      }
+    }
+
+    List<Long> values = new ArrayList<>();
+    map.forEachValue(values::add);
+    assertEquals(100, values.size());
+  }
+}
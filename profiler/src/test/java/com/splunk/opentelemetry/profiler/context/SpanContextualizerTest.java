@@ -18,12 +18,16 @@ package com.splunk.opentelemetry.profiler.context;
 
 import static org.junit.jupiter.api.Assertions.assertEquals;
 import static org.junit.jupiter.api.Assertions.assertFalse;
+import static org.junit.jupiter.api.Assertions.assertTrue;
 import static org.mockito.Mockito.mock;
 import static org.mockito.Mockito.when;
 
 import com.splunk.opentelemetry.profiler.EventReader;
 import com.splunk.opentelemetry.profiler.ThreadDumpRegion;
+import com.splunk.opentelemetry.profiler.events.BinaryContextAttached;
 import com.splunk.opentelemetry.profiler.events.ContextAttached;
+import io.opentelemetry.api.trace.SpanContext;
+import io.opentelemetry.api.trace.TraceFlags;
 import java.util.ArrayList;
 import java.util.Collections;
 import java.util.List;
@@ -280,6 +284,93 @@ class SpanContextualizerTest {
     assertEquals(0, testClass.inFlightThreadCount());
   }
 
+  @Test
+  void linkToSpanActiveAtEventTime() {
+    SpanContextualizer testClass = new SpanContextualizer(eventReader);
+
+    Events parent = buildEvents(spanId, 906);
+    Events child = buildEvents("1111222233334444", 906, parent);
+    Events other = buildEvents(spanId, 907);
+    when(eventReader.getStartTime(parent.scopeStart)).thenReturn(100L);
+    when(eventReader.getStartTime(child.scopeStart)).thenReturn(200L);
+    when(eventReader.getStartTime(child.scopeEnd)).thenReturn(300L);
+    when(eventReader.getStartTime(parent.scopeEnd)).thenReturn(400L);
+
+    testClass.updateContext(other.scopeStart);
+    // context changes can be applied out of order
+    testClass.updateContext(parent.scopeStart);
+    testClass.updateContext(child.scopeEnd);
+    testClass.updateContext(child.scopeStart);
+    testClass.updateContext(parent.scopeEnd);
+
+    assertFalse(testClass.link(906, 50).getSpanContext().isValid());
+    assertEquals(spanId, testClass.link(906, 100).getSpanContext().getSpanId());
+    assertEquals("1111222233334444", testClass.link(906, 250).getSpanContext().getSpanId());
+    assertEquals(spanId, testClass.link(906, 399).getSpanContext().getSpanId());
+    assertFalse(testClass.link(906, 400).getSpanContext().isValid());
+    assertEquals(spanId, testClass.link(907, 50).getSpanContext().getSpanId());
+
+    String stack = assembleParseableStack(rawStack, 906);
+    ThreadDumpRegion region = new ThreadDumpRegion(stack, 0, stack.length());
+    assertEquals("1111222233334444", testClass.link(region, 250).getSpanContext().getSpanId());
+
+    // without a time the latest context is used
+    assertFalse(testClass.link(906).getSpanContext().isValid());
+    assertEquals(spanId, testClass.link(907).getSpanContext().getSpanId());
+  }
+
+  @Test
+  void linkWithBinaryContextEvents() {
+    SpanContextualizer testClass = new SpanContextualizer(eventReader);
+
+    IItem scopeStart = binaryContextEvent(0xdeadbeefdeadbeefL, 0xdeadbeefdeadbeefL, 0x123L, 906);
+    IItem scopeEnd = binaryContextEvent(0, 0, 0, 906);
+    when(eventReader.getStartTime(scopeStart)).thenReturn(100L);
+    when(eventReader.getStartTime(scopeEnd)).thenReturn(200L);
+
+    testClass.updateContext(scopeStart);
+    testClass.updateContext(scopeEnd);
+
+    SpanContext spanContext = testClass.link(906, 150).getSpanContext();
+    assertEquals(traceId, spanContext.getTraceId());
+    assertEquals("0000000000000123", spanContext.getSpanId());
+    assertTrue(spanContext.isSampled());
+    assertFalse(testClass.link(906, 200).getSpanContext().isValid());
+  }
+
+  @Test
+  void removeContextBefore() {
+    SpanContextualizer testClass = new SpanContextualizer(eventReader);
+
+    Events parent = buildEvents(spanId, 906);
+    Events child = buildEvents("1111222233334444", 906, parent);
+    Events other = buildEvents(spanId, 907);
+    when(eventReader.getStartTime(parent.scopeStart)).thenReturn(100L);
+    when(eventReader.getStartTime(child.scopeStart)).thenReturn(200L);
+    when(eventReader.getStartTime(child.scopeEnd)).thenReturn(300L);
+    when(eventReader.getStartTime(parent.scopeEnd)).thenReturn(400L);
+    when(eventReader.getStartTime(other.scopeStart)).thenReturn(100L);
+
+    testClass.updateContext(parent.scopeStart);
+    testClass.updateContext(child.scopeStart);
+    testClass.updateContext(child.scopeEnd);
+    testClass.updateContext(parent.scopeEnd);
+    testClass.updateContext(other.scopeStart);
+
+    // the context that was active at the given time is kept
+    testClass.removeContextBefore(250);
+    assertEquals("1111222233334444", testClass.link(906, 250).getSpanContext().getSpanId());
+    assertEquals(spanId, testClass.link(906, 350).getSpanContext().getSpanId());
+    assertFalse(testClass.link(906, 450).getSpanContext().isValid());
+    assertEquals(1, testClass.inFlightThreadCount());
+
+    // threads without context are forgotten, threads with context carry it over
+    testClass.removeContextBefore(500);
+    assertFalse(testClass.link(906, 250).getSpanContext().isValid());
+    assertEquals(spanId, testClass.link(907, 600).getSpanContext().getSpanId());
+    assertEquals(1, testClass.inFlightThreadCount());
+  }
+
   private void assertLinkage(SpanContextualizer testClass, Events events) {
     assertLinkage(testClass, events, rawStack);
   }
@@ -350,6 +441,22 @@ class SpanContextualizerTest {
     }
   }
 
+  private IItem binaryContextEvent(long traceIdHigh, long traceIdLow, long spanId, long threadId) {
+    IItem event = mock(IItem.class);
+    IType eventType = mock(IType.class);
+    when(event.getType()).thenReturn(eventType);
+    when(eventType.getIdentifier()).thenReturn(BinaryContextAttached.EVENT_NAME);
+    when(eventReader.getTraceIdHigh(event)).thenReturn(traceIdHigh);
+    when(eventReader.getTraceIdLow(event)).thenReturn(traceIdLow);
+    when(eventReader.getSpanIdAsLong(event)).thenReturn(spanId);
+    when(eventReader.getTraceFlags(event)).thenReturn(TraceFlags.getSampled().asByte());
+    IMCThread thread = mock(IMCThread.class);
+    when(thread.getThreadId()).thenReturn(threadId);
+    when(eventReader.getThread(event)).thenReturn(thread);
+
+    return event;
+  }
+
   private IItem contextEvent(String traceId, String spanId, long threadId) {
     IItem event = mock(IItem.class);
     IType eventType = mock(IType.class);
@@ -0,0 +1,76 @@
+/*
+ * Copyright Splunk Inc.
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+
+package com.splunk.opentelemetry.profiler.exporter;
+
+import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.junit.jupiter.api.Assertions.assertNull;
+import static org.junit.jupiter.api.Assertions.assertSame;
+
+import com.splunk.opentelemetry.profiler.pprof.Pprof;
+import java.util.LinkedHashMap;
+import java.util.Map;
+import java.util.Random;
+import org.junit.jupiter.api.Test;
+
+class FrameCacheTest {
+
+  @Test
+  void evictsLeastRecentlyUsed() {
+    FrameCache cache = new FrameCache(2);
+    Pprof.Frame a = frame("a");
+    Pprof.Frame b = frame("b");
+    cache.put("[a]", 1, 2, a);
+    cache.put("[b]", 1, 2, b);
+    // touch a so that b becomes the least recently used frame
+    assertSame(a, cache.get("a", 0, 1));
+    cache.put("c", 0, 1, frame("c"));
+
+    assertEquals(2, cache.size());
+    assertSame(a, cache.get("a", 0, 1));
+    assertNull(cache.get("b", 0, 1));
+  }
+
+  @Test
+  void matchesLinkedHashMap() {
+    int maxSize = 100;
+    FrameCache cache = new FrameCache(maxSize);
+    Map<String, Pprof.Frame> expected =
+        new LinkedHashMap<String, Pprof.Frame>(16, 0.75f, true) {
+          @Override
+          protected boolean removeEldestEntry(Map.Entry<String, Pprof.Frame> eldest) {
+            return size() > maxSize;
+          }
+        };
+
+    Random random = new Random(0);
+    for (int i = 0; i < 100_000; i++) {
+      String key = "frame" + random.nextInt(300);
+      Pprof.Frame frame = cache.get(key, 0, key.length());
+      assertSame(expected.get(key), frame);
+      if (frame == null) {
+        frame = frame(key);
+        cache.put(key, 0, key.length(), frame);
+        expected.put(key, frame);
+      }
+    }
+    assertEquals(expected.size(), cache.size());
+  }
+
+  private static Pprof.Frame frame(String name) {
+    return new Pprof.Frame("File.java", "Class", name, 1);
+  }
+}
@@ -24,10 +24,16 @@ import static org.junit.jupiter.api.Assertions.assertEquals;
 import com.google.perftools.profiles.ProfileProto.Location;
 import com.google.perftools.profiles.ProfileProto.Profile;
 import com.google.perftools.profiles.ProfileProto.Sample;
+import com.splunk.opentelemetry.profiler.CallStackInterval;
 import com.splunk.opentelemetry.profiler.InstrumentationSource;
 import com.splunk.opentelemetry.profiler.ProfilingSemanticAttributes;
+import com.splunk.opentelemetry.profiler.context.SpanLinkage;
+import com.splunk.opentelemetry.profiler.context.StackToSpanLinkage;
 import com.splunk.opentelemetry.profiler.pprof.PprofUtils;
 import io.opentelemetry.api.common.AttributeKey;
+import io.opentelemetry.api.trace.SpanContext;
+import io.opentelemetry.api.trace.TraceFlags;
+import io.opentelemetry.api.trace.TraceState;
 import io.opentelemetry.sdk.trace.IdGenerator;
 import java.io.IOException;
 import java.time.Duration;
@@ -117,6 +123,26 @@ class PprofCpuEventExporterTest {
         .containsEntry(ProfilingSemanticAttributes.THREAD_STACK_TRUNCATED.getKey(), "true");
   }
 
+  @Test
+  void sampledStacksAlwaysHaveThreadLabels() throws Exception {
+    exporter.export(
+        0,
+        "thread-name",
+        Thread.State.RUNNABLE,
+        new RuntimeException().getStackTrace(),
+        Instant.now(),
+        "",
+        "",
+        Duration.ZERO);
+    exporter.flush();
+
+    var profile = Profile.parseFrom(PprofUtils.deserialize(logger.records().get(0)));
+    var labels = PprofUtils.toLabelString(profile.getSample(0), profile);
+    assertThat(labels)
+        .containsEntry(ProfilingSemanticAttributes.THREAD_ID.getKey(), 0L)
+        .containsEntry(ProfilingSemanticAttributes.THREAD_NAME.getKey(), "thread-name");
+  }
+
   @Test
   void includeOnlyTruncatedStackFrames() throws Exception {
     var exception = new RuntimeException();
@@ -468,6 +494,358 @@ class PprofCpuEventExporterTest {
         .contains(entry(ProfilingSemanticAttributes.SOURCE_EVENT_PERIOD, duration.toMillis()));
   }
 
+  @Test
+  void aggregateIdenticalStacksWithoutSpan() throws Exception {
+    var exporter =
+        PprofCpuEventExporter.builder()
+            .otelLogger(logger)
+            .period(Duration.ofMillis(20))
+            .stackDepth(1024)
+            .aggregateStacks(true)
+            .build();
+    var stack =
+        "\"pool-1\" #12 nid=0x1c waiting on condition \n"
+            + "   java.lang.Thread.State: WAITING (parking)\n"
+            + "\tat jdk.internal.misc.Unsafe.park(java.base@17/Native Method)\n"
+            + "\tat java.util.concurrent.locks.LockSupport.park(LockSupport.java:341)\n";
+    var time = Instant.now();
+    var spanContext =
+        SpanContext.create(
+            IdGenerator.random().generateTraceId(),
+            IdGenerator.random().generateSpanId(),
+            TraceFlags.getSampled(),
+            TraceState.getDefault());
+
+    for (int i = 0; i < 3; i++) {
+      exporter.export(StackToSpanLinkage.withoutLinkage(time, stack, "jdk.ThreadDump"));
+    }
+    exporter.export(
+        new StackToSpanLinkage(time, stack, "jdk.ThreadDump", new SpanLinkage(spanContext, 12)));
+    exporter.flush();
+
+    var logRecord = logger.records().get(0);
+    assertEquals(8, logRecord.getAttributes().get(FRAME_COUNT));
+    var profile = Profile.parseFrom(PprofUtils.deserialize(logRecord));
+    assertEquals(2, profile.getSampleCount());
+
+    var aggregated =
+        profile.getSampleList().stream().filter(s -> s.getValue(0) == 3).findFirst().orElseThrow();
+    var labels = PprofUtils.toLabelString(aggregated, profile);
+    assertThat(labels).contains(entry(ProfilingSemanticAttributes.THREAD_NAME, "pool-1"));
+    assertThat(labels).doesNotContainKey(ProfilingSemanticAttributes.SOURCE_EVENT_TIME.getKey());
+    assertThat(labels).doesNotContainKey(ProfilingSemanticAttributes.TRACE_ID.getKey());
+
+    var linked =
+        profile.getSampleList().stream().filter(s -> s.getValue(0) == 1).findFirst().orElseThrow();
+    assertEquals(aggregated.getLocationIdList(), linked.getLocationIdList());
+    labels = PprofUtils.toLabelString(linked, profile);
+    assertThat(labels)
+        .contains(entry(ProfilingSemanticAttributes.SOURCE_EVENT_TIME, time.toEpochMilli()));
+    assertThat(labels)
+        .contains(entry(ProfilingSemanticAttributes.TRACE_ID, spanContext.getTraceId()));
+  }
+
+  @Test
+  void aggregateStacksSeparatelyWhenIntervalChangesWithinBatch() throws Exception {
+    var change = Instant.now();
+    var interval =
+        new CallStackInterval(Duration.ofMillis(20)) {
+          @Override
+          public Duration at(Instant time) {
+            return time.isBefore(change) ? Duration.ofMillis(20) : Duration.ofMillis(40);
+          }
+        };
+    var exporter =
+        PprofCpuEventExporter.builder()
+            .otelLogger(logger)
+            .callStackInterval(interval)
+            .stackDepth(1024)
+            .aggregateStacks(true)
+            .build();
+    var stack =
+        "\"pool-1\" #12 nid=0x1c waiting on condition \n"
+            + "   java.lang.Thread.State: WAITING (parking)\n"
+            + "\tat jdk.internal.misc.Unsafe.park(java.base@17/Native Method)\n"
+            + "\tat java.util.concurrent.locks.LockSupport.park(LockSupport.java:341)\n";
+
+    for (int i = 0; i < 2; i++) {
+      exporter.export(
+          StackToSpanLinkage.withoutLinkage(change.minusMillis(100), stack, "jdk.ThreadDump"));
+    }
+    for (int i = 0; i < 3; i++) {
+      exporter.export(
+          StackToSpanLinkage.withoutLinkage(change.plusMillis(100), stack, "jdk.ThreadDump"));
+    }
+    exporter.flush();
+
+    var profile = Profile.parseFrom(PprofUtils.deserialize(logger.records().get(0)));
+    assertEquals(2, profile.getSampleCount());
+    Map<Long, Long> countByPeriod =
+        profile.getSampleList().stream()
+            .collect(
+                Collectors.toMap(
+                    sample ->
+                        (Long)
+                            PprofUtils.toLabelString(sample, profile)
+                                .get(ProfilingSemanticAttributes.SOURCE_EVENT_PERIOD.getKey()),
+                    sample -> sample.getValue(0)));
+    assertEquals(Map.of(20L, 2L, 40L, 3L), countByPeriod);
+  }
+
+  @Test
+  void collectAggregatedStacksOverSeveralBatches() throws Exception {
+    var exporter =
+        PprofCpuEventExporter.builder()
+            .otelLogger(logger)
+            .period(Duration.ofMillis(20))
+            .stackDepth(1024)
+            .aggregateStacks(true)
+            .aggregationBatches(3)
+            .build();
+    var stack =
+        "\"pool-1\" #12 nid=0x1c waiting on condition \n"
+            + "   java.lang.Thread.State: WAITING (parking)\n"
+            + "\tat jdk.internal.misc.Unsafe.park(java.base@17/Native Method)\n"
+            + "\tat java.util.concurrent.locks.LockSupport.park(LockSupport.java:341)\n";
+    var time = Instant.now();
+    var spanContext =
+        SpanContext.create(
+            IdGenerator.random().generateTraceId(),
+            IdGenerator.random().generateSpanId(),
+            TraceFlags.getSampled(),
+            TraceState.getDefault());
+
+    for (int batch = 0; batch < 3; batch++) {
+      exporter.export(StackToSpanLinkage.withoutLinkage(time, stack, "jdk.ThreadDump"));
+      exporter.export(StackToSpanLinkage.withoutLinkage(time, stack, "jdk.ThreadDump"));
+      exporter.export(
+          new StackToSpanLinkage(time, stack, "jdk.ThreadDump", new SpanLinkage(spanContext, 12)));
+      exporter.flush();
+      if (batch < 2) {
+        // span linked samples are not delayed
+        assertEquals(batch + 1, logger.records().size());
+      }
+    }
+
+    var records = logger.records();
+    assertEquals(4, records.size());
+    for (var record : List.of(records.get(0), records.get(1), records.get(3))) {
+      var profile = Profile.parseFrom(PprofUtils.deserialize(record));
+      assertEquals(1, profile.getSampleCount());
+      assertEquals(1, profile.getSample(0).getValue(0));
+    }
+    var aggregated = Profile.parseFrom(PprofUtils.deserialize(records.get(2)));
+    assertEquals(1, aggregated.getSampleCount());
+    assertEquals(6, aggregated.getSample(0).getValue(0));
+    assertEquals(2, aggregated.getLocationCount());
+  }
+
+  @Test
+  void closeExportsAggregatedStacksOfIncompleteBatches() throws Exception {
+    var exporter =
+        PprofCpuEventExporter.builder()
+            .otelLogger(logger)
+            .period(Duration.ofMillis(20))
+            .stackDepth(1024)
+            .aggregateStacks(true)
+            .aggregationBatches(3)
+            .build();
+    var stack =
+        "\"pool-1\" #12 nid=0x1c waiting on condition \n"
+            + "   java.lang.Thread.State: WAITING (parking)\n"
+            + "\tat jdk.internal.misc.Unsafe.park(java.base@17/Native Method)\n"
+            + "\tat java.util.concurrent.locks.LockSupport.park(LockSupport.java:341)\n";
+    var time = Instant.now();
+
+    exporter.export(StackToSpanLinkage.withoutLinkage(time, stack, "jdk.ThreadDump"));
+    exporter.flush();
+    exporter.export(StackToSpanLinkage.withoutLinkage(time, stack, "jdk.ThreadDump"));
+    assertEquals(0, logger.records().size());
+    exporter.close();
+
+    var records = logger.records();
+    assertEquals(1, records.size());
+    var profile = Profile.parseFrom(PprofUtils.deserialize(records.get(0)));
+    assertEquals(1, profile.getSampleCount());
+    assertEquals(2, profile.getSample(0).getValue(0));
+  }
+
+  @Test
+  void intervalChangeBetweenAggregatedBatches() throws Exception {
+    var change = Instant.now();
+    var interval =
+        new CallStackInterval(Duration.ofMillis(20)) {
+          @Override
+          public Duration at(Instant time) {
+            return time.isBefore(change) ? Duration.ofMillis(20) : Duration.ofMillis(10);
+          }
+        };
+    var exporter =
+        PprofCpuEventExporter.builder()
+            .otelLogger(logger)
+            .callStackInterval(interval)
+            .stackDepth(1024)
+            .aggregateStacks(true)
+            .aggregationBatches(2)
+            .build();
+    var stack =
+        "\"pool-1\" #12 nid=0x1c waiting on condition \n"
+            + "   java.lang.Thread.State: WAITING (parking)\n"
+            + "\tat jdk.internal.misc.Unsafe.park(java.base@17/Native Method)\n"
+            + "\tat java.util.concurrent.locks.LockSupport.park(LockSupport.java:341)\n";
+
+    exporter.export(
+        StackToSpanLinkage.withoutLinkage(change.minusMillis(100), stack, "jdk.ThreadDump"));
+    exporter.flush();
+    for (int i = 0; i < 2; i++) {
+      exporter.export(
+          StackToSpanLinkage.withoutLinkage(change.plusMillis(100), stack, "jdk.ThreadDump"));
+    }
+    exporter.flush();
+
+    var records = logger.records();
+    assertEquals(1, records.size());
+    var profile = Profile.parseFrom(PprofUtils.deserialize(records.get(0)));
+    assertEquals(2, profile.getSampleCount());
+    Map<Long, Long> countByPeriod =
+        profile.getSampleList().stream()
+            .collect(
+                Collectors.toMap(
+                    sample ->
+                        (Long)
+                            PprofUtils.toLabelString(sample, profile)
+                                .get(ProfilingSemanticAttributes.SOURCE_EVENT_PERIOD.getKey()),
+                    sample -> sample.getValue(0)));
+    assertEquals(Map.of(20L, 1L, 10L, 2L), countByPeriod);
+  }
+
+  @Test
+  void aggregateStacksPerThreadPool() throws Exception {
+    var exporter =
+        PprofCpuEventExporter.builder()
+            .otelLogger(logger)
+            .period(Duration.ofMillis(20))
+            .stackDepth(1024)
+            .aggregateStacks(true)
+            .threadPoolNames(ThreadPoolNames.withDefaultPatterns(List.of()))
+            .build();
+    var frames =
+        "   java.lang.Thread.State: RUNNABLE\n"
+            + "\tat com.example.Controller.handle(Controller.java:42)\n"
+            + "\tat java.lang.Thread.run(java.base@17/Thread.java:833)\n";
+    var time = Instant.now();
+    var spanContext =
+        SpanContext.create(
+            IdGenerator.random().generateTraceId(),
+            IdGenerator.random().generateSpanId(),
+            TraceFlags.getSampled(),
+            TraceState.getDefault());
+
+    for (int i = 1; i <= 3; i++) {
+      var stack = "\"http-nio-8080-exec-" + i + "\" #" + (20 + i) + " nid=0x1c runnable\n" + frames;
+      exporter.export(StackToSpanLinkage.withoutLinkage(time, stack, "jdk.ThreadDump"));
+    }
+    var linkedStack = "\"http-nio-8080-exec-1\" #21 nid=0x1c runnable\n" + frames;
+    exporter.export(
+        new StackToSpanLinkage(
+            time, linkedStack, "jdk.ThreadDump", new SpanLinkage(spanContext, 21)));
+    exporter.flush();
+
+    var profile = Profile.parseFrom(PprofUtils.deserialize(logger.records().get(0)));
+    assertEquals(2, profile.getSampleCount());
+
+    var aggregated =
+        profile.getSampleList().stream().filter(s -> s.getValue(0) == 3).findFirst().orElseThrow();
+    var labels = PprofUtils.toLabelString(aggregated, profile);
+    assertThat(labels)
+        .contains(entry(ProfilingSemanticAttributes.THREAD_NAME, "http-nio-8080-exec"));
+    assertThat(labels).doesNotContainKey(ProfilingSemanticAttributes.THREAD_ID.getKey());
+
+    var linked =
+        profile.getSampleList().stream().filter(s -> s.getValue(0) == 1).findFirst().orElseThrow();
+    labels = PprofUtils.toLabelString(linked, profile);
+    assertThat(labels)
+        .contains(entry(ProfilingSemanticAttributes.THREAD_NAME, "http-nio-8080-exec"));
+    assertThat(labels).contains(entry(ProfilingSemanticAttributes.THREAD_ID, 21L));
+  }
+
+  @Test
+  void keepThreadIdsOfThreadPoolsWithoutAggregation() throws Exception {
+    var exporter =
+        PprofCpuEventExporter.builder()
+            .otelLogger(logger)
+            .period(Duration.ofMillis(20))
+            .stackDepth(1024)
+            .threadPoolNames(ThreadPoolNames.withDefaultPatterns(List.of()))
+            .build();
+    var frames =
+        "   java.lang.Thread.State: RUNNABLE\n"
+            + "\tat com.example.Controller.handle(Controller.java:42)\n";
+    var time = Instant.now();
+    var stackTrace = new StackTraceElement[] {new StackTraceElement("a.B", "c", "B.java", 1)};
+
+    exporter.export(
+        StackToSpanLinkage.withoutLinkage(
+            time, "\"http-nio-8080-exec-1\" #21 nid=0x1c runnable\n" + frames, "jdk.ThreadDump"));
+    exporter.export(
+        22,
+        "http-nio-8080-exec-2",
+        Thread.State.RUNNABLE,
+        stackTrace,
+        time,
+        "",
+        "",
+        Duration.ofMillis(20));
+    exporter.flush();
+
+    var profile = Profile.parseFrom(PprofUtils.deserialize(logger.records().get(0)));
+    var threadIds = new ArrayList<Object>();
+    for (var sample : profile.getSampleList()) {
+      var labels = PprofUtils.toLabelString(sample, profile);
+      assertThat(labels)
+          .contains(entry(ProfilingSemanticAttributes.THREAD_NAME, "http-nio-8080-exec"));
+      threadIds.add(labels.get(ProfilingSemanticAttributes.THREAD_ID.getKey()));
+    }
+    assertEquals(List.of(21L, 22L), threadIds);
+  }
+
+  @Test
+  void aggregateThreadInfoStacksPerThreadPool() throws Exception {
+    var exporter =
+        PprofCpuEventExporter.builder()
+            .otelLogger(logger)
+            .period(Duration.ofMillis(20))
+            .stackDepth(1024)
+            .aggregateStacks(true)
+            .threadPoolNames(ThreadPoolNames.withDefaultPatterns(List.of()))
+            .build();
+    var time = Instant.now();
+    var stackTrace = new StackTraceElement[] {new StackTraceElement("a.B", "c", "B.java", 1)};
+
+    for (int i = 1; i <= 3; i++) {
+      exporter.export(
+          20 + i,
+          "http-nio-8080-exec-" + i,
+          Thread.State.RUNNABLE,
+          stackTrace,
+          time,
+          "",
+          "",
+          Duration.ofMillis(20));
+    }
+    exporter.flush();
+
+    var profile = Profile.parseFrom(PprofUtils.deserialize(logger.records().get(0)));
+    assertEquals(1, profile.getSampleCount());
+    var sample = profile.getSample(0);
+    assertEquals(3, sample.getValue(0));
+    var labels = PprofUtils.toLabelString(sample, profile);
+    assertThat(labels)
+        .contains(entry(ProfilingSemanticAttributes.THREAD_NAME, "http-nio-8080-exec"));
+    assertThat(labels).doesNotContainKey(ProfilingSemanticAttributes.THREAD_ID.getKey());
+    assertThat(labels).doesNotContainKey(ProfilingSemanticAttributes.SOURCE_EVENT_TIME.getKey());
+  }
+
   private <T> Map.Entry<String, T> entry(AttributeKey<T> attribute, T value) {
     return Map.entry(attribute.getKey(), value);
   }
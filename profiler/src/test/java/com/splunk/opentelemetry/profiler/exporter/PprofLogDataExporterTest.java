@@ -20,10 +20,17 @@ import static io.opentelemetry.api.common.AttributeKey.longKey;
 import static io.opentelemetry.api.common.AttributeKey.stringKey;
 import static org.junit.jupiter.api.Assertions.assertEquals;
 
+import com.google.perftools.profiles.ProfileProto.Profile;
 import com.splunk.opentelemetry.profiler.InstrumentationSource;
 import com.splunk.opentelemetry.profiler.ProfilingDataType;
+import com.splunk.opentelemetry.profiler.pprof.Pprof;
+import com.splunk.opentelemetry.profiler.pprof.PprofFormat;
 import io.opentelemetry.api.common.Value;
+import java.io.ByteArrayInputStream;
 import java.nio.charset.StandardCharsets;
+import java.util.Base64;
+import java.util.zip.Deflater;
+import java.util.zip.GZIPInputStream;
 import net.bytebuddy.utility.RandomString;
 import org.junit.jupiter.api.Test;
 import org.junit.jupiter.api.extension.RegisterExtension;
@@ -117,4 +124,22 @@ class PprofLogDataExporterTest {
     var attributes = logger.records().get(0).getAttributes();
     assertEquals(frameCount, attributes.get(longKey("profiling.data.total.frame.count")));
   }
+
+  @Test
+  void compressionLevelKeepsDataFormat() throws Exception {
+    var format = PprofFormat.gzipBase64(Deflater.BEST_SPEED);
+    var exporter =
+        new PprofLogDataExporter(
+            logger, ProfilingDataType.CPU, InstrumentationSource.CONTINUOUS, format);
+    var pprof = new Pprof();
+    pprof.getStringId("test");
+    exporter.export(pprof, 0);
+
+    var logRecord = logger.records().get(0);
+    assertEquals(
+        "pprof-gzip-base64", logRecord.getAttributes().get(stringKey("profiling.data.format")));
+    var bytes = Base64.getDecoder().decode(logRecord.getBodyValue().asString());
+    var profile = Profile.parseFrom(new GZIPInputStream(new ByteArrayInputStream(bytes)));
+    assertEquals("test", profile.getStringTable(1));
+  }
 }
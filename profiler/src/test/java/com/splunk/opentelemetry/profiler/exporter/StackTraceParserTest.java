@@ -17,6 +17,7 @@
 package com.splunk.opentelemetry.profiler.exporter;
 
 import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.junit.jupiter.api.Assertions.assertFalse;
 import static org.junit.jupiter.api.Assertions.assertNotEquals;
 import static org.junit.jupiter.api.Assertions.assertNotNull;
 import static org.junit.jupiter.api.Assertions.assertTrue;
@@ -27,6 +28,8 @@ import com.splunk.opentelemetry.profiler.exporter.StackTraceParser.StackTraceLin
 import java.io.IOException;
 import java.io.InputStream;
 import java.nio.charset.StandardCharsets;
+import java.util.ArrayList;
+import java.util.List;
 import java.util.Objects;
 import org.junit.jupiter.api.Test;
 
@@ -87,6 +90,76 @@ class StackTraceParserTest {
     assertTrue(found);
   }
 
+  @Test
+  void parseRegionInPlace() {
+    String threadDump =
+        "\"first\" #1 nid=0x1 runnable\n"
+            + "   java.lang.Thread.State: RUNNABLE\n"
+            + "\tat com.example.First.run(First.java:1)\n"
+            + "\n"
+            + "\"second\" #2 daemon prio=5 nid=0x1f waiting on condition\n"
+            + "   java.lang.Thread.State: WAITING\n"
+            + "\tat com.example.Second.park(java.base@11/Second.java:42)\n"
+            + "\t- locked <0x000000008c2b0d98> (a java.lang.Object)\n"
+            + "\tat com.example.Second.run(Native Method)\n"
+            + "\n";
+    int start = threadDump.indexOf("\"second\"");
+    int end = threadDump.length() - 2;
+
+    StackTraceParser parser = new StackTraceParser(128);
+    List<String> frames = new ArrayList<>();
+    assertTrue(
+        parser.parse(
+            threadDump,
+            start,
+            end,
+            (text, frameStart, methodSeparator, locationStart, frameEnd) -> {
+              assertEquals('.', text.charAt(methodSeparator));
+              assertEquals('(', text.charAt(locationStart));
+              frames.add(text.substring(frameStart, frameEnd));
+            }));
+
+    assertEquals(2, parser.getThreadId());
+    assertEquals("second", parser.getThreadName());
+    assertEquals(0x1f, parser.getOsThreadId());
+    assertEquals("WAITING", parser.getThreadState());
+    assertFalse(parser.isTruncated());
+    assertEquals(2, parser.getFrameCount());
+    assertEquals(
+        List.of(
+            "com.example.Second.park(java.base@11/Second.java:42",
+            "com.example.Second.run(Native Method"),
+        frames);
+
+    // state is reset between stacks, depth limit counts lines below the thread state
+    parser = new StackTraceParser(1);
+    assertTrue(parser.parse(threadDump, start, end, (text, s, m, l, e) -> {}));
+    assertEquals(1, parser.getFrameCount());
+    assertTrue(parser.isTruncated());
+    assertFalse(parser.parse(threadDump, 0, threadDump.indexOf('\n'), (text, s, m, l, e) -> {}));
+  }
+
+  @Test
+  void trailingEmptyLinesDoNotCountTowardDepth() {
+    String stack =
+        "\"main\" #1 nid=0x1 runnable\n"
+            + "   java.lang.Thread.State: RUNNABLE\n"
+            + "\tat com.example.Main.work(Main.java:2)\n"
+            + "\tat com.example.Main.main(Main.java:1)\n"
+            + "\n"
+            + "\r\n";
+
+    StackTraceParser parser = new StackTraceParser(2);
+    assertTrue(parser.parse(stack, 0, stack.length(), (text, s, m, l, e) -> {}));
+    assertEquals(2, parser.getFrameCount());
+    assertFalse(parser.isTruncated());
+
+    StackTrace stackTrace = StackTraceParser.parse(stack, 2);
+    assertNotNull(stackTrace);
+    assertEquals(2, stackTrace.getStackTraceLines().size());
+    assertFalse(stackTrace.isTruncated());
+  }
+
   static String readDumpFromResource(String resourcePath) {
     try (InputStream in = StackTraceParserTest.class.getResourceAsStream("/" + resourcePath)) {
       return new String(Objects.requireNonNull(in).readAllBytes(), StandardCharsets.UTF_8);
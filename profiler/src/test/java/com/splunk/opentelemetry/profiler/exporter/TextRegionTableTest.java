@@ -0,0 +1,62 @@
+/*
+ * Copyright Splunk Inc.
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+
+package com.splunk.opentelemetry.profiler.exporter;
+
+import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.junit.jupiter.api.Assertions.assertSame;
+
+import org.junit.jupiter.api.Test;
+
+class TextRegionTableTest {
+
+  @Test
+  void lookupByRegion() {
+    TextRegionTable table = new TextRegionTable();
+    String text = "xx-abc-abc-abd";
+
+    String interned = table.intern(text, 3, 6);
+    assertEquals("abc", interned);
+    assertSame(interned, table.intern(text, 7, 10));
+    assertEquals(TextRegionTable.NO_VALUE, table.get(text, 7, 10));
+
+    table.put(text, 3, 6, 42);
+    assertEquals(42, table.get(text, 7, 10));
+    assertEquals(TextRegionTable.NO_VALUE, table.get(text, 11, 14));
+    assertEquals(1, table.size());
+
+    table.clear();
+    assertEquals(0, table.size());
+    assertEquals(TextRegionTable.NO_VALUE, table.get(text, 3, 6));
+  }
+
+  @Test
+  void grows() {
+    TextRegionTable table = new TextRegionTable();
+    StringBuilder text = new StringBuilder();
+    for (int i = 0; i < 10_000; i++) {
+      text.append(String.format("%05d", i));
+    }
+    String keys = text.toString();
+    for (int i = 0; i < 10_000; i++) {
+      table.put(keys, i * 5, i * 5 + 5, i);
+    }
+    assertEquals(10_000, table.size());
+    for (int i = 0; i < 10_000; i++) {
+      assertEquals(i, table.get(String.format("%05d", i), 0, 5));
+    }
+  }
+}
@@ -0,0 +1,75 @@
+/*
+ * Copyright Splunk Inc.
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+
+package com.splunk.opentelemetry.profiler.exporter;
+
+import static org.assertj.core.api.Assertions.assertThat;
+
+import java.util.Arrays;
+import java.util.Collections;
+import org.junit.jupiter.api.Test;
+import org.junit.jupiter.params.ParameterizedTest;
+import org.junit.jupiter.params.provider.CsvSource;
+
+class ThreadPoolNamesTest {
+  private final ThreadPoolNames threadPoolNames =
+      ThreadPoolNames.withDefaultPatterns(Collections.emptyList());
+
+  @ParameterizedTest
+  @CsvSource(
+      delimiter = ';',
+      value = {
+        "http-nio-8080-exec-137;http-nio-8080-exec",
+        "https-jsse-nio-8443-exec-2;https-jsse-nio-8443-exec",
+        "qtp1304836502-42;qtp1304836502",
+        "nioEventLoopGroup-2-1;nioEventLoopGroup-2",
+        "epollEventLoopGroup-3-12;epollEventLoopGroup-3",
+        "reactor-http-nio-4;reactor-http-nio",
+        "ForkJoinPool-1-worker-3;ForkJoinPool-1-worker",
+        "ForkJoinPool.commonPool-worker-5;ForkJoinPool.commonPool-worker",
+        "kafka-producer-network-thread | producer-1;kafka-producer-network-thread",
+        "kafka-coordinator-heartbeat-thread | orders;kafka-coordinator-heartbeat-thread",
+        "pool-4-thread-1;pool-4-thread"
+      })
+  void builtInPatterns(String threadName, String poolName) {
+    assertThat(threadPoolNames.getPoolName(threadName)).isEqualTo(poolName);
+  }
+
+  @Test
+  void threadsOutsideOfPools() {
+    assertThat(threadPoolNames.getPoolName("main")).isNull();
+    assertThat(threadPoolNames.getPoolName("main")).isNull();
+    assertThat(threadPoolNames.getPoolName("http-nio-8080-Acceptor")).isNull();
+  }
+
+  @Test
+  void configuredPatternsComeFirst() {
+    ThreadPoolNames threadPoolNames =
+        ThreadPoolNames.withDefaultPatterns(Arrays.asList("(pool-4)-thread-\\d+", "worker-\\d+"));
+
+    assertThat(threadPoolNames.getPoolName("pool-4-thread-1")).isEqualTo("pool-4");
+    assertThat(threadPoolNames.getPoolName("pool-5-thread-1")).isEqualTo("pool-5-thread");
+    // without a capturing group the pattern is the name of the pool
+    assertThat(threadPoolNames.getPoolName("worker-7")).isEqualTo("worker-\\d+");
+  }
+
+  @Test
+  void invalidPatternsAreIgnored() {
+    ThreadPoolNames threadPoolNames = new ThreadPoolNames(Arrays.asList("(broken", "(ok)-\\d+"));
+
+    assertThat(threadPoolNames.getPoolName("ok-1")).isEqualTo("ok");
+  }
+}
@@ -0,0 +1,109 @@
+/*
+ * Copyright Splunk Inc.
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+
+package com.splunk.opentelemetry.profiler.pprof;
+
+import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.junit.jupiter.api.Assertions.assertNotSame;
+import static org.junit.jupiter.api.Assertions.assertSame;
+import static org.mockito.Mockito.mock;
+import static org.mockito.Mockito.when;
+
+import org.junit.jupiter.api.Test;
+import org.openjdk.jmc.common.IMCFrame;
+import org.openjdk.jmc.common.IMCMethod;
+import org.openjdk.jmc.common.IMCType;
+
+class FrameInternerTest {
+
+  @Test
+  void internsStackTraceElements() {
+    FrameInterner interner = new FrameInterner(10);
+    Pprof.Frame frame = interner.intern(element("run", 12));
+
+    assertSame(frame, interner.intern(element("run", 12)));
+    assertNotSame(frame, interner.intern(element("run", 13)));
+    assertNotSame(frame, interner.intern(element("call", 12)));
+    assertSame(frame, interner.intern("Test.java", "com.example.Test", "run", 12));
+    assertEquals(3, interner.size());
+  }
+
+  @Test
+  void internsJfrFrames() {
+    FrameInterner interner = new FrameInterner(10);
+    Pprof.Frame frame = interner.intern(jfrFrame("com.example.Test", "run", 12));
+
+    assertSame(frame, interner.intern(jfrFrame("com.example.Test", "run", 12)));
+    assertSame(frame, interner.intern("unknown", "com.example.Test", "run", 12));
+    assertSame(
+        interner.intern("unknown", "com.example.Test", "run", 0),
+        interner.intern(jfrFrame("com.example.Test", "run", -1)));
+  }
+
+  @Test
+  void jfrFrameWithoutMethodIsUnknown() {
+    FrameInterner interner = new FrameInterner(10);
+    IMCFrame frame = mock(IMCFrame.class);
+
+    assertSame(interner.intern("unknown", "unknown", "unknown", 0), interner.intern(frame));
+  }
+
+  @Test
+  void evictsLeastRecentlyUsed() {
+    FrameInterner interner = new FrameInterner(2);
+    Pprof.Frame a = interner.intern(element("a", 1));
+    Pprof.Frame b = interner.intern(element("b", 1));
+    // touch a so that b becomes the least recently used frame
+    assertSame(a, interner.intern(element("a", 1)));
+    interner.intern(element("c", 1));
+
+    assertEquals(2, interner.size());
+    assertSame(a, interner.intern(element("a", 1)));
+    assertNotSame(b, interner.intern(element("b", 1)));
+  }
+
+  @Test
+  void sharesLocationsAcrossBatches() {
+    FrameInterner interner = new FrameInterner(10);
+    Pprof.Frame frame = interner.intern(element("run", 12));
+
+    Pprof first = new Pprof();
+    long locationId = first.getLocationId(frame);
+    assertEquals(locationId, first.getLocationId(interner.intern(element("run", 12))));
+    assertEquals(1, first.getProfileBuilder().getLocationCount());
+
+    Pprof second = new Pprof();
+    second.getLocationId(interner.intern(element("call", 1)));
+    assertEquals(2, second.getLocationId(interner.intern(element("run", 12))));
+    assertEquals(2, second.getProfileBuilder().getLocationCount());
+  }
+
+  private static StackTraceElement element(String method, int line) {
+    return new StackTraceElement("com.example.Test", method, "Test.java", line);
+  }
+
+  private static IMCFrame jfrFrame(String className, String methodName, int line) {
+    IMCType type = mock(IMCType.class);
+    when(type.getFullName()).thenReturn(className);
+    IMCMethod method = mock(IMCMethod.class);
+    when(method.getType()).thenReturn(type);
+    when(method.getMethodName()).thenReturn(methodName);
+    IMCFrame frame = mock(IMCFrame.class);
+    when(frame.getMethod()).thenReturn(method);
+    when(frame.getFrameLineNumber()).thenReturn(line);
+    return frame;
+  }
+}
@@ -0,0 +1,62 @@
+/*
+ * Copyright Splunk Inc.
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+
+package com.splunk.opentelemetry.profiler.pprof;
+
+import static org.junit.jupiter.api.Assertions.assertArrayEquals;
+import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.junit.jupiter.api.Assertions.assertThrows;
+
+import java.io.ByteArrayInputStream;
+import java.io.IOException;
+import java.io.InputStream;
+import java.io.OutputStream;
+import java.nio.charset.StandardCharsets;
+import java.util.Base64;
+import java.util.zip.GZIPInputStream;
+import org.junit.jupiter.api.Test;
+
+class PprofFormatTest {
+  private static final byte[] DATA =
+      "pprof data pprof data pprof data".getBytes(StandardCharsets.UTF_8);
+
+  @Test
+  void dataFormat() {
+    assertEquals("pprof-gzip-base64", PprofFormat.getDefault().getDataFormat());
+    assertEquals("pprof-gzip-base64", PprofFormat.gzipBase64(1).getDataFormat());
+  }
+
+  @Test
+  void gzipBase64() throws IOException {
+    byte[] encoded = Base64.getDecoder().decode(encode(PprofFormat.getDefault()));
+    InputStream in = new GZIPInputStream(new ByteArrayInputStream(encoded));
+    assertArrayEquals(DATA, in.readAllBytes());
+  }
+
+  @Test
+  void invalidLevel() {
+    assertThrows(IllegalArgumentException.class, () -> PprofFormat.gzipBase64(10));
+    assertThrows(IllegalArgumentException.class, () -> PprofFormat.gzipBase64(-2));
+  }
+
+  private static byte[] encode(PprofFormat format) throws IOException {
+    PprofOutputBuffer buffer = new PprofOutputBuffer();
+    try (OutputStream out = format.wrap(buffer)) {
+      out.write(DATA);
+    }
+    return buffer.toByteArray();
+  }
+}
@@ -0,0 +1,53 @@
+/*
+ * Copyright Splunk Inc.
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+
+package com.splunk.opentelemetry.profiler.pprof;
+
+import static org.junit.jupiter.api.Assertions.assertArrayEquals;
+import static org.junit.jupiter.api.Assertions.assertEquals;
+
+import java.nio.charset.StandardCharsets;
+import java.util.Random;
+import org.junit.jupiter.api.Test;
+
+class PprofOutputBufferTest {
+
+  @Test
+  void growsAndKeepsContents() {
+    byte[] data = new byte[PprofOutputBuffer.INITIAL_CAPACITY * 3 + 17];
+    new Random(0).nextBytes(data);
+
+    PprofOutputBuffer buffer = new PprofOutputBuffer();
+    buffer.write(data[0]);
+    buffer.write(data, 1, data.length - 1);
+
+    assertEquals(data.length, buffer.size());
+    assertArrayEquals(data, buffer.toByteArray());
+    assertEquals(new String(data, StandardCharsets.ISO_8859_1), buffer.toLatin1String());
+  }
+
+  @Test
+  void resetDiscardsContents() {
+    PprofOutputBuffer buffer = new PprofOutputBuffer();
+    byte[] data = new byte[PprofOutputBuffer.MAX_RETAINED_CAPACITY + 1];
+    buffer.write(data, 0, data.length);
+    buffer.reset();
+    assertEquals(0, buffer.size());
+
+    buffer.write('a');
+    assertEquals("a", buffer.toLatin1String());
+  }
+}
@@ -0,0 +1,49 @@
+/*
+ * Copyright Splunk Inc.
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+
+package com.splunk.opentelemetry.profiler.pprof;
+
+import static org.junit.jupiter.api.Assertions.assertEquals;
+
+import org.junit.jupiter.api.Test;
+
+class PprofTest {
+
+  @Test
+  void frameKeepsLocationIdsOfTwoBatches() {
+    Pprof.Frame frame = new Pprof.Frame("Test.java", "com.example.Test", "run", 12);
+    Pprof first = new Pprof();
+    Pprof second = new Pprof();
+    // the frame gets a different location id in each batch
+    second.getLocationId("Test.java", "com.example.Test", "call", 10);
+
+    long firstId = first.getLocationId(frame);
+    long secondId = second.getLocationId(frame);
+    for (int i = 0; i < 3; i++) {
+      assertEquals(firstId, first.getLocationId(frame));
+      assertEquals(secondId, second.getLocationId(frame));
+    }
+    assertEquals(firstId, first.getLocationId("Test.java", "com.example.Test", "run", 12));
+    assertEquals(secondId, second.getLocationId("Test.java", "com.example.Test", "run", 12));
+    assertEquals(1, first.getProfileBuilder().getLocationCount());
+    assertEquals(2, second.getProfileBuilder().getLocationCount());
+
+    Pprof third = new Pprof();
+    long thirdId = third.getLocationId(frame);
+    assertEquals(thirdId, third.getLocationId(frame));
+    assertEquals(firstId, first.getLocationId(frame));
+  }
+}
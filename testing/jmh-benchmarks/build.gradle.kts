@@ -9,6 +9,16 @@ repositories {
 
 dependencies {
   implementation(project(":profiler"))
+  // not exposed by the profiler, the benchmarks read JFR events directly
+  implementation("org.openjdk.jmc:flightrecorder:8.3.1") {
+    exclude(group = "org.lz4", module = "lz4-java")
+  }
+  // compile only dependencies of the profiler, provided by the agent at runtime
+  implementation(project(":custom"))
+  implementation("io.opentelemetry:opentelemetry-api")
+  implementation("io.opentelemetry:opentelemetry-sdk")
+  implementation("io.opentelemetry:opentelemetry-sdk-extension-autoconfigure")
+  implementation("io.opentelemetry.javaagent:opentelemetry-javaagent-extension-api")
   testImplementation("org.junit.jupiter:junit-jupiter-api")
   testRuntimeOnly("org.junit.jupiter:junit-jupiter-engine")
   testRuntimeOnly("org.junit.platform:junit-platform-launcher")
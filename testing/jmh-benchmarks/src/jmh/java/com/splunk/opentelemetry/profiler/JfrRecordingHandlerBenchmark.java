@@ -0,0 +1,91 @@
+/*
+ * Copyright Splunk Inc.
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+
+package com.splunk.opentelemetry.profiler;
+
+import com.splunk.opentelemetry.profiler.allocation.exporter.PprofAllocationEventExporter;
+import com.splunk.opentelemetry.profiler.context.SpanContextualizer;
+import com.splunk.opentelemetry.profiler.corpus.CorpusSpec;
+import com.splunk.opentelemetry.profiler.corpus.SyntheticCorpus;
+import com.splunk.opentelemetry.profiler.exporter.PprofCpuEventExporter;
+import io.opentelemetry.api.logs.Logger;
+import io.opentelemetry.api.logs.LoggerProvider;
+import java.io.ByteArrayInputStream;
+import java.time.Duration;
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.Level;
+import org.openjdk.jmh.annotations.Param;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+
+/**
+ * Parses and processes a whole synthetic JFR recording, as done for every snapshot of the
+ * recording when event streaming is not used.
+ */
+@State(Scope.Benchmark)
+public class JfrRecordingHandlerBenchmark {
+
+  @Param({"100", "1000", "10000"})
+  public int threads;
+
+  private byte[] recording;
+  private JfrRecordingHandler jfrRecordingHandler;
+
+  @Setup(Level.Trial)
+  public void setup() throws Exception {
+    recording = SyntheticCorpus.get(threads).getRecording();
+
+    EventReader eventReader = new EventReader();
+    SpanContextualizer spanContextualizer = new SpanContextualizer(eventReader);
+    StackTraceFilter stackTraceFilter = new StackTraceFilter(eventReader, false);
+    Logger otelLogger = LoggerProvider.noop().get("benchmark");
+    ThreadDumpProcessor threadDumpProcessor =
+        ThreadDumpProcessor.builder()
+            .eventReader(eventReader)
+            .spanContextualizer(spanContextualizer)
+            .cpuEventExporter(
+                PprofCpuEventExporter.builder()
+                    .otelLogger(otelLogger)
+                    .period(Duration.ofSeconds(10))
+                    .stackDepth(CorpusSpec.DEFAULT_STACK_DEPTH)
+                    .build())
+            .stackTraceFilter(stackTraceFilter)
+            .build();
+    TLABProcessor tlabProcessor =
+        new TLABProcessor.Builder(true)
+            .eventReader(eventReader)
+            .allocationEventExporter(
+                PprofAllocationEventExporter.builder()
+                    .eventReader(eventReader)
+                    .otelLogger(otelLogger)
+                    .stackDepth(CorpusSpec.DEFAULT_STACK_DEPTH)
+                    .build())
+            .spanContextualizer(spanContextualizer)
+            .stackTraceFilter(stackTraceFilter)
+            .build();
+    EventProcessingChain eventProcessingChain =
+        new EventProcessingChain(
+            eventReader, spanContextualizer, threadDumpProcessor, tlabProcessor);
+    jfrRecordingHandler =
+        JfrRecordingHandler.builder().eventProcessingChain(eventProcessingChain).build();
+  }
+
+  @Benchmark
+  public void processRecording() {
+    jfrRecordingHandler.accept(new ByteArrayInputStream(recording));
+  }
+}
@@ -0,0 +1,57 @@
+/*
+ * Copyright Splunk Inc.
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+
+package com.splunk.opentelemetry.profiler;
+
+import com.splunk.opentelemetry.profiler.corpus.SyntheticCorpus;
+import java.util.List;
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.Level;
+import org.openjdk.jmh.annotations.Param;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+
+/** Filters all stacks of a synthetic thread dump. */
+@State(Scope.Benchmark)
+public class StackTraceFilterBenchmark {
+
+  @Param({"100", "1000", "10000"})
+  public int threads;
+
+  private List<ThreadDumpRegion> stacks;
+  private StackTraceFilter stackTraceFilter;
+
+  @Setup(Level.Trial)
+  public void setup() throws Exception {
+    EventReader eventReader = new EventReader();
+    SyntheticCorpus corpus = SyntheticCorpus.get(threads);
+    String threadDump = eventReader.getThreadDumpResult(corpus.getThreadDumps().get(0));
+    stacks = SyntheticCorpus.stacks(threadDump);
+    stackTraceFilter = new StackTraceFilter(eventReader, false);
+  }
+
+  @Benchmark
+  public int filter() {
+    int accepted = 0;
+    for (ThreadDumpRegion stack : stacks) {
+      if (stackTraceFilter.test(stack)) {
+        accepted++;
+      }
+    }
+    return accepted;
+  }
+}
@@ -17,110 +17,78 @@
 package com.splunk.opentelemetry.profiler;
 
 import com.splunk.opentelemetry.profiler.context.SpanContextualizer;
-import com.splunk.opentelemetry.profiler.context.StackToSpanLinkage;
+import com.splunk.opentelemetry.profiler.corpus.CorpusSpec;
+import com.splunk.opentelemetry.profiler.corpus.SyntheticCorpus;
 import com.splunk.opentelemetry.profiler.exporter.CpuEventExporter;
-import com.splunk.opentelemetry.profiler.old.AgentInternalsFilter;
-import java.nio.file.Files;
-import java.nio.file.Path;
-import java.util.ArrayList;
+import com.splunk.opentelemetry.profiler.exporter.PprofCpuEventExporter;
+import io.opentelemetry.api.logs.LoggerProvider;
+import java.time.Duration;
 import java.util.List;
-import java.util.function.Consumer;
-import java.util.function.Predicate;
-import jdk.jfr.consumer.RecordedEvent;
-import jdk.jfr.consumer.RecordingFile;
+import org.openjdk.jmc.common.item.IItem;
 import org.openjdk.jmh.annotations.Benchmark;
 import org.openjdk.jmh.annotations.Level;
+import org.openjdk.jmh.annotations.Param;
 import org.openjdk.jmh.annotations.Scope;
 import org.openjdk.jmh.annotations.Setup;
 import org.openjdk.jmh.annotations.State;
 
+/** Processes synthetic thread dumps, with and without encoding the stacks into pprof. */
+@State(Scope.Benchmark)
 public class ThreadDumpProcessorBenchmark {
 
-  public static final Path JFR_FILE = Path.of("benchmark.jfr");
+  @Param({"100", "1000", "10000"})
+  public int threads;
 
-  public ThreadDumpProcessorBenchmark() {
-    try {
-      ensureJfrFileExists();
-    } catch (Exception e) {
-      throw new RuntimeException(e);
-    }
-  }
+  private List<IItem> threadDumps;
+  private ThreadDumpProcessor threadDumpProcessor;
+  private ThreadDumpProcessor pprofThreadDumpProcessor;
+  private long exportedStacks;
+  private int index;
+
+  @Setup(Level.Trial)
+  public void setup() throws Exception {
+    SyntheticCorpus corpus = SyntheticCorpus.get(threads);
+    threadDumps = corpus.getThreadDumps();
+    EventReader eventReader = new EventReader();
+    SpanContextualizer spanContextualizer = new SpanContextualizer(eventReader);
+    corpus.getContextEvents().forEach(spanContextualizer::updateContext);
 
-  private void ensureJfrFileExists() throws Exception {
-    if (Files.exists(JFR_FILE)) {
-      return;
-    }
-    System.out.println("Waiting for subprocess to create JFR file");
-    String path = JfrFileMaker.class.getProtectionDomain().getCodeSource().getLocation().getPath();
-    String cmd = "java -cp " + path + " " + JfrFileMaker.class.getName() + " " + JFR_FILE + " 60";
-    Process exec = Runtime.getRuntime().exec(cmd);
-    int rc = exec.waitFor();
-    if (rc != 0) {
-      System.out.println("rc = " + rc);
-      throw new IllegalStateException("NO JFR FILE");
-    }
+    CpuEventExporter countingExporter = stack -> exportedStacks++;
+    threadDumpProcessor = buildProcessor(eventReader, spanContextualizer, countingExporter);
+    PprofCpuEventExporter pprofExporter =
+        PprofCpuEventExporter.builder()
+            .otelLogger(LoggerProvider.noop().get("benchmark"))
+            .period(Duration.ofSeconds(10))
+            .stackDepth(CorpusSpec.DEFAULT_STACK_DEPTH)
+            .build();
+    pprofThreadDumpProcessor = buildProcessor(eventReader, spanContextualizer, pprofExporter);
   }
 
-  private static ThreadDumpProcessor buildNewThreadDumpProcessor() {
-    SpanContextualizer contextualizer = new SpanContextualizer(new EventReader());
-    CpuEventExporter cpuEventExporter = x -> {};
+  private static ThreadDumpProcessor buildProcessor(
+      EventReader eventReader, SpanContextualizer spanContextualizer, CpuEventExporter exporter) {
     return ThreadDumpProcessor.builder()
-        .cpuEventExporter(cpuEventExporter)
-        .spanContextualizer(contextualizer)
+        .eventReader(eventReader)
+        .spanContextualizer(spanContextualizer)
+        .cpuEventExporter(exporter)
+        .stackTraceFilter(new StackTraceFilter(eventReader, false))
         .build();
   }
 
-  private static com.splunk.opentelemetry.profiler.old.ThreadDumpProcessor
-      buildOldThreadDumpProcessor() {
-    SpanContextualizer contextualizer = new SpanContextualizer(new EventReader());
-    Consumer<StackToSpanLinkage> processor = x -> {};
-    Predicate<String> filter = new AgentInternalsFilter();
-    return new com.splunk.opentelemetry.profiler.old.ThreadDumpProcessor(
-        contextualizer, processor, filter);
+  private IItem nextThreadDump() {
+    IItem threadDump = threadDumps.get(index);
+    index = (index + 1) % threadDumps.size();
+    return threadDump;
   }
 
-  // TODO: Not sure what to do with this or if we want to continue maintaining it
-  //  @Benchmark
-  //  public void newThreadDumpProcessor(RecordingFileState state) {
-  //    state.newThreadDumpProcessor.accept(state.nextEvent());
-  //  }
-
   @Benchmark
-  public void oldThreadDumpProcessor(RecordingFileState state) {
-    state.oldThreadDumpProcessor.accept(state.nextEvent());
+  public long threadDumpProcessor() {
+    threadDumpProcessor.accept(nextThreadDump());
+    return exportedStacks;
   }
 
-  @State(Scope.Benchmark)
-  public static class RecordingFileState {
-    public final ThreadDumpProcessor newThreadDumpProcessor = buildNewThreadDumpProcessor();
-    public final com.splunk.opentelemetry.profiler.old.ThreadDumpProcessor oldThreadDumpProcessor =
-        buildOldThreadDumpProcessor();
-
-    public static final Path JFR_FILE = Path.of("benchmark.jfr");
-
-    List<RecordedEvent> events = new ArrayList<>();
-    int index = 0;
-
-    @Setup(Level.Trial)
-    public void setup() throws Exception {
-      RecordingFile recordingFile = new RecordingFile(JFR_FILE);
-      while (recordingFile.hasMoreEvents()) {
-        RecordedEvent event = recordingFile.readEvent();
-        if (event.getEventType().getName().equals("jdk.ThreadDump")) {
-          events.add(event);
-        }
-      }
-      recordingFile.close();
-    }
-
-    public RecordedEvent nextEvent() {
-      try {
-        return events.get(index++);
-      } finally {
-        if (index >= events.size()) {
-          index = 0;
-        }
-      }
-    }
+  @Benchmark
+  public void threadDumpToPprof() {
+    pprofThreadDumpProcessor.accept(nextThreadDump());
+    pprofThreadDumpProcessor.flush();
   }
 }
@@ -0,0 +1,58 @@
+/*
+ * Copyright Splunk Inc.
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+
+package com.splunk.opentelemetry.profiler.allocation.exporter;
+
+import com.splunk.opentelemetry.profiler.EventReader;
+import com.splunk.opentelemetry.profiler.corpus.CorpusSpec;
+import com.splunk.opentelemetry.profiler.corpus.SyntheticCorpus;
+import io.opentelemetry.api.logs.LoggerProvider;
+import io.opentelemetry.api.trace.SpanContext;
+import java.util.List;
+import org.openjdk.jmc.common.item.IItem;
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.Level;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+
+/** Exports a batch of synthetic allocation samples into pprof. */
+@State(Scope.Benchmark)
+public class PprofAllocationEventExporterBenchmark {
+
+  private List<IItem> allocationSamples;
+  private PprofAllocationEventExporter exporter;
+
+  @Setup(Level.Trial)
+  public void setup() throws Exception {
+    EventReader eventReader = new EventReader();
+    allocationSamples = SyntheticCorpus.get(100).getAllocationSamples();
+    exporter =
+        PprofAllocationEventExporter.builder()
+            .eventReader(eventReader)
+            .otelLogger(LoggerProvider.noop().get("benchmark"))
+            .stackDepth(CorpusSpec.DEFAULT_STACK_DEPTH)
+            .build();
+  }
+
+  @Benchmark
+  public void export() {
+    for (IItem allocationSample : allocationSamples) {
+      exporter.export(allocationSample, null, SpanContext.getInvalid());
+    }
+    exporter.flush();
+  }
+}
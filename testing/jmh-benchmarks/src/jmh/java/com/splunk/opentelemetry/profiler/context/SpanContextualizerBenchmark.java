@@ -0,0 +1,73 @@
+/*
+ * Copyright Splunk Inc.
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+
+package com.splunk.opentelemetry.profiler.context;
+
+import com.splunk.opentelemetry.profiler.EventReader;
+import com.splunk.opentelemetry.profiler.ThreadDumpRegion;
+import com.splunk.opentelemetry.profiler.corpus.CorpusSpec;
+import com.splunk.opentelemetry.profiler.corpus.SyntheticCorpus;
+import java.util.List;
+import org.openjdk.jmc.common.item.IItem;
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.Level;
+import org.openjdk.jmh.annotations.Param;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+
+/**
+ * Links all stacks of the last thread dump of a synthetic corpus to spans. A higher span switch
+ * rate means more context changes that the contextualizer has to track before the thread dump.
+ */
+@State(Scope.Benchmark)
+public class SpanContextualizerBenchmark {
+
+  @Param({"100", "1000", "10000"})
+  public int threads;
+
+  @Param({"0.1", "0.9"})
+  public double spanSwitchRate;
+
+  private List<ThreadDumpRegion> stacks;
+  private long time;
+  private SpanContextualizer spanContextualizer;
+
+  @Setup(Level.Trial)
+  public void setup() throws Exception {
+    EventReader eventReader = new EventReader();
+    SyntheticCorpus corpus =
+        SyntheticCorpus.get(
+            CorpusSpec.builder().threadCount(threads).spanSwitchRate(spanSwitchRate).build());
+    List<IItem> threadDumps = corpus.getThreadDumps();
+    IItem threadDump = threadDumps.get(threadDumps.size() - 1);
+    stacks = SyntheticCorpus.stacks(eventReader.getThreadDumpResult(threadDump));
+    time = eventReader.getStartTime(threadDump);
+    spanContextualizer = new SpanContextualizer(eventReader);
+    corpus.getContextEvents().forEach(spanContextualizer::updateContext);
+  }
+
+  @Benchmark
+  public int link() {
+    int linked = 0;
+    for (ThreadDumpRegion stack : stacks) {
+      if (spanContextualizer.link(stack, time) != SpanLinkage.NONE) {
+        linked++;
+      }
+    }
+    return linked;
+  }
+}
@@ -0,0 +1,79 @@
+/*
+ * Copyright Splunk Inc.
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+
+package com.splunk.opentelemetry.profiler.exporter;
+
+import com.splunk.opentelemetry.profiler.EventReader;
+import com.splunk.opentelemetry.profiler.ThreadDumpRegion;
+import com.splunk.opentelemetry.profiler.corpus.CorpusSpec;
+import com.splunk.opentelemetry.profiler.corpus.SyntheticCorpus;
+import java.util.List;
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.Level;
+import org.openjdk.jmh.annotations.Param;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+
+/**
+ * Parses all stacks of a synthetic thread dump, in place as the cpu exporter does and into
+ * separate stack trace objects.
+ */
+@State(Scope.Benchmark)
+public class StackTraceParserBenchmark {
+
+  @Param({"100", "1000", "10000"})
+  public int threads;
+
+  private List<ThreadDumpRegion> stacks;
+  private String[] stackStrings;
+  private final StackTraceParser stackTraceParser =
+      new StackTraceParser(CorpusSpec.DEFAULT_STACK_DEPTH);
+  private int frameCount;
+  private final StackTraceParser.FrameConsumer frameCounter =
+      (text, start, methodSeparator, locationStart, end) -> frameCount++;
+
+  @Setup(Level.Trial)
+  public void setup() throws Exception {
+    SyntheticCorpus corpus = SyntheticCorpus.get(threads);
+    String threadDump = new EventReader().getThreadDumpResult(corpus.getThreadDumps().get(0));
+    stacks = SyntheticCorpus.stacks(threadDump);
+    stackStrings = new String[stacks.size()];
+    for (int i = 0; i < stackStrings.length; i++) {
+      stackStrings[i] = stacks.get(i).getCurrentRegion();
+    }
+  }
+
+  @Benchmark
+  public int parseInPlace() {
+    frameCount = 0;
+    for (ThreadDumpRegion stack : stacks) {
+      stackTraceParser.parse(stack.threadDump, stack.startIndex, stack.endIndex, frameCounter);
+    }
+    return frameCount;
+  }
+
+  @Benchmark
+  public int parse() {
+    int parsed = 0;
+    for (String stack : stackStrings) {
+      if (StackTraceParser.parse(stack, CorpusSpec.DEFAULT_STACK_DEPTH) != null) {
+        parsed++;
+      }
+    }
+    return parsed;
+  }
+}
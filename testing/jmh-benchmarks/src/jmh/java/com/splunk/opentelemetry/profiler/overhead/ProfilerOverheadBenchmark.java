@@ -0,0 +1,161 @@
+/*
+ * Copyright Splunk Inc.
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+
+package com.splunk.opentelemetry.profiler.overhead;
+
+import static java.util.logging.Level.INFO;
+
+import com.splunk.opentelemetry.profiler.JfrActivator;
+import com.splunk.opentelemetry.profiler.snapshot.StackTraceExporterActivator;
+import io.opentelemetry.api.trace.Span;
+import io.opentelemetry.api.trace.SpanKind;
+import io.opentelemetry.api.trace.Tracer;
+import io.opentelemetry.context.Scope;
+import io.opentelemetry.sdk.autoconfigure.AutoConfiguredOpenTelemetrySdk;
+import java.util.HashMap;
+import java.util.Map;
+import java.util.concurrent.ThreadLocalRandom;
+import java.util.concurrent.TimeUnit;
+import java.util.logging.Logger;
+import java.util.zip.CRC32;
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Level;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Param;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.annotations.TearDown;
+import org.openjdk.jmh.annotations.Threads;
+
+/**
+ * Measures what profiling costs an application. Many threads process synthetic requests, each a
+ * server span with a few nested client spans that allocate and hash buffers deep in the stack.
+ * Throughput and the latency percentiles of the sample time mode are compared between profiler
+ * configurations. JMH runs every configuration in its own fork, so the profiler is set up from
+ * scratch, the same way the agent does it, and exports to a stub OTLP endpoint in the process.
+ */
+@State(org.openjdk.jmh.annotations.Scope.Benchmark)
+@BenchmarkMode({Mode.Throughput, Mode.SampleTime})
+@OutputTimeUnit(TimeUnit.MILLISECONDS)
+@Threads(16)
+public class ProfilerOverheadBenchmark {
+  private static final Logger logger = Logger.getLogger(ProfilerOverheadBenchmark.class.getName());
+  private static final int CALLS_PER_REQUEST = 4;
+  private static final int STACK_DEPTH = 40;
+
+  @Param({"off", "cpu-10s", "cpu-1s", "memory", "snapshot-0.01", "snapshot-0.1"})
+  public String profiler;
+
+  private StubOtlpServer otlpServer;
+  private Tracer tracer;
+
+  @Setup(Level.Trial)
+  public void setup() throws Exception {
+    otlpServer = new StubOtlpServer();
+    Map<String, String> properties = properties(profiler, otlpServer.logsEndpoint());
+    AutoConfiguredOpenTelemetrySdk sdk =
+        AutoConfiguredOpenTelemetrySdk.builder().addPropertiesSupplier(() -> properties).build();
+    new JfrActivator().afterAgent(sdk);
+    new StackTraceExporterActivator().afterAgent(sdk);
+    tracer = sdk.getOpenTelemetrySdk().getTracer("profiler-overhead");
+  }
+
+  private static Map<String, String> properties(String profiler, String logsEndpoint) {
+    Map<String, String> properties = new HashMap<>();
+    properties.put("otel.service.name", "profiler-overhead");
+    properties.put("otel.traces.exporter", "none");
+    properties.put("otel.metrics.exporter", "none");
+    properties.put("otel.logs.exporter", "none");
+    properties.put("splunk.profiler.logs-endpoint", logsEndpoint);
+    properties.put("splunk.profiler.otlp.protocol", "http/protobuf");
+    // shorter than the default so that recordings are processed during each iteration
+    properties.put("splunk.profiler.recording.duration", "5s");
+    switch (profiler) {
+      case "off":
+        break;
+      case "cpu-10s":
+        properties.put("splunk.profiler.enabled", "true");
+        properties.put("splunk.profiler.call.stack.interval", "10s");
+        break;
+      case "cpu-1s":
+        properties.put("splunk.profiler.enabled", "true");
+        properties.put("splunk.profiler.call.stack.interval", "1s");
+        break;
+      case "memory":
+        properties.put("splunk.profiler.enabled", "true");
+        properties.put("splunk.profiler.memory.enabled", "true");
+        break;
+      case "snapshot-0.01":
+        properties.put("splunk.snapshot.profiler.enabled", "true");
+        properties.put("splunk.snapshot.selection.rate", "0.01");
+        break;
+      case "snapshot-0.1":
+        properties.put("splunk.snapshot.profiler.enabled", "true");
+        properties.put("splunk.snapshot.selection.rate", "0.1");
+        break;
+      default:
+        throw new IllegalArgumentException("Unknown profiler configuration: " + profiler);
+    }
+    return properties;
+  }
+
+  @TearDown(Level.Trial)
+  public void tearDown() {
+    logger.log(
+        INFO,
+        "Profiler exported {0} bytes in {1} requests",
+        new Object[] {otlpServer.getBytes(), otlpServer.getRequests()});
+    otlpServer.close();
+  }
+
+  @Benchmark
+  public long request() {
+    Span span = tracer.spanBuilder("GET /orders").setSpanKind(SpanKind.SERVER).startSpan();
+    try (Scope ignored = span.makeCurrent()) {
+      long result = 0;
+      for (int i = 0; i < CALLS_PER_REQUEST; i++) {
+        result += call();
+      }
+      return result;
+    } finally {
+      span.end();
+    }
+  }
+
+  private long call() {
+    Span span = tracer.spanBuilder("SELECT orders").setSpanKind(SpanKind.CLIENT).startSpan();
+    try (Scope ignored = span.makeCurrent()) {
+      return work(STACK_DEPTH);
+    } finally {
+      span.end();
+    }
+  }
+
+  // recurses to get a stack of a realistic depth, then allocates and hashes a buffer
+  private static long work(int depth) {
+    if (depth > 0) {
+      return work(depth - 1);
+    }
+    ThreadLocalRandom random = ThreadLocalRandom.current();
+    byte[] buffer = new byte[256 + random.nextInt(8 * 1024)];
+    random.nextBytes(buffer);
+    CRC32 crc = new CRC32();
+    crc.update(buffer, 0, buffer.length);
+    return crc.getValue();
+  }
+}
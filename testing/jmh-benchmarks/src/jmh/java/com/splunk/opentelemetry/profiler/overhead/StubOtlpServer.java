@@ -0,0 +1,73 @@
+/*
+ * Copyright Splunk Inc.
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+
+package com.splunk.opentelemetry.profiler.overhead;
+
+import com.sun.net.httpserver.HttpExchange;
+import com.sun.net.httpserver.HttpServer;
+import java.io.IOException;
+import java.io.InputStream;
+import java.net.InetSocketAddress;
+import java.util.concurrent.atomic.AtomicLong;
+
+/**
+ * Accepts OTLP/HTTP exports on the loopback interface and discards them, so that profiling data
+ * goes through the real exporter without leaving the process.
+ */
+class StubOtlpServer implements AutoCloseable {
+  private static final String LOOPBACK = "127.0.0.1";
+
+  private final HttpServer server;
+  private final AtomicLong requests = new AtomicLong();
+  private final AtomicLong bytes = new AtomicLong();
+
+  StubOtlpServer() throws IOException {
+    server = HttpServer.create(new InetSocketAddress(LOOPBACK, 0), 0);
+    server.createContext("/", this::handle);
+    server.start();
+  }
+
+  private void handle(HttpExchange exchange) throws IOException {
+    byte[] buffer = new byte[8192];
+    long read = 0;
+    try (InputStream body = exchange.getRequestBody()) {
+      for (int n = body.read(buffer); n != -1; n = body.read(buffer)) {
+        read += n;
+      }
+    }
+    requests.incrementAndGet();
+    bytes.addAndGet(read);
+    exchange.sendResponseHeaders(200, -1);
+    exchange.close();
+  }
+
+  String logsEndpoint() {
+    return "http://" + LOOPBACK + ":" + server.getAddress().getPort() + "/v1/logs";
+  }
+
+  long getRequests() {
+    return requests.get();
+  }
+
+  long getBytes() {
+    return bytes.get();
+  }
+
+  @Override
+  public void close() {
+    server.stop(0);
+  }
+}
@@ -0,0 +1,117 @@
+/*
+ * Copyright Splunk Inc.
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+
+package com.splunk.opentelemetry.profiler.pprof;
+
+import com.google.perftools.profiles.ProfileProto.Sample;
+import java.util.Random;
+import java.util.zip.Deflater;
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.Level;
+import org.openjdk.jmh.annotations.Param;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+
+/**
+ * Builds and serializes pprof batches of random stacks drawn from a fixed set of frames, the same
+ * seed is used on every run.
+ */
+@State(Scope.Benchmark)
+public class PprofBenchmark {
+  private static final int FRAME_CARDINALITY = 512;
+  private static final int STACK_DEPTH = 32;
+
+  @Param({"100", "1000", "10000"})
+  public int samples;
+
+  private String[] files;
+  private String[] classNames;
+  private String[] functions;
+  private Pprof.Frame[] frames;
+  private int[][] stacks;
+  private Pprof pprof;
+  private final PprofOutputBuffer outputBuffer = new PprofOutputBuffer();
+  private final PprofFormat fastestGzip = PprofFormat.gzipBase64(Deflater.BEST_SPEED);
+
+  @Setup(Level.Trial)
+  public void setup() {
+    files = new String[FRAME_CARDINALITY];
+    classNames = new String[FRAME_CARDINALITY];
+    functions = new String[FRAME_CARDINALITY];
+    frames = new Pprof.Frame[FRAME_CARDINALITY];
+    for (int i = 0; i < frames.length; i++) {
+      files[i] = "Service" + (i / 8) + ".java";
+      classNames[i] = "com.example.service.Service" + (i / 8);
+      functions[i] = "method" + i;
+      frames[i] = new Pprof.Frame(files[i], classNames[i], functions[i], i);
+    }
+    Random random = new Random(42);
+    stacks = new int[samples][STACK_DEPTH];
+    for (int[] stack : stacks) {
+      for (int i = 0; i < stack.length; i++) {
+        stack[i] = random.nextInt(FRAME_CARDINALITY);
+      }
+    }
+    pprof = buildPprof();
+  }
+
+  private Pprof buildPprof() {
+    Pprof pprof = new Pprof();
+    for (int[] stack : stacks) {
+      Sample.Builder sample = Sample.newBuilder();
+      for (int frame : stack) {
+        sample.addLocationId(pprof.getLocationId(frames[frame]));
+      }
+      pprof.addLabel(sample, "thread.name", "worker");
+      pprof.getProfileBuilder().addSample(sample);
+    }
+    return pprof;
+  }
+
+  /** Location lookups with frames that remember their id in the batch. */
+  @Benchmark
+  public Pprof getLocationIdOfFrame() {
+    return buildPprof();
+  }
+
+  /** Location lookups by frame properties, which hash the strings of every frame. */
+  @Benchmark
+  public long getLocationId() {
+    Pprof pprof = new Pprof();
+    long sum = 0;
+    for (int[] stack : stacks) {
+      for (int frame : stack) {
+        sum += pprof.getLocationId(files[frame], classNames[frame], functions[frame], frame);
+      }
+    }
+    return sum;
+  }
+
+  @Benchmark
+  public int serialize() {
+    outputBuffer.reset();
+    pprof.serialize(outputBuffer, PprofFormat.getDefault());
+    return outputBuffer.size();
+  }
+
+  @Benchmark
+  public int serializeFastestGzip() {
+    outputBuffer.reset();
+    pprof.serialize(outputBuffer, fastestGzip);
+    return outputBuffer.size();
+  }
+}
@@ -0,0 +1,185 @@
+/*
+ * Copyright Splunk Inc.
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+
+package com.splunk.opentelemetry.profiler.corpus;
+
+import java.util.Objects;
+
+/** Parameters of a synthetic corpus. Corpora generated from equal parameters are identical. */
+public final class CorpusSpec {
+  public static final int DEFAULT_STACK_DEPTH = 32;
+
+  private final int threadCount;
+  private final int stackDepth;
+  private final int frameCardinality;
+  private final double spanSwitchRate;
+  private final int threadDumpCount;
+  private final int allocationSampleCount;
+  private final long seed;
+
+  private CorpusSpec(Builder builder) {
+    this.threadCount = builder.threadCount;
+    this.stackDepth = builder.stackDepth;
+    this.frameCardinality = builder.frameCardinality;
+    this.spanSwitchRate = builder.spanSwitchRate;
+    this.threadDumpCount = builder.threadDumpCount;
+    this.allocationSampleCount = builder.allocationSampleCount;
+    this.seed = builder.seed;
+  }
+
+  public static Builder builder() {
+    return new Builder();
+  }
+
+  /** Number of threads in each thread dump. */
+  public int getThreadCount() {
+    return threadCount;
+  }
+
+  /** Number of frames in each stack, of thread dumps and allocation samples alike. */
+  public int getStackDepth() {
+    return stackDepth;
+  }
+
+  /** Number of distinct frames that thread dump stacks are built from. */
+  public int getFrameCardinality() {
+    return frameCardinality;
+  }
+
+  /** Probability that the span active on a thread changes between two thread dumps. */
+  public double getSpanSwitchRate() {
+    return spanSwitchRate;
+  }
+
+  public int getThreadDumpCount() {
+    return threadDumpCount;
+  }
+
+  public int getAllocationSampleCount() {
+    return allocationSampleCount;
+  }
+
+  public long getSeed() {
+    return seed;
+  }
+
+  @Override
+  public boolean equals(Object o) {
+    if (this == o) {
+      return true;
+    }
+    if (!(o instanceof CorpusSpec)) {
+      return false;
+    }
+    CorpusSpec that = (CorpusSpec) o;
+    return threadCount == that.threadCount
+        && stackDepth == that.stackDepth
+        && frameCardinality == that.frameCardinality
+        && Double.compare(spanSwitchRate, that.spanSwitchRate) == 0
+        && threadDumpCount == that.threadDumpCount
+        && allocationSampleCount == that.allocationSampleCount
+        && seed == that.seed;
+  }
+
+  @Override
+  public int hashCode() {
+    return Objects.hash(
+        threadCount,
+        stackDepth,
+        frameCardinality,
+        spanSwitchRate,
+        threadDumpCount,
+        allocationSampleCount,
+        seed);
+  }
+
+  @Override
+  public String toString() {
+    return "CorpusSpec{threadCount="
+        + threadCount
+        + ", stackDepth="
+        + stackDepth
+        + ", frameCardinality="
+        + frameCardinality
+        + ", spanSwitchRate="
+        + spanSwitchRate
+        + ", threadDumpCount="
+        + threadDumpCount
+        + ", allocationSampleCount="
+        + allocationSampleCount
+        + ", seed="
+        + seed
+        + '}';
+  }
+
+  public static class Builder {
+    private int threadCount = 1000;
+    private int stackDepth = DEFAULT_STACK_DEPTH;
+    private int frameCardinality = 512;
+    private double spanSwitchRate = 0.5;
+    private int threadDumpCount = 4;
+    private int allocationSampleCount = 10_000;
+    private long seed = 42;
+
+    private Builder() {}
+
+    public Builder threadCount(int threadCount) {
+      this.threadCount = threadCount;
+      return this;
+    }
+
+    public Builder stackDepth(int stackDepth) {
+      this.stackDepth = stackDepth;
+      return this;
+    }
+
+    public Builder frameCardinality(int frameCardinality) {
+      this.frameCardinality = frameCardinality;
+      return this;
+    }
+
+    public Builder spanSwitchRate(double spanSwitchRate) {
+      this.spanSwitchRate = spanSwitchRate;
+      return this;
+    }
+
+    public Builder threadDumpCount(int threadDumpCount) {
+      this.threadDumpCount = threadDumpCount;
+      return this;
+    }
+
+    public Builder allocationSampleCount(int allocationSampleCount) {
+      this.allocationSampleCount = allocationSampleCount;
+      return this;
+    }
+
+    public Builder seed(long seed) {
+      this.seed = seed;
+      return this;
+    }
+
+    public CorpusSpec build() {
+      if (threadCount < 1 || stackDepth < 2 || frameCardinality < 1) {
+        throw new IllegalArgumentException(
+            "threadCount and frameCardinality must be positive, stackDepth at least 2");
+      }
+      if (spanSwitchRate < 0 || spanSwitchRate > 1) {
+        throw new IllegalArgumentException("spanSwitchRate must be between 0 and 1");
+      }
+      return new CorpusSpec(this);
+    }
+  }
+}
@@ -0,0 +1,122 @@
+/*
+ * Copyright Splunk Inc.
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+
+package com.splunk.opentelemetry.profiler.corpus;
+
+import com.splunk.opentelemetry.profiler.ThreadDumpRegion;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
+import org.openjdk.jmc.common.item.IItem;
+import org.openjdk.jmc.common.item.IItemCollection;
+import org.openjdk.jmc.common.item.IItemIterable;
+import org.openjdk.jmc.flightrecorder.JfrLoaderToolkit;
+
+/**
+ * A {@link SyntheticRecording} together with its events parsed by JMC, as the profiler sees them.
+ * Corpora are cached by spec, so benchmarks with several methods generate each only once per JVM.
+ * Benchmarks that don't need JFR events can use {@link SyntheticThreadDump} and {@link
+ * SyntheticSpans} directly, which generate their data in memory.
+ */
+public final class SyntheticCorpus {
+  private static final Map<CorpusSpec, SyntheticCorpus> corpora = new HashMap<>();
+
+  private final CorpusSpec spec;
+  private final byte[] recording;
+  private final List<IItem> threadDumps = new ArrayList<>();
+  private final List<IItem> contextEvents = new ArrayList<>();
+  private final List<IItem> allocationSamples = new ArrayList<>();
+
+  private SyntheticCorpus(CorpusSpec spec) throws Exception {
+    this.spec = spec;
+    Path file = Files.createTempFile("synthetic", ".jfr");
+    try {
+      SyntheticRecording.write(file, spec);
+      recording = Files.readAllBytes(file);
+      IItemCollection items = JfrLoaderToolkit.loadEvents(file.toFile());
+      for (IItemIterable iterable : items) {
+        List<IItem> target = eventsOfType(iterable.getType().getIdentifier());
+        if (target != null) {
+          iterable.forEach(target::add);
+        }
+      }
+    } finally {
+      Files.deleteIfExists(file);
+    }
+  }
+
+  /** Returns a corpus with default parameters besides the thread count. */
+  public static SyntheticCorpus get(int threadCount) throws Exception {
+    return get(CorpusSpec.builder().threadCount(threadCount).build());
+  }
+
+  public static synchronized SyntheticCorpus get(CorpusSpec spec) throws Exception {
+    SyntheticCorpus corpus = corpora.get(spec);
+    if (corpus == null) {
+      corpus = new SyntheticCorpus(spec);
+      corpora.put(spec, corpus);
+    }
+    return corpus;
+  }
+
+  private List<IItem> eventsOfType(String eventType) {
+    switch (eventType) {
+      case "jdk.ThreadDump":
+        return threadDumps;
+      case "otel.ContextAttached":
+        return contextEvents;
+      case "jdk.ObjectAllocationSample":
+        return allocationSamples;
+      default:
+        return null;
+    }
+  }
+
+  public CorpusSpec getSpec() {
+    return spec;
+  }
+
+  /** Returns the recording in the JFR file format. */
+  public byte[] getRecording() {
+    return recording;
+  }
+
+  public List<IItem> getThreadDumps() {
+    return Collections.unmodifiableList(threadDumps);
+  }
+
+  public List<IItem> getContextEvents() {
+    return Collections.unmodifiableList(contextEvents);
+  }
+
+  public List<IItem> getAllocationSamples() {
+    return Collections.unmodifiableList(allocationSamples);
+  }
+
+  /** Returns the regions of all stacks in a thread dump. */
+  public static List<ThreadDumpRegion> stacks(String threadDump) {
+    List<ThreadDumpRegion> stacks = new ArrayList<>();
+    ThreadDumpRegion region = new ThreadDumpRegion(threadDump, 0, 0);
+    while (region.findNextStack()) {
+      stacks.add(new ThreadDumpRegion(threadDump, region.startIndex, region.endIndex));
+    }
+    return stacks;
+  }
+}
@@ -0,0 +1,165 @@
+/*
+ * Copyright Splunk Inc.
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+
+package com.splunk.opentelemetry.profiler.corpus;
+
+import com.splunk.opentelemetry.profiler.events.ContextAttached;
+import io.opentelemetry.api.trace.SpanContext;
+import java.io.IOException;
+import java.nio.file.Path;
+import java.util.Random;
+import java.util.concurrent.CountDownLatch;
+import java.util.concurrent.Phaser;
+import jdk.jfr.DataAmount;
+import jdk.jfr.Event;
+import jdk.jfr.Label;
+import jdk.jfr.Name;
+import jdk.jfr.Recording;
+import jdk.jfr.StackTrace;
+
+/**
+ * Writes a JFR recording with synthetic thread dumps, span context changes and allocation samples,
+ * without having to run a workload until the JVM produces them. Thread dumps and allocation
+ * samples are committed as java events with the names of the corresponding JDK events, which is
+ * enough for the JFR parsers used by the profiler. Context events have to be committed on the
+ * threads they describe, so a thread is started for every thread in the dump. Before each thread
+ * dump the threads commit the context changes generated by {@link SyntheticSpans}.
+ */
+public final class SyntheticRecording {
+
+  private SyntheticRecording() {}
+
+  /** Records the corpus described by the spec into a file. */
+  public static void write(Path file, CorpusSpec spec) throws IOException, InterruptedException {
+    Random random = new Random(spec.getSeed());
+    SpanContext[][] spans =
+        SyntheticSpans.generate(
+            spec.getThreadCount(),
+            spec.getThreadDumpCount(),
+            spec.getSpanSwitchRate(),
+            random.nextLong());
+    try (Recording recording = new Recording()) {
+      // enabling by class does not enable the thread dumps of the JVM, which have the same name
+      recording.enable(ThreadDumpEvent.class);
+      recording.enable(AllocationSampleEvent.class).withStackTrace();
+      recording.enable(ContextAttached.class);
+      recording.start();
+
+      // the threads and this thread meet twice per thread dump, once after committing the
+      // context changes and once after the thread dump
+      Phaser phaser = new Phaser(spec.getThreadCount() + 1);
+      CountDownLatch done = new CountDownLatch(1);
+      Thread[] threads = startThreads(spec.getThreadCount(), spans, phaser, done);
+      long[] threadIds = new long[threads.length];
+      for (int i = 0; i < threads.length; i++) {
+        threadIds[i] = threads[i].getId();
+      }
+      for (int i = 0; i < spec.getThreadDumpCount(); i++) {
+        phaser.arriveAndAwaitAdvance();
+        ThreadDumpEvent event = new ThreadDumpEvent();
+        event.result =
+            SyntheticThreadDump.generate(
+                threadIds, spec.getStackDepth(), spec.getFrameCardinality(), random.nextLong());
+        event.commit();
+        phaser.arriveAndAwaitAdvance();
+      }
+      for (int i = 0; i < spec.getAllocationSampleCount(); i++) {
+        allocate(spec.getStackDepth(), random.nextInt(64 * 1024));
+      }
+
+      recording.stop();
+      recording.dump(file);
+      done.countDown();
+      for (Thread thread : threads) {
+        thread.join();
+      }
+    }
+  }
+
+  private static Thread[] startThreads(
+      int threadCount, SpanContext[][] spans, Phaser phaser, CountDownLatch done) {
+    Thread[] threads = new Thread[threadCount];
+    for (int i = 0; i < threadCount; i++) {
+      int index = i;
+      // threads stay alive until the recording is written, jfr does not resolve dead threads
+      threads[i] =
+          new Thread(
+              null,
+              () -> {
+                SpanContext current = SpanContext.getInvalid();
+                for (SpanContext[] spansAtDump : spans) {
+                  SpanContext next = spansAtDump[index];
+                  if (!next.equals(current)) {
+                    new ContextAttached(
+                            next.getTraceId(), next.getSpanId(), next.getTraceFlags().asByte())
+                        .commit();
+                    current = next;
+                  }
+                  phaser.arriveAndAwaitAdvance();
+                  phaser.arriveAndAwaitAdvance();
+                }
+                awaitUninterruptibly(done);
+              },
+              "synthetic-" + i,
+              64 * 1024);
+      threads[i].setDaemon(true);
+      threads[i].start();
+    }
+    return threads;
+  }
+
+  private static void awaitUninterruptibly(CountDownLatch latch) {
+    while (true) {
+      try {
+        latch.await();
+        return;
+      } catch (InterruptedException e) {
+        // keep waiting, the thread must outlive the recording
+      }
+    }
+  }
+
+  // recurses to get a stack of the given depth for the allocation sample
+  private static void allocate(int depth, long weight) {
+    if (depth > 1) {
+      allocate(depth - 1, weight);
+      return;
+    }
+    AllocationSampleEvent event = new AllocationSampleEvent();
+    event.objectClass = byte[].class;
+    event.weight = weight;
+    event.commit();
+  }
+
+  @Name("jdk.ThreadDump")
+  @Label("Thread Dump")
+  @StackTrace(false)
+  static class ThreadDumpEvent extends Event {
+    @Label("Thread Dump")
+    String result;
+  }
+
+  @Name("jdk.ObjectAllocationSample")
+  @Label("Object Allocation Sample")
+  static class AllocationSampleEvent extends Event {
+    @Label("Object Class")
+    Class<?> objectClass;
+
+    @Label("Sample Weight")
+    @DataAmount
+    long weight;
+  }
+}
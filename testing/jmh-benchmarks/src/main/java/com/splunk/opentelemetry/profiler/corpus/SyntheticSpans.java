@@ -0,0 +1,71 @@
+/*
+ * Copyright Splunk Inc.
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+
+package com.splunk.opentelemetry.profiler.corpus;
+
+import io.opentelemetry.api.trace.SpanContext;
+import io.opentelemetry.api.trace.SpanId;
+import io.opentelemetry.api.trace.TraceFlags;
+import io.opentelemetry.api.trace.TraceId;
+import io.opentelemetry.api.trace.TraceState;
+import java.util.Random;
+
+/**
+ * Generates the sequence of spans that are active on each thread of a synthetic corpus. Initially
+ * every other thread has an active span. Between two thread dumps the span of a thread changes
+ * with the given rate: a thread without a span starts one, a thread with a span either ends it or
+ * switches to another span.
+ */
+public final class SyntheticSpans {
+
+  private SyntheticSpans() {}
+
+  /**
+   * Returns the span active on each thread at the time of each thread dump, indexed by thread dump
+   * and thread. Threads without an active span have an invalid span context.
+   */
+  public static SpanContext[][] generate(
+      int threadCount, int threadDumpCount, double spanSwitchRate, long seed) {
+    Random random = new Random(seed);
+    SpanContext[][] spans = new SpanContext[threadDumpCount][threadCount];
+    for (int dump = 0; dump < threadDumpCount; dump++) {
+      for (int thread = 0; thread < threadCount; thread++) {
+        if (dump == 0) {
+          spans[dump][thread] = thread % 2 == 0 ? newSpan(random) : SpanContext.getInvalid();
+          continue;
+        }
+        SpanContext previous = spans[dump - 1][thread];
+        if (random.nextDouble() >= spanSwitchRate) {
+          spans[dump][thread] = previous;
+        } else if (previous.isValid() && random.nextBoolean()) {
+          spans[dump][thread] = SpanContext.getInvalid();
+        } else {
+          spans[dump][thread] = newSpan(random);
+        }
+      }
+    }
+    return spans;
+  }
+
+  private static SpanContext newSpan(Random random) {
+    return SpanContext.create(
+        TraceId.fromLongs(random.nextLong(), random.nextLong()),
+        // a span id of zero is invalid
+        SpanId.fromLong(random.nextLong() | 1),
+        TraceFlags.getSampled(),
+        TraceState.getDefault());
+  }
+}
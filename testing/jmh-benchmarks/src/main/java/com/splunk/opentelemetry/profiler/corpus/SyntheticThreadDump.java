@@ -0,0 +1,71 @@
+/*
+ * Copyright Splunk Inc.
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+
+package com.splunk.opentelemetry.profiler.corpus;
+
+import java.util.Random;
+
+/**
+ * Generates thread dumps in the text format of the {@code jdk.ThreadDump} event. The output only
+ * depends on the arguments, so benchmarks that use it are comparable across runs and machines.
+ * Stacks are built from a fixed set of frames, roughly one in twenty threads is a VM thread
+ * without a stack.
+ */
+public final class SyntheticThreadDump {
+  private static final String[] THREAD_STATES = {
+    "RUNNABLE", "WAITING (parking)", "TIMED_WAITING (sleeping)", "BLOCKED (on object monitor)"
+  };
+
+  private SyntheticThreadDump() {}
+
+  /**
+   * Generates a thread dump of the given threads, each with a stack of the given depth. All frames
+   * but the last are picked at random from {@code frameCardinality} distinct frames.
+   */
+  public static String generate(long[] threadIds, int stackDepth, int frameCardinality, long seed) {
+    Random random = new Random(seed);
+    StringBuilder dump = new StringBuilder(threadIds.length * stackDepth * 80);
+    dump.append("2024-01-01 00:00:00\n");
+    dump.append("Full thread dump OpenJDK 64-Bit Server VM (17.0.9+9 mixed mode, sharing):\n\n");
+    for (int i = 0; i < threadIds.length; i++) {
+      long threadId = threadIds[i];
+      if (i % 20 == 19) {
+        dump.append("\"VM Thread ").append(i).append("\" os_prio=31 cpu=1.00ms elapsed=100.00s");
+        dump.append(" tid=0x00007f0000000000 nid=0x").append(Long.toHexString(i + 0x1000));
+        dump.append(" runnable\n\n");
+        continue;
+      }
+      dump.append('"').append("worker-").append(i).append("\" #").append(threadId);
+      dump.append(" daemon prio=5 os_prio=31 cpu=").append(random.nextInt(10_000)).append(".00ms");
+      dump.append(" elapsed=100.00s tid=0x00007f0000000000 nid=0x");
+      dump.append(Long.toHexString(i + 0x1000)).append(" waiting on condition  [0x0]\n");
+      String state = THREAD_STATES[random.nextInt(THREAD_STATES.length)];
+      dump.append("   java.lang.Thread.State: ").append(state).append('\n');
+      for (int depth = 0; depth < stackDepth - 1; depth++) {
+        appendFrame(dump, random.nextInt(frameCardinality));
+      }
+      dump.append("\tat java.lang.Thread.run(java.base@17.0.9/Thread.java:833)\n\n");
+    }
+    return dump.toString();
+  }
+
+  private static void appendFrame(StringBuilder dump, int frame) {
+    int type = frame / 8;
+    dump.append("\tat com.example.service.Service").append(type);
+    dump.append(".method").append(frame % 8);
+    dump.append("(Service").append(type).append(".java:").append(10 + frame).append(")\n");
+  }
+}